@@ -8,6 +8,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.io.IOException;
 import java.io.StringWriter;
@@ -31,6 +33,19 @@ public final class BrewDay {
      */
     private Map<String, Object> timers = new ConcurrentHashMap<>();
 
+    /**
+     * The start and end of each timer on the {@link TimerService} clock, so
+     * the times shown don't jump when NTP corrects the wall clock.
+     */
+    private final Map<String, Long> startNanos = new ConcurrentHashMap<>();
+    private final Map<String, Long> endNanos = new ConcurrentHashMap<>();
+
+    /**
+     * The count downs waiting to reach zero.
+     */
+    private final Map<String, ScheduledFuture<?>> countDowns =
+            new ConcurrentHashMap<>();
+
     // generate the date time parameters
     /**
      * The Day format.
@@ -118,8 +133,25 @@ public final class BrewDay {
      * @param timerData
      *            And entry with the timer data.
      */
-    @SuppressWarnings("unchecked")
     public void setTimer(final String name, final Entry<String, Date> timerData) {
+        Date value = timerData.getValue();
+        setTimer(name, timerData, value == null ? null
+                : TimerService.toNanos(value.getTime()));
+    }
+
+    /**
+     * Set the timer at name to the specified entry.
+     *
+     * @param name
+     *            The timer to reset.
+     * @param timerData
+     *            And entry with the timer data.
+     * @param nanos
+     *            The same time on the {@link TimerService} clock.
+     */
+    @SuppressWarnings("unchecked")
+    private void setTimer(final String name,
+            final Entry<String, Date> timerData, final Long nanos) {
         HashMap<String, Date> timerElements = (HashMap<String, Date>) timers
                 .get(name);
 
@@ -129,6 +161,48 @@ public final class BrewDay {
         
         timerElements.put(timerData.getKey(), timerData.getValue());
         timers.put(name, timerElements);
+
+        Map<String, Long> anchors = "start".equals(timerData.getKey())
+                ? startNanos : endNanos;
+        if (nanos == null) {
+            anchors.remove(name);
+        } else {
+            anchors.put(name, nanos);
+        }
+        scheduleCountDown(name);
+        LaunchControl.statusChanged();
+    }
+
+    /**
+     * Tell the clients when a count down reaches zero, rather than have them
+     * poll for it.
+     * @param name The timer that changed.
+     */
+    private void scheduleCountDown(final String name) {
+        ScheduledFuture<?> old = countDowns.remove(name);
+        if (old != null) {
+            old.cancel(false);
+        }
+        Long start = startNanos.get(name);
+        if (start == null || endNanos.containsKey(name)) {
+            return;
+        }
+        long delay = TimeUnit.NANOSECONDS.toMillis(
+                start - TimerService.nanoTime());
+        if (delay <= 0) {
+            return;
+        }
+        ScheduledFuture<?> countDown = TimerService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                countDowns.remove(name);
+                BrewServer.LOG.info("Timer " + name + " reached zero");
+                LaunchControl.statusChanged();
+            }
+        }, delay);
+        if (countDown != null) {
+            countDowns.put(name, countDown);
+        }
     }
 
     /**
@@ -141,20 +215,25 @@ public final class BrewDay {
      */
     public void startTimer(final String name, final String startIn) {
         Date startDate;
+        Long start;
         try {
             Long startTime = Long.parseLong(startIn);
             // If it's 0 we start now. If it's anything else it's a count down.
             startDate = new Date();
+            start = TimerService.nanoTime();
             if (startTime > 0) {
                 startDate = new Date(startDate.getTime() + (1000 * startTime));
+                start += TimeUnit.SECONDS.toNanos(startTime);
             }
         } catch (NumberFormatException nfe) {
             startDate = parseDateString(startIn);
+            start = startDate == null ? null
+                    : TimerService.toNanos(startDate.getTime());
         }
 
         Entry<String, Date> startEntry =
                 new AbstractMap.SimpleEntry<>("start", startDate);
-        setTimer(name, startEntry);
+        setTimer(name, startEntry, start);
     }
 
     /**
@@ -191,20 +270,24 @@ public final class BrewDay {
         Date startDate = valueEntry.get("start");
         Date endDate = valueEntry.get("end");
 
-        Long current = 0L;
-        if (endDate != null && startDate != null) {
+        Long start = startNanos.get(name);
+        Long end = endNanos.get(name);
+        long current = 0L;
+        if (endDate != null && startDate != null
+                && start != null && end != null) {
             // get the current duration.
-            current = endDate.getTime() - startDate.getTime();
+            current = end - start;
         }
 
-        startDate = new Date(Calendar.getInstance().getTimeInMillis() - current);
+        startDate = new Date(Calendar.getInstance().getTimeInMillis()
+                - TimeUnit.NANOSECONDS.toMillis(current));
 
         Entry<String, Date> stopEntry = new AbstractMap.SimpleEntry<>(
                 "end", null);
         setTimer(name, stopEntry);
         Entry<String, Date> startEntry = new AbstractMap.SimpleEntry<>(
                 "start", startDate);
-        setTimer(name, startEntry);
+        setTimer(name, startEntry, TimerService.nanoTime() - current);
     }
     
     public void resetTimer(String name) {
@@ -282,7 +365,7 @@ public final class BrewDay {
         Iterator<Entry<String, Object>> it = timers.entrySet().iterator();
 
         Entry<String, Object> e;
-        Date currentDate = Calendar.getInstance().getTime();
+        long now = TimerService.nanoTime();
 
         while (it.hasNext()) {
             e = it.next();
@@ -296,25 +379,23 @@ public final class BrewDay {
                 JSONObject timerJSON = new JSONObject();
                 timerJSON.put("name", e.getKey());
 
-                Date startDate = valueEntry.get("start");
-                Date endDate = valueEntry.get("end");
+                Long start = startNanos.get(e.getKey());
+                Long end = endNanos.get(e.getKey());
                 String mode = "none";
                 Long seconds = 0L;
 
-                if (startDate != null && endDate == null) {
+                if (start != null && end == null) {
                     // Are we counting up?
-                    if (startDate.getTime() < currentDate.getTime()) {
-                        seconds = (currentDate.getTime() - startDate.getTime())
-                                / 1000;
+                    if (start < now) {
+                        seconds = TimeUnit.NANOSECONDS.toSeconds(now - start);
                         mode = "up";
                     } else {
-                        seconds = (startDate.getTime() - currentDate.getTime())
-                                / 1000;
+                        seconds = TimeUnit.NANOSECONDS.toSeconds(start - now);
                         mode = "down";
                     }
-                } else if (startDate != null && endDate != null) {
+                } else if (start != null && end != null) {
                     // Timer has stopped.
-                    seconds = (endDate.getTime() - startDate.getTime()) / 1000;
+                    seconds = TimeUnit.NANOSECONDS.toSeconds(end - start);
                     mode = "stopped";
                 }
 
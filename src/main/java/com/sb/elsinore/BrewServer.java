@@ -2,13 +2,14 @@ package com.sb.elsinore;
 
 import ca.strangebrew.recipe.Recipe;
 import com.sb.elsinore.NanoHTTPD.Response.Status;
-import com.sb.elsinore.annotations.UrlEndpoint;
 import org.json.simple.JSONObject;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
@@ -80,6 +81,10 @@ public class BrewServer extends NanoHTTPD {
         }
     };
     private static ArrayList<String> recipeList;
+    /**
+     * The runner handling the HTTP requests.
+     */
+    private static PooledAsyncRunner requestRunner = null;
 
     /**
      * Constructor to create the HTTP Server.
@@ -107,6 +112,14 @@ public class BrewServer extends NanoHTTPD {
         BrewServer.LOG.info("Enabled logging at level:" + logLevel.toString());
         BrewServer.LOG.setLevel(logLevel);
 
+        requestRunner = new PooledAsyncRunner(LaunchControl.httpThreads,
+                LaunchControl.httpQueue, LaunchControl.httpVirtualThreads);
+        if (LaunchControl.httpVirtualThreads && !requestRunner.isVirtual()) {
+            LOG.warning("Virtual threads are not supported by this JVM,"
+                    + " using " + LaunchControl.httpThreads + " HTTP threads");
+        }
+        setAsyncRunner(requestRunner);
+
         this.rootDir = new File(BrewServer.class.getProtectionDomain()
                 .getCodeSource().getLocation().getPath()).getParentFile();
 
@@ -123,6 +136,14 @@ public class BrewServer extends NanoHTTPD {
         }
     }
 
+    /**
+     * @return The runner handling the HTTP requests, or null if the server
+     * hasn't started.
+     */
+    public static PooledAsyncRunner getRequestRunner() {
+        return requestRunner;
+    }
+
     public static void setRecipeList(ArrayList<String> recipeList) {
         BrewServer.recipeList = recipeList;
     }
@@ -182,104 +203,23 @@ public class BrewServer extends NanoHTTPD {
 
         BrewServer.LOG.info("URL : " + uri + " method: " + method);
 
-        if (uri.equalsIgnoreCase("/clearStatus")) {
-            LaunchControl.setMessage("");
-            return new NanoHTTPD.Response(Status.OK, MIME_HTML,
-                    "Status Cleared");
-        }
-
-        if (uri.equalsIgnoreCase("/addsystem")) {
-            LaunchControl.addSystemTemp();
-            return new NanoHTTPD.Response(Status.OK, MIME_HTML,
-                    "Added system temperature");
-        }
-
-        if (uri.equalsIgnoreCase("/delsystem")) {
-            LaunchControl.delSystemTemp();
-            return new NanoHTTPD.Response(Status.OK, MIME_HTML,
-                    "Deleted system temperature");
-        }
-        
-        if (uri.equalsIgnoreCase("/getstatus")) {
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    LaunchControl.getJSONStatus());
-        }
-
-        if (uri.equalsIgnoreCase("/getsystemsettings")) {
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    LaunchControl.getSystemStatus());
-        }
-
-        if (uri.equalsIgnoreCase("/graph")) {
-            return serveFile("/templates/static/graph/graph.html", header,
-                    rootDir);
-        }
-
-        if (uri.equalsIgnoreCase("/checkgit")) {
-            LaunchControl.checkForUpdates();
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    "{Status:'OK'}");
-        }
-
-        if (uri.equalsIgnoreCase("/restartupdate")) {
-            LaunchControl.updateFromGit();
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    "{Status:'OK'}");
-        }
-
-        if (uri.equalsIgnoreCase("/settheme")) {
-            String newTheme = parms.get("name");
-
-            if (newTheme == null) {
-                return new NanoHTTPD.Response(Status.BAD_REQUEST,
-                        MIME_TYPES.get("json"),
-                        "{Status:'No name provided'}");
-            }
-
-            String fileName = "/logos/" + newTheme + ".ico";
-            if (!(new File(rootDir, fileName).exists())) {
-                // It doesn't exist
-                LaunchControl.setMessage("Favicon for the new theme: "
-                        + newTheme + ", doesn't exist."
-                        + " Please add: " + fileName + " and try again");
-                return new NanoHTTPD.Response(Status.BAD_REQUEST,
-                        MIME_TYPES.get("json"),
-                        "{Status:'Favicon doesn\'t exist'}");
-            }
-
-            fileName = "/logos/" + newTheme + ".gif";
-            if (!(new File(rootDir, fileName).exists())) {
-                // It doesn't exist
-                LaunchControl.setMessage("Brewry image for the new theme: "
-                        + newTheme + ", doesn't exist."
-                        + " Please add: " + fileName + " and try again");
-                return new NanoHTTPD.Response(Status.BAD_REQUEST,
-                        MIME_TYPES.get("json"),
-                        "{Status:'Brewery Image doesn\'t exist'}");
-            }
-
-            LaunchControl.theme = newTheme;
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    "{Status:'OK'}");
-
-        }
-
-        if (uri.equalsIgnoreCase("/favicon.ico")) {
-            // Has the favicon been overridden?
-            // Check to see if there's a theme set.
-            if (LaunchControl.theme != null
-                    && !LaunchControl.theme.equals("")) {
-                if (new File(rootDir,
-                        "/logos/" + LaunchControl.theme + ".ico").exists()) {
-                    return serveFile("/logos/" + LaunchControl.theme + ".ico",
-                            header, rootDir);
+        MethodHandle route = UrlRoutes.find(uri);
+        if (route != null) {
+            UrlEndpoints urlEndpoints = new UrlEndpoints();
+            urlEndpoints.parameters = parms;
+            urlEndpoints.files = files;
+            urlEndpoints.header = header;
+            urlEndpoints.rootDir = rootDir;
+            try {
+                Response response = (Response) route.invokeExact(urlEndpoints);
+                // Endpoints return null to fall back to the static files
+                if (response != null) {
+                    return response;
                 }
+            } catch (Throwable e) {
+                LOG.warning("Couldn't access URL: " + uri);
+                e.printStackTrace();
             }
-
-            if (new File(rootDir, uri).exists()) {
-                return serveFile(uri, header, rootDir);
-            }
-
         }
 
         // NLS Support
@@ -288,30 +228,6 @@ public class BrewServer extends NanoHTTPD {
                 header, rootDir);
         }
 
-        if (uri.equalsIgnoreCase("/stop")) {
-            System.exit(128);
-        }
-
-        for (java.lang.reflect.Method m
-                : UrlEndpoints.class.getDeclaredMethods()) {
-           UrlEndpoint urlMethod = m.getAnnotation(UrlEndpoint.class);
-           if (urlMethod != null) {
-               if (urlMethod.url().equalsIgnoreCase(uri)) {
-                   try {
-                       UrlEndpoints urlEndpoints = new UrlEndpoints();
-                       urlEndpoints.parameters = parms;
-                       urlEndpoints.files = files;
-                       urlEndpoints.header = header;
-                       urlEndpoints.rootDir = rootDir;
-                       return (Response) m.invoke(urlEndpoints);
-                   } catch (Exception e) {
-                       LOG.warning("Couldn't access URL: " + uri);
-                       e.printStackTrace();
-                   }
-               }
-           }
-        }
-
         if (!uri.equals("") && new File(rootDir, uri).exists()) {
             return serveFile(uri, header, rootDir);
         }
@@ -321,7 +237,10 @@ public class BrewServer extends NanoHTTPD {
         BrewServer.LOG.info("Unidentified URL: " + uri);
         JSONObject usage = new JSONObject();
         usage.put("controller", "Get the main controller page");
-        usage.put("getstatus", "Get the current status as a JSON object");
+        usage.put("getstatus", "Get the current status as a JSON object,"
+                + " since=<version> to only get the changes since then");
+        usage.put("status-stream",
+                "Stream the status changes as Server-Sent Events");
         usage.put("timers", "Get the current timer status");
 
         usage.put("addswitch", "Add a new switch");
@@ -341,6 +260,65 @@ public class BrewServer extends NanoHTTPD {
                 usage.toJSONString());
     }
 
+    /**
+     * Serve the cached status snapshot, or a 304 if the client already has it.
+     * If the client sends the version it last saw as "since", only the
+     * changes after that version are sent.
+     *
+     * @param header
+     *            The headers coming in
+     * @param parms
+     *            The request parameters
+     * @return A NanoHTTPD Response for the status
+     */
+    public static Response serveStatus(final Map<String, String> header,
+            final Map<String, String> parms) {
+        String since = parms.get("since");
+        if (since != null) {
+            try {
+                StatusSnapshot delta = LaunchControl.getStatusDelta(
+                        Long.parseLong(since));
+                Response res = new Response(Status.OK, MIME_TYPES.get("json"),
+                        new ByteArrayInputStream(delta.getBytes()));
+                res.addHeader("Cache-Control", "no-cache");
+                return res;
+            } catch (NumberFormatException e) {
+                BrewServer.LOG.warning("Bad status version: " + since);
+            }
+        }
+
+        StatusSnapshot snapshot = LaunchControl.getStatusSnapshot();
+        Response res;
+        if (snapshot.getETag().equals(header.get("if-none-match"))) {
+            res = new Response(Status.NOT_MODIFIED, MIME_TYPES.get("json"), "");
+        } else {
+            res = new Response(Status.OK, MIME_TYPES.get("json"),
+                    new ByteArrayInputStream(snapshot.getBytes()));
+        }
+        res.addHeader("ETag", snapshot.getETag());
+        res.addHeader("Cache-Control", "no-cache");
+        return res;
+    }
+
+    /**
+     * Get the MIME type of a file from its extension.
+     *
+     * @param name
+     *            The file name or path.
+     * @return The MIME type, HTML if it's unknown.
+     */
+    private static String getMimeType(final String name) {
+        String mime = null;
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0 && dot > name.lastIndexOf('/')) {
+            mime = MIME_TYPES.get(name.substring(dot + 1).toLowerCase());
+        }
+        if (mime == null) {
+            mime = NanoHTTPD.MIME_HTML;
+        }
+        return mime;
+    }
+
     /**
      * Serves file from homeDir and its' subdirectories (only). Uses only URI,
      * ignores all headers and HTTP parameters.
@@ -381,7 +359,17 @@ public class BrewServer extends NanoHTTPD {
             }
         }
 
+        // Most requests are for the static files, try the cache first
         File f = new File(homeDir, uri);
+        if (res == null && header.get("range") == null) {
+            Response cached = StaticAssetCache.serve(uri, f,
+                    getMimeType(uri), header);
+            if (cached != null) {
+                cached.addHeader("Accept-Ranges", "bytes");
+                return cached;
+            }
+        }
+
         if (res == null && !f.exists()) {
             res = new Response(Response.Status.NOT_FOUND,
                     NanoHTTPD.MIME_PLAINTEXT, "Error 404, file not found.");
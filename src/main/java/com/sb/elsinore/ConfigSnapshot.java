@@ -0,0 +1,420 @@
+package com.sb.elsinore;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * The configuration, parsed once from the config file.
+ *
+ * A snapshot never changes, so any thread can read it without a lock.
+ * A change makes a new snapshot, which LaunchControl swaps in, and the
+ * {@link ConfigWriter} turns the current one back into XML with
+ * {@link #toDocument()} when it saves the file. Sections and settings the
+ * server doesn't know about aren't kept.
+ *
+ * Triggers aren't saved in the config file, so there is no trigger
+ * section.
+ *
+ * @author Doug Edey
+ */
+public final class ConfigSnapshot {
+
+    /** The configuration when there is no config file. */
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot(
+            GeneralConfig.EMPTY, Collections.<DeviceConfig>emptyList(),
+            Collections.<TimerConfig>emptyList(),
+            Collections.<SwitchConfig>emptyList(),
+            Collections.<PhSensorConfig>emptyList());
+
+    private final GeneralConfig general;
+    private final List<DeviceConfig> devices;
+    private final List<TimerConfig> timers;
+    private final List<SwitchConfig> switches;
+    private final List<PhSensorConfig> phSensors;
+
+    private ConfigSnapshot(final GeneralConfig newGeneral,
+            final List<DeviceConfig> newDevices,
+            final List<TimerConfig> newTimers,
+            final List<SwitchConfig> newSwitches,
+            final List<PhSensorConfig> newPhSensors) {
+        this.general = newGeneral;
+        this.devices = newDevices;
+        this.timers = newTimers;
+        this.switches = newSwitches;
+        this.phSensors = newPhSensors;
+    }
+
+    /**
+     * Parse a configuration document.
+     * @param doc The document from the config file.
+     * @return The configuration, or {@link #EMPTY} if there is no document.
+     */
+    public static ConfigSnapshot fromDocument(final Document doc) {
+        if (doc == null || doc.getDocumentElement() == null) {
+            return EMPTY;
+        }
+        GeneralConfig newGeneral = GeneralConfig.EMPTY;
+        List<DeviceConfig> newDevices = new ArrayList<>();
+        List<TimerConfig> newTimers = new ArrayList<>();
+        List<SwitchConfig> newSwitches = new ArrayList<>();
+        List<PhSensorConfig> newPhSensors = new ArrayList<>();
+
+        for (Element section : children(doc.getDocumentElement())) {
+            String name = section.getNodeName();
+            if (name.equals("general")) {
+                newGeneral = GeneralConfig.fromElement(section);
+            } else if (name.equals("device")) {
+                newDevices.add(DeviceConfig.fromElement(section));
+            } else if (name.equalsIgnoreCase("timers")) {
+                for (Element timer : children(section)) {
+                    newTimers.add(TimerConfig.fromElement(timer));
+                }
+            } else if (name.equals("switches")) {
+                for (Element tSwitch : children(section)) {
+                    newSwitches.add(SwitchConfig.fromElement(tSwitch));
+                }
+            } else if (name.equals("phSensors")) {
+                for (Element sensor : children(section)) {
+                    newPhSensors.add(PhSensorConfig.fromElement(sensor));
+                }
+            } else {
+                BrewServer.LOG.warning("Unknown config section " + name
+                        + ", it won't be saved");
+            }
+        }
+        return new ConfigSnapshot(newGeneral, freeze(newDevices),
+                freeze(newTimers), freeze(newSwitches), freeze(newPhSensors));
+    }
+
+    /**
+     * Build the XML for the config file.
+     * @return A new document.
+     * @throws ParserConfigurationException If there's no XML parser.
+     */
+    public Document toDocument() throws ParserConfigurationException {
+        Document doc = DocumentBuilderFactory.newInstance()
+                .newDocumentBuilder().newDocument();
+        Element root = doc.createElement("elsinore");
+        doc.appendChild(root);
+
+        root.appendChild(this.general.toElement(doc));
+        for (DeviceConfig device : this.devices) {
+            root.appendChild(device.toElement(doc));
+        }
+        Element section = doc.createElement("timers");
+        for (TimerConfig timer : this.timers) {
+            section.appendChild(timer.toElement(doc));
+        }
+        root.appendChild(section);
+        section = doc.createElement("switches");
+        for (SwitchConfig tSwitch : this.switches) {
+            section.appendChild(tSwitch.toElement(doc));
+        }
+        root.appendChild(section);
+        section = doc.createElement("phSensors");
+        for (PhSensorConfig sensor : this.phSensors) {
+            section.appendChild(sensor.toElement(doc));
+        }
+        root.appendChild(section);
+        return doc;
+    }
+
+    /**
+     * @return The general settings, never null.
+     */
+    public GeneralConfig getGeneral() {
+        return this.general;
+    }
+
+    /**
+     * @return The devices, in the config file order.
+     */
+    public List<DeviceConfig> getDevices() {
+        return this.devices;
+    }
+
+    /**
+     * @param id The device name.
+     * @return The device, or null if it's not in the config.
+     */
+    public DeviceConfig getDevice(final String id) {
+        for (DeviceConfig device : this.devices) {
+            if (device.getId().equals(id)) {
+                return device;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The timers.
+     */
+    public List<TimerConfig> getTimers() {
+        return this.timers;
+    }
+
+    /**
+     * @return The switches.
+     */
+    public List<SwitchConfig> getSwitches() {
+        return this.switches;
+    }
+
+    /**
+     * @return The pH sensors.
+     */
+    public List<PhSensorConfig> getPhSensors() {
+        return this.phSensors;
+    }
+
+    /**
+     * @param newGeneral The new general settings.
+     * @return A copy with the general settings replaced.
+     */
+    public ConfigSnapshot withGeneral(final GeneralConfig newGeneral) {
+        return new ConfigSnapshot(newGeneral, this.devices, this.timers,
+                this.switches, this.phSensors);
+    }
+
+    /**
+     * @param device The device to save.
+     * @return A copy with the device replaced in place, or added at the end
+     * if it's new.
+     */
+    public ConfigSnapshot withDevice(final DeviceConfig device) {
+        List<DeviceConfig> newDevices = new ArrayList<>(this.devices);
+        boolean replaced = false;
+        for (int i = 0; i < newDevices.size() && !replaced; i++) {
+            if (newDevices.get(i).getId().equals(device.getId())) {
+                newDevices.set(i, device);
+                replaced = true;
+            }
+        }
+        if (!replaced) {
+            newDevices.add(device);
+        }
+        return withDevices(newDevices);
+    }
+
+    /**
+     * @param id The name of the device to remove.
+     * @return A copy without the device.
+     */
+    public ConfigSnapshot withoutDevice(final String id) {
+        DeviceConfig device = getDevice(id);
+        if (device == null) {
+            return this;
+        }
+        List<DeviceConfig> newDevices = new ArrayList<>(this.devices);
+        newDevices.remove(device);
+        return withDevices(newDevices);
+    }
+
+    /**
+     * @param newDevices The devices, in order.
+     * @return A copy with the devices replaced.
+     */
+    public ConfigSnapshot withDevices(final List<DeviceConfig> newDevices) {
+        return new ConfigSnapshot(this.general,
+                freeze(new ArrayList<>(newDevices)), this.timers,
+                this.switches, this.phSensors);
+    }
+
+    /**
+     * @param newTimers The timers.
+     * @return A copy with the timers replaced.
+     */
+    public ConfigSnapshot withTimers(final List<TimerConfig> newTimers) {
+        return new ConfigSnapshot(this.general, this.devices,
+                freeze(new ArrayList<>(newTimers)), this.switches,
+                this.phSensors);
+    }
+
+    /**
+     * @param newSwitches The switches.
+     * @return A copy with the switches replaced.
+     */
+    public ConfigSnapshot withSwitches(final List<SwitchConfig> newSwitches) {
+        return new ConfigSnapshot(this.general, this.devices, this.timers,
+                freeze(new ArrayList<>(newSwitches)), this.phSensors);
+    }
+
+    /**
+     * @param newPhSensors The pH sensors.
+     * @return A copy with the pH sensors replaced.
+     */
+    public ConfigSnapshot withPhSensors(
+            final List<PhSensorConfig> newPhSensors) {
+        return new ConfigSnapshot(this.general, this.devices, this.timers,
+                this.switches, freeze(new ArrayList<>(newPhSensors)));
+    }
+
+    private static <T> List<T> freeze(final List<T> list) {
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @param parent The element to look in.
+     * @return The elements directly under the parent.
+     */
+    static List<Element> children(final Element parent) {
+        List<Element> found = new ArrayList<>();
+        Node child = parent.getFirstChild();
+        while (child != null) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                found.add((Element) child);
+            }
+            child = child.getNextSibling();
+        }
+        return found;
+    }
+
+    /**
+     * @param parent The element to look in.
+     * @param name The element name.
+     * @return The first element with the name anywhere under the parent,
+     * or null.
+     */
+    static Element first(final Element parent, final String name) {
+        NodeList nodes = parent.getElementsByTagName(name);
+        if (nodes.getLength() == 0) {
+            return null;
+        }
+        return (Element) nodes.item(0);
+    }
+
+    /**
+     * @param parent The element to look in.
+     * @param name The element name.
+     * @return The text of the first element with the name, or null.
+     */
+    static String text(final Element parent, final String name) {
+        Element element = first(parent, name);
+        if (element == null) {
+            return null;
+        }
+        return element.getTextContent();
+    }
+
+    /**
+     * @param parent The element to look in.
+     * @param name The element name.
+     * @return True or false, or null if there's no element.
+     */
+    static Boolean bool(final Element parent, final String name) {
+        String value = text(parent, name);
+        if (value == null) {
+            return null;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * @param parent The element to look in.
+     * @param name The element name.
+     * @param owner What the setting belongs to, for the warning.
+     * @return The number, or null if there's no element or it isn't a
+     * number.
+     */
+    static BigDecimal decimal(final Element parent, final String name,
+            final String owner) {
+        String value = text(parent, name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            badValue(owner, name, value);
+            return null;
+        }
+    }
+
+    /**
+     * @param parent The element to look in.
+     * @param name The element name.
+     * @param owner What the setting belongs to, for the warning.
+     * @return The integer, or null if there's no element or it isn't one.
+     */
+    static Integer integer(final Element parent, final String name,
+            final String owner) {
+        String value = text(parent, name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            badValue(owner, name, value);
+            return null;
+        }
+    }
+
+    /**
+     * @param parent The element to look in.
+     * @param name The element name.
+     * @param owner What the setting belongs to, for the warning.
+     * @return The long, or null if there's no element or it isn't one.
+     */
+    static Long longValue(final Element parent, final String name,
+            final String owner) {
+        String value = text(parent, name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            badValue(owner, name, value);
+            return null;
+        }
+    }
+
+    /**
+     * Report a setting that couldn't be parsed, it's left out.
+     */
+    static void badValue(final String owner, final String name,
+            final String value) {
+        BrewServer.LOG.warning("Couldn't parse " + name + " for " + owner
+                + ": " + value);
+        LaunchControl.setMessage(LaunchControl.getMessage()
+                + "\n Failed to parse " + name + " for " + owner + ": "
+                + value);
+    }
+
+    /**
+     * Add an element with the value as its text, if there is a value.
+     * @param parent The element to add to.
+     * @param name The element name.
+     * @param value The value, null to leave it out.
+     */
+    static void add(final Element parent, final String name,
+            final Object value) {
+        if (value == null) {
+            return;
+        }
+        Element element = parent.getOwnerDocument().createElement(name);
+        element.setTextContent(value.toString());
+        parent.appendChild(element);
+    }
+
+    /**
+     * Set an attribute, if there is a value.
+     */
+    static void attribute(final Element element, final String name,
+            final Object value) {
+        if (value != null) {
+            element.setAttribute(name, value.toString());
+        }
+    }
+}
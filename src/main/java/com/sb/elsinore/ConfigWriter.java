@@ -0,0 +1,266 @@
+package com.sb.elsinore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Writes the configuration file behind the changes, instead of on the
+ * thread that made them.
+ *
+ * A change only marks the configuration as dirty. The file is written once
+ * the changes have been quiet for {@link #QUIET_TIME}, or
+ * {@link #MAX_DELAY} after the first unsaved change if they keep coming, so
+ * a burst of changes is one write. The current {@link ConfigSnapshot} is
+ * turned into XML, then written to a temporary file that
+ * is synced and renamed over the config, so a power cut leaves the old
+ * file or the new one and never half of one. A write that fails is tried
+ * again after a growing delay, up to {@link #MAX_RETRIES} times, then it
+ * waits for the next change.
+ *
+ * @author Doug Edey
+ */
+public final class ConfigWriter {
+
+    /** How long the changes must be quiet before writing, in milliseconds. */
+    public static final long QUIET_TIME = 500;
+    /** The longest a change waits to be written, in milliseconds. */
+    public static final long MAX_DELAY = 5000;
+    /** The longest the shutdown waits for the write, in milliseconds. */
+    public static final long SHUTDOWN_TIMEOUT = 5000;
+    /** The failed writes in a row that are retried without a change. */
+    public static final int MAX_RETRIES = 5;
+
+    private static final Object lock = new Object();
+    private static final ScheduledExecutorService writer =
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(r, "Config-Writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    private static final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            writeIfDirty();
+        }
+    };
+
+    private static boolean dirty = false;
+    private static long firstDirty = 0;
+    private static ScheduledFuture<?> pending = null;
+    private static long writes = 0;
+    private static long requests = 0;
+    private static int failures = 0;
+
+    private ConfigWriter() {
+    }
+
+    /**
+     * Mark the configuration as changed, it is written shortly.
+     */
+    public static void markDirty() {
+        synchronized (lock) {
+            requests++;
+            failures = 0;
+            long now = TimerService.nanoTime();
+            if (!dirty) {
+                dirty = true;
+                firstDirty = now;
+            }
+            long waited = TimeUnit.NANOSECONDS.toMillis(now - firstDirty);
+            schedule(Math.max(0, Math.min(QUIET_TIME, MAX_DELAY - waited)));
+        }
+    }
+
+    /**
+     * The write failed, keep the changes and try again later, waiting twice
+     * as long each time.
+     */
+    private static void writeFailed() {
+        synchronized (lock) {
+            if (!dirty) {
+                dirty = true;
+                firstDirty = TimerService.nanoTime();
+            }
+            failures++;
+            if (failures > MAX_RETRIES) {
+                if (pending == null) {
+                    BrewServer.LOG.warning("Couldn't save the configuration"
+                            + " after " + MAX_RETRIES + " retries, waiting"
+                            + " for the next change");
+                }
+                return;
+            }
+            schedule(QUIET_TIME << failures);
+        }
+    }
+
+    /**
+     * Replace the waiting write, the caller holds the lock.
+     */
+    private static void schedule(final long delay) {
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        try {
+            pending = writer.schedule(writeTask, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pending = null;
+        }
+    }
+
+    /**
+     * Write any unsaved changes now, waiting for at most the timeout.
+     * Used when shutting down.
+     * @param timeout The longest to wait in milliseconds.
+     * @return True if the configuration is saved.
+     */
+    public static boolean flush(final long timeout) {
+        Future<?> flushing;
+        synchronized (lock) {
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+            try {
+                flushing = writer.submit(writeTask);
+            } catch (RejectedExecutionException e) {
+                flushing = null;
+            }
+        }
+        if (flushing == null) {
+            writeIfDirty();
+            return !isDirty();
+        }
+        BrewServer.LOG.info("Saving configuration");
+        try {
+            flushing.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            BrewServer.LOG.warning("Couldn't save the configuration in time: "
+                    + e.getMessage());
+        }
+        return !isDirty();
+    }
+
+    /**
+     * @return True if there are changes that aren't written yet.
+     */
+    public static boolean isDirty() {
+        synchronized (lock) {
+            return dirty;
+        }
+    }
+
+    /**
+     * @return The number of times the file has been written.
+     */
+    public static long getWriteCount() {
+        synchronized (lock) {
+            return writes;
+        }
+    }
+
+    /**
+     * @return The failed writes since the last change or successful write.
+     */
+    static int getFailureCount() {
+        synchronized (lock) {
+            return failures;
+        }
+    }
+
+    /**
+     * @return The number of changes that asked for a write.
+     */
+    public static long getRequestCount() {
+        synchronized (lock) {
+            return requests;
+        }
+    }
+
+    /**
+     * Write the file if anything has changed, on the writer thread.
+     */
+    private static void writeIfDirty() {
+        synchronized (lock) {
+            if (!dirty) {
+                return;
+            }
+            // Changes from here on need another write
+            dirty = false;
+            pending = null;
+        }
+        byte[] content = LaunchControl.serializeConfig();
+        if (content == null) {
+            // Nothing was saved, the changes still need writing
+            writeFailed();
+            return;
+        }
+        try {
+            write(new File(LaunchControl.configFileName), content);
+            synchronized (lock) {
+                writes++;
+                failures = 0;
+            }
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Could not write the config file: "
+                    + e.getMessage());
+            writeFailed();
+        }
+    }
+
+    /**
+     * Write to a temporary file next to the target, sync it, and rename it
+     * over the target.
+     */
+    static void write(final File target, final byte[] content)
+            throws IOException {
+        File absolute = target.getAbsoluteFile();
+        File directory = absolute.getParentFile();
+        File temp = new File(directory, "." + absolute.getName() + ".tmp");
+
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(content);
+            out.getFD().sync();
+        }
+        LaunchControl.setFileOwner(temp);
+
+        Path from = temp.toPath();
+        Path to = absolute.toPath();
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Make the rename itself durable, not every platform allows this
+        try (FileChannel dir = FileChannel.open(directory.toPath(),
+                StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            BrewServer.LOG.fine("Couldn't sync " + directory + ": "
+                    + e.getMessage());
+        }
+    }
+}
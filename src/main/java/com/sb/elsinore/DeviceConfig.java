@@ -0,0 +1,597 @@
+package com.sb.elsinore;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * One device from the config file: the probe, its PID settings and its
+ * volume calibration.
+ *
+ * It never changes, a change makes a copy. The getters give the value the
+ * server starts with when a setting isn't in the file, and a setting that
+ * isn't in the file is left out when it's written.
+ *
+ * @author Doug Edey
+ */
+public final class DeviceConfig {
+
+    /** The volume unit when there isn't one. */
+    public static final String DEFAULT_VOLUME_UNIT = "Litres";
+
+    private final String id;
+    private String probe;
+    private Integer position;
+    private BigDecimal duty;
+    private BigDecimal dutyTime;
+    private BigDecimal setPoint;
+    private OutputConfig heat = OutputConfig.EMPTY;
+    private OutputConfig cool = OutputConfig.EMPTY;
+    private String filter;
+    private Integer filterWindow;
+    private BigDecimal min;
+    private BigDecimal max;
+    private BigDecimal time;
+    private String aux;
+    private String cutoff;
+    private String calibration;
+    private Long sampleInterval;
+    private Boolean hidden;
+    private String volumeUnit;
+    private String volumePin;
+    private String volumeAddress;
+    private String volumeOffset;
+    private Map<BigDecimal, BigDecimal> volumes =
+            Collections.<BigDecimal, BigDecimal>emptyMap();
+
+    private DeviceConfig(final String newId) {
+        this.id = newId;
+    }
+
+    private DeviceConfig copy() {
+        DeviceConfig config = new DeviceConfig(this.id);
+        config.probe = this.probe;
+        config.position = this.position;
+        config.duty = this.duty;
+        config.dutyTime = this.dutyTime;
+        config.setPoint = this.setPoint;
+        config.heat = this.heat;
+        config.cool = this.cool;
+        config.filter = this.filter;
+        config.filterWindow = this.filterWindow;
+        config.min = this.min;
+        config.max = this.max;
+        config.time = this.time;
+        config.aux = this.aux;
+        config.cutoff = this.cutoff;
+        config.calibration = this.calibration;
+        config.sampleInterval = this.sampleInterval;
+        config.hidden = this.hidden;
+        config.volumeUnit = this.volumeUnit;
+        config.volumePin = this.volumePin;
+        config.volumeAddress = this.volumeAddress;
+        config.volumeOffset = this.volumeOffset;
+        config.volumes = this.volumes;
+        return config;
+    }
+
+    /**
+     * @param id The device name.
+     * @return A device with nothing set.
+     */
+    public static DeviceConfig named(final String id) {
+        return new DeviceConfig(id);
+    }
+
+    /**
+     * Parse a device element.
+     * @param device The element from the config file.
+     * @return The device.
+     */
+    public static DeviceConfig fromElement(final Element device) {
+        DeviceConfig config = new DeviceConfig(device.getAttribute("id"));
+        String owner = config.id;
+        config.probe = ConfigSnapshot.text(device, "probe");
+        config.position = ConfigSnapshot.integer(device, "position", owner);
+        config.duty = ConfigSnapshot.decimal(device, "duty_cycle", owner);
+        config.dutyTime = ConfigSnapshot.decimal(device, "duty_time", owner);
+        config.setPoint = ConfigSnapshot.decimal(device, "set_point", owner);
+
+        // Older files have the heat settings straight under the device
+        Element heatElement = ConfigSnapshot.first(device, "heat");
+        config.heat = OutputConfig.fromElement(
+                heatElement == null ? device : heatElement, owner);
+        Element coolElement = ConfigSnapshot.first(device, "cool");
+        if (coolElement != null) {
+            config.cool = OutputConfig.fromElement(coolElement, owner);
+        }
+
+        config.filter = ConfigSnapshot.text(device, "filter");
+        config.filterWindow = ConfigSnapshot.integer(device, "filter_window",
+                owner);
+        config.min = ConfigSnapshot.decimal(device, "min", owner);
+        config.max = ConfigSnapshot.decimal(device, "max", owner);
+        config.time = ConfigSnapshot.decimal(device, "time", owner);
+        config.aux = ConfigSnapshot.text(device, "aux");
+        config.cutoff = ConfigSnapshot.text(device, "cutoff");
+        config.calibration = ConfigSnapshot.text(device, "calibration");
+        config.sampleInterval = ConfigSnapshot.longValue(device,
+                "sample_interval", owner);
+        config.hidden = ConfigSnapshot.bool(device, "hidden");
+
+        // Temp.save wrote the unit and pin under other names
+        config.volumeUnit = ConfigSnapshot.text(device, "volume-unit");
+        if (config.volumeUnit == null) {
+            config.volumeUnit = ConfigSnapshot.text(device, "volume-units");
+        }
+        config.volumePin = ConfigSnapshot.text(device, "volume-pin");
+        if (config.volumePin == null) {
+            config.volumePin = ConfigSnapshot.text(device, "volume-ain");
+        }
+        config.volumeAddress = ConfigSnapshot.text(device, "volume-address");
+        config.volumeOffset = ConfigSnapshot.text(device, "volume-offset");
+
+        Map<BigDecimal, BigDecimal> volumeMap = new LinkedHashMap<>();
+        NodeList nodes = device.getElementsByTagName("volume");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element volume = (Element) nodes.item(i);
+            try {
+                volumeMap.put(new BigDecimal(volume.getAttribute("vol")),
+                        new BigDecimal(volume.getTextContent().trim()));
+            } catch (NumberFormatException e) {
+                ConfigSnapshot.badValue(owner, "volume "
+                        + volume.getAttribute("vol"),
+                        volume.getTextContent());
+            }
+        }
+        config.volumes = Collections.unmodifiableMap(volumeMap);
+        return config;
+    }
+
+    /**
+     * @param doc The document to create the element in.
+     * @return The device element.
+     */
+    public Element toElement(final Document doc) {
+        Element device = doc.createElement("device");
+        device.setAttribute("id", this.id);
+        ConfigSnapshot.add(device, "probe", this.probe);
+        ConfigSnapshot.add(device, "position", this.position);
+        ConfigSnapshot.add(device, "duty_cycle", this.duty);
+        ConfigSnapshot.add(device, "duty_time", this.dutyTime);
+        ConfigSnapshot.add(device, "set_point", this.setPoint);
+        if (!this.heat.isEmpty()) {
+            device.appendChild(this.heat.toElement(doc, "heat"));
+        }
+        if (!this.cool.isEmpty()) {
+            device.appendChild(this.cool.toElement(doc, "cool"));
+        }
+        ConfigSnapshot.add(device, "filter", this.filter);
+        ConfigSnapshot.add(device, "filter_window", this.filterWindow);
+        ConfigSnapshot.add(device, "min", this.min);
+        ConfigSnapshot.add(device, "max", this.max);
+        ConfigSnapshot.add(device, "time", this.time);
+        ConfigSnapshot.add(device, "aux", this.aux);
+        ConfigSnapshot.add(device, "cutoff", this.cutoff);
+        ConfigSnapshot.add(device, "calibration", this.calibration);
+        ConfigSnapshot.add(device, "sample_interval", this.sampleInterval);
+        ConfigSnapshot.add(device, "hidden", this.hidden);
+        ConfigSnapshot.add(device, "volume-unit", this.volumeUnit);
+        ConfigSnapshot.add(device, "volume-pin", this.volumePin);
+        ConfigSnapshot.add(device, "volume-address", this.volumeAddress);
+        ConfigSnapshot.add(device, "volume-offset", this.volumeOffset);
+        for (Map.Entry<BigDecimal, BigDecimal> entry
+                : this.volumes.entrySet()) {
+            Element volume = doc.createElement("volume");
+            volume.setAttribute("vol", entry.getKey().toString());
+            volume.setTextContent(entry.getValue().toString());
+            device.appendChild(volume);
+        }
+        return device;
+    }
+
+    /**
+     * @param temp The probe to save.
+     * @return A copy with the probe settings and volume of the temp.
+     */
+    public DeviceConfig withTemp(final Temp temp) {
+        DeviceConfig config = copy();
+        config.probe = temp.getProbe();
+        config.position = temp.getPosition();
+        config.cutoff = temp.getCutoff();
+        config.calibration = temp.getCalibration();
+        if (temp.hasSampleInterval()) {
+            config.sampleInterval = temp.getSampleInterval();
+        }
+        config.hidden = temp.isHidden();
+        if (!temp.hasVolume()) {
+            return config;
+        }
+        if (!temp.getVolumeAIN().equals("")) {
+            config = config.withVolumePin(temp.getVolumeAIN());
+        } else {
+            config = config.withVolumeAddress(temp.getVolumeAddress(),
+                    temp.getVolumeOffset());
+        }
+        if (temp.getVolumeBase() == null) {
+            config.volumeUnit = temp.getVolumeUnit();
+            return config;
+        }
+        return config.withVolume(temp.getVolumeUnit(), temp.getVolumeBase());
+    }
+
+    /**
+     * @param pid The PID to save.
+     * @return A copy with the PID settings.
+     */
+    public DeviceConfig withPid(final PID pid) {
+        DeviceConfig config = copy();
+        config.duty = pid.getManualCycle();
+        config.dutyTime = pid.getManualTime();
+        config.setPoint = pid.getSetPoint();
+        if (pid.getHeatSetting() != null) {
+            config.heat = new OutputConfig(pid.getHeatGPIO(),
+                    pid.getHeatCycle(), null, pid.getHeatP(), pid.getHeatI(),
+                    pid.getHeatD(), pid.getHeatInverted(),
+                    pid.getHeatWatts());
+        }
+        if (pid.getCoolSetting() != null) {
+            config.cool = new OutputConfig(pid.getCoolGPIO(),
+                    pid.getCoolCycle(), pid.getCoolDelay(), pid.getCoolP(),
+                    pid.getCoolI(), pid.getCoolD(), pid.getCoolInverted(),
+                    pid.getCoolWatts());
+        }
+        config.filter = pid.getFilterMode();
+        config.filterWindow = pid.getFilterWindow();
+        config.min = pid.getMin();
+        config.max = pid.getMax();
+        config.time = pid.getTime();
+        if (pid.getAuxGPIO() != null) {
+            config.aux = pid.getAuxGPIO();
+        }
+        return config;
+    }
+
+    /**
+     * @param unit The volume unit.
+     * @param volumeBase The volume for each reading, added to the ones
+     * already saved.
+     * @return A copy with the volume calibration.
+     */
+    public DeviceConfig withVolume(final String unit,
+            final Map<BigDecimal, BigDecimal> volumeBase) {
+        DeviceConfig config = copy();
+        config.volumeUnit = unit;
+        Map<BigDecimal, BigDecimal> volumeMap =
+                new LinkedHashMap<>(this.volumes);
+        volumeMap.putAll(volumeBase);
+        config.volumes = Collections.unmodifiableMap(volumeMap);
+        return config;
+    }
+
+    /**
+     * @param pin The analogue input for the volume.
+     * @return A copy reading the volume from the pin.
+     */
+    public DeviceConfig withVolumePin(final String pin) {
+        DeviceConfig config = copy();
+        config.volumePin = pin;
+        return config;
+    }
+
+    /**
+     * @param address The one wire ADC for the volume.
+     * @param offset The ADC input, A to D.
+     * @return A copy reading the volume from the one wire ADC.
+     */
+    public DeviceConfig withVolumeAddress(final String address,
+            final String offset) {
+        DeviceConfig config = copy();
+        config.volumeAddress = address;
+        config.volumeOffset = offset;
+        return config;
+    }
+
+    /**
+     * @return The device name.
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * @return The probe address, or null.
+     */
+    public String getProbe() {
+        return this.probe;
+    }
+
+    /**
+     * @return The position on the page, -1 if it's not set.
+     */
+    public int getPosition() {
+        return this.position == null ? -1 : this.position;
+    }
+
+    /**
+     * @return The manual duty cycle.
+     */
+    public BigDecimal getDuty() {
+        return orZero(this.duty);
+    }
+
+    /**
+     * @return The manual duty time.
+     */
+    public BigDecimal getDutyTime() {
+        return orZero(this.dutyTime);
+    }
+
+    /**
+     * @return The set point.
+     */
+    public BigDecimal getSetPoint() {
+        return orZero(this.setPoint);
+    }
+
+    /**
+     * @return The heating output, never null.
+     */
+    public OutputConfig getHeat() {
+        return this.heat;
+    }
+
+    /**
+     * @return The cooling output, never null.
+     */
+    public OutputConfig getCool() {
+        return this.cool;
+    }
+
+    /**
+     * @return The filter mode, or null for the default.
+     */
+    public String getFilter() {
+        return this.filter;
+    }
+
+    /**
+     * @return The filter window.
+     */
+    public int getFilterWindow() {
+        if (this.filterWindow == null) {
+            return TempFilter.DEFAULT_WINDOW;
+        }
+        return this.filterWindow;
+    }
+
+    /**
+     * @return The hysteria minimum.
+     */
+    public BigDecimal getMin() {
+        return orZero(this.min);
+    }
+
+    /**
+     * @return The hysteria maximum.
+     */
+    public BigDecimal getMax() {
+        return orZero(this.max);
+    }
+
+    /**
+     * @return The hysteria time.
+     */
+    public BigDecimal getTime() {
+        return orZero(this.time);
+    }
+
+    /**
+     * @return The auxiliary GPIO, or null.
+     */
+    public String getAux() {
+        return this.aux;
+    }
+
+    /**
+     * @return The cutoff temperature, or null.
+     */
+    public String getCutoff() {
+        return this.cutoff;
+    }
+
+    /**
+     * @return The calibration, "" if it's not set.
+     */
+    public String getCalibration() {
+        return this.calibration == null ? "" : this.calibration;
+    }
+
+    /**
+     * @return The sample interval in milliseconds, 0 for the default.
+     */
+    public long getSampleInterval() {
+        return this.sampleInterval == null ? 0 : this.sampleInterval;
+    }
+
+    /**
+     * @return True if the probe is hidden.
+     */
+    public boolean isHidden() {
+        return this.hidden != null && this.hidden;
+    }
+
+    /**
+     * @return The volume unit.
+     */
+    public String getVolumeUnit() {
+        if (this.volumeUnit == null) {
+            return DEFAULT_VOLUME_UNIT;
+        }
+        return this.volumeUnit;
+    }
+
+    /**
+     * @return The analogue input for the volume, or null.
+     */
+    public String getVolumePin() {
+        return this.volumePin;
+    }
+
+    /**
+     * @return The one wire ADC for the volume, or null.
+     */
+    public String getVolumeAddress() {
+        return this.volumeAddress;
+    }
+
+    /**
+     * @return The one wire ADC input for the volume, or null.
+     */
+    public String getVolumeOffset() {
+        return this.volumeOffset;
+    }
+
+    /**
+     * @return The volume for each reading.
+     */
+    public Map<BigDecimal, BigDecimal> getVolumes() {
+        return this.volumes;
+    }
+
+    private static BigDecimal orZero(final BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    /**
+     * The heating or cooling output of a device.
+     */
+    public static final class OutputConfig {
+
+        /** No output. */
+        public static final OutputConfig EMPTY = new OutputConfig(null, null,
+                null, null, null, null, null, null);
+
+        private final String gpio;
+        private final BigDecimal cycleTime;
+        private final BigDecimal delay;
+        private final BigDecimal proportional;
+        private final BigDecimal integral;
+        private final BigDecimal derivative;
+        private final Boolean invert;
+        private final Integer watts;
+
+        private OutputConfig(final String newGpio,
+                final BigDecimal newCycleTime, final BigDecimal newDelay,
+                final BigDecimal newProportional,
+                final BigDecimal newIntegral, final BigDecimal newDerivative,
+                final Boolean newInvert, final Integer newWatts) {
+            this.gpio = newGpio;
+            this.cycleTime = newCycleTime;
+            this.delay = newDelay;
+            this.proportional = newProportional;
+            this.integral = newIntegral;
+            this.derivative = newDerivative;
+            this.invert = newInvert;
+            this.watts = newWatts;
+        }
+
+        private static OutputConfig fromElement(final Element output,
+                final String owner) {
+            // The cooling invert used to be read as "inverted"
+            Boolean invert = ConfigSnapshot.bool(output, "invert");
+            if (invert == null) {
+                invert = ConfigSnapshot.bool(output, "inverted");
+            }
+            return new OutputConfig(ConfigSnapshot.text(output, "gpio"),
+                    ConfigSnapshot.decimal(output, "cycle_time", owner),
+                    ConfigSnapshot.decimal(output, "delay", owner),
+                    ConfigSnapshot.decimal(output, "proportional", owner),
+                    ConfigSnapshot.decimal(output, "integral", owner),
+                    ConfigSnapshot.decimal(output, "derivative", owner),
+                    invert,
+                    ConfigSnapshot.integer(output, "watts", owner));
+        }
+
+        private Element toElement(final Document doc, final String name) {
+            Element output = doc.createElement(name);
+            ConfigSnapshot.add(output, "cycle_time", this.cycleTime);
+            ConfigSnapshot.add(output, "delay", this.delay);
+            ConfigSnapshot.add(output, "proportional", this.proportional);
+            ConfigSnapshot.add(output, "integral", this.integral);
+            ConfigSnapshot.add(output, "derivative", this.derivative);
+            ConfigSnapshot.add(output, "gpio", this.gpio);
+            ConfigSnapshot.add(output, "invert", this.invert);
+            ConfigSnapshot.add(output, "watts", this.watts);
+            return output;
+        }
+
+        private boolean isEmpty() {
+            return this.gpio == null && this.cycleTime == null
+                    && this.delay == null && this.proportional == null
+                    && this.integral == null && this.derivative == null
+                    && this.invert == null && this.watts == null;
+        }
+
+        /**
+         * @return The GPIO, or null.
+         */
+        public String getGpio() {
+            return this.gpio;
+        }
+
+        /**
+         * @return The cycle time.
+         */
+        public BigDecimal getCycleTime() {
+            return orZero(this.cycleTime);
+        }
+
+        /**
+         * @return The delay before the cooling comes on.
+         */
+        public BigDecimal getDelay() {
+            return orZero(this.delay);
+        }
+
+        /**
+         * @return The proportional gain.
+         */
+        public BigDecimal getProportional() {
+            return orZero(this.proportional);
+        }
+
+        /**
+         * @return The integral gain.
+         */
+        public BigDecimal getIntegral() {
+            return orZero(this.integral);
+        }
+
+        /**
+         * @return The derivative gain.
+         */
+        public BigDecimal getDerivative() {
+            return orZero(this.derivative);
+        }
+
+        /**
+         * @return True if the output is inverted.
+         */
+        public boolean isInverted() {
+            return this.invert != null && this.invert;
+        }
+
+        /**
+         * @return The watts the output draws, 0 if it's not known.
+         */
+        public int getWatts() {
+            return this.watts == null ? 0 : this.watts;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.sb.elsinore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A list of devices, such as the probes or the switches, that can be looked
+ * up by name without scanning it.
+ *
+ * The status is built from the web threads while the sensor threads and
+ * the PIDs look devices up, so nothing here locks out a reader. Every
+ * change copies the list and its indexes and swaps them in at once, a
+ * reader always sees a whole list. Iterating goes over the list as it was
+ * when the loop started, so a device added part way through doesn't upset
+ * it. Changes are rare next to lookups, so the copies are cheap.
+ *
+ * The names are matched ignoring case, as the finds always have. A device
+ * can have a second key, such as the probe address. A lookup finds the
+ * first device in the list whose name or second key matches, the same as
+ * the scans that checked both on each device in turn. If a device is
+ * renamed, call {@link #reindex()}.
+ *
+ * @param <T> The type of device.
+ * @author Doug Edey
+ */
+public final class DeviceRegistry<T> implements Iterable<T> {
+
+    /**
+     * Gets a key to look a device up by.
+     * @param <T> The type of device.
+     */
+    public interface Key<T> {
+        /**
+         * @param item The device.
+         * @return The key for the device, or null if it doesn't have one.
+         */
+        String keyOf(T item);
+    }
+
+    /**
+     * The list and its index, never changed once it's published.
+     */
+    private static final class State<T> {
+        private final List<T> items;
+        private final Map<String, T> keys;
+
+        private State(final List<T> newItems, final Map<String, T> newKeys) {
+            this.items = newItems;
+            this.keys = newKeys;
+        }
+    }
+
+    private final Key<T> nameKey;
+    private final Key<T> aliasKey;
+    private volatile State<T> state;
+
+    /**
+     * @param newNameKey Gets the name of a device.
+     * @param newAliasKey Gets the second key of a device, null for none.
+     */
+    public DeviceRegistry(final Key<T> newNameKey, final Key<T> newAliasKey) {
+        this.nameKey = newNameKey;
+        this.aliasKey = newAliasKey;
+        this.state = index(new ArrayList<T>());
+    }
+
+    /**
+     * Find a device by its name, or its second key.
+     * @param key The name to look for, ignoring case.
+     * @return The device, or null if there isn't one.
+     */
+    public T get(final String key) {
+        if (key == null) {
+            return null;
+        }
+        T found = this.state.keys.get(normalize(key));
+        if (found != null && !matches(found, key)) {
+            // Renamed without a reindex, catch up and try again
+            reindex();
+            found = this.state.keys.get(normalize(key));
+        }
+        return found;
+    }
+
+    /**
+     * @param key The name to look for, ignoring case.
+     * @return True if there is a device with this name or second key.
+     */
+    public boolean contains(final String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Add a device to the end of the list.
+     * @param item The device to add.
+     */
+    public synchronized void add(final T item) {
+        List<T> items = new ArrayList<>(this.state.items);
+        items.add(item);
+        this.state = index(items);
+    }
+
+    /**
+     * Add a device in order, after any that are equal to it.
+     * @param item The device to add.
+     * @param order The order to keep, null for the natural order.
+     */
+    public synchronized void addInOrder(final T item,
+            final Comparator<? super T> order) {
+        List<T> items = new ArrayList<>(this.state.items);
+        int insertAt = items.size();
+        for (int i = 0; i < items.size(); i++) {
+            if (compare(item, items.get(i), order) < 0) {
+                insertAt = i;
+                break;
+            }
+        }
+        items.add(insertAt, item);
+        this.state = index(items);
+    }
+
+    /**
+     * Remove a device.
+     * @param item The device to remove.
+     * @return True if it was in the list.
+     */
+    public synchronized boolean remove(final T item) {
+        List<T> items = new ArrayList<>(this.state.items);
+        if (!items.remove(item)) {
+            return false;
+        }
+        this.state = index(items);
+        return true;
+    }
+
+    /**
+     * Remove a device by name.
+     * @param key The name, or second key, ignoring case.
+     * @return The device that was removed, or null if there wasn't one.
+     */
+    public synchronized T remove(final String key) {
+        T found = get(key);
+        if (found != null) {
+            remove(found);
+        }
+        return found;
+    }
+
+    /**
+     * Remove all the devices.
+     */
+    public synchronized void clear() {
+        this.state = index(new ArrayList<T>());
+    }
+
+    /**
+     * Sort the devices.
+     * @param order The order to sort in, null for the natural order.
+     */
+    public synchronized void sort(final Comparator<? super T> order) {
+        List<T> items = new ArrayList<>(this.state.items);
+        Collections.sort(items, order);
+        this.state = index(items);
+    }
+
+    /**
+     * Sort the devices in their natural order.
+     */
+    public void sort() {
+        sort(null);
+    }
+
+    /**
+     * Rebuild the indexes after a device has been renamed.
+     */
+    public synchronized void reindex() {
+        this.state = index(new ArrayList<>(this.state.items));
+    }
+
+    /**
+     * @return The number of devices.
+     */
+    public int size() {
+        return this.state.items.size();
+    }
+
+    /**
+     * @return True if there are no devices.
+     */
+    public boolean isEmpty() {
+        return this.state.items.isEmpty();
+    }
+
+    /**
+     * @return The devices as they are now, this doesn't change.
+     */
+    public List<T> snapshot() {
+        return this.state.items;
+    }
+
+    /**
+     * Iterate the devices as they are now, this can't remove them.
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return this.state.items.iterator();
+    }
+
+    @Override
+    public String toString() {
+        return this.state.items.toString();
+    }
+
+    private State<T> index(final List<T> items) {
+        Map<String, T> keys = new HashMap<>();
+        for (T item : items) {
+            // The first device with a key wins, by name or second key
+            addKey(keys, this.nameKey.keyOf(item), item);
+            if (this.aliasKey != null) {
+                addKey(keys, this.aliasKey.keyOf(item), item);
+            }
+        }
+        return new State<>(Collections.unmodifiableList(items), keys);
+    }
+
+    private static <T> void addKey(final Map<String, T> keys,
+            final String key, final T item) {
+        if (key != null && !keys.containsKey(normalize(key))) {
+            keys.put(normalize(key), item);
+        }
+    }
+
+    private boolean matches(final T item, final String key) {
+        String name = this.nameKey.keyOf(item);
+        if (name != null && name.equalsIgnoreCase(key)) {
+            return true;
+        }
+        if (this.aliasKey != null) {
+            String alias = this.aliasKey.keyOf(item);
+            return alias != null && alias.equalsIgnoreCase(key);
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> int compare(final T a, final T b,
+            final Comparator<? super T> order) {
+        if (order != null) {
+            return order.compare(a, b);
+        }
+        return ((Comparable<? super T>) a).compareTo(b);
+    }
+
+    private static String normalize(final String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+}
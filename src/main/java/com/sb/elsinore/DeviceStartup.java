@@ -0,0 +1,239 @@
+package com.sb.elsinore;
+
+import org.json.simple.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Brings up the devices from the config file in the background, so the web
+ * server can start straight away.
+ *
+ * The connections the devices need, such as the OWFS server, are made
+ * first on the startup thread. Each device is then started on its own
+ * thread, so a dead probe or a slow OWFS server only holds up that device.
+ * A device that isn't up within
+ * {@link #DEVICE_TIMEOUT} is reported as timed out, and is added if it
+ * comes up later. Once every device is up or has timed out, the finished
+ * hook puts the probes back in the config file order and marks the load
+ * as complete, it runs again for each device that comes up late.
+ * The state of each device is in the status, see {@link #getJSONStatus()}.
+ * The config of a device that isn't running is kept as it is when the
+ * settings are saved, see {@link #isStarted(String)}.
+ *
+ * @author Doug Edey
+ */
+public final class DeviceStartup {
+
+    /** How long one device may take to start, in milliseconds. */
+    public static final long DEVICE_TIMEOUT = 10000;
+
+    /** The device is still starting. */
+    public static final String PENDING = "pending";
+    /** The device is running. */
+    public static final String READY = "ready";
+    /** The device couldn't be started. */
+    public static final String FAILED = "failed";
+    /** The device didn't start in time, it's still being tried. */
+    public static final String TIMEOUT = "timeout";
+
+    private static final Map<String, String> states = new LinkedHashMap<>();
+    private static volatile boolean running = false;
+    private static long startNanos = 0;
+    private static long finishNanos = 0;
+
+    private DeviceStartup() {
+    }
+
+    /**
+     * Start the devices in the background.
+     * @param control The LaunchControl that parses the devices.
+     * @param devices The devices from the config.
+     * @param connect Run before the devices are started, or null.
+     * @param finished Run once every device is up or has timed out.
+     */
+    public static void start(final LaunchControl control,
+            final List<DeviceConfig> devices, final Runnable connect,
+            final Runnable finished) {
+        synchronized (states) {
+            states.clear();
+            for (DeviceConfig device : devices) {
+                states.put(device.getId(), PENDING);
+            }
+            running = true;
+            startNanos = TimerService.nanoTime();
+            finishNanos = 0;
+        }
+        LaunchControl.statusChanged();
+
+        final AtomicInteger count = new AtomicInteger(0);
+        final ExecutorService starters = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(r, "Device-Startup-"
+                            + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (connect != null) {
+                    try {
+                        connect.run();
+                    } catch (RuntimeException e) {
+                        BrewServer.LOG.warning("Couldn't connect: "
+                                + e.getMessage());
+                    }
+                }
+                final Map<String, Future<?>> futures = new LinkedHashMap<>();
+                for (final DeviceConfig device : devices) {
+                    final String name = device.getId();
+                    futures.put(name, starters.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            String state = FAILED;
+                            try {
+                                if (control.parseDevice(device) != null) {
+                                    state = READY;
+                                }
+                            } catch (RuntimeException e) {
+                                BrewServer.LOG.warning("Couldn't start "
+                                        + name + ": " + e.getMessage());
+                            }
+                            setState(name, state);
+                            // Came up after the timeout, put it back in order
+                            if (!running && finished != null) {
+                                finished.run();
+                            }
+                        }
+                    }));
+                }
+                starters.shutdown();
+
+                awaitDevices(futures);
+                synchronized (states) {
+                    running = false;
+                    finishNanos = TimerService.nanoTime();
+                }
+                BrewServer.LOG.info("Device startup finished in "
+                        + getElapsed() + "ms: " + getStates());
+                if (finished != null) {
+                    finished.run();
+                }
+                LaunchControl.statusChanged();
+            }
+        }, "Device-Startup");
+        waiter.setDaemon(true);
+        waiter.start();
+    }
+
+    /**
+     * Wait for each device in turn, all of them get the same deadline.
+     */
+    private static void awaitDevices(final Map<String, Future<?>> futures) {
+        long deadline = TimerService.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(DEVICE_TIMEOUT);
+        for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+            long remaining = deadline - TimerService.nanoTime();
+            try {
+                entry.getValue().get(Math.max(0, remaining),
+                        TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                synchronized (states) {
+                    if (PENDING.equals(states.get(entry.getKey()))) {
+                        states.put(entry.getKey(), TIMEOUT);
+                    }
+                }
+                BrewServer.LOG.warning(entry.getKey() + " didn't start within "
+                        + DEVICE_TIMEOUT + "ms, carrying on without it");
+                LaunchControl.statusChanged();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                setState(entry.getKey(), FAILED);
+            }
+        }
+    }
+
+    private static void setState(final String name, final String state) {
+        synchronized (states) {
+            states.put(name, state);
+        }
+        LaunchControl.statusChanged();
+    }
+
+    /**
+     * @return True if the devices are started, or none were being started.
+     */
+    public static boolean isReady() {
+        return !running;
+    }
+
+    /**
+     * @param name The device name, spaces or underscores.
+     * @return False if the device failed, or is still starting, so its
+     * config has to be kept as it is. True if it's running, or wasn't in
+     * the config when the server started.
+     */
+    public static boolean isStarted(final String name) {
+        String key = name.replace(" ", "_");
+        synchronized (states) {
+            for (Map.Entry<String, String> entry : states.entrySet()) {
+                if (entry.getKey().replace(" ", "_").equals(key)) {
+                    return READY.equals(entry.getValue());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The milliseconds the startup took, or has taken so far.
+     */
+    public static long getElapsed() {
+        synchronized (states) {
+            if (startNanos == 0) {
+                return 0;
+            }
+            long end = running ? TimerService.nanoTime() : finishNanos;
+            return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+        }
+    }
+
+    /**
+     * @return A copy of the device states by name.
+     */
+    public static Map<String, String> getStates() {
+        synchronized (states) {
+            return new LinkedHashMap<>(states);
+        }
+    }
+
+    /**
+     * @return The startup state for the status.
+     */
+    @SuppressWarnings("unchecked")
+    public static JSONObject getJSONStatus() {
+        JSONObject status = new JSONObject();
+        status.put("ready", isReady());
+        status.put("elapsed", getElapsed());
+        JSONObject devices = new JSONObject();
+        devices.putAll(getStates());
+        status.put("devices", devices);
+        return status;
+    }
+}
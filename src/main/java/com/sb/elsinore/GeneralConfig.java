@@ -0,0 +1,329 @@
+package com.sb.elsinore;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * The general section of the config file.
+ *
+ * It never changes, a change makes a copy. A setting that isn't in the
+ * file is null, and is left out when the file is written.
+ *
+ * @author Doug Edey
+ */
+public final class GeneralConfig {
+
+    /** No general settings. */
+    public static final GeneralConfig EMPTY = new GeneralConfig();
+
+    private String breweryName;
+    private Boolean pageLock;
+    private String scale;
+    private Boolean recorder;
+    private Double recorderDiff;
+    private Long recorderTime;
+    private Integer httpThreads;
+    private Integer httpQueue;
+    private Boolean httpVirtualThreads;
+    private Integer sensorThreads;
+    private Long sensorInterval;
+    private Integer maxLoadWatts;
+    private Integer maxStatusStreams;
+    private String cosm;
+    private Integer cosmFeed;
+    private String pachube;
+    private Integer pachubeFeed;
+    private String owfsServer;
+    private Integer owfsPort;
+    private boolean system;
+
+    private GeneralConfig() {
+    }
+
+    private GeneralConfig copy() {
+        GeneralConfig config = new GeneralConfig();
+        config.breweryName = this.breweryName;
+        config.pageLock = this.pageLock;
+        config.scale = this.scale;
+        config.recorder = this.recorder;
+        config.recorderDiff = this.recorderDiff;
+        config.recorderTime = this.recorderTime;
+        config.httpThreads = this.httpThreads;
+        config.httpQueue = this.httpQueue;
+        config.httpVirtualThreads = this.httpVirtualThreads;
+        config.sensorThreads = this.sensorThreads;
+        config.sensorInterval = this.sensorInterval;
+        config.maxLoadWatts = this.maxLoadWatts;
+        config.maxStatusStreams = this.maxStatusStreams;
+        config.cosm = this.cosm;
+        config.cosmFeed = this.cosmFeed;
+        config.pachube = this.pachube;
+        config.pachubeFeed = this.pachubeFeed;
+        config.owfsServer = this.owfsServer;
+        config.owfsPort = this.owfsPort;
+        config.system = this.system;
+        return config;
+    }
+
+    /**
+     * Parse the general element.
+     * @param general The element from the config file.
+     * @return The settings.
+     */
+    public static GeneralConfig fromElement(final Element general) {
+        String owner = "general";
+        GeneralConfig config = new GeneralConfig();
+        config.breweryName = ConfigSnapshot.text(general, "brewery_name");
+        config.pageLock = ConfigSnapshot.bool(general, "pagelock");
+        config.scale = ConfigSnapshot.text(general, "scale");
+        config.recorder = ConfigSnapshot.bool(general, "recorder");
+        String diff = ConfigSnapshot.text(general, "recorderDiff");
+        if (diff != null) {
+            try {
+                config.recorderDiff = Double.parseDouble(diff.trim());
+            } catch (NumberFormatException e) {
+                ConfigSnapshot.badValue(owner, "recorderDiff", diff);
+            }
+        }
+        config.recorderTime = ConfigSnapshot.longValue(general,
+                "recorderTime", owner);
+        config.httpThreads = ConfigSnapshot.integer(general, "http_threads",
+                owner);
+        config.httpQueue = ConfigSnapshot.integer(general, "http_queue",
+                owner);
+        config.httpVirtualThreads = ConfigSnapshot.bool(general,
+                "http_virtual_threads");
+        config.sensorThreads = ConfigSnapshot.integer(general,
+                "sensor_threads", owner);
+        config.sensorInterval = ConfigSnapshot.longValue(general,
+                "sensor_interval", owner);
+        config.maxLoadWatts = ConfigSnapshot.integer(general,
+                "max_load_watts", owner);
+        config.maxStatusStreams = ConfigSnapshot.integer(general,
+                "max_status_streams", owner);
+        config.cosm = ConfigSnapshot.text(general, "cosm");
+        config.cosmFeed = ConfigSnapshot.integer(general, "cosm_feed", owner);
+        config.pachube = ConfigSnapshot.text(general, "pachube");
+        config.pachubeFeed = ConfigSnapshot.integer(general, "pachube_feed",
+                owner);
+        config.owfsServer = ConfigSnapshot.text(general, "owfs_server");
+        config.owfsPort = ConfigSnapshot.integer(general, "owfs_port", owner);
+        config.system = ConfigSnapshot.first(general, "System") != null;
+        return config;
+    }
+
+    /**
+     * @param doc The document to create the element in.
+     * @return The general element.
+     */
+    public Element toElement(final Document doc) {
+        Element general = doc.createElement("general");
+        ConfigSnapshot.add(general, "brewery_name", this.breweryName);
+        ConfigSnapshot.add(general, "pagelock", this.pageLock);
+        ConfigSnapshot.add(general, "scale", this.scale);
+        ConfigSnapshot.add(general, "recorder", this.recorder);
+        ConfigSnapshot.add(general, "recorderDiff", this.recorderDiff);
+        ConfigSnapshot.add(general, "recorderTime", this.recorderTime);
+        ConfigSnapshot.add(general, "http_threads", this.httpThreads);
+        ConfigSnapshot.add(general, "http_queue", this.httpQueue);
+        ConfigSnapshot.add(general, "http_virtual_threads",
+                this.httpVirtualThreads);
+        ConfigSnapshot.add(general, "sensor_threads", this.sensorThreads);
+        ConfigSnapshot.add(general, "sensor_interval", this.sensorInterval);
+        ConfigSnapshot.add(general, "max_load_watts", this.maxLoadWatts);
+        ConfigSnapshot.add(general, "max_status_streams",
+                this.maxStatusStreams);
+        ConfigSnapshot.add(general, "cosm", this.cosm);
+        ConfigSnapshot.add(general, "cosm_feed", this.cosmFeed);
+        ConfigSnapshot.add(general, "pachube", this.pachube);
+        ConfigSnapshot.add(general, "pachube_feed", this.pachubeFeed);
+        ConfigSnapshot.add(general, "owfs_server", this.owfsServer);
+        ConfigSnapshot.add(general, "owfs_port", this.owfsPort);
+        if (this.system) {
+            general.appendChild(doc.createElement("System"));
+        }
+        return general;
+    }
+
+    /**
+     * @param newPageLock True if the page is locked.
+     * @param newScale The temperature scale, C or F.
+     * @param newBreweryName The brewery name, kept as it is if it's empty.
+     * @return A copy with the display settings changed.
+     */
+    public GeneralConfig withDisplay(final boolean newPageLock,
+            final String newScale, final String newBreweryName) {
+        GeneralConfig config = copy();
+        config.pageLock = newPageLock;
+        config.scale = newScale;
+        if (newBreweryName != null && !newBreweryName.equals("")) {
+            config.breweryName = newBreweryName;
+        }
+        return config;
+    }
+
+    /**
+     * @param enabled True if the recorder is running.
+     * @param diff The change in a value that is recorded.
+     * @param time The longest time between records, in milliseconds.
+     * @return A copy with the recorder settings changed.
+     */
+    public GeneralConfig withRecorder(final boolean enabled,
+            final double diff, final long time) {
+        GeneralConfig config = copy();
+        config.recorder = enabled;
+        config.recorderDiff = diff;
+        config.recorderTime = time;
+        return config;
+    }
+
+    /**
+     * @param server The OWFS server, null to keep the old one.
+     * @param port The OWFS port, null to keep the old one.
+     * @return A copy with the OWFS server changed.
+     */
+    public GeneralConfig withOwfs(final String server, final Integer port) {
+        GeneralConfig config = copy();
+        if (server != null) {
+            config.owfsServer = server;
+        }
+        if (port != null) {
+            config.owfsPort = port;
+        }
+        return config;
+    }
+
+    /**
+     * @return The brewery name, or null.
+     */
+    public String getBreweryName() {
+        return this.breweryName;
+    }
+
+    /**
+     * @return True if the page is locked, or null.
+     */
+    public Boolean getPageLock() {
+        return this.pageLock;
+    }
+
+    /**
+     * @return The temperature scale, or null.
+     */
+    public String getScale() {
+        return this.scale;
+    }
+
+    /**
+     * @return True if the recorder is on, or null.
+     */
+    public Boolean getRecorder() {
+        return this.recorder;
+    }
+
+    /**
+     * @return The recorder threshold, or null.
+     */
+    public Double getRecorderDiff() {
+        return this.recorderDiff;
+    }
+
+    /**
+     * @return The recorder sleep time, or null.
+     */
+    public Long getRecorderTime() {
+        return this.recorderTime;
+    }
+
+    /**
+     * @return The HTTP worker threads, or null.
+     */
+    public Integer getHttpThreads() {
+        return this.httpThreads;
+    }
+
+    /**
+     * @return The HTTP queue length, or null.
+     */
+    public Integer getHttpQueue() {
+        return this.httpQueue;
+    }
+
+    /**
+     * @return True to run the HTTP requests on virtual threads, or null.
+     */
+    public Boolean getHttpVirtualThreads() {
+        return this.httpVirtualThreads;
+    }
+
+    /**
+     * @return The sensor threads, or null.
+     */
+    public Integer getSensorThreads() {
+        return this.sensorThreads;
+    }
+
+    /**
+     * @return The default sensor interval, or null.
+     */
+    public Long getSensorInterval() {
+        return this.sensorInterval;
+    }
+
+    /**
+     * @return The maximum load in watts, or null.
+     */
+    public Integer getMaxLoadWatts() {
+        return this.maxLoadWatts;
+    }
+
+    /**
+     * @return The maximum status streams, or null.
+     */
+    public Integer getMaxStatusStreams() {
+        return this.maxStatusStreams;
+    }
+
+    /**
+     * @return The COSM API key, or the Pachube one if there isn't one, or
+     * null.
+     */
+    public String getCosmKey() {
+        if (this.cosm != null) {
+            return this.cosm;
+        }
+        return this.pachube;
+    }
+
+    /**
+     * @return The COSM feed, or the Pachube one if there isn't one, or
+     * null.
+     */
+    public Integer getCosmFeed() {
+        if (this.cosmFeed != null) {
+            return this.cosmFeed;
+        }
+        return this.pachubeFeed;
+    }
+
+    /**
+     * @return The OWFS server, or null.
+     */
+    public String getOwfsServer() {
+        return this.owfsServer;
+    }
+
+    /**
+     * @return The OWFS port, or null.
+     */
+    public Integer getOwfsPort() {
+        return this.owfsPort;
+    }
+
+    /**
+     * @return True if the system temperature is shown.
+     */
+    public boolean hasSystemTemp() {
+        return this.system;
+    }
+}
@@ -1,7 +1,7 @@
 package com.sb.elsinore;
 
 import Cosm.*;
-import com.sb.common.CollectionsUtil;
+import com.sb.elsinore.NanoHTTPD.PooledAsyncRunner;
 import com.sb.elsinore.inputs.PhSensor;
 import com.sb.elsinore.notificiations.Notifications;
 import jGPIO.GPIO;
@@ -16,9 +16,6 @@ import org.owfs.jowfsclient.OwfsConnectionConfig;
 import org.owfs.jowfsclient.OwfsConnectionFactory;
 import org.owfs.jowfsclient.OwfsException;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -26,7 +23,6 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.*;
 import java.io.*;
 import java.math.BigDecimal;
 import java.net.InetAddress;
@@ -42,6 +38,8 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
@@ -67,7 +65,6 @@ public final class LaunchControl {
      * The default port to serve on, can be overridden with -p <port>.
      */
     public static final int DEFAULT_PORT = 8080;
-    private static final Object timerLock = new Object();
     public int server_port = 8080;
     /**
      * The Minimum number of volume data points.
@@ -77,51 +74,107 @@ public final class LaunchControl {
     public static String baseUser = null;
 
     /**
-     * List of PIDs.
+     * List of PIDs, by name or probe address.
      */
-    public static final ArrayList<PID> pidList = new ArrayList<>();
-    /**
-     * List of Temperature probes.
-     */
-    public static final ArrayList<Temp> tempList = new ArrayList<>();
+    public static final DeviceRegistry<PID> pidList = new DeviceRegistry<>(
+        new DeviceRegistry.Key<PID>() {
+            @Override
+            public String keyOf(final PID item) {
+                return item.getName();
+            }
+        },
+        new DeviceRegistry.Key<PID>() {
+            @Override
+            public String keyOf(final PID item) {
+                return item.getTempProbe().getProbe();
+            }
+        });
     /**
-     * List of Switches.
+     * List of Temperature probes, by name or probe address.
      */
-    public static final ArrayList<Switch> switchList = new ArrayList<>();
+    public static final DeviceRegistry<Temp> tempList = new DeviceRegistry<>(
+        new DeviceRegistry.Key<Temp>() {
+            @Override
+            public String keyOf(final Temp item) {
+                return item.getName();
+            }
+        },
+        new DeviceRegistry.Key<Temp>() {
+            @Override
+            public String keyOf(final Temp item) {
+                return item.getProbe();
+            }
+        });
     /**
-     * List of Timers.
+     * List of Switches, by name or node name.
      */
-    public static ArrayList<Timer> timerList = new ArrayList<>();
+    public static final DeviceRegistry<Switch> switchList =
+        new DeviceRegistry<>(
+            new DeviceRegistry.Key<Switch>() {
+                @Override
+                public String keyOf(final Switch item) {
+                    return item.getName();
+                }
+            },
+            new DeviceRegistry.Key<Switch>() {
+                @Override
+                public String keyOf(final Switch item) {
+                    return item.getNodeName();
+                }
+            });
     /**
-     * List of MashControl profiles.
+     * List of Timers, by name.
      */
-    public static final List<TriggerControl> triggerControlList = new ArrayList<>();
+    public static final DeviceRegistry<Timer> timerList = new DeviceRegistry<>(
+        new DeviceRegistry.Key<Timer>() {
+            @Override
+            public String keyOf(final Timer item) {
+                return item.getName();
+            }
+        }, null);
     /**
-     * List of pH Sensors.
+     * List of MashControl profiles, by output.
      */
-    public static final ArrayList<PhSensor> phSensorList = new ArrayList<>();
+    public static final DeviceRegistry<TriggerControl> triggerControlList =
+        new DeviceRegistry<>(
+            new DeviceRegistry.Key<TriggerControl>() {
+                @Override
+                public String keyOf(final TriggerControl item) {
+                    return item.getOutputControl();
+                }
+            }, null);
     /**
-     * Temperature Thread list.
+     * List of pH Sensors, by name with underscores for spaces.
      */
-    public static List<Thread> tempThreads = new ArrayList<>();
+    public static final DeviceRegistry<PhSensor> phSensorList =
+        new DeviceRegistry<>(
+            new DeviceRegistry.Key<PhSensor>() {
+                @Override
+                public String keyOf(final PhSensor item) {
+                    return item.getName();
+                }
+            }, null);
     /**
      * PID Thread List.
      */
-    public static List<Thread> pidThreads = new ArrayList<>();
-    /**
-     * Mash Threads list.
-     */
-    public static List<Thread> triggerThreads = new ArrayList<>();
+    public static List<Thread> pidThreads =
+            Collections.synchronizedList(new ArrayList<Thread>());
 
     /**
      * ConfigParser, legacy for the older users that haven't converted.
      */
     public static ConfigParser configCfg = null;
     /**
-     * Config Document, for the XML data.
+     * The configuration from the config file, null if there isn't one.
+     * Swapped for a new snapshot on each change, see {@link #getConfig()}.
      */
-    public static Document configDoc = null;
-
+    private static final AtomicReference<ConfigSnapshot> config =
+            new AtomicReference<>();
+    /**
+     * Held while changing the configuration, so two changes made at once
+     * don't lose one of them. Reading it needs no lock.
+     */
+    public static final Object configLock = new Object();
     /**
      * Default config filename. Can be overridden with -c <filename>
      */
@@ -183,19 +236,6 @@ public final class LaunchControl {
      */
     public static CommandLine startupCommand = null;
 
-    /**
-     * Xpath factory. This'll not change.
-     */
-    public static XPathFactory xPathfactory = XPathFactory.newInstance();
-
-    /**
-     * XPath static for the helper.
-     */
-    public static XPath xpath = xPathfactory.newXPath();
-    /**
-     * Xpath Expression static for the helpers.
-     */
-    public static XPathExpression expr = null;
     public static String message = "";
     public static double recorderDiff = .15d;
     public static boolean recorderEnabled = true;
@@ -203,6 +243,69 @@ public final class LaunchControl {
     public static String breweryName = null;
     public static String theme = "default";
     public static boolean pageLock = false;
+    /**
+     * The number of threads handling HTTP requests.
+     */
+    public static int httpThreads = 16;
+    /**
+     * The number of HTTP connections that can wait for a thread.
+     */
+    public static int httpQueue = 32;
+    /**
+     * Run each HTTP request on a virtual thread, if the JVM supports it.
+     */
+    public static boolean httpVirtualThreads = false;
+    /**
+     * The most status streams that can be open at once.
+     */
+    public static int maxStatusStreams = 4;
+    /**
+     * The number of threads reading temperature probes.
+     */
+    public static int sensorThreads = 2;
+    /**
+     * The default time between temperature readings, in milliseconds.
+     */
+    public static long sensorInterval = 500;
+    /**
+     * The most watts the outputs can draw at once, 0 for no limit.
+     */
+    public static int maxLoadWatts = 0;
+    /**
+     * The longest a status snapshot is shared for, in milliseconds.
+     * This keeps the brew day timers moving when nothing else changes.
+     */
+    public static long STATUS_MAX_AGE = 1000;
+    /**
+     * Incremented whenever something in the status changes.
+     */
+    private static final AtomicLong statusVersion = new AtomicLong(0);
+    /**
+     * The status version the list of devices last changed at. Clients
+     * asking for changes from before this get the full status.
+     */
+    private static volatile long structureVersion = 0;
+    /**
+     * The last status snapshot built.
+     */
+    private static volatile StatusSnapshot statusSnapshot = null;
+    /** The most status deltas kept in {@link #statusDeltas}. */
+    private static final int STATUS_DELTAS = 16;
+    /**
+     * The last status deltas built, by the version they were built from.
+     * The streams and pollers that are up to date ask for the same delta,
+     * so it's only built once per change.
+     */
+    private static final Map<Long, StatusSnapshot> statusDeltas =
+            new LinkedHashMap<Long, StatusSnapshot>() {
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<Long, StatusSnapshot> eldest) {
+                    return size() > STATUS_DELTAS;
+                }
+            };
+    private static final Object statusLock = new Object();
+    private static final Object statusMonitor = new Object();
     private static boolean initialized = false;
     private static ProcessBuilder pb = null;
 
@@ -366,45 +469,42 @@ public final class LaunchControl {
             public void run() {
                 BrewServer.LOG.warning("Shutting down. Saving configuration");
                 saveSettings();
-                BrewServer.LOG.warning("Configuration saved.");
                 
                 BrewServer.LOG.warning("Shutting down temperature probe threads.");
-                synchronized (tempList) {
-                    for (Temp t : tempList) {
-                        if (t != null) {
-                            t.save();
-                        }
+                SensorScheduler.shutdown();
+                for (Temp t : tempList) {
+                    if (t != null) {
+                        t.save();
                     }
                 }
 
                 BrewServer.LOG.warning("Shutting down PID threads.");
-                synchronized (pidList) {
-                    for (PID n : pidList) {
-                        if (n != null) {
-                            n.shutdown();
-                        }
+                for (PID n : pidList) {
+                    if (n != null) {
+                        n.shutdown();
                     }
                 }
+                OutputScheduler.shutdown();
+                TimerService.shutdown();
 
-                synchronized (triggerControlList) {
-                    if (triggerControlList.size() > 0) {
-                        BrewServer.LOG.warning("Shutting down MashControl threads.");
-                        for (TriggerControl m : triggerControlList) {
-                            m.setShutdownFlag(true);
-                        }
+                if (triggerControlList.size() > 0) {
+                    BrewServer.LOG.warning("Shutting down MashControl threads.");
+                    for (TriggerControl m : triggerControlList) {
+                        m.setShutdownFlag(true);
                     }
                 }
                 // Close off all the Switch GPIOs properly.
-                synchronized (switchList) {
-                    if (switchList.size() > 0) {
-                        BrewServer.LOG.warning("Shutting down switchess.");
-                        for (Switch p : switchList) {
-                            p.shutdown();
-                        }
+                if (switchList.size() > 0) {
+                    BrewServer.LOG.warning("Shutting down switchess.");
+                    for (Switch p : switchList) {
+                        p.shutdown();
                     }
                 }
 
                 saveConfigFile();
+                if (!ConfigWriter.flush(ConfigWriter.SHUTDOWN_TIMEOUT)) {
+                    BrewServer.LOG.warning("Configuration may not be saved.");
+                }
 
                 if (recorder != null) {
                     BrewServer.LOG.warning("Shutting down recorder threads.");
@@ -430,7 +530,9 @@ public final class LaunchControl {
         readConfig();
 
         // Debug info before launching the BrewServer itself
-        LaunchControl.loadCompleted = true;
+        if (DeviceStartup.isReady()) {
+            LaunchControl.loadCompleted = true;
+        }
         BrewServer.LOG.log(Level.INFO, "CONFIG READ COMPLETED***********");
         sRunner = new ServerRunner(BrewServer.class, this.server_port);
         Thread sRunnerThread = new Thread(sRunner);
@@ -465,16 +567,19 @@ public final class LaunchControl {
         cosm = new Cosm(apiKey);
 
         // get the data feed
+        Feed feed;
         try {
-            cosmFeed = cosm.getFeed(feedID, true);
-            BrewServer.LOG.info("Got " + cosmFeed.getTitle());
+            feed = cosm.getFeed(feedID, true);
+            BrewServer.LOG.info("Got " + feed.getTitle());
         } catch (CosmException e) {
             BrewServer.LOG.warning("Couldn't get the feed: " + e.getMessage());
             return;
         }
 
-        // get the list of feeds
-        cosmStreams = cosmFeed.getDatastreams();
+        // get the list of feeds, the feed is set last as the readers check
+        // for it before using the streams
+        cosmStreams = feed.getDatastreams();
+        cosmFeed = feed;
     }
 
     /*****
@@ -489,17 +594,15 @@ public final class LaunchControl {
     public String getCosmImages(final String startDate, final String endDate) {
         try {
             if (cosmFeed != null) {
-                synchronized (tempList) {
-                    for (Temp t : tempList) {
-                        Datastream tData = findDatastream(t.getName());
-                        if (tData != null) {
-                            if (startDate == null || endDate == null) {
-                                cosm.getDatastreamImage(cosmFeed.getId(),
-                                        t.getName());
-                            } else {
-                                cosm.getDatastreamImage(cosmFeed.getId(),
-                                        t.getName(), startDate, endDate);
-                            }
+                for (Temp t : tempList) {
+                    Datastream tData = findDatastream(t.getName());
+                    if (tData != null) {
+                        if (startDate == null || endDate == null) {
+                            cosm.getDatastreamImage(cosmFeed.getId(),
+                                    t.getName());
+                        } else {
+                            cosm.getDatastreamImage(cosmFeed.getId(),
+                                    t.getName(), startDate, endDate);
                         }
                     }
                 }
@@ -524,17 +627,15 @@ public final class LaunchControl {
     public String getCosmXML(final String startDate, final String endDate) {
         try {
             if (cosmFeed != null) {
-                synchronized (tempList) {
-                    for (Temp t : tempList) {
-                        Datastream tData = findDatastream(t.getName());
-                        if (tData != null) {
-                            if (startDate == null || endDate == null) {
-                                cosm.getDatastreamXML(cosmFeed.getId(),
-                                        t.getName());
-                            } else {
-                                cosm.getDatastreamXML(cosmFeed.getId(),
-                                        t.getName(), startDate, endDate);
-                            }
+                for (Temp t : tempList) {
+                    Datastream tData = findDatastream(t.getName());
+                    if (tData != null) {
+                        if (startDate == null || endDate == null) {
+                            cosm.getDatastreamXML(cosmFeed.getId(),
+                                    t.getName());
+                        } else {
+                            cosm.getDatastreamXML(cosmFeed.getId(),
+                                    t.getName(), startDate, endDate);
                         }
                     }
                 }
@@ -553,84 +654,244 @@ public final class LaunchControl {
      * 
      * @return The JSON String of the current status.
      */
-    @SuppressWarnings("unchecked")
     public static String getJSONStatus() {
+        return getStatusSnapshot().getJson();
+    }
+
+    /**
+     * Mark the status as changed, the next reader will get a fresh snapshot.
+     *
+     * @return The new status version.
+     */
+    public static long statusChanged() {
+        long version = statusVersion.incrementAndGet();
+        synchronized (statusMonitor) {
+            statusMonitor.notifyAll();
+        }
+        return version;
+    }
+
+    /**
+     * Mark the list of devices as changed, clients holding an older version
+     * will get the full status on their next request.
+     */
+    public static void structureChanged() {
+        structureVersion = statusChanged();
+    }
+
+    /**
+     * Update the device lookups after a device has been renamed.
+     */
+    public static void devicesRenamed() {
+        tempList.reindex();
+        pidList.reindex();
+        triggerControlList.reindex();
+        structureChanged();
+    }
+
+    /**
+     * Wait for the status to move on from the specified version.
+     *
+     * @param version The last version seen.
+     * @param timeout The longest time to wait in milliseconds.
+     * @return The current status version.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    public static long awaitStatusChange(final long version,
+            final long timeout) throws InterruptedException {
+        synchronized (statusMonitor) {
+            if (statusVersion.get() == version) {
+                statusMonitor.wait(timeout);
+            }
+        }
+        return statusVersion.get();
+    }
+
+    /**
+     * @return The current status version.
+     */
+    public static long getStatusVersion() {
+        return statusVersion.get();
+    }
+
+    /**
+     * Get the current status snapshot. The snapshot is only rebuilt when the
+     * status has changed or it is older than {@link #STATUS_MAX_AGE}, so
+     * concurrent readers share the same serialized bytes.
+     *
+     * @return The current status snapshot.
+     */
+    public static StatusSnapshot getStatusSnapshot() {
+        StatusSnapshot snapshot = statusSnapshot;
+        if (isCurrent(snapshot)) {
+            return snapshot;
+        }
+
+        synchronized (statusLock) {
+            snapshot = statusSnapshot;
+            if (isCurrent(snapshot)) {
+                return snapshot;
+            }
+            // Read the version first so changes made during the build
+            // cause another rebuild
+            long version = statusVersion.get();
+            snapshot = new StatusSnapshot(version, System.currentTimeMillis(),
+                    buildJSONStatus(version, -1));
+            statusSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param snapshot The snapshot to check.
+     * @return True if the snapshot can still be handed out.
+     */
+    private static boolean isCurrent(final StatusSnapshot snapshot) {
+        return snapshot != null
+                && snapshot.getVersion() == statusVersion.get()
+                && System.currentTimeMillis() - snapshot.getCreated()
+                    < STATUS_MAX_AGE;
+    }
+
+    /**
+     * Get the parts of the status that have changed since the specified
+     * version. Vessels, triggers, switches and notifications are only
+     * included if they changed after that version, the rest of the status is
+     * always sent. If the devices have been added, removed or reordered
+     * since then, or the version is unknown, the full status is returned.
+     *
+     * @param since The last status version the client saw.
+     * @return The JSON String of the changes.
+     */
+    public static String getJSONStatus(final long since) {
+        return getStatusDelta(since).getJson();
+    }
+
+    /**
+     * Get the parts of the status that have changed since the specified
+     * version, see {@link #getJSONStatus(long)}. Each delta is built once
+     * per status version and shared by everyone asking for it.
+     *
+     * @param since The last status version the client saw.
+     * @return The changes, holding the version they bring the client up to.
+     */
+    public static StatusSnapshot getStatusDelta(final long since) {
+        long version = statusVersion.get();
+        if (since < structureVersion || since > version) {
+            return getStatusSnapshot();
+        }
+
+        synchronized (statusLock) {
+            StatusSnapshot delta = statusDeltas.get(since);
+            // Read the version first so changes made during the build
+            // cause another rebuild
+            version = statusVersion.get();
+            if (delta == null || delta.getVersion() != version) {
+                delta = new StatusSnapshot(version, System.currentTimeMillis(),
+                        buildJSONStatus(version, since));
+                statusDeltas.put(since, delta);
+            }
+            return delta;
+        }
+    }
+
+    /**
+     * Build the JSON status string.
+     *
+     * @param version The status version the status is built at.
+     * @param since Only include devices that changed after this version,
+     *            or -1 for the full status.
+     * @return The JSON String of the current status.
+     */
+    @SuppressWarnings("unchecked")
+    private static String buildJSONStatus(final long version,
+            final long since) {
+        boolean full = since < 0;
 
         // get each setting add it to the JSON
         JSONObject rObj = new JSONObject();
         JSONObject tJSON;
         JSONObject triggerJSON = new JSONObject();
+        rObj.put("version", version);
+        if (!full) {
+            rObj.put("delta", true);
+        }
         rObj.put("locked", LaunchControl.pageLock);
         rObj.put("breweryName", LaunchControl.getName());
+        rObj.put("ready", DeviceStartup.isReady());
+        if (full || !DeviceStartup.isReady()) {
+            rObj.put("startup", DeviceStartup.getJSONStatus());
+        }
 
         // iterate the thread lists
         // use the temp list to determine if we have a PID to go with
         JSONArray vesselJSON = new JSONArray();
-        synchronized (tempList) {
-            for (Temp t : tempList) {
-                if (LaunchControl.pageLock && t.isHidden()) {
-                    continue;
-                }
+        for (Temp t : tempList) {
+            if (LaunchControl.pageLock && t.isHidden()) {
+                continue;
+            }
 
-                /* Check for a PID */
-                PID tPid = findPID(t.getName());
-                tJSON = new JSONObject();
-
-                // Add the temp to the JSON Map
-                JSONObject tJSONTemp = new JSONObject();
-                tJSONTemp.putAll(t.getMapStatus());
-                tJSON.put("name", t.getName().replaceAll(" ", "_"));
-                tJSON.put("deviceaddr", t.getProbe());
-                tJSON.put("tempprobe", tJSONTemp);
-
-                if (t.hasVolume()) {
-                    JSONObject volumeJSON = new JSONObject();
-                    volumeJSON.put("volume", t.getVolume());
-                    volumeJSON.put("units", t.getVolumeUnit());
-                    if (!t.getVolumeAIN().equals("")) {
-                        volumeJSON.put("ain", t.getVolumeAIN());
-                    } else {
-                        volumeJSON.put("address", t.getVolumeAddress());
-                        volumeJSON.put("offset", t.getVolumeOffset());
-                    }
-                    volumeJSON.put("gravity", t.getGravity());
+            /* Check for a PID */
+            PID tPid = findPID(t.getName());
+            TriggerControl triggerControl = t.getTriggerControl();
+            if ((full || triggerControl.changedSince(since))
+                    && triggerControl.triggerCount() > 0) {
+                triggerJSON.put(t.getName(), triggerControl.getJSONData());
+            }
+            if (!full && t.getStatusVersion() <= since
+                    && (tPid == null || tPid.getStatusVersion() <= since)) {
+                continue;
+            }
+            tJSON = new JSONObject();
 
-                    tJSON.put("volume", volumeJSON);
+            // Add the temp to the JSON Map
+            JSONObject tJSONTemp = new JSONObject();
+            tJSONTemp.putAll(t.getMapStatus());
+            tJSON.put("name", t.getName().replaceAll(" ", "_"));
+            tJSON.put("deviceaddr", t.getProbe());
+            tJSON.put("tempprobe", tJSONTemp);
+
+            if (t.hasVolume()) {
+                JSONObject volumeJSON = new JSONObject();
+                volumeJSON.put("volume", t.getVolume());
+                volumeJSON.put("units", t.getVolumeUnit());
+                if (!t.getVolumeAIN().equals("")) {
+                    volumeJSON.put("ain", t.getVolumeAIN());
+                } else {
+                    volumeJSON.put("address", t.getVolumeAddress());
+                    volumeJSON.put("offset", t.getVolumeOffset());
                 }
+                volumeJSON.put("gravity", t.getGravity());
 
-                if (tPid != null) {
-                    JSONObject tJSONPID = new JSONObject();
-                    tJSONPID.putAll(tPid.getMapStatus());
-                    tJSON.put("pidstatus", tJSONPID);
-                }
+                tJSON.put("volume", volumeJSON);
+            }
 
-                // Add the JSON object with the PID Name
-                vesselJSON.add(tJSON);
+            if (tPid != null) {
+                JSONObject tJSONPID = new JSONObject();
+                tJSONPID.putAll(tPid.getMapStatus());
+                tJSON.put("pidstatus", tJSONPID);
+            }
 
-                // update COSM
-                if (cosmFeed != null) {
-                    Datastream tData = findDatastream(t.getName());
-                    tData.setCurrentValue(t.getTemp().toString());
-                    Unit tUnit = new Unit();
-                    tUnit.setType("temp");
-                    tUnit.setSymbol(t.getScale());
-                    tUnit.setLabel("temperature");
-                    tData.setUnit(tUnit);
-                    try {
-                        cosm.updateDatastream(cosmFeed.getId(), t.getName(),
-                                tData);
-                    } catch (CosmException e) {
-                        BrewServer.LOG.info("Failed to update datastream: "
-                                + e.getMessage());
-                    }
+            // Add the JSON object with the PID Name
+            vesselJSON.add(tJSON);
 
+            // update COSM
+            if (cosmFeed != null) {
+                Datastream tData = findDatastream(t.getName());
+                tData.setCurrentValue(t.getTemp().toString());
+                Unit tUnit = new Unit();
+                tUnit.setType("temp");
+                tUnit.setSymbol(t.getScale());
+                tUnit.setLabel("temperature");
+                tData.setUnit(tUnit);
+                try {
+                    cosm.updateDatastream(cosmFeed.getId(), t.getName(),
+                            tData);
+                } catch (CosmException e) {
+                    BrewServer.LOG.info("Failed to update datastream: "
+                            + e.getMessage());
                 }
 
-                if (t.getTriggerControl() != null
-                        && t.getTriggerControl().triggerCount() > 0) {
-                    triggerJSON.put(t.getName(),
-                            t.getTriggerControl().getJSONData());
-                }
             }
         }
         rObj.put("vessels", vesselJSON);
@@ -645,7 +906,9 @@ public final class LaunchControl {
             tJSON = new JSONObject();
 
             for (Switch p : switchList) {
-                tJSON.put(p.getName().replaceAll(" ", "_"), p.getStatus());
+                if (full || p.getStatusVersion() > since) {
+                    tJSON.put(p.getName().replaceAll(" ", "_"), p.getStatus());
+                }
             }
 
             rObj.put("switches", tJSON);
@@ -667,7 +930,10 @@ public final class LaunchControl {
         }
 
         // Add the notifications information
-        rObj.put("notifications", Notifications.getInstance().getNotificationStatus());
+        Notifications notifications = Notifications.getInstance();
+        if (full || notifications.getStatusVersion() > since) {
+            rObj.put("notifications", notifications.getNotificationStatus());
+        }
         return rObj.toString();
     }
 
@@ -681,6 +947,61 @@ public final class LaunchControl {
         retVal.put("recorder", LaunchControl.recorder != null);
         retVal.put("recorderTime", StatusRecorder.SLEEP);
         retVal.put("recorderDiff", StatusRecorder.THRESHOLD);
+
+        PooledAsyncRunner runner = BrewServer.getRequestRunner();
+        if (runner != null) {
+            JSONObject http = new JSONObject();
+            http.put("threads", runner.getMaxThreads());
+            http.put("queue", runner.getQueueSize());
+            http.put("virtual", runner.isVirtual());
+            http.put("active", runner.getActiveCount());
+            http.put("queued", runner.getQueuedCount());
+            http.put("completed", runner.getCompletedCount());
+            http.put("rejected", runner.getRejectedCount());
+            http.put("streams", StatusStream.getOpenStreams());
+            http.put("maxStreams", maxStatusStreams);
+            retVal.put("http", http);
+        }
+
+        JSONObject sensors = new JSONObject();
+        sensors.put("probes", SensorScheduler.getProbeCount());
+        sensors.put("buses", SensorScheduler.getLaneCount());
+        sensors.put("threads", SensorScheduler.getWorkerCount());
+        sensors.put("samples", SensorScheduler.getSampleCount());
+        sensors.put("late", SensorScheduler.getLateCount());
+        sensors.put("interval", sensorInterval);
+        if (useOWFS) {
+            sensors.put("owfsProbes", OwfsReader.getProbeCount());
+            sensors.put("owfsSweep", OwfsReader.getSweepDuration());
+        }
+        retVal.put("sensors", sensors);
+
+        JSONObject outputs = new JSONObject();
+        outputs.put("outputs", OutputScheduler.getOutputCount());
+        outputs.put("switches", OutputScheduler.getEventCount());
+        outputs.put("averageError",
+                Math.round(OutputScheduler.getAverageError() * 100) / 100.0);
+        outputs.put("maxError",
+                Math.round(OutputScheduler.getMaxError() * 100) / 100.0);
+        outputs.put("load", OutputScheduler.getLoad());
+        outputs.put("peakLoad", OutputScheduler.getPeakLoad());
+        outputs.put("maxLoad", maxLoadWatts);
+        outputs.put("deferred", OutputScheduler.getDeferredCount());
+        retVal.put("outputScheduler", outputs);
+
+        JSONObject timers = new JSONObject();
+        timers.put("scheduled", TimerService.getTimerCount());
+        timers.put("nextFire", TimerService.getNextFire());
+        retVal.put("timers", timers);
+
+        JSONObject config = new JSONObject();
+        config.put("changes", ConfigWriter.getRequestCount());
+        config.put("writes", ConfigWriter.getWriteCount());
+        config.put("unsaved", ConfigWriter.isDirty());
+        retVal.put("config", config);
+
+        retVal.put("startup", DeviceStartup.getJSONStatus());
+
         return retVal.toJSONString();
     }
 
@@ -698,202 +1019,153 @@ public final class LaunchControl {
         if (configCfg == null) {
             BrewServer.LOG.info("CFG IS NULL");
         }
-        if (configDoc == null) {
+        if (config.get() == null) {
             BrewServer.LOG.info("DOC IS NULL");
         }
 
-        if (configDoc == null && configCfg == null) {
+        if (config.get() == null && configCfg == null) {
             createConfig();
             // Startup the brewery with the basic temp list
             return;
         }
 
-        if (configDoc != null) {
+        if (config.get() != null) {
             parseXMLSections();
         } else {
             BrewServer.LOG.info("Couldn't get a configuration file!");
             System.exit(1);
         }
 
-        if (tempList.size() == 0) {
+        if (tempList.size() == 0 && DeviceStartup.isReady()) {
             // get user input
             createConfig();
         }
-        LaunchControl.loadCompleted = true;
+        // Otherwise the load completes once the devices are started
+        if (DeviceStartup.isReady()) {
+            LaunchControl.loadCompleted = true;
+        }
     }
 
     /**
      * Parse the general section of the XML Configuration.
      * 
-     * @param config
-     *            The General element to be parsed.
+     * @param general
+     *            The general settings to be used.
      */
-    public void parseGeneral(final Element config) {
-        if (config == null) {
-            return;
+    public void parseGeneral(final GeneralConfig general) {
+        if (general.getBreweryName() != null) {
+            breweryName = general.getBreweryName();
         }
 
-        try {
-
-            Element tElement = getFirstElement(config, "brewery_name");
+        if (general.getPageLock() != null) {
+            pageLock = general.getPageLock();
+        }
 
-            if (tElement != null) {
-                breweryName = tElement.getTextContent();
-            }
+        if (general.getScale() != null) {
+            scale = general.getScale();
+        }
 
-            tElement = getFirstElement(config, "pagelock");
-            if (tElement != null) {
-                pageLock = Boolean.parseBoolean(tElement.getTextContent());
+        if (general.getRecorder() != null) {
+            if (general.getRecorder()) {
+                LaunchControl.recorderEnabled = true;
+                LaunchControl.enableRecorder();
+            } else {
+                LaunchControl.recorderEnabled = false;
+                LaunchControl.disableRecorder();
             }
+        } else if (LaunchControl.recorderEnabled) {
+            LaunchControl.enableRecorder();
+        }
 
-            tElement = getFirstElement(config, "scale");
-            if (tElement != null) {
-                scale = tElement.getTextContent();
-            }
+        if (general.getRecorderDiff() != null) {
+            StatusRecorder.THRESHOLD = general.getRecorderDiff();
+        }
 
-            tElement = getFirstElement(config, "recorder");
-            if (tElement != null) {
-                if (Boolean.parseBoolean(tElement.getTextContent())) {
-                    LaunchControl.recorderEnabled = true;
-                    LaunchControl.enableRecorder();
-                } else {
-                    LaunchControl.recorderEnabled = false;
-                    LaunchControl.disableRecorder();
-                }
-            } else if (LaunchControl.recorderEnabled) {
-                LaunchControl.enableRecorder();
-            }
+        if (general.getRecorderTime() != null) {
+            StatusRecorder.SLEEP = general.getRecorderTime();
+        }
 
-            tElement = getFirstElement(config, "recorderDiff");
-            if (tElement != null) {
-                try {
-                    StatusRecorder.THRESHOLD = Double.parseDouble(tElement
-                            .getTextContent());
-                } catch (Exception e) {
-                    LaunchControl.setMessage(LaunchControl.getMessage()
-                            + "\n Failed to parse recorder diff as a double.\n"
-                            + e.getMessage());
-                }
-            }
+        if (general.getHttpThreads() != null) {
+            httpThreads = general.getHttpThreads();
+        }
 
-            tElement = getFirstElement(config, "recorderTime");
-            if (tElement != null) {
-                try {
-                    StatusRecorder.SLEEP = Long.parseLong(tElement
-                            .getTextContent());
-                } catch (Exception e) {
-                    LaunchControl.setMessage(LaunchControl.getMessage()
-                            + "\n Failed to parse recorder sleep as a long.\n"
-                            + e.getMessage());
-                }
-            }
-            String cosmAPIKey = null;
-            Integer cosmFeedID;
+        if (general.getHttpQueue() != null) {
+            httpQueue = general.getHttpQueue();
+        }
 
-            // Check for the COSM Feed details
-            tElement = getFirstElement(config, "cosm");
-            if (tElement != null) {
-                cosmAPIKey = tElement.getTextContent();
-            }
-            try {
-                cosmFeedID = Integer.parseInt(getFirstElement(config,
-                        "cosm_feed").getTextContent());
-            } catch (NumberFormatException | NullPointerException e) {
-                cosmFeedID = null;
-            }
+        if (general.getHttpVirtualThreads() != null) {
+            httpVirtualThreads = general.getHttpVirtualThreads();
+        }
 
-            // Try PACHube if the Cosm fields don't exist
-            if (cosmAPIKey == null) {
-                try {
-                    cosmAPIKey = getFirstElement(config, "pachube")
-                            .getTextContent();
-                } catch (NullPointerException e) {
-                    cosmAPIKey = null;
-                }
-            }
+        if (general.getSensorThreads() != null) {
+            sensorThreads = general.getSensorThreads();
+        }
 
-            if (cosmFeedID == null) {
-                try {
-                    cosmFeedID = Integer.parseInt(getFirstElement(config,
-                            "pachube_feed").getTextContent());
-                } catch (NumberFormatException | NullPointerException e) {
-                    cosmFeedID = null;
-                }
+        if (general.getSensorInterval() != null) {
+            sensorInterval = general.getSensorInterval();
+        }
 
-            }
+        if (general.getMaxLoadWatts() != null) {
+            maxLoadWatts = general.getMaxLoadWatts();
+        }
 
-            if (cosmAPIKey != null && cosmFeedID != null) {
-                startCosm(cosmAPIKey, cosmFeedID);
-            }
+        if (general.getMaxStatusStreams() != null) {
+            maxStatusStreams = general.getMaxStatusStreams();
+        }
 
-            // Check for an OWFS configuration
-            try {
-                owfsServer = getFirstElement(config, "owfs_server")
-                        .getTextContent();
-                owfsPort = Integer
-                        .parseInt(getFirstElement(config, "owfs_port")
-                                .getTextContent());
-            } catch (NullPointerException e) {
-                owfsServer = null;
-                owfsPort = null;
-            }
+        // Check for the COSM Feed details, or the older PACHube ones
+        final String cosmAPIKey = general.getCosmKey();
+        final Integer cosmFeedID = general.getCosmFeed();
+        if (cosmAPIKey != null && cosmFeedID != null) {
+            // Fetching the feed goes out to the network, don't hold up the
+            // web server for it
+            Thread cosmThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    startCosm(cosmAPIKey, cosmFeedID);
+                }
+            }, "Cosm-Startup");
+            cosmThread.setDaemon(true);
+            cosmThread.start();
+        }
 
-            if (owfsServer != null) {
-                BrewServer.LOG.log(Level.INFO, "Setup OWFS at " + owfsServer
-                        + ":" + owfsPort);
+        // Check for an OWFS configuration
+        if (general.getOwfsServer() != null
+                && general.getOwfsPort() != null) {
+            owfsServer = general.getOwfsServer();
+            owfsPort = general.getOwfsPort();
+        } else {
+            owfsServer = null;
+            owfsPort = null;
+        }
 
-                setupOWFS();
-            }
+        // The connection is made by parseXMLSections, before the devices
+        // that use it are started
+        if (owfsServer != null) {
+            BrewServer.LOG.log(Level.INFO, "Setup OWFS at " + owfsServer
+                    + ":" + owfsPort);
+        }
 
-            // Check for a system temperature
-            if (getFirstElement(config, "System") != null) {
-                addSystemTemp();
-            }
-        } catch (NumberFormatException nfe) {
-            System.out.print("Number format problem!");
-            nfe.printStackTrace();
+        // Check for a system temperature
+        if (general.hasSystemTemp()) {
+            addSystemTemp();
         }
     }
 
     /**
-     * Parse the switches in the specified element.
+     * Parse the switches from the configuration.
      * 
-     * @param config
-     *            The element that contains the switches information
+     * @param switches
+     *            The switches to set up
      */
-    public void parseSwitches(final Element config) {
-        if (config == null) {
-            return;
-        }
-
-        NodeList switches = config.getChildNodes();
-
-        for (int i = 0; i < switches.getLength(); i++) {
-            Element curSwitch = (Element) switches.item(i);
-            String switchName = curSwitch.getNodeName().replace("_", " ");
-            String gpio;
-            if (curSwitch.hasAttribute("gpio")) {
-                gpio = curSwitch.getAttribute("gpio");
-            } else {
-                gpio = curSwitch.getTextContent();
-            }
-            int position = -1;
-
-            String tempString = curSwitch.getAttribute("position");
-            if (tempString != null) {
-                try {
-                    position = Integer.parseInt(tempString);
-                } catch (NumberFormatException nfe) {
-                    BrewServer.LOG.warning("Couldn't parse switch: " + switchName
-                            + " position: " + tempString);
-                }
-            }
+    public void parseSwitches(final List<SwitchConfig> switches) {
+        for (SwitchConfig curSwitch : switches) {
+            String switchName = curSwitch.getName();
+            String gpio = curSwitch.getGpio();
             try {
-                synchronized (switchList) {
-                    Switch tSwitch = new Switch(switchName, gpio);
-                    tSwitch.setPosition(position);
-                    switchList.add(tSwitch);
-                }
+                Switch tSwitch = new Switch(switchName, gpio);
+                tSwitch.setPosition(curSwitch.getPosition());
+                switchList.add(tSwitch);
             } catch (InvalidGPIOException e) {
                 BrewServer.LOG.warning("Invalid GPIO (" + gpio
                         + ") detected for switch " + switchName);
@@ -902,69 +1174,46 @@ public final class LaunchControl {
                 System.exit(-1);
             }
 
-            Element invert = getFirstElement(curSwitch, "invert");
-            if (invert != null) {
+            if (curSwitch.getInverted() != null) {
                 LaunchControl.findSwitch(switchName).setInverted(
-                        Boolean.parseBoolean(invert.getTextContent()));
+                        curSwitch.getInverted());
             }
         }
 
     }
 
     /**
-     * Parse the list of timers in an XML Element.
+     * Parse the list of timers from the configuration.
      * 
-     * @param config
-     *            the Element containing the timers
+     * @param timers
+     *            the timers to set up
      */
-    public void parseTimers(final Element config) {
-        if (config == null) {
-            return;
-        }
-        NodeList timers = config.getChildNodes();
-        timerList = new ArrayList<>();
+    public void parseTimers(final List<TimerConfig> timers) {
+        timerList.clear();
 
-        for (int i = 0; i < timers.getLength(); i++) {
-            Element tElement = (Element) timers.item(i);
-            Timer temp = new Timer(tElement.getAttribute("id"));
-            if (tElement.getAttribute("position") != null) {
-                try {
-                    temp.setPosition(Integer.parseInt(tElement
-                            .getAttribute("position")));
-                } catch (NumberFormatException nfe) {
-                    // Couldn't parse. Move on.
-                }
-            }
-            synchronized (timerLock) {
-                timerList.add(temp);
-            }
+        for (TimerConfig timer : timers) {
+            Timer temp = new Timer(timer.getId());
+            temp.setPosition(timer.getPosition());
+            timerList.add(temp);
         }
     }
 
     /**
-     * Parse the list of phSensors in an XML Element.
+     * Parse the list of phSensors from the configuration.
      *
-     * @param config
-     *            the Element containing the ph Sensors
+     * @param phSensors
+     *            the ph Sensors to set up
      */
-    public void parsePhSensors(final Element config) {
-        if (config == null) {
-            return;
-        }
-        NodeList sensors = config.getChildNodes();
-
-        for (int i = 0; i < sensors.getLength(); i++) {
-            Element tElement = (Element) sensors.item(i);
+    public void parsePhSensors(final List<PhSensorConfig> phSensors) {
+        for (PhSensorConfig sensor : phSensors) {
             PhSensor temp = new PhSensor();
-            temp.setName(tElement.getNodeName().replace("_", " "));
-            temp.setDsAddress(tElement.getAttribute("dsAddress"));
-            temp.setDsOffset(tElement.getAttribute("dsOffset"));
-            temp.setAinPin(tElement.getAttribute("ainPin"));
-            temp.setOffset(tElement.getAttribute("offset"));
-            temp.setModel(tElement.getAttribute("model"));
-            synchronized (phSensorList) {
-                phSensorList.add(temp);
-            }
+            temp.setName(sensor.getName());
+            temp.setDsAddress(sensor.getDsAddress());
+            temp.setDsOffset(sensor.getDsOffset());
+            temp.setAinPin(sensor.getAinPin());
+            temp.setOffset(sensor.getOffset());
+            temp.setModel(sensor.getModel());
+            phSensorList.add(temp);
         }
     }
 
@@ -987,10 +1236,9 @@ public final class LaunchControl {
 
         try {
             Switch p = new Switch(name, gpio);
-            synchronized (switchList) {
 
-                switchList.add(p);
-            }
+            switchList.add(p);
+            structureChanged();
         } catch (Exception g) {
             BrewServer.LOG.warning("Could not add switch: " + g.getMessage());
             g.printStackTrace();
@@ -1005,14 +1253,11 @@ public final class LaunchControl {
     public static void addSystemTemp() {
         Temp tTemp = new Temp("System", "System");
         tempList.add(tTemp);
+        structureChanged();
         BrewServer.LOG.info("Adding " + tTemp.getName());
         // setup the scale for each temp probe
         tTemp.setScale(scale);
-        // setup the threads
-        Thread tThread = new Thread(tTemp);
-        tThread.setName("Temp_system");
-        tempThreads.add(tThread);
-        tThread.start();
+        SensorScheduler.register(tTemp);
     }
 
     public static void delSystemTemp() {
@@ -1021,6 +1266,7 @@ public final class LaunchControl {
         if (tTemp != null) {
             tTemp.shutdown();
             tempList.remove(tTemp);
+            structureChanged();
         }
     }
 
@@ -1032,11 +1278,9 @@ public final class LaunchControl {
      * @return True if the switch exists.
      */
     public static boolean switchExists(final String name) {
-        synchronized (switchList) {
-            for (Switch p : switchList) {
-                if (p.getName().equals(name)) {
-                    return true;
-                }
+        for (Switch p : switchList) {
+            if (p.getName().equals(name)) {
+                return true;
             }
         }
         return false;
@@ -1053,13 +1297,14 @@ public final class LaunchControl {
      */
     public static boolean addTimer(final String name, final String mode) {
         // Mode is a placeholder for now
-        synchronized (timerLock) {
+        // Holding the list makes the check and add one step
+        synchronized (timerList) {
             if (LaunchControl.findTimer(name) != null) {
                 return false;
             }
             Timer tTimer = new Timer(name);
             tTimer.setMode(mode);
-            CollectionsUtil.addInOrder(timerList, tTimer);
+            timerList.addInOrder(tTimer, null);
         }
 
         return true;
@@ -1092,17 +1337,14 @@ public final class LaunchControl {
         // input is the name we'll use from here on out
         Temp tTemp = new Temp(input, probe);
         tempList.add(tTemp);
+        structureChanged();
         BrewServer.LOG.info("Adding " + tTemp.getName() + " GPIO is (" + gpio
                 + ")");
 
         // setup the scale for each temp probe
         tTemp.setScale(scale);
 
-        // setup the threads
-        Thread tThread = new Thread(tTemp);
-        tThread.setName("Temp_" + tTemp.getName());
-        tempThreads.add(tThread);
-        tThread.start();
+        SensorScheduler.register(tTemp);
 
         if (gpio != null && !gpio.equals("")) {
             BrewServer.LOG.info("Adding PID with GPIO: " + gpio);
@@ -1174,17 +1416,7 @@ public final class LaunchControl {
      */
     public static Temp findTemp(final String name) {
         // search based on the input name
-        synchronized (tempList) {
-            Iterator<Temp> iterator = tempList.iterator();
-            Temp tTemp;
-            while (iterator.hasNext()) {
-                tTemp = iterator.next();
-                if (tTemp.getName().equalsIgnoreCase(name) || tTemp.getProbe().equalsIgnoreCase(name)) {
-                    return tTemp;
-                }
-            }
-        }
-        return null;
+        return tempList.get(name);
     }
 
     /******
@@ -1196,17 +1428,7 @@ public final class LaunchControl {
      */
     public static PID findPID(final String name) {
         // search based on the input name
-        synchronized (pidList) {
-            Iterator<PID> iterator = pidList.iterator();
-            PID tPid;
-            while (iterator.hasNext()) {
-                tPid = iterator.next();
-                if (tPid.getName().equalsIgnoreCase(name) || tPid.getTempProbe().getProbe().equalsIgnoreCase(name)) {
-                    return tPid;
-                }
-            }
-        }
-        return null;
+        return pidList.get(name);
     }
 
     /**
@@ -1216,9 +1438,8 @@ public final class LaunchControl {
      *            PID to add.
      */
     public static void addPID(final PID newPID) {
-        synchronized (pidList) {
-            pidList.add(newPID);
-        }
+        pidList.add(newPID);
+        structureChanged();
         Thread pThread = new Thread(newPID);
         pThread.start();
         pidThreads.add(pThread);
@@ -1233,17 +1454,7 @@ public final class LaunchControl {
      */
     public static Switch findSwitch(final String name) {
         // search based on the input name
-        synchronized (switchList) {
-            Iterator<Switch> iterator = switchList.iterator();
-            Switch tSwitch;
-            while (iterator.hasNext()) {
-                tSwitch = iterator.next();
-                if (tSwitch.getName().equalsIgnoreCase(name) || tSwitch.getNodeName().equalsIgnoreCase(name)) {
-                    return tSwitch;
-                }
-            }
-        }
-        return null;
+        return switchList.get(name);
     }
 
     /**
@@ -1254,18 +1465,8 @@ public final class LaunchControl {
      */
     public static void deleteSwitch(final String name) {
         // search based on the input name
-        synchronized (switchList) {
-            Iterator<Switch> iterator = switchList.iterator();
-            Switch tSwitch;
-
-            while (iterator.hasNext()) {
-                tSwitch = iterator.next();
-                if (tSwitch.getName().equalsIgnoreCase(name) || tSwitch.getNodeName().equalsIgnoreCase(name)) {
-                    iterator.remove();
-                    return;
-                }
-            }
-
+        if (switchList.remove(name) != null) {
+            structureChanged();
         }
     }
 
@@ -1278,17 +1479,7 @@ public final class LaunchControl {
      */
     public static Timer findTimer(final String name) {
         // search based on the input name
-        synchronized (timerLock) {
-            Iterator<Timer> iterator = timerList.iterator();
-            Timer tTimer;
-            while (iterator.hasNext()) {
-                tTimer = iterator.next();
-                if (tTimer.getName().equalsIgnoreCase(name)) {
-                    return tTimer;
-                }
-            }
-        }
-        return null;
+        return timerList.get(name);
     }
 
     /**************
@@ -1299,15 +1490,8 @@ public final class LaunchControl {
      */
     public static void deleteTimer(final String name) {
         // search based on the input name
-        synchronized (timerLock) {
-            Iterator<Timer> iterator = timerList.iterator();
-            Timer tTimer;
-            while (iterator.hasNext()) {
-                tTimer = iterator.next();
-                if (tTimer.getName().equalsIgnoreCase(name)) {
-                    timerList.remove(tTimer);
-                }
-            }
+        while (timerList.remove(name) != null) {
+            // Remove any duplicates too
         }
     }
 
@@ -1388,16 +1572,11 @@ public final class LaunchControl {
                 BrewServer.LOG.info("Checking for " + currentFile.getName());
                 Temp currentTemp = new Temp(currentFile.getName(),
                         currentFile.getName());
-                synchronized (tempList) {
-                    tempList.add(currentTemp);
-                }
+                tempList.add(currentTemp);
+                structureChanged();
                 // setup the scale for each temp probe
                 currentTemp.setScale(scale);
-                // setup the threads
-                Thread tThread = new Thread(currentTemp);
-                tThread.setName("Temp_" + currentTemp.getName());
-                tempThreads.add(tThread);
-                tThread.start();
+                SensorScheduler.register(currentTemp);
             }
         }
     }
@@ -1438,7 +1617,7 @@ public final class LaunchControl {
             System.exit(0);
         }
 
-        if (configDoc == null) {
+        if (config.get() == null) {
             initializeConfig();
         }
 
@@ -1457,94 +1636,37 @@ public final class LaunchControl {
 
     /**
      * Save the configuration file to the default config filename as xml.
+     * This only updates the general settings and marks the configuration
+     * as changed, the {@link ConfigWriter} writes the file shortly after.
      */
     public static void saveConfigFile() {
         if (!LaunchControl.loadCompleted) {
             return;
         }
-        File configOut = new File(configFileName);
-        LaunchControl.setFileOwner(configOut);
-
-        Element generalElement = getFirstElement(null, "general");
-        if (generalElement == null) {
-            generalElement = addNewElement(null, "general");
-        }
-
-        Element tempElement;
-
-        tempElement = getFirstElement(generalElement, "pagelock");
-
-        if (tempElement == null) {
-            tempElement = addNewElement(generalElement, "pagelock");
-        }
-
-        tempElement.setTextContent(Boolean.toString(pageLock));
-
-        tempElement = getFirstElement(generalElement, "scale");
-
-        if (tempElement == null) {
-            tempElement = addNewElement(generalElement, "scale");
-        }
-
-        tempElement.setTextContent(scale);
-
-        tempElement = getFirstElement(generalElement, "recorder");
-
-        if (tempElement == null) {
-            tempElement = addNewElement(generalElement, "recorder");
-        }
-
-        tempElement.setTextContent(Boolean
-                .toString(LaunchControl.recorder != null));
-
-        tempElement = getFirstElement(generalElement, "recorderDiff");
-
-        if (tempElement == null) {
-            tempElement = addNewElement(generalElement, "recorderDiff");
-        }
-
-        tempElement.setTextContent(Double.toString(StatusRecorder.THRESHOLD));
-
-        tempElement = getFirstElement(generalElement, "recorderTime");
-
-        if (tempElement == null) {
-            tempElement = addNewElement(generalElement, "recorderTime");
-        }
-
-        tempElement.setTextContent(Long.toString(StatusRecorder.SLEEP));
-
-        if (breweryName != null && !breweryName.equals("")) {
-            tempElement = getFirstElement(generalElement, "brewery_name");
 
-            if (tempElement == null) {
-                tempElement = addNewElement(generalElement, "brewery_name");
+        synchronized (configLock) {
+            GeneralConfig general = getConfig().getGeneral()
+                    .withDisplay(pageLock, scale, breweryName)
+                    .withRecorder(LaunchControl.recorder != null,
+                            StatusRecorder.THRESHOLD, StatusRecorder.SLEEP);
+            if (useOWFS) {
+                general = general.withOwfs(owfsServer, owfsPort);
             }
-
-            tempElement.setTextContent(breweryName);
+            config.set(getConfig().withGeneral(general));
         }
+        ConfigWriter.markDirty();
+    }
 
-        if (useOWFS) {
-            if (owfsServer != null) {
-                tempElement = getFirstElement(generalElement, "owfs_server");
-
-                if (tempElement == null) {
-                    tempElement = addNewElement(generalElement, "owfs_server");
-                }
-
-                tempElement.setTextContent(owfsServer);
-            }
-
-            if (owfsPort != null) {
-                tempElement = getFirstElement(generalElement, "owfs_port");
-
-                if (tempElement == null) {
-                    tempElement = addNewElement(generalElement, "owfs_port");
-                }
-
-                tempElement.setTextContent(Integer.toString(owfsPort));
-            }
+    /**
+     * Serialize the current configuration.
+     *
+     * @return The configuration as xml, or null if it couldn't be created.
+     */
+    public static byte[] serializeConfig() {
+        ConfigSnapshot current = config.get();
+        if (current == null) {
+            return null;
         }
-
         try {
             TransformerFactory transformerFactory = TransformerFactory
                     .newInstance();
@@ -1552,30 +1674,22 @@ public final class LaunchControl {
             transformer.setOutputProperty(OutputKeys.INDENT, "yes");
             transformer.setOutputProperty(
                     "{http://xml.apache.org/xslt}indent-amount", "2");
-            DOMSource source = new DOMSource(configDoc);
-
-            XPath xp = XPathFactory.newInstance().newXPath();
-            NodeList nl = (NodeList) xp.evaluate(
-                    "//text()[normalize-space(.)='']", configDoc,
-                    XPathConstants.NODESET);
-
-            for (int i = 0; i < nl.getLength(); ++i) {
-                Node node = nl.item(i);
-                node.getParentNode().removeChild(node);
-            }
-
-            StreamResult configResult = new StreamResult(configOut);
-            transformer.transform(source, configResult);
+            DOMSource source = new DOMSource(current.toDocument());
 
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            transformer.transform(source, new StreamResult(out));
+            return out.toByteArray();
+        } catch (ParserConfigurationException e) {
+            BrewServer.LOG.warning("Could not create the config document");
+            e.printStackTrace();
         } catch (TransformerConfigurationException e) {
             BrewServer.LOG.warning("Could not transform config file");
             e.printStackTrace();
         } catch (TransformerException e) {
             BrewServer.LOG.warning("Could not transformer file");
             e.printStackTrace();
-        } catch (XPathExpressionException e) {
-            e.printStackTrace();
         }
+        return null;
     }
 
     /**
@@ -1625,21 +1739,15 @@ public final class LaunchControl {
             owfsPort = Integer.parseInt(line.trim());
         }
 
-        if (configDoc == null) {
+        if (config.get() == null) {
             initializeConfig();
         }
 
-        Element generalElement = getFirstElement(null, "general");
-        if (generalElement == null) {
-            generalElement = addNewElement(null, "general");
+        synchronized (configLock) {
+            config.set(getConfig().withGeneral(
+                    getConfig().getGeneral().withOwfs(owfsServer, owfsPort)));
         }
 
-        Element tempElement = addNewElement(generalElement, "owfs_server");
-        tempElement.setTextContent(owfsServer);
-
-        tempElement = addNewElement(generalElement, "owfs_port");
-        tempElement.setTextContent(Integer.toString(owfsPort));
-
         // Create the connection
         setupOWFS();
     }
@@ -1673,26 +1781,7 @@ public final class LaunchControl {
      */
     public static String readOWFSPath(final String path) throws OwfsException,
             IOException {
-        String result = "";
-        if (owfsConnection == null) {
-            setupOWFS();
-            if (owfsConnection == null) {
-                BrewServer.LOG.info("no OWFS connection");
-                return "";
-            }
-        }
-        try {
-            if (owfsConnection.exists(path)) {
-                result = owfsConnection.read(path);
-            }
-        } catch (OwfsException e) {
-            // Error -1 is file not found, exists should bloody catch this
-            if (!e.getMessage().equals("Error -1")) {
-                throw e;
-            }
-        }
-
-        return result.trim();
+        return OwfsReader.read(path);
     }
 
     /*******
@@ -1717,20 +1806,18 @@ public final class LaunchControl {
     public void displaySensors() {
         // iterate the list of temperature Threads to get values
         Integer i = 1;
-        synchronized (tempList) {
-            for (Temp tTemp : tempList) {
-                // launch all the PIDs first,
-                // since they will launch the temp theads too
-                BigDecimal currentTemp = tTemp.updateTemp();
-
-                System.out.print(i.toString() + ") " + tTemp.getName());
-                if (currentTemp.equals(Temp.ERROR_TEMP)) {
-                    BrewServer.LOG.warning(" doesn't have a valid temperature");
-                } else {
-                    BrewServer.LOG.info(" " + currentTemp);
-                }
-                i++;
+        for (Temp tTemp : tempList) {
+            // launch all the PIDs first,
+            // since they will launch the temp theads too
+            BigDecimal currentTemp = tTemp.updateTemp();
+
+            System.out.print(i.toString() + ") " + tTemp.getName());
+            if (currentTemp.equals(Temp.ERROR_TEMP)) {
+                BrewServer.LOG.warning(" doesn't have a valid temperature");
+            } else {
+                BrewServer.LOG.info(" " + currentTemp);
             }
+            i++;
         }
     }
 
@@ -1738,172 +1825,97 @@ public final class LaunchControl {
      * Save the configuration to the Config.
      */
     public void saveSettings() {
-        if (configDoc == null) {
-            setupConfigDoc();
-        }
-
-        // Delete the existing PIDs and Temps.
-        NodeList devList = getElementsByXpath(null, "/elsinore/device");
-
-        Set<Element> delElements = new HashSet<>();
-        // Can't delete directly from the nodelist, concurrency issues.
-        for (int i = 0; i < devList.getLength(); i++) {
-            delElements.add((Element) devList.item(i));
-        }
-        // now we can delete them.
-        for (Element e : delElements) {
-            e.getParentNode().removeChild(e);
+        if (!DeviceStartup.isReady()) {
+            // The devices still starting would be dropped from the config
+            BrewServer.LOG.warning("Devices are still starting, not saving"
+                    + " the settings");
+            return;
         }
-
-        // go through the list of Temps and save each one
-        for (Temp fTemp : tempList) {
-            fTemp.save();
-
-            PID n = LaunchControl.findPID(fTemp.getName());
-            if (n == null || n.getName().equals("")) {
-                // Delete the info
-                deletePIDConfig(fTemp.getName());
-            } else if (!n.getName().equals(fTemp.getProbe())) {
-                BrewServer.LOG.info("Saving PID " + n.getName());
-                savePID(n);
+        synchronized (configLock) {
+            if (config.get() == null) {
+                setupConfigDoc();
             }
 
-            if (fTemp.getVolumeBase() != null) {
-                if (!fTemp.getVolumeAIN().equals("")) {
-                    saveVolume(fTemp.getName(), fTemp.getVolumeAIN(),
-                            fTemp.getVolumeUnit(), fTemp.getVolumeBase());
-                } else if (fTemp.getVolumeAddress() != null
-                        && fTemp.getVolumeOffset() != null) {
-                    saveVolume(fTemp.getName(), fTemp.getVolumeAddress(),
-                            fTemp.getVolumeOffset(), fTemp.getVolumeUnit(),
-                            fTemp.getVolumeBase());
-                } else {
-                    BrewServer.LOG.info("No valid volume probe found");
+            // Delete the existing PIDs and Temps, except the ones that
+            // didn't start, their config is kept until they do.
+            List<DeviceConfig> kept = new ArrayList<>();
+            for (DeviceConfig device : getConfig().getDevices()) {
+                if (!DeviceStartup.isStarted(device.getId())) {
+                    kept.add(device);
                 }
-            } else {
-                BrewServer.LOG.info("No Volume base set");
-            }
-        }
-
-        // Save the timers
-        if (timerList.size() > 0) {
-
-            Element timersElement = getFirstElement(null, "timers");
-
-            if (timersElement == null) {
-                timersElement = addNewElement(null, "timers");
             }
+            config.set(getConfig().withDevices(kept));
 
-            Node childTimer = timersElement.getFirstChild();
-            while (childTimer != null) {
-                timersElement.removeChild(childTimer);
-                childTimer = timersElement.getFirstChild();
+            // go through the list of Temps and save each one
+            for (Temp fTemp : tempList) {
+                if (!DeviceStartup.isStarted(fTemp.getName())) {
+                    // Came up late and is still being set up
+                    continue;
+                }
+                fTemp.save();
+
+                PID n = LaunchControl.findPID(fTemp.getName());
+                if (n == null || n.getName().equals("")) {
+                    // Delete the info
+                    deletePIDConfig(fTemp.getName());
+                } else if (!n.getName().equals(fTemp.getProbe())) {
+                    BrewServer.LOG.info("Saving PID " + n.getName());
+                    savePID(n);
+                }
+
+                if (fTemp.getVolumeBase() != null) {
+                    if (!fTemp.getVolumeAIN().equals("")) {
+                        saveVolume(fTemp.getName(), fTemp.getVolumeAIN(),
+                                fTemp.getVolumeUnit(), fTemp.getVolumeBase());
+                    } else if (fTemp.getVolumeAddress() != null
+                            && fTemp.getVolumeOffset() != null) {
+                        saveVolume(fTemp.getName(), fTemp.getVolumeAddress(),
+                                fTemp.getVolumeOffset(), fTemp.getVolumeUnit(),
+                                fTemp.getVolumeBase());
+                    } else {
+                        BrewServer.LOG.info("No valid volume probe found");
+                    }
+                } else {
+                    BrewServer.LOG.info("No Volume base set");
+                }
             }
 
-            synchronized (timerLock) {
+            // Save the timers
+            if (timerList.size() > 0) {
+                List<TimerConfig> timers = new ArrayList<>();
                 for (Timer t : timerList) {
-                    Element timerElement = getFirstElementByXpath(null,
-                            "/elsinore/timers/timer[@id='" + t + "']");
-                    if (timerElement == null) {
-                        // No timer by this name
-                        Element newTimer =
-                                addNewElement(timersElement, "timer");
-                        newTimer.setAttribute("id", t.getName());
-                        newTimer.setAttribute("position", "" + t.getPosition());
-                    }
+                    timers.add(new TimerConfig(t));
                 }
+                config.set(getConfig().withTimers(timers));
             }
-        }
-
-        // Delete all the switches first
-        Element switchElement = getFirstElement(null, "switches");
-
-        if (switchElement == null) {
-            switchElement = addNewElement(null, "switches");
-        }
-
-        Node childSwitches = switchElement.getFirstChild();
-        while (childSwitches != null) {
-            switchElement.removeChild(childSwitches);
-            childSwitches = switchElement.getFirstChild();
-        }
-
-        // Save the switches
-        if (switchList.size() > 0) {
 
+            // Save the switches
+            List<SwitchConfig> switches = new ArrayList<>();
             for (Switch tSwitch : switchList) {
-
-                Element newSwitch = getFirstElementByXpath(null,
-                        "/elsinore/switches/" + tSwitch.getNodeName());
-
-                if (newSwitch == null) {
-                    // No timer by this name
-                    newSwitch = addNewElement(switchElement,
-                            tSwitch.getNodeName());
-                }
-                newSwitch.setAttribute("gpio", tSwitch.getGPIO());
-                newSwitch.setAttribute("position", "" + tSwitch.getPosition());
-                Element invertElement = addNewElement(newSwitch, "invert");
-                invertElement.setTextContent(
-                        Boolean.toString(tSwitch.getInverted()));
-                newSwitch.appendChild(invertElement);
+                switches.add(new SwitchConfig(tSwitch));
             }
-        }
-
-        // Delete all the ph Sensors first
-        Element phSensorsElement = getFirstElement(null, "phSensors");
-
-        if (phSensorsElement == null) {
-            phSensorsElement = addNewElement(null, "phSensors");
-        }
-
-        Node childSensor = phSensorsElement.getFirstChild();
-        while (childSensor != null) {
-            phSensorsElement.removeChild(childSensor);
-            childSensor = phSensorsElement.getFirstChild();
-        }
-
-        // Save the PH Sensors
-        if (phSensorList.size() > 0) {
+            config.set(getConfig().withSwitches(switches));
 
+            // Save the PH Sensors
+            List<PhSensorConfig> phSensors = new ArrayList<>();
             for (PhSensor tSensor : phSensorList) {
-
-                Element newSensor = getFirstElementByXpath(null,
-                        "/elsinore/phSensors/" + tSensor.getName());
-
-                if (newSensor == null) {
-                    // No timer by this name
-                    newSensor = addNewElement(phSensorsElement,
-                            tSensor.getName());
-                }
-                newSensor.setAttribute("model", tSensor.getModel());
-                newSensor.setAttribute("ainPin", tSensor.getAIN());
-                newSensor.setAttribute("dsAddress", tSensor.getDsAddress());
-                newSensor.setAttribute("dsOffset", tSensor.getDsOffset());
-                newSensor.setAttribute("offset", "" + tSensor.getOffset());
+                phSensors.add(new PhSensorConfig(tSensor));
             }
+            config.set(getConfig().withPhSensors(phSensors));
         }
     }
 
     public static void deletePIDConfig(String name) {
-        if (configDoc == null) {
-            return;
-        }
-
-        // save any changes
-        Element device = getFirstElementByXpath(null, "/elsinore/device[@id='"
-                + name + "']");
-        if (device == null) {
-            return;
-        }
-
-        // Save the config to the configuration file
-        BrewServer.LOG.info("Deleting the PID information for " + name);
+        synchronized (configLock) {
+            if (config.get() == null || getConfig().getDevice(name) == null) {
+                return;
+            }
 
-        BrewServer.LOG.info("Using base node " + device.getNodeName()
-                + " with ID " + device.getAttribute("id"));
+            // Save the config to the configuration file
+            BrewServer.LOG.info("Deleting the PID information for " + name);
 
-        device.getParentNode().removeChild(device);
+            config.set(getConfig().withoutDevice(name));
+        }
     }
 
     /******
@@ -1913,73 +1925,27 @@ public final class LaunchControl {
      *            The PID to save
      */
     public static void savePID(final PID pid) {
-
         if (pid.getName() == null || pid.getName().equals("")) {
             new Throwable().printStackTrace();
             return;
         }
 
-        if (configDoc == null) {
-            setupConfigDoc();
+        if (!DeviceStartup.isStarted(pid.getName())) {
+            // Still being set up from the config, which is kept as it is
+            return;
         }
 
-        // Save the config to the configuration file
-        BrewServer.LOG.info("Saving the information for " + pid.getName());
+        synchronized (configLock) {
+            if (config.get() == null) {
+                setupConfigDoc();
+            }
 
-        // save any changes
-        Element device = getFirstElementByXpath(null, "/elsinore/device[@id='"
-                + pid.getName() + "']");
+            // Save the config to the configuration file
+            BrewServer.LOG.info("Saving the information for " + pid.getName());
 
-        if (device == null) {
-            BrewServer.LOG.info("Creating new Element");
-            device = addNewElement(null, "device");
-            device.setAttribute("id", pid.getName());
-        }
-
-        BrewServer.LOG.info("Using base node " + device.getNodeName()
-                + " with ID " + device.getAttribute("id"));
-
-        setElementText(device, "duty_cycle", pid.getManualCycle().toString());
-        setElementText(device, "duty_time", pid.getManualTime().toString());
-        setElementText(device, "set_point", pid.getSetPoint().toString());
-
-        if (pid.getHeatSetting() != null) {
-            Element heatElement = addNewElement(device, "heat");
-            setElementText(heatElement, "cycle_time", pid.getHeatCycle()
-                    .toString());
-            setElementText(heatElement, "proportional", pid.getHeatP()
-                    .toString());
-            setElementText(heatElement, "integral", pid.getHeatI().toString());
-            setElementText(heatElement, "derivative",
-                    pid.getHeatD().toString());
-            setElementText(heatElement, "gpio", pid.getHeatGPIO());
-            setElementText(heatElement, "invert",
-                    Boolean.toString(pid.getHeatInverted()));
-        }
-
-        if (pid.getCoolSetting() != null) {
-            Element coolElement = addNewElement(device, "cool");
-            setElementText(coolElement, "cycle_time", pid.getCoolCycle()
-                    .toString());
-            setElementText(coolElement, "delay", pid.getCoolDelay().toString());
-            setElementText(coolElement, "proportional", pid.getCoolP()
-                    .toString());
-            setElementText(coolElement, "integral", pid.getCoolI().toString());
-            setElementText(coolElement, "derivative",
-                    pid.getCoolD().toString());
-            setElementText(coolElement, "gpio", pid.getCoolGPIO());
-            setElementText(coolElement, "invert",
-                    Boolean.toString(pid.getCoolInverted()));
-        }
-
-        setElementText(device, "min", pid.getMin().toString());
-        setElementText(device, "max", pid.getMax().toString());
-        setElementText(device, "time", pid.getTime().toString());
-
-        if (pid.getAuxGPIO() != null) {
-            setElementText(device, "aux", pid.getAuxGPIO());
+            config.set(getConfig().withDevice(
+                    deviceConfig(pid.getName()).withPid(pid)));
         }
-
         saveConfigFile();
     }
 
@@ -1988,9 +1954,9 @@ public final class LaunchControl {
      *
      * @param temp
      *            The temp probe to save.
-     * @return The newly created Document Element
+     * @return The saved device configuration
      */
-    public static Element addTempToConfig(Temp temp) {
+    public static DeviceConfig addTempToConfig(Temp temp) {
 
         if (temp == null) {
             return null;
@@ -1998,7 +1964,6 @@ public final class LaunchControl {
 
         String probe = temp.getProbe();
         String name = temp.getName();
-        String cutoff = temp.getCutoff();
 
         /**
          * Some people want to watch the world burn and don't name their probes!
@@ -2007,60 +1972,17 @@ public final class LaunchControl {
             return null;
         }
         **/
+        if (!DeviceStartup.isStarted(name)) {
+            // Still being set up from the config, which is kept as it is
+            return getConfig().getDevice(name);
+        }
         // save any changes
         BrewServer.LOG.info("Saving " + name + " with probe " + probe);
-        // save any changes
-        Element device = getFirstElementByXpath(null, "/elsinore/device[@id='"
-                + name + "']");
-        if (device == null) {
-            // no idea why there wouldn't be this section
-            device = addNewElement(null, "device");
-            device.setAttribute("id", name);
-        }
-        setElementText(device, "probe", probe);
-        setElementText(device, "position", "" + temp.getPosition());
-        setElementText(device, "cutoff", cutoff);
-        setElementText(device, "calibration", temp.getCalibration());
-        setElementText(device, "hidden", Boolean.toString(temp.isHidden()));
-
-        BrewServer.LOG.info("Checking for volume");
-        if (temp.hasVolume()) {
-            System.out.println("Saving volume");
-            setElementText(device, "volume-units", temp.getVolumeUnit());
-            if (!temp.getVolumeAIN().equals("")) {
-                setElementText(device, "volume-ain",
-                        temp.getVolumeAIN());
-            } else {
-                setElementText(device, "volume-address",
-                        temp.getVolumeAddress());
-                setElementText(device, "volume-offset", temp.getVolumeOffset());
-            }
-
-            ConcurrentHashMap<BigDecimal, BigDecimal> volumeBase = temp
-                    .getVolumeBase();
-
-            // Iterate over the entries
-
-            if (volumeBase != null) {
-                for (Entry<BigDecimal, BigDecimal> e : volumeBase.entrySet()) {
-                    System.out.println("Saving volume point " + e.getKey()
-                            + " value " + e.getValue());
-                    Element volEntry = getFirstElementByXpath(null,
-                            "/elsinore/device[@id='" + name + "']"
-                            + "/volume[@vol='" + e.getKey().toString()
-                            + "']");
-                    if (volEntry == null) {
-                        volEntry = addNewElement(device, "volume");
-                        volEntry.setAttribute("vol", e.getKey().toString());
-                    }
-
-                    volEntry.setAttribute("vol", e.getKey().toString());
-                    volEntry.setTextContent(e.getValue().toString());
-                    device.appendChild(volEntry);
-                }
-            }
+        synchronized (configLock) {
+            DeviceConfig device = deviceConfig(name).withTemp(temp);
+            config.set(getConfig().withDevice(device));
+            return device;
         }
-        return device;
     }
 
     /*******
@@ -2083,24 +2005,12 @@ public final class LaunchControl {
 
         BrewServer.LOG.info("Saving volume for " + name);
 
-        Element device = saveVolumeMeasurements(name, concurrentHashMap,
-                volumeUnit);
-
-        // Units for the Volume OneWire Address
-        Element tElement = getFirstElement(device, "volume-address");
-        if (tElement == null) {
-            tElement = addNewElement(device, "volume-address");
-        }
-
-        tElement.setTextContent(address);
-
-        // Units for the Volume OneWire Offset
-        tElement = getFirstElement(device, "volume-offset");
-        if (tElement == null) {
-            tElement = addNewElement(device, "volume-offset");
+        synchronized (configLock) {
+            DeviceConfig device = saveVolumeMeasurements(name,
+                    concurrentHashMap, volumeUnit);
+            config.set(getConfig().withDevice(
+                    device.withVolumeAddress(address, offset)));
         }
-
-        tElement.setTextContent(offset);
     }
 
     /******
@@ -2121,17 +2031,12 @@ public final class LaunchControl {
 
         BrewServer.LOG.info("Saving volume for " + name);
 
-        // save any changes
-        Element device = saveVolumeMeasurements(name, concurrentHashMap,
-                volumeUnit);
-
-        Element tElement = getFirstElement(device, "volume-pin");
-        if (tElement == null) {
-            tElement = addNewElement(device, "volume-pin");
+        synchronized (configLock) {
+            DeviceConfig device = saveVolumeMeasurements(name,
+                    concurrentHashMap, volumeUnit);
+            config.set(getConfig().withDevice(
+                    device.withVolumePin(volumeAIN)));
         }
-
-        tElement.setTextContent(volumeAIN);
-
     }
 
     /**
@@ -2143,39 +2048,28 @@ public final class LaunchControl {
      *            The Calibration array of analog values and volume value
      * @param volumeUnit
      *            The units for the volume.
-     * @return The element that was created
+     * @return The saved device configuration
      */
-    public Element saveVolumeMeasurements(final String name,
+    public DeviceConfig saveVolumeMeasurements(final String name,
             final ConcurrentHashMap<BigDecimal, BigDecimal> volumeBase,
             final String volumeUnit) {
-        Element device = getFirstElementByXpath(null, "/elsinore/device[@id='"
-                + name + "']");
-
-        if (device == null) {
-            // no idea why there wouldn't be this section
-            device = addNewElement(null, "device");
-            device.setAttribute("id", name);
-        }
-
-        Element tElement = getFirstElement(device, "volume-unit");
-        if (tElement == null) {
-            tElement = addNewElement(device, "volume-unit");
+        synchronized (configLock) {
+            DeviceConfig device = deviceConfig(name).withVolume(volumeUnit,
+                    volumeBase);
+            config.set(getConfig().withDevice(device));
+            return device;
         }
-        tElement.setTextContent(volumeUnit);
-
-        for (Entry<BigDecimal, BigDecimal> entry : volumeBase.entrySet()) {
-            System.out.println("Looking for volume entry: "
-                    + entry.getKey().toString());
-
-            tElement = getFirstElementByXpath(null, "/elsinore/device[@id='"
-                    + name + "']/volume[@vol='" + entry.getKey().toString()
-                    + "']");
-            if (tElement == null) {
-                tElement = addNewElement(device, "volume");
-                tElement.setAttribute("vol", entry.getKey().toString());
-            }
+    }
 
-            tElement.setTextContent(entry.getValue().toString());
+    /**
+     * @param name
+     *            The device name.
+     * @return The saved device, or a new one if it isn't saved yet.
+     */
+    private static DeviceConfig deviceConfig(final String name) {
+        DeviceConfig device = getConfig().getDevice(name);
+        if (device == null) {
+            return DeviceConfig.named(name);
         }
         return device;
     }
@@ -2198,16 +2092,8 @@ public final class LaunchControl {
 
         try {
             assert dBuilder != null;
-            configDoc = dBuilder.parse(existingConfig);
-            XPath xp = XPathFactory.newInstance().newXPath();
-            NodeList nl = (NodeList) xp.evaluate(
-                    "//text()[normalize-space(.)='']", configDoc,
-                    XPathConstants.NODESET);
-
-            for (int i = 0; i < nl.getLength(); ++i) {
-                Node node = nl.item(i);
-                node.getParentNode().removeChild(node);
-            }
+            Document newDoc = dBuilder.parse(existingConfig);
+            config.set(ConfigSnapshot.fromDocument(newDoc));
             return;
         } catch (Exception e) {
             BrewServer.LOG.info(configFileName
@@ -2239,272 +2125,154 @@ public final class LaunchControl {
      * Parse the config using the XML Parser.
      */
     public void parseXMLSections() {
-        NodeList configSections = configDoc.getDocumentElement()
-                .getChildNodes();
+        ConfigSnapshot snapshot = getConfig();
 
-        if (configSections.getLength() == 0) {
-            return;
-        }
         // setup general first
-        parseGeneral(getFirstElement(null, "general"));
-        parseSwitches(getFirstElement(null, "switches"));
-        parsePhSensors(getFirstElement(null, "phSensors"));
-
-        for (int i = 0; i < configSections.getLength(); i++) {
-            Node temp = configSections.item(i);
-            if (temp.getNodeType() == Node.ELEMENT_NODE) {
-                Element e = (Element) temp;
-                BrewServer.LOG.info("Checking section " + e.getNodeName());
-                // Parsed general first
-                if (e.getNodeName().equalsIgnoreCase("timers")) {
-                    parseTimers(e);
-                } else if (e.getNodeName().equalsIgnoreCase("device")) {
-                    parseDevice(e);
+        parseGeneral(snapshot.getGeneral());
+        parseSwitches(snapshot.getSwitches());
+        parsePhSensors(snapshot.getPhSensors());
+        parseTimers(snapshot.getTimers());
+
+        // The devices talk to the hardware, start them in the background
+        // along with the OWFS connection they read through
+        final List<DeviceConfig> devices = snapshot.getDevices();
+        Runnable connect = null;
+        if (owfsServer != null) {
+            connect = new Runnable() {
+                @Override
+                public void run() {
+                    setupOWFS();
                 }
-            }
+            };
+        }
+        if (devices.size() > 0) {
+            DeviceStartup.start(this, devices, connect, new Runnable() {
+                @Override
+                public void run() {
+                    devicesStarted(devices);
+                }
+            });
+        } else if (connect != null) {
+            // The setup scans for probes straight away
+            connect.run();
         }
     }
 
     /**
-     * Parse a configuration section, such as a specific device.
+     * Finish the load once the devices are started, putting them back in
+     * the config file order.
      *
-     * @param config
-     *            The configuration element to parse.
-     */
-    public void parseDevice(final Element config) {
-        String probe = null;
-        String heatGPIO = null;
-        String coolGPIO = null;
-        String volumeUnits = "Litres";
-        String dsAddress = null, dsOffset = null;
-        String cutoffTemp = null, auxPin = null, calibration = "";
-        ConcurrentHashMap<BigDecimal, BigDecimal> volumeArray =
-                new ConcurrentHashMap<>();
-        BigDecimal duty = new BigDecimal(0), heatCycle = new BigDecimal(0.0),
-                setpoint = new BigDecimal(0.0), heatP = new BigDecimal(0.0),
-                heatI = new BigDecimal(0.0), heatD = new BigDecimal(0.0),
-                min = new BigDecimal(0.0), max = new BigDecimal(0.0),
-                time = new BigDecimal(0.0), coolP = new BigDecimal(0.0),
-                coolI = new BigDecimal(0.0), coolD = new BigDecimal(0.0),
-                coolCycle = new BigDecimal(0.0), cycle = new BigDecimal(0.0),
-                coolDelay = new BigDecimal(0.0);
-        boolean coolInvert = false, heatInvert = false, hidden = false;
-        int analoguePin = -1, position = -1;
-
-        String deviceName = config.getAttribute("id");
-
-        BrewServer.LOG.info("Parsing XML Device: " + deviceName);
-        try {
-            Element tElement = getFirstElement(config, "probe");
-            if (tElement != null) {
-                probe = tElement.getTextContent();
-            }
-
-            tElement = getFirstElement(config, "position");
-            if (tElement != null) {
-                position = Integer.parseInt(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(config, "duty_cycle");
-            if (tElement != null) {
-                duty = new BigDecimal(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(config, "duty_time");
-            if (tElement != null) {
-                cycle = new BigDecimal(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(config, "set_point");
-            if (tElement != null) {
-                setpoint = new BigDecimal(tElement.getTextContent());
-            }
-
-            Element heatElement = getFirstElement(config, "heat");
-
-            if (heatElement == null) {
-                heatElement = config;
-            }
-
-            tElement = getFirstElement(heatElement, "gpio");
-            if (tElement != null) {
-                heatGPIO = tElement.getTextContent();
-            }
-
-            tElement = getFirstElement(heatElement, "cycle_time");
-            if (tElement != null) {
-                heatCycle = new BigDecimal(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(heatElement, "proportional");
-            if (tElement != null) {
-                heatP = new BigDecimal(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(heatElement, "integral");
-            if (tElement != null) {
-                heatI = new BigDecimal(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(heatElement, "derivative");
-            if (tElement != null) {
-                heatD = new BigDecimal(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(config, "invert");
-            if (tElement != null) {
-                heatInvert = Boolean.parseBoolean(tElement.getTextContent());
-            }
-
-            Element coolElement = getFirstElement(config, "cool");
-
-            if (coolElement != null) {
-
-                tElement = getFirstElement(coolElement, "cycle_time");
-                if (tElement != null) {
-                    coolCycle = new BigDecimal(tElement.getTextContent());
-                }
-
-                tElement = getFirstElement(coolElement, "proportional");
-                if (tElement != null) {
-                    coolP = new BigDecimal(tElement.getTextContent());
-                }
-
-                tElement = getFirstElement(coolElement, "integral");
-                if (tElement != null) {
-                    coolI = new BigDecimal(tElement.getTextContent());
-                }
-
-                tElement = getFirstElement(coolElement, "derivative");
-                if (tElement != null) {
-                    coolD = new BigDecimal(tElement.getTextContent());
-                }
-
-                tElement = getFirstElement(coolElement, "gpio");
-                if (tElement != null) {
-                    coolGPIO = tElement.getTextContent();
-                }
-
-                tElement = getFirstElement(coolElement, "delay");
-                if (tElement != null) {
-                    coolDelay = new BigDecimal(tElement.getTextContent());
-                }
-
-                tElement = getFirstElement(coolElement, "inverted");
-                if (tElement != null) {
-                    coolInvert = Boolean.parseBoolean(tElement.getTextContent());
-                }
-            }
-
-            tElement = getFirstElement(config, "min");
-            if (tElement != null) {
-                min = new BigDecimal(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(config, "max");
-            if (tElement != null) {
-                max = new BigDecimal(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(config, "time");
-            if (tElement != null) {
-                time = new BigDecimal(tElement.getTextContent());
-            }
-
-            tElement = getFirstElement(config, "cutoff");
-            if (tElement != null) {
-                cutoffTemp = tElement.getTextContent();
-            }
-
-            tElement = getFirstElement(config, "calibration");
-            if (tElement != null) {
-                calibration = tElement.getTextContent();
-            }
-
-            tElement = getFirstElement(config, "aux");
-            if (tElement != null) {
-                auxPin = tElement.getTextContent();
-            }
-
-            tElement = getFirstElement(config, "hidden");
-            if (tElement != null) {
-                hidden = Boolean.parseBoolean(tElement.getTextContent());
-            }
-
-            NodeList tList = config.getElementsByTagName("volume");
-
-            if (tList.getLength() >= 1) {
-                for (int j = 0; j < tList.getLength(); j++) {
-                    Element curOption = (Element) tList.item(j);
-
-                    // Append the volume to the array
-                    try {
-                        BigDecimal volValue = new BigDecimal(
-                                curOption.getAttribute("vol"));
-                        BigDecimal volReading = new BigDecimal(
-                                curOption.getTextContent());
-
-                        volumeArray.put(volValue, volReading);
-                        // we can parse this as an integer
-                    } catch (NumberFormatException e) {
-                        BrewServer.LOG.warning("Could not parse "
-                                + curOption.getNodeName() + " as an integer");
-                    }
-                }
+     * @param devices
+     *            The devices, in the config file order.
+     */
+    private static void devicesStarted(final List<DeviceConfig> devices) {
+        final Map<String, Integer> order = new HashMap<>();
+        for (DeviceConfig device : devices) {
+            String name = device.getId().replace(" ", "_");
+            if (!order.containsKey(name)) {
+                order.put(name, order.size());
             }
-
-            tElement = getFirstElement(config, "volume-unit");
-            if (tElement != null) {
-                volumeUnits = tElement.getTextContent();
+        }
+        tempList.sort(new Comparator<Temp>() {
+            @Override
+            public int compare(final Temp a, final Temp b) {
+                return configOrder(order, a.getName())
+                        - configOrder(order, b.getName());
             }
-
-            tElement = getFirstElement(config, "volume-pin");
-            if (tElement != null) {
-                analoguePin = Integer.parseInt(tElement.getTextContent());
+        });
+        pidList.sort(new Comparator<PID>() {
+            @Override
+            public int compare(final PID a, final PID b) {
+                return configOrder(order, a.getName())
+                        - configOrder(order, b.getName());
             }
+        });
 
-            tElement = getFirstElement(config, "volume-address");
-            if (tElement != null) {
-                dsAddress = tElement.getTextContent();
-            }
+        if (tempList.size() == 0) {
+            BrewServer.LOG.warning("None of the devices could be started,"
+                    + " check the probes or rerun the setup");
+        }
+        LaunchControl.loadCompleted = true;
+        structureChanged();
+    }
 
-            tElement = getFirstElement(config, "volume-offset");
-            if (tElement != null) {
-                dsOffset = tElement.getTextContent();
-            }
+    private static int configOrder(final Map<String, Integer> order,
+            final String name) {
+        Integer position = order.get(name);
+        return position == null ? order.size() : position;
+    }
 
-            if (volumeUnits == null) {
-                BrewServer.LOG.warning("Couldn't find a volume unit for "
-                        + deviceName);
-                volumeArray = null;
-            }
+    /**
+     * Start a device from the configuration.
+     *
+     * @param config
+     *            The device configuration.
+     * @return The probe, or null if the device couldn't be started.
+     */
+    public Temp parseDevice(final DeviceConfig config) {
+        String deviceName = config.getId();
+        BrewServer.LOG.info("Parsing XML Device: " + deviceName);
 
-            if (volumeArray != null && volumeArray.size() < MIN_VOLUME_SIZE) {
-                BrewServer.LOG.info("Not enough volume data points, "
-                        + volumeArray.size() + " found");
-                volumeArray = null;
-            } else if (volumeArray == null) {
-                // we don't have a basic level
-                // not implemented yet, math is hard
-                System.out
-                    .println("No Volume Presets, check your config or rerun the setup!");
-                // otherwise we are OK
+        String probe = config.getProbe();
+        int position = config.getPosition();
+        BigDecimal duty = config.getDuty();
+        BigDecimal cycle = config.getDutyTime();
+        BigDecimal setpoint = config.getSetPoint();
+
+        DeviceConfig.OutputConfig heat = config.getHeat();
+        String heatGPIO = heat.getGpio();
+        BigDecimal heatCycle = heat.getCycleTime();
+        BigDecimal heatP = heat.getProportional();
+        BigDecimal heatI = heat.getIntegral();
+        BigDecimal heatD = heat.getDerivative();
+        boolean heatInvert = heat.isInverted();
+        int heatWatts = heat.getWatts();
+
+        DeviceConfig.OutputConfig cool = config.getCool();
+        String coolGPIO = cool.getGpio();
+        BigDecimal coolCycle = cool.getCycleTime();
+        BigDecimal coolP = cool.getProportional();
+        BigDecimal coolI = cool.getIntegral();
+        BigDecimal coolD = cool.getDerivative();
+        BigDecimal coolDelay = cool.getDelay();
+        boolean coolInvert = cool.isInverted();
+        int coolWatts = cool.getWatts();
+
+        String filter = config.getFilter();
+        int filterWindow = config.getFilterWindow();
+        BigDecimal min = config.getMin();
+        BigDecimal max = config.getMax();
+        BigDecimal time = config.getTime();
+        String cutoffTemp = config.getCutoff();
+        String calibration = config.getCalibration();
+        long sampleInterval = config.getSampleInterval();
+        String auxPin = config.getAux();
+        boolean hidden = config.isHidden();
+
+        String volumeUnits = config.getVolumeUnit();
+        String dsAddress = config.getVolumeAddress();
+        String dsOffset = config.getVolumeOffset();
+        int analoguePin = -1;
+        if (config.getVolumePin() != null) {
+            try {
+                analoguePin = Integer.parseInt(config.getVolumePin().trim());
+            } catch (NumberFormatException e) {
+                BrewServer.LOG.warning("Couldn't parse the volume pin for "
+                        + deviceName + ": " + config.getVolumePin());
             }
+        }
 
-        } catch (NumberFormatException nfe) {
-            System.out.print("NumberFormatException when reading from: "
-                    + deviceName);
-            nfe.printStackTrace();
-        } catch (Exception e) {
-            BrewServer.LOG.info(e.getMessage() + " Ocurred when reading "
-                    + deviceName);
-            e.printStackTrace();
+        Map<BigDecimal, BigDecimal> volumeArray = config.getVolumes();
+        if (volumeArray.size() < MIN_VOLUME_SIZE) {
+            BrewServer.LOG.info("Not enough volume data points, "
+                    + volumeArray.size() + " found");
         }
 
         Temp newTemp = startDevice(deviceName, probe, heatGPIO);
         if (newTemp == null) {
-            System.out.println("Problems parsing device " + deviceName);
-            System.exit(-1);
+            BrewServer.LOG.warning("Problems parsing device " + deviceName
+                    + ", please fix the config file");
+            return null;
         }
         newTemp.setPosition(position);
         try {
@@ -2520,6 +2288,9 @@ public final class LaunchControl {
 
                 tPID.updateValues("off", duty, heatCycle, setpoint, heatP,
                         heatI, heatD);
+                if (filter != null) {
+                    tPID.setFilter(filter, filterWindow);
+                }
                 tPID.setCoolDelay(coolDelay);
                 tPID.setCoolCycle(coolCycle);
                 tPID.setCoolP(coolP);
@@ -2528,6 +2299,8 @@ public final class LaunchControl {
                 tPID.setCoolGPIO(coolGPIO);
                 tPID.setCoolInverted(coolInvert);
                 tPID.setHeatInverted(heatInvert);
+                tPID.setHeatWatts(heatWatts);
+                tPID.setCoolWatts(coolWatts);
                 tPID.setManualTime(cycle);
                 tPID.setManualDuty(duty);
                 if (auxPin != null && !auxPin.equals("")) {
@@ -2560,12 +2333,12 @@ public final class LaunchControl {
             }
         }
 
-        if (newTemp != null) {
-            newTemp.setCalibration(calibration);
-            if (hidden) {
-                newTemp.hide();
-            }
+        newTemp.setCalibration(calibration);
+        newTemp.setSampleInterval(sampleInterval);
+        if (hidden) {
+            newTemp.hide();
         }
+        return newTemp;
     }
 
     /**
@@ -2608,223 +2381,37 @@ public final class LaunchControl {
     }
 
     /**
-     * Sets up the base configuration Document.
+     * Sets up an empty configuration, if there isn't one.
      */
     public static void setupConfigDoc() {
-
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder;
-        try {
-            dBuilder = dbFactory.newDocumentBuilder();
-            configDoc = dBuilder.newDocument();
-            configDoc.appendChild(configDoc.createElement("elsinore"));
-        } catch (ParserConfigurationException e1) {
-            BrewServer.LOG.info("Error creating the new document: "
-                    + e1.getMessage());
-            e1.printStackTrace();
-        }
+        config.compareAndSet(null, ConfigSnapshot.EMPTY);
     }
 
     /**
-     * Get a list of all the nodes that match the nodeName. If no baseNode is
-     * provided (null) then it checks from the document root.
+     * Get the configuration, any thread can read it without a lock. To
+     * change it, hold the {@link #configLock}, make the changed copy and
+     * set it.
      *
-     * @param baseNode
-     *            The root element to check from, null for the base element
-     * @param nodeName
-     *            The node name to match
-     * @return A NodeList of matching node names
-     */
-    public static NodeList getAllNodes(final Element baseNode,
-            final String nodeName) {
-
-        Element trueBase = baseNode;
-        if (baseNode == null) {
-            if (configDoc == null) {
-                setupConfigDoc();
-            }
-
-            trueBase = configDoc.getDocumentElement();
-        }
-
-        return trueBase.getElementsByTagName(nodeName);
-    }
-
-    /**
-     * Get the first element matching nodeName from the baseNode. If baseNode is
-     * null, use the document root
-     *
-     * @param baseNode
-     *            The base element to search, null matches from the root
-     * @param nodeName
-     *            The nodeName to find.
-     * @return The First matching element.
-     */
-    public static Element getFirstElement(final Element baseNode,
-            final String nodeName) {
-
-        NodeList nodeList = getAllNodes(baseNode, nodeName);
-
-        Element eFound = null;
-        if (nodeList != null && nodeList.getLength() > 0) {
-            eFound = (Element) nodeList.item(0);
-        }
-
-        return eFound;
-    }
-
-    /**
-     * Add a new element to the specified baseNode.
-     *
-     * @param baseNode
-     *            The baseNode to append to, if null, use the document root
-     * @param nodeName
-     *            The new node name to add.
-     * @return The newly created element.
+     * @return The configuration, never null.
      */
-    public static Element addNewElement(final Element baseNode,
-            final String nodeName) {
-
-        if (configDoc == null) {
-            setupConfigDoc();
-        }
-
-        // See if this element exists.
-        /*if (baseNode != null) {
-            NodeList nl = baseNode.getChildNodes();
-
-            if (nl.getLength() > 0) {
-                for (int i = 0; i < nl.getLength(); i++) {
-                    Node item = nl.item(i);
-                    if (item != null && item.getNodeName().equals(nodeName)) {
-                        return (Element) item;
-                    }
-                }
-            }
-        }*/
-
-        Element newElement = configDoc.createElement(nodeName);
-        Element trueBase = baseNode;
-        BrewServer.LOG.info("Creating element of " + nodeName);
-
-        if (trueBase == null) {
-            BrewServer.LOG.info("Creating on configDoc base");
-            trueBase = configDoc.getDocumentElement();
-        } else {
-            BrewServer.LOG.info("on " + trueBase.getNodeName());
+    public static ConfigSnapshot getConfig() {
+        ConfigSnapshot current = config.get();
+        if (current == null) {
+            return ConfigSnapshot.EMPTY;
         }
-
-        newElement = (Element) trueBase.appendChild(newElement);
-
-        return newElement;
+        return current;
     }
 
     /**
-     * Returns all the elements using an Xpath Search.
+     * Replace the whole configuration, for the tests.
      *
-     * @param baseNode
-     *            The base node to search on. if null, use the document root.
-     * @param xpathIn
-     *            The Xpath to search.
-     * @return The first matching element
+     * @param newConfig
+     *            The new configuration, null for none.
      */
-    @SuppressWarnings("unused")
-    public static NodeList getElementsByXpath(final Element baseNode,
-            final String xpathIn) {
-
-        NodeList tList = null;
-
-        if (configDoc == null) {
-            return null;
-        }
-
-        try {
-            expr = xpath.compile(xpathIn);
-            tList = (NodeList) expr.evaluate(configDoc, XPathConstants.NODESET);
-        } catch (XPathExpressionException e) {
-            BrewServer.LOG.warning("Bad XPATH: " + xpathIn);
-            e.printStackTrace();
-            System.exit(-1);
-
+    static void setConfig(final ConfigSnapshot newConfig) {
+        synchronized (configLock) {
+            config.set(newConfig);
         }
-
-        return tList;
-    }
-
-    /**
-     * Returns the first element using an Xpath Search.
-     *
-     * @param baseNode
-     *            The base node to search on. if null, use the document root.
-     * @param xpathIn
-     *            The Xpath to search.
-     * @return The first matching element
-     */
-    public static Element getFirstElementByXpath(final Element baseNode,
-            final String xpathIn) {
-
-        Element tElement = null;
-
-        NodeList tList = getElementsByXpath(baseNode, xpathIn);
-
-        if (tList.getLength() > 0) {
-            tElement = (Element) tList.item(0);
-        }
-
-        return tElement;
-
-    }
-
-    /**
-     * Sets the first found named element text.
-     *
-     * @param baseNode
-     *            The baseNode to use, if null, use the root.
-     * @param elementName
-     *            The element name to look for.
-     * @param textContent
-     *            The new text content
-     */
-    public static void setElementText(final Element baseNode,
-            final String elementName, final String textContent) {
-
-        Element trueBase = baseNode;
-        if (baseNode == null) {
-            trueBase = configDoc.getDocumentElement();
-        }
-
-        Element tElement = getFirstElement(trueBase, elementName);
-
-        if (tElement == null) {
-            tElement = addNewElement(trueBase, elementName);
-        }
-
-        tElement.setTextContent(textContent);
-
-        trueBase.appendChild(tElement);
-    }
-
-    /**
-     * Delete the named element from the baseNode.
-     * 
-     * @param baseNode
-     *            The Node to delete a child from
-     * @param elementName
-     *            The child element name to delete
-     */
-    public static void deleteElement(Element baseNode, String elementName) {
-        Element trueBase = baseNode;
-        if (baseNode == null) {
-            trueBase = configDoc.getDocumentElement();
-        }
-
-        Element tElement = getFirstElement(trueBase, elementName);
-        if (tElement == null) {
-            return;
-        }
-
-        trueBase.removeChild(tElement);
-
     }
 
     /**
@@ -2844,17 +2431,14 @@ public final class LaunchControl {
     }
 
     /**
-     * Start the mashControl thread associated with the PID.
+     * Start the mashControl associated with the PID, arming its active
+     * trigger.
      *
      * @param pid
-     *            The PID to find the mash control thread for.
+     *            The PID to find the mash control for.
      */
     public static void startMashControl(final String pid) {
-        TriggerControl mControl = findTriggerControl(pid);
-        Thread mThread = new Thread(mControl);
-        mThread.setName("Mash-Thread[" + pid + "]");
-        triggerThreads.add(mThread);
-        mThread.start();
+        findTriggerControl(pid).start();
     }
 
     /**
@@ -2882,7 +2466,7 @@ public final class LaunchControl {
      *
      * @return The current list of timers.
      */
-    public static ArrayList<Timer> getTimerList() {
+    public static DeviceRegistry<Timer> getTimerList() {
         return timerList;
     }
 
@@ -3086,7 +2670,12 @@ public final class LaunchControl {
      *            The message to set.
      */
     public static void setMessage(final String newMessage) {
+        boolean changed = newMessage != null
+                && !newMessage.equals(LaunchControl.message);
         LaunchControl.message = newMessage;
+        if (changed) {
+            statusChanged();
+        }
     }
 
     /**
@@ -3095,6 +2684,7 @@ public final class LaunchControl {
      */
     public static void addMessage(final String newMessage) {
         LaunchControl.message += "\n" + newMessage;
+        statusChanged();
     }
 
     /**
@@ -3133,16 +2723,14 @@ public final class LaunchControl {
      */
     public static void deletePID(PID tPID) {
         tPID.stop();
-        synchronized(timerLock) {
-            pidList.remove(tPID);
-        }
+        pidList.remove(tPID);
+        structureChanged();
     }
 
     public static void deleteTemp(Temp tTemp) {
         tTemp.shutdown();
-        synchronized (timerLock) {
-            tempList.remove(tTemp);
-        }
+        tempList.remove(tTemp);
+        structureChanged();
     }
     /**
      * Get the system temperature scale.
@@ -3281,17 +2869,7 @@ public final class LaunchControl {
 
     public static PhSensor findPhSensor(String string) {
         string = string.replace(" ", "_");
-        synchronized (phSensorList) {
-            Iterator<PhSensor> iterator = phSensorList.iterator();
-            PhSensor tPh;
-            while (iterator.hasNext()) {
-                tPh = iterator.next();
-                if (tPh.getName().equalsIgnoreCase(string)) {
-                    return tPh;
-                }
-            }
-        }
-        return null;
+        return phSensorList.get(string);
     }
 
     /**
@@ -3304,31 +2882,15 @@ public final class LaunchControl {
     public static boolean deletePhSensor(final String name) {
         // search based on the input name
         String realName = name.replace(" ", "_");
-        synchronized (phSensorList) {
-            Iterator<PhSensor> iterator = phSensorList.iterator();
-            PhSensor tSensor;
-
-            while (iterator.hasNext()) {
-                tSensor = iterator.next();
-                if (tSensor.getName().equalsIgnoreCase(realName)) {
-                    iterator.remove();
-                    return true;
-                }
-            }
-
-        }
-        return false;
+        return phSensorList.remove(realName) != null;
     }
 
     public static void sortTimers() {
-        synchronized (LaunchControl.timerLock) {
-            Collections.sort(LaunchControl.timerList);
-        }
+        LaunchControl.timerList.sort();
     }
 
     public static void sortDevices() {
-        synchronized (LaunchControl.timerLock) {
-            Collections.sort(LaunchControl.tempList);
-        }
+        LaunchControl.tempList.sort();
+        structureChanged();
     }
 }
\ No newline at end of file
@@ -36,6 +36,16 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A simple, tiny, nicely embeddable HTTP server in Java
@@ -88,6 +98,11 @@ public abstract class NanoHTTPD {
      * block the socket reading thread forever (or as long the browser is open).
      */
     public static final int SOCKET_READ_TIMEOUT = 5000;
+    /**
+     * Maximum time to wait for the next request on a Keep-Alive connection (in milliseconds).
+     * The connection holds its worker thread while it waits, so this is kept short.
+     */
+    public static final int KEEP_ALIVE_TIMEOUT = 1000;
     /**
      * Common mime type for dynamic content: plain text
      */
@@ -180,31 +195,38 @@ public abstract class NanoHTTPD {
                             safeClose(finalAccept);
                             unRegisterConnection(finalAccept);
                         } else {
-                            asyncRunner.exec(new Runnable() {
-                                @Override
-                                public void run() {
-                                    OutputStream outputStream = null;
-                                    try {
-                                        outputStream = finalAccept.getOutputStream();
-                                        TempFileManager tempFileManager = tempFileManagerFactory.create();
-                                        HTTPSession session = new HTTPSession(tempFileManager, inputStream, outputStream, finalAccept.getInetAddress());
-                                        while (!finalAccept.isClosed()) {
+                            try {
+                                asyncRunner.exec(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        OutputStream outputStream = null;
+                                        try {
+                                            outputStream = finalAccept.getOutputStream();
+                                            TempFileManager tempFileManager = tempFileManagerFactory.create();
+                                            HTTPSession session = new HTTPSession(tempFileManager, inputStream, outputStream, finalAccept);
                                             session.execute();
+                                            // Keep the connection, and its worker, only while no one else is waiting for one
+                                            while (!finalAccept.isClosed() && !isBusy()) {
+                                                finalAccept.setSoTimeout(KEEP_ALIVE_TIMEOUT);
+                                                session.execute();
+                                            }
+                                        } catch (Exception e) {
+                                            // When the socket is closed by the client, we throw our own SocketException
+                                            // to break the  "keep alive" loop above.
+                                            if (!(e instanceof SocketException && "NanoHttpd Shutdown".equals(e.getMessage()))) {
+                                                e.printStackTrace();
+                                            }
+                                        } finally {
+                                            safeClose(outputStream);
+                                            safeClose(inputStream);
+                                            safeClose(finalAccept);
+                                            unRegisterConnection(finalAccept);
                                         }
-                                    } catch (Exception e) {
-                                        // When the socket is closed by the client, we throw our own SocketException
-                                        // to break the  "keep alive" loop above.
-                                        if (!(e instanceof SocketException && "NanoHttpd Shutdown".equals(e.getMessage()))) {
-                                            e.printStackTrace();
-                                        }
-                                    } finally {
-                                        safeClose(outputStream);
-                                        safeClose(inputStream);
-                                        safeClose(finalAccept);
-                                        unRegisterConnection(finalAccept);
                                     }
-                                }
-                            });
+                                });
+                            } catch (RejectedExecutionException e) {
+                                rejectConnection(finalAccept);
+                            }
                         }
                     } catch (IOException e) {
                     }
@@ -216,6 +238,31 @@ public abstract class NanoHTTPD {
         myThread.start();
     }
 
+    /**
+     * @return true if there are connections waiting for a worker.
+     */
+    private boolean isBusy() {
+        return asyncRunner instanceof PooledAsyncRunner && ((PooledAsyncRunner) asyncRunner).isBusy();
+    }
+
+    /**
+     * Tell the client the server is too busy and close the connection.
+     *
+     * @param socket the {@link Socket} that couldn't be handled.
+     */
+    private void rejectConnection(Socket socket) {
+        try {
+            Response busy = new Response(Response.Status.SERVICE_UNAVAILABLE, MIME_PLAINTEXT, "Server busy, try again shortly");
+            busy.addHeader("Retry-After", "1");
+            busy.send(socket.getOutputStream());
+        } catch (IOException e) {
+            // The client will see the connection drop
+        } finally {
+            safeClose(socket);
+            unRegisterConnection(socket);
+        }
+    }
+
     /**
      * Stop the server.
      */
@@ -385,6 +432,13 @@ public abstract class NanoHTTPD {
         this.asyncRunner = asyncRunner;
     }
 
+    /**
+     * @return the current strategy for handling threads.
+     */
+    public AsyncRunner getAsyncRunner() {
+        return asyncRunner;
+    }
+
     // ------------------------------------------------------------------------------- //
     //
     // Temp file handling strategy.
@@ -418,6 +472,9 @@ public abstract class NanoHTTPD {
 
     /**
      * Pluggable strategy for asynchronously executing requests.
+     * <p/>
+     * <p>A runner may throw a {@link RejectedExecutionException} if it can't take any more
+     * requests, the connection is then answered with a 503 and closed.</p>
      */
     public interface AsyncRunner {
         void exec(Runnable code);
@@ -478,6 +535,168 @@ public abstract class NanoHTTPD {
         }
     }
 
+    /**
+     * Bounded threading strategy for NanoHttpd.
+     * <p/>
+     * <p>Requests are run on a fixed number of worker threads, with a limited queue of
+     * connections waiting for a worker. Once the queue is full new connections are rejected.
+     * Idle workers are stopped after a minute.</p>
+     * <p/>
+     * <p>In virtual thread mode every request gets its own virtual thread instead, and the
+     * worker count plus the queue size limit how many requests can be in flight. If the JVM
+     * doesn't support virtual threads the worker pool is used.</p>
+     */
+    public static class PooledAsyncRunner implements AsyncRunner {
+        private final int maxThreads;
+        private final int queueSize;
+        private final ExecutorService executor;
+        private final ArrayBlockingQueue<Runnable> queue;
+        private final Semaphore permits;
+        private final AtomicInteger active = new AtomicInteger(0);
+        private final AtomicLong completed = new AtomicLong(0);
+        private final AtomicLong rejected = new AtomicLong(0);
+
+        /**
+         * @param maxThreads the number of worker threads.
+         * @param queueSize the number of connections that can wait for a worker.
+         * @param virtual true to run each request on a virtual thread if possible.
+         */
+        public PooledAsyncRunner(int maxThreads, int queueSize, boolean virtual) {
+            this.maxThreads = Math.max(1, maxThreads);
+            this.queueSize = Math.max(1, queueSize);
+            ExecutorService virtualExecutor = virtual ? newVirtualExecutor() : null;
+            if (virtualExecutor != null) {
+                this.executor = virtualExecutor;
+                this.queue = null;
+                this.permits = new Semaphore(this.maxThreads + this.queueSize);
+            } else {
+                this.queue = new ArrayBlockingQueue<Runnable>(this.queueSize);
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(this.maxThreads, this.maxThreads, 60, TimeUnit.SECONDS, this.queue, new ThreadFactory() {
+                    private final AtomicLong threadCount = new AtomicLong(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setDaemon(true);
+                        t.setName("NanoHttpd Request Processor (#" + threadCount.incrementAndGet() + ")");
+                        return t;
+                    }
+                });
+                pool.allowCoreThreadTimeOut(true);
+                this.executor = pool;
+                this.permits = null;
+            }
+        }
+
+        /**
+         * @return an executor that starts a virtual thread per task, or null if the JVM doesn't have them.
+         */
+        private static ExecutorService newVirtualExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void exec(final Runnable code) {
+            if (this.permits != null && !this.permits.tryAcquire()) {
+                this.rejected.incrementAndGet();
+                throw new RejectedExecutionException("Too many requests in flight");
+            }
+            try {
+                this.executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        active.incrementAndGet();
+                        try {
+                            code.run();
+                        } finally {
+                            active.decrementAndGet();
+                            completed.incrementAndGet();
+                            if (permits != null) {
+                                permits.release();
+                            }
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                this.rejected.incrementAndGet();
+                if (this.permits != null) {
+                    this.permits.release();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * @return true if connections are waiting for a worker, or no more can be taken.
+         */
+        public boolean isBusy() {
+            if (this.permits != null) {
+                return this.permits.availablePermits() == 0;
+            }
+            return !this.queue.isEmpty();
+        }
+
+        /**
+         * @return true if requests are run on virtual threads.
+         */
+        public boolean isVirtual() {
+            return this.queue == null;
+        }
+
+        /**
+         * @return the number of worker threads.
+         */
+        public int getMaxThreads() {
+            return this.maxThreads;
+        }
+
+        /**
+         * @return the number of connections that can wait for a worker.
+         */
+        public int getQueueSize() {
+            return this.queueSize;
+        }
+
+        /**
+         * @return the number of requests being handled right now.
+         */
+        public int getActiveCount() {
+            return this.active.get();
+        }
+
+        /**
+         * @return the number of connections waiting for a worker.
+         */
+        public int getQueuedCount() {
+            return this.queue == null ? 0 : this.queue.size();
+        }
+
+        /**
+         * @return the number of connections that have been handled.
+         */
+        public long getCompletedCount() {
+            return this.completed.get();
+        }
+
+        /**
+         * @return the number of connections turned away because the runner was full.
+         */
+        public long getRejectedCount() {
+            return this.rejected.get();
+        }
+
+        /**
+         * Stop accepting requests, the running ones are left to finish.
+         */
+        public void shutdown() {
+            this.executor.shutdown();
+        }
+    }
+
     /**
      * Default strategy for creating and cleaning up temporary files.
      * <p/>
@@ -659,9 +878,10 @@ public abstract class NanoHTTPD {
                     sendAsFixedLength(outputStream, pw);
                 }
                 outputStream.flush();
-                safeClose(data);
             } catch (IOException ioe) {
                 // Couldn't write? No can do.
+            } finally {
+                safeClose(data);
             }
         }
 
@@ -677,6 +897,8 @@ public abstract class NanoHTTPD {
                 outputStream.write(String.format("%x\r\n", read).getBytes());
                 outputStream.write(buff, 0, read);
                 outputStream.write(CRLF);
+                // Streamed responses need each chunk sent as it's produced
+                outputStream.flush();
             }
             outputStream.write(String.format("0\r\n\r\n").getBytes());
         }
@@ -746,7 +968,8 @@ public abstract class NanoHTTPD {
             OK(200, "OK"), CREATED(201, "Created"), ACCEPTED(202, "Accepted"), NO_CONTENT(204, "No Content"), PARTIAL_CONTENT(206, "Partial Content"), REDIRECT(301,
                 "Moved Permanently"), NOT_MODIFIED(304, "Not Modified"), BAD_REQUEST(400, "Bad Request"), UNAUTHORIZED(401,
                 "Unauthorized"), FORBIDDEN(403, "Forbidden"), NOT_FOUND(404, "Not Found"), METHOD_NOT_ALLOWED(405, "Method Not Allowed"), RANGE_NOT_SATISFIABLE(416,
-                "Requested Range Not Satisfiable"), INTERNAL_ERROR(500, "Internal Server Error");
+                "Requested Range Not Satisfiable"), INTERNAL_ERROR(500, "Internal Server Error"), SERVICE_UNAVAILABLE(503,
+                "Service Unavailable");
             private final int requestStatus;
             private final String description;
 
@@ -837,6 +1060,7 @@ public abstract class NanoHTTPD {
         private Map<String, String> headers;
         private CookieHandler cookies;
         private String queryParameterString;
+        private Socket socket;
 
         public HTTPSession(TempFileManager tempFileManager, InputStream inputStream, OutputStream outputStream) {
             this.tempFileManager = tempFileManager;
@@ -855,6 +1079,15 @@ public abstract class NanoHTTPD {
             headers.put("http-client-ip", remoteIp);
         }
 
+        /**
+         * A session that sets the read timeout back once a request starts, so a short
+         * Keep-Alive timeout only applies while waiting between requests.
+         */
+        public HTTPSession(TempFileManager tempFileManager, InputStream inputStream, OutputStream outputStream, Socket socket) {
+            this(tempFileManager, inputStream, outputStream, socket.getInetAddress());
+            this.socket = socket;
+        }
+
         @Override
         public void execute() throws IOException {
             try {
@@ -880,6 +1113,9 @@ public abstract class NanoHTTPD {
                         safeClose(outputStream);
                         throw new SocketException("NanoHttpd Shutdown");
                     }
+                    if (socket != null) {
+                        socket.setSoTimeout(SOCKET_READ_TIMEOUT);
+                    }
                     while (read > 0) {
                         rlen += read;
                         splitbyte = findHeaderEnd(buf, rlen);
@@ -4,30 +4,37 @@ import com.sb.elsinore.devices.OutputDevice;
 
 import java.math.BigDecimal;
 
-import jGPIO.InvalidGPIOException;
-
 /**
  * OutputControl controls multiple output GPIOs.
  * Heat_SSR is a GPIO pin that represents a heating output.
  * Cool_SSR is a GPIO pin that represents a cooling output.
+ * The outputs are switched by the {@link OutputScheduler}.
  * @author Doug Edey
  *
  */
-public final class OutputControl implements Runnable {
+public final class OutputControl {
 
-    public boolean shuttingDown = false;
-    private OutputDevice cooler = null;
-    private OutputDevice heater = null;
+    private volatile OutputDevice cooler = null;
+    private volatile OutputDevice heater = null;
 
     /**
      * The Duty cycle.
      * Initialized to ZERO to prevent use of duty before it is set.
      */
     private BigDecimal fDuty = BigDecimal.ZERO;
+    /**
+     * The duty as a double, for the scheduler.
+     */
+    private volatile double dutyValue = 0;
 
     private String status = "off";
+    /**
+     * The status version this output last changed at.
+     */
+    private final StatusVersion statusVersion = new StatusVersion();
 
     public OutputControl() {
+        OutputScheduler.register(this);
     }
 
     /**
@@ -41,9 +48,22 @@ public final class OutputControl implements Runnable {
            // just for heating
         heater = new OutputDevice(aName, fGPIO, cycleTime);
         //cooler = new OutputDevice(aName, null, cycle_time);
+        OutputScheduler.register(this);
 
    }
 
+    /**
+     * An output that isn't registered with the {@link OutputScheduler}, for
+     * the tests to add and drive themselves.
+     * @param newHeater The heating output, may be null.
+     * @param newCooler The cooling output, may be null.
+     */
+    OutputControl(final OutputDevice newHeater,
+            final OutputDevice newCooler) {
+        this.heater = newHeater;
+        this.cooler = newCooler;
+    }
+
    /**
     * Set the current cooling information.
     * @param gpio The GPIO to use for the cooling output
@@ -68,76 +88,12 @@ public final class OutputControl implements Runnable {
    }
 
 
-   /**
-    * The main loop that checks and activates the outputs.
-    * Based on the duty cycle and time.
-    */
-   @Override
-   public void run() {
-        try {
-             while (true) {
-
-                 try {
-                     BrewServer.LOG.info("Fduty: " + this.fDuty);
-                     if (fDuty.compareTo(BigDecimal.ZERO) == 0) {
-                         status = "off";
-                         if (getHeater() != null) {
-                             getHeater().turnOff();
-                         }
-                         if (getCooler() != null) {
-                             getCooler().turnOff();
-                         }
-                         //Need to sleep because we're not running a cycle
-                         Thread.sleep(1000);
-                     } else if (fDuty.compareTo(BigDecimal.ZERO) < 0) {
-                         status = "cooling";
-                         if (getHeater() != null) {
-                             getHeater().turnOff();
-                         }
-                         if (getCooler() != null) {
-                             getCooler().runCycle(fDuty.negate());
-                         }
-                     } else {
-                         status = "heating";
-                         if (getCooler() != null) {
-                             getCooler().turnOff();
-                         }
-                         if (getHeater() != null) {
-                             getHeater().runCycle(fDuty);
-                         }
-                     }
-                 } catch (InterruptedException e) {
-                     // Sleep interrupted, why did we wakeup
-                     if (this.shuttingDown) {
-                         return;
-                     }
-                 }
-             } // end the while loop
-
-         } catch (RuntimeException e) {
-             BrewServer.LOG.warning(
-                 "Could not control the GPIO Pin during loop."
-                 + " Did you start as root?");
-             e.printStackTrace();
-        } catch (InvalidGPIOException e1) {
-             BrewServer.LOG.warning(e1.getMessage());
-             e1.printStackTrace();
-         } finally {
-             BrewServer.LOG.warning("Output Control turning off outputs");
-             if (getHeater() != null) {
-                 getHeater().turnOff();
-             }
-             if (getCooler() != null) {
-                 getCooler().turnOff();
-             }
-        }
-    }
-
     /**
-     * Shutdown the thread.
+     * Stop switching the outputs and turn them off.
      */
     public void shutdown() {
         BrewServer.LOG.info("Shutting down OC");
+        OutputScheduler.unregister(this);
         if (getHeater() != null) {
             getHeater().turnOff();
             getHeater().disable();
@@ -155,6 +111,23 @@ public final class OutputControl implements Runnable {
         return status;
    }
 
+    /**
+     * @param newStatus The new status of this object.
+     */
+    void setStatus(final String newStatus) {
+        if (!this.status.equals(newStatus)) {
+            this.status = newStatus;
+            this.statusVersion.changed();
+        }
+    }
+
+    /**
+     * @return The status version this output last changed at.
+     */
+    public long getStatusVersion() {
+        return this.statusVersion.get();
+    }
+
    /**
     * @param duty The duty to set this control with.
     */
@@ -171,10 +144,20 @@ public final class OutputControl implements Runnable {
             return false;
         }
         this.fDuty = duty;
+        this.dutyValue = duty.doubleValue();
         BrewServer.LOG.info("IN: " + duty + " OUT: " + fDuty);
+        this.statusVersion.changed();
+        OutputScheduler.wake();
         return true;
     }
 
+    /**
+     * @return The current duty cycle, without locking.
+     */
+    double getDutyValue() {
+        return this.dutyValue;
+    }
+
     /**
      * @return The current duty cycle
      */
@@ -0,0 +1,585 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.devices.OutputDevice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives every {@link OutputControl} from one thread, instead of a thread
+ * per output sleeping through its on and off times.
+ *
+ * Each output runs time proportioned cycles against absolute
+ * System.nanoTime() deadlines, so the cycles don't drift. A new duty is
+ * picked up at the next cycle boundary, so a PID update never cuts a cycle
+ * short. The exceptions are turning off, and switching between heating and
+ * cooling, which happen straight away. When an output starts from off its
+ * first cycle is delayed by a small per output phase offset, so heaters
+ * that are turned on together don't all switch on in the same instant.
+ *
+ * If a maximum load is set ({@link LaunchControl#maxLoadWatts}) the outputs
+ * with a wattage share it. An output only switches on if it fits under the
+ * maximum with everything else that is on, otherwise it waits until
+ * something switches off, so the on times are staggered through the cycle
+ * rather than stacked at the start. Any on time that doesn't fit in the
+ * cycle is carried over to the next one, up to a cycle's worth, so the duty
+ * is kept over time. The outputs that are furthest behind go first, then
+ * the ones that have waited longest, and an output gives up its share at
+ * each of its cycle boundaries so one that is always on can't keep it. An
+ * output that had to wait starts its cycle again when it switches on.
+ *
+ * The scheduler measures how late it is for each switch, see
+ * {@link #getAverageError()} and {@link #getMaxError()}.
+ *
+ * @author Doug Edey
+ */
+public final class OutputScheduler {
+
+    /** The gap between the phase offsets of each output, in milliseconds. */
+    public static final long PHASE_STEP = 250;
+    /** The largest phase offset, in milliseconds. */
+    public static final long MAX_PHASE = 1000;
+    /** The longest the scheduler sleeps without checking the outputs. */
+    private static final long MAX_SLEEP = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * No switch off is due. System.nanoTime() can be negative, so this
+     * can't be -1.
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private static final Object lock = new Object();
+    private static final List<Channel> channels = new ArrayList<>();
+    private static Thread thread = null;
+    private static boolean running = false;
+    private static int registered = 0;
+
+    /** The watts of the outputs that are on. */
+    private static int load = 0;
+    private static int peakLoad = 0;
+    private static long deferred = 0;
+    private static long events = 0;
+    private static double averageError = 0;
+    private static double maxError = 0;
+
+    private OutputScheduler() {
+    }
+
+    /**
+     * Start driving an output.
+     * @param control The output to drive.
+     */
+    public static void register(final OutputControl control) {
+        synchronized (lock) {
+            if (add(control)) {
+                start();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Add an output without starting the scheduler thread, the tests drive
+     * it with {@link #service(long)}.
+     * @param control The output to drive.
+     * @return False if the output was already being driven.
+     */
+    static boolean add(final OutputControl control) {
+        synchronized (lock) {
+            for (Channel channel : channels) {
+                if (channel.control == control) {
+                    return false;
+                }
+            }
+            long phase = (registered++ * PHASE_STEP) % (MAX_PHASE + 1);
+            channels.add(new Channel(control,
+                    TimeUnit.MILLISECONDS.toNanos(phase)));
+            return true;
+        }
+    }
+
+    /**
+     * Drop every output and start the counts again, for the tests.
+     */
+    static void reset() {
+        synchronized (lock) {
+            for (Channel channel : channels) {
+                channel.release();
+            }
+            channels.clear();
+            registered = 0;
+            load = 0;
+            peakLoad = 0;
+            deferred = 0;
+            events = 0;
+            averageError = 0;
+            maxError = 0;
+        }
+    }
+
+    /**
+     * Stop driving an output, it's left as it is.
+     * @param control The output to stop driving.
+     */
+    public static void unregister(final OutputControl control) {
+        synchronized (lock) {
+            for (int i = 0; i < channels.size(); i++) {
+                if (channels.get(i).control == control) {
+                    channels.remove(i).release();
+                    lock.notifyAll();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check the outputs now, called when a duty changes.
+     */
+    public static void wake() {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stop the scheduler thread.
+     */
+    public static void shutdown() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return The number of outputs being driven.
+     */
+    public static int getOutputCount() {
+        synchronized (lock) {
+            return channels.size();
+        }
+    }
+
+    /**
+     * @return The number of on and off switches made.
+     */
+    public static long getEventCount() {
+        synchronized (lock) {
+            return events;
+        }
+    }
+
+    /**
+     * @return The recent average lateness of a switch, in milliseconds.
+     */
+    public static double getAverageError() {
+        synchronized (lock) {
+            return averageError;
+        }
+    }
+
+    /**
+     * @return The latest a switch has been, in milliseconds.
+     */
+    public static double getMaxError() {
+        synchronized (lock) {
+            return maxError;
+        }
+    }
+
+    /**
+     * @return The watts of the outputs that are on now.
+     */
+    public static int getLoad() {
+        synchronized (lock) {
+            return load;
+        }
+    }
+
+    /**
+     * @return The most watts that have been on at once.
+     */
+    public static int getPeakLoad() {
+        synchronized (lock) {
+            return peakLoad;
+        }
+    }
+
+    /**
+     * @return The number of times an output had to wait for the load.
+     */
+    public static long getDeferredCount() {
+        synchronized (lock) {
+            return deferred;
+        }
+    }
+
+    private static void start() {
+        if (thread != null && thread.isAlive()) {
+            return;
+        }
+        running = true;
+        thread = new Thread("Output-Scheduler") {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        };
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Service every output, then sleep until the next deadline or a duty
+     * change.
+     */
+    private static void runLoop() {
+        synchronized (lock) {
+            while (running) {
+                long next = service(System.nanoTime());
+                long wait = Math.min(next - System.nanoTime(), MAX_SLEEP);
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Make every switch that is due.
+     * @param now The current System.nanoTime().
+     * @return When the outputs next need servicing, Long.MAX_VALUE if none
+     * of them are running.
+     */
+    static long service(final long now) {
+        synchronized (lock) {
+            long next = Long.MAX_VALUE;
+            for (Channel channel : channels) {
+                long deadline;
+                try {
+                    deadline = channel.service(now);
+                } catch (RuntimeException e) {
+                    BrewServer.LOG.warning(
+                        "Could not control the GPIO Pin during loop."
+                        + " Did you start as root? " + e.getMessage());
+                    deadline = now + MAX_SLEEP;
+                }
+                next = Math.min(next, deadline);
+            }
+            return Math.min(next, admit(now));
+        }
+    }
+
+    /**
+     * Switch on the waiting outputs that fit under the maximum load, the
+     * ones that are furthest behind first. Every output starting a cycle
+     * waits here, so one that is always on doesn't keep the load from the
+     * others.
+     * @param now The current System.nanoTime().
+     * @return When the first of them switches off again.
+     */
+    private static long admit(final long now) {
+        long next = Long.MAX_VALUE;
+        while (true) {
+            Channel best = null;
+            for (Channel channel : channels) {
+                if (channel.waiting && fits(channel.watts())
+                        && (best == null || channel.isBefore(best))) {
+                    best = channel;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            best.admit(now);
+            next = Math.min(next, best.offAt);
+        }
+        for (Channel channel : channels) {
+            if (channel.waiting && !channel.held) {
+                // Has to wait for something else to switch off
+                channel.held = true;
+                channel.device.turnOff();
+                deferred++;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @param watts The watts of an output.
+     * @return True if the output can switch on without going over the
+     * maximum load. An output bigger than the maximum can only run alone.
+     */
+    private static boolean fits(final int watts) {
+        return LaunchControl.maxLoadWatts <= 0 || watts <= 0 || load == 0
+                || load + watts <= LaunchControl.maxLoadWatts;
+    }
+
+    /**
+     * Record how late a switch was.
+     * @param late The lateness in nanoseconds.
+     */
+    private static void recordError(final long late) {
+        double millis = Math.max(0, late) / 1000000.0;
+        events++;
+        averageError = events == 1 ? millis
+                : averageError + 0.05 * (millis - averageError);
+        if (millis > maxError) {
+            maxError = millis;
+        }
+    }
+
+    /**
+     * The cycle state of one output control.
+     */
+    private static final class Channel {
+        private final OutputControl control;
+        private final long phase;
+        private boolean active = false;
+        private double applied = 0;
+        private OutputDevice device = null;
+        private long nextStart = 0;
+        private long offAt = NEVER;
+        /** True while the device is on and counted in the load. */
+        private boolean on = false;
+        private int onWatts = 0;
+        /** True while waiting for the load to switch on. */
+        private boolean waiting = false;
+        /** When it started waiting. */
+        private long waitingSince = 0;
+        /** True once it has waited for another output this cycle. */
+        private boolean held = false;
+        private long cycleStart = 0;
+        /** The on time wanted in this cycle, in nanoseconds. */
+        private long owed = 0;
+        /** The on time carried over from earlier cycles, in nanoseconds. */
+        private long debt = 0;
+        private long cycle = 0;
+
+        private Channel(final OutputControl control, final long phase) {
+            this.control = control;
+            this.phase = phase;
+        }
+
+        /**
+         * Make any switches that are due.
+         * @param now The current System.nanoTime().
+         * @return When this output next needs servicing.
+         */
+        private long service(final long now) {
+            double duty = this.control.getDutyValue();
+            if (duty == 0) {
+                // Turning off is always immediate
+                if (this.active) {
+                    stop();
+                }
+                return Long.MAX_VALUE;
+            }
+            if (this.active && Math.signum(duty) != Math.signum(this.applied)
+                    && this.applied != 0) {
+                // Switching between heating and cooling is immediate too
+                stop();
+            }
+            if (!this.active) {
+                this.active = true;
+                this.nextStart = now + this.phase;
+                this.offAt = NEVER;
+            }
+
+            if (now >= this.nextStart) {
+                // The new cycle decides whether the device stays on
+                recordError(now - this.nextStart);
+                begin(now, duty);
+            } else if (this.offAt != NEVER && now >= this.offAt) {
+                recordError(now - this.offAt);
+                switchOff();
+            }
+            return Math.min(this.offAt, this.nextStart);
+        }
+
+        /**
+         * Start a new cycle with the current duty.
+         */
+        private void begin(final long now, final double duty) {
+            long start = this.nextStart;
+            OutputDevice heater = this.control.getHeater();
+            OutputDevice cooler = this.control.getCooler();
+            OutputDevice previous = this.device;
+            this.applied = duty;
+            if (duty > 0) {
+                this.control.setStatus("heating");
+                if (cooler != null) {
+                    cooler.turnOff();
+                }
+                this.device = heater;
+            } else {
+                this.control.setStatus("cooling");
+                if (heater != null) {
+                    heater.turnOff();
+                }
+                this.device = cooler;
+            }
+            if (this.waiting) {
+                // Never got to switch on last cycle
+                this.debt += this.owed;
+            }
+            if (previous != this.device) {
+                this.debt = 0;
+            }
+            release();
+
+            this.cycle = TimeUnit.SECONDS.toNanos(1);
+            this.offAt = NEVER;
+            this.owed = 0;
+            if (this.device != null) {
+                this.cycle = TimeUnit.MILLISECONDS.toNanos(
+                        Math.max(1, this.device.getCycleMillis()));
+                long onTime = TimeUnit.MILLISECONDS.toNanos(
+                        this.device.getOnTime(Math.abs(duty)));
+                if (onTime > 0) {
+                    long wanted = onTime + this.debt;
+                    this.owed = Math.min(wanted, this.cycle);
+                    this.debt = Math.min(wanted - this.owed, this.cycle);
+                } else {
+                    this.debt = 0;
+                }
+            }
+            // Absolute deadlines, unless we've fallen a whole cycle behind
+            this.nextStart = start + this.cycle;
+            if (this.nextStart <= now) {
+                start = now;
+                this.nextStart = now + this.cycle;
+            }
+
+            this.cycleStart = start;
+            this.held = false;
+            if (this.owed > 0) {
+                // Switched on by admit(), in turn with the other outputs
+                if (!this.waiting) {
+                    this.waiting = true;
+                    this.waitingSince = start;
+                }
+            } else {
+                this.waiting = false;
+                if (this.device != null) {
+                    this.device.turnOff();
+                }
+            }
+        }
+
+        /**
+         * Switch on after waiting for the load.
+         * @param now The current System.nanoTime().
+         */
+        private void admit(final long now) {
+            if (this.held) {
+                // Waited for another output, start the cycle again now so
+                // the whole on time fits
+                this.nextStart = now + this.cycle;
+                switchOn(now);
+            } else {
+                switchOn(this.cycleStart);
+            }
+        }
+
+        /**
+         * Switch the device on for what's owed, or to the end of the cycle.
+         * @param from When the on time starts.
+         */
+        private void switchOn(final long from) {
+            this.waiting = false;
+            this.on = true;
+            this.onWatts = watts();
+            load += this.onWatts;
+            peakLoad = Math.max(peakLoad, load);
+            this.device.turnOn();
+            long left = this.nextStart - from;
+            if (this.owed < left) {
+                this.offAt = from + this.owed;
+            } else {
+                // Carry what doesn't fit, it stays on into the next cycle
+                this.debt = Math.min(this.debt + this.owed - left, this.cycle);
+                this.offAt = NEVER;
+            }
+            this.owed = 0;
+        }
+
+        /**
+         * Switch the device off at the end of its on time.
+         */
+        private void switchOff() {
+            if (this.device != null) {
+                this.device.turnOff();
+            }
+            this.offAt = NEVER;
+            release();
+        }
+
+        /**
+         * Take this output out of the load.
+         */
+        private void release() {
+            if (this.on) {
+                load -= this.onWatts;
+                this.on = false;
+                this.onWatts = 0;
+            }
+        }
+
+        /**
+         * @return The watts of the device for this cycle.
+         */
+        private int watts() {
+            return this.device == null ? 0 : this.device.getWatts();
+        }
+
+        /**
+         * @return How far behind this output is, in nanoseconds.
+         */
+        private long behind() {
+            return this.owed + this.debt;
+        }
+
+        /**
+         * @param other Another waiting output.
+         * @return True if this output should switch on first, it is
+         * further behind or has waited longer.
+         */
+        private boolean isBefore(final Channel other) {
+            if (behind() != other.behind()) {
+                return behind() > other.behind();
+            }
+            return this.waitingSince - other.waitingSince < 0;
+        }
+
+        /**
+         * Turn both outputs off and wait for the next duty.
+         */
+        private void stop() {
+            OutputDevice heater = this.control.getHeater();
+            OutputDevice cooler = this.control.getCooler();
+            if (heater != null) {
+                heater.turnOff();
+            }
+            if (cooler != null) {
+                cooler.turnOff();
+            }
+            release();
+            this.control.setStatus("off");
+            this.active = false;
+            this.applied = 0;
+            this.device = null;
+            this.offAt = NEVER;
+            this.waiting = false;
+            this.owed = 0;
+            this.debt = 0;
+        }
+    }
+}
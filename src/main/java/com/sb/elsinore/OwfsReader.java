@@ -0,0 +1,252 @@
+package com.sb.elsinore;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.owfs.jowfsclient.OwfsConnection;
+import org.owfs.jowfsclient.OwfsException;
+
+/**
+ * Reads the OWFS temperature probes in sweeps.
+ *
+ * A sweep writes simultaneous/temperature once, so every DS18x20 on every
+ * bus owserver has starts converting together, then reads each registered
+ * probe in one pass. Probes asking again within the same sweep get the
+ * cached value, so a bus of ten probes costs one conversion and ten reads
+ * instead of ten conversions and twenty round trips.
+ *
+ * Whether a path exists is remembered rather than asked before every read,
+ * and reconnecting after an error backs off from {@link #MIN_BACKOFF} up to
+ * {@link #MAX_BACKOFF}, instead of reconnecting the shared connection on
+ * every failed read.
+ *
+ * @author Doug Edey
+ */
+public final class OwfsReader {
+
+    /** The path that starts a conversion on every temperature probe. */
+    public static final String SIMULTANEOUS = "simultaneous/temperature";
+    /** The first wait before reconnecting, in milliseconds. */
+    public static long MIN_BACKOFF = 1000;
+    /** The longest wait before reconnecting, in milliseconds. */
+    public static long MAX_BACKOFF = 60 * 1000;
+    /** How long to remember that a path doesn't exist, in milliseconds. */
+    public static long MISSING_TTL = 30 * 1000;
+    /** OWFS's error for a path that doesn't exist. */
+    private static final String NOT_FOUND = "Error -1";
+
+    /** Every probe read in a sweep. */
+    private static final Set<String> probes = Collections.newSetFromMap(
+            new ConcurrentHashMap<String, Boolean>());
+    /** The probes that were read in the last sweep. */
+    private static volatile Set<String> swept = Collections.emptySet();
+    /** The readings from the last sweep, keyed by probe address. */
+    private static final ConcurrentHashMap<String, String> readings =
+            new ConcurrentHashMap<>();
+    /** Paths that exist, or when they were found not to. */
+    private static final ConcurrentHashMap<String, Long> knownPaths =
+            new ConcurrentHashMap<>();
+    private static final Long EXISTS = Long.valueOf(-1);
+    private static final Object sweepLock = new Object();
+
+    private static volatile long sweepTime = 0;
+    private static volatile long sweepDuration = 0;
+    private static long backoff = 0;
+    private static long nextReconnect = 0;
+
+    private OwfsReader() {
+    }
+
+    /**
+     * Get the temperature of a probe from the current sweep, starting a new
+     * sweep if the last one is older than the sensor interval.
+     * @param address The OWFS address of the probe.
+     * @return The raw temperature, or "" if the probe couldn't be read.
+     * @throws IOException If the connection failed.
+     * @throws OwfsException If OWFS returned an error.
+     */
+    public static String readTemperature(final String address)
+            throws IOException, OwfsException {
+        probes.add(address);
+        synchronized (sweepLock) {
+            long age = System.currentTimeMillis() - sweepTime;
+            if (age >= LaunchControl.sensorInterval) {
+                sweep();
+            } else if (!swept.contains(address)) {
+                // New since the last sweep, read it on its own until the next
+                String value = read(address + "/temperature");
+                if (!value.equals("")) {
+                    readings.put(address, value);
+                }
+            }
+            String value = readings.get(address);
+            return value == null ? "" : value;
+        }
+    }
+
+    /**
+     * Stop reading a probe in the sweeps.
+     * @param address The OWFS address of the probe.
+     */
+    public static void unregister(final String address) {
+        probes.remove(address);
+        readings.remove(address);
+    }
+
+    /**
+     * Read a single path, using the cached existence check.
+     * @param path The path to read.
+     * @return The trimmed value, or "" if the path doesn't exist.
+     * @throws IOException If the connection failed.
+     * @throws OwfsException If OWFS returned an error.
+     */
+    public static String read(final String path)
+            throws IOException, OwfsException {
+        OwfsConnection connection = getConnection();
+        if (connection == null || !exists(connection, path)) {
+            return "";
+        }
+        try {
+            String result = connection.read(path);
+            connected();
+            return result == null ? "" : result.trim();
+        } catch (OwfsException e) {
+            if (NOT_FOUND.equals(e.getMessage())) {
+                missing(path);
+                return "";
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reconnect to owserver after an error, unless it was tried too
+     * recently. Each failed attempt doubles the wait.
+     */
+    public static void reconnect() {
+        synchronized (sweepLock) {
+            long now = System.currentTimeMillis();
+            if (now < nextReconnect) {
+                return;
+            }
+            backoff = backoff == 0 ? MIN_BACKOFF
+                    : Math.min(backoff * 2, MAX_BACKOFF);
+            nextReconnect = now + backoff;
+            BrewServer.LOG.info("Reconnecting OWFS, next attempt in at least "
+                    + backoff + "ms");
+            knownPaths.clear();
+            readings.clear();
+            swept = Collections.emptySet();
+            LaunchControl.setupOWFS();
+        }
+    }
+
+    /**
+     * @return The time the last sweep took, in milliseconds.
+     */
+    public static long getSweepDuration() {
+        return sweepDuration;
+    }
+
+    /**
+     * @return The number of probes read in each sweep.
+     */
+    public static int getProbeCount() {
+        return probes.size();
+    }
+
+    /**
+     * Start a conversion on every probe and read them all.
+     */
+    private static void sweep() throws IOException, OwfsException {
+        long start = System.currentTimeMillis();
+        OwfsConnection connection = getConnection();
+        if (connection == null) {
+            return;
+        }
+        readings.clear();
+        Set<String> sweeping = new HashSet<>(probes);
+        if (exists(connection, SIMULTANEOUS)) {
+            connection.write(SIMULTANEOUS, "1");
+        }
+        for (String address : sweeping) {
+            String path = address + "/temperature";
+            if (!exists(connection, path)) {
+                continue;
+            }
+            try {
+                String value = connection.read(path);
+                if (value != null && !value.trim().equals("")) {
+                    readings.put(address, value.trim());
+                }
+            } catch (OwfsException e) {
+                if (!NOT_FOUND.equals(e.getMessage())) {
+                    throw e;
+                }
+                missing(path);
+            }
+        }
+        connected();
+        swept = sweeping;
+        sweepTime = System.currentTimeMillis();
+        sweepDuration = sweepTime - start;
+    }
+
+    /**
+     * @return The connection, or null if there isn't one yet.
+     */
+    private static OwfsConnection getConnection() {
+        if (LaunchControl.owfsConnection == null) {
+            reconnect();
+        }
+        if (LaunchControl.owfsConnection == null) {
+            BrewServer.LOG.info("no OWFS connection");
+        }
+        return LaunchControl.owfsConnection;
+    }
+
+    /**
+     * Check if a path exists, asking OWFS only if it's not known or was
+     * missing a while ago.
+     */
+    private static boolean exists(final OwfsConnection connection,
+            final String path) throws IOException, OwfsException {
+        Long known = knownPaths.get(path);
+        if (known != null && (known.equals(EXISTS)
+                || System.currentTimeMillis() - known < MISSING_TTL)) {
+            return known.equals(EXISTS);
+        }
+        boolean exists;
+        try {
+            exists = Boolean.TRUE.equals(connection.exists(path));
+        } catch (OwfsException e) {
+            if (!NOT_FOUND.equals(e.getMessage())) {
+                throw e;
+            }
+            exists = false;
+        }
+        if (exists) {
+            knownPaths.put(path, EXISTS);
+        } else {
+            missing(path);
+        }
+        return exists;
+    }
+
+    private static void missing(final String path) {
+        knownPaths.put(path, System.currentTimeMillis());
+    }
+
+    /**
+     * A read worked, so the next failure starts backing off from scratch.
+     */
+    private static void connected() {
+        synchronized (sweepLock) {
+            backoff = 0;
+            nextReconnect = 0;
+        }
+    }
+}
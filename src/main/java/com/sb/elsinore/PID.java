@@ -1,13 +1,10 @@
 package com.sb.elsinore;
 import com.sb.elsinore.devices.OutputDevice;
-import com.sb.util.MathUtil;
 import jGPIO.InvalidGPIOException;
 import jGPIO.OutPin;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
@@ -21,14 +18,11 @@ import java.util.regex.Pattern;
 public final class PID implements Runnable {
 
     /**
-     * Thousand BigDecimal multiplier.
+     * The full duty cycles, so they aren't created on every comparison.
      */
-    private BigDecimal THOUSAND = new BigDecimal(1000);
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100),
+            MINUS_HUNDRED = BigDecimal.valueOf(-100);
 
-    /**
-     * The Output control thread.
-     */
-    private Thread outputThread = null;
     private boolean invertOutput = false;
     private BigDecimal duty_cycle = new BigDecimal(0);
     private BigDecimal calculatedDuty = new BigDecimal(0);
@@ -42,6 +36,32 @@ public final class PID implements Runnable {
     private BigDecimal minTime = new BigDecimal(0);
 
     private boolean running = true;
+    /**
+     * The control arithmetic, and the settings it uses as doubles. These are
+     * updated whenever the settings change.
+     */
+    private final PIDEngine engine = new PIDEngine();
+    private double setPointValue = 0, heatP = 0, heatI = 0, heatD = 0;
+    private double minValue = 0, maxValue = 0, minTimeValue = 0;
+    private double calculatedDutyValue = 0;
+    /**
+     * The longest to wait for a new reading before running the loop anyway,
+     * so the manual and hysteria timers keep going without a probe.
+     */
+    public static final long MAX_SAMPLE_WAIT = 1000;
+    /**
+     * The thread running the control loop.
+     */
+    private volatile Thread controlThread = null;
+    /**
+     * Milliseconds from a reading being taken to the duty being applied.
+     */
+    private volatile double latencyLast = 0, latencyAverage = 0,
+            latencyMax = 0;
+    /**
+     * The status version this PID last changed at.
+     */
+    private final StatusVersion statusVersion = new StatusVersion();
     /**
      * Inner class to hold the current settings.
      * @author Doug Edey
@@ -58,6 +78,10 @@ public final class PID implements Runnable {
             derivative = new BigDecimal(0),
             delay = new BigDecimal(0);
         boolean inverted = false;
+        /**
+         * The watts drawn by the output, 0 if it's not known.
+         */
+        int watts = 0;
 
         /**
          * Default constructor.
@@ -155,6 +179,8 @@ public final class PID implements Runnable {
         BrewServer.LOG.info(this.heatSetting.proportional + ": "
             + heatSetting.integral + ": " + this.heatSetting.derivative);
         LaunchControl.savePID(this);
+        syncSettings();
+        markChanged();
     }
 
     /****
@@ -192,10 +218,13 @@ public final class PID implements Runnable {
         this.max = newMax;
         this.min = newMin;
         this.minTime = newMinTime;
+        syncSettings();
+        markChanged();
     }
 
     public void useHysteria() {
         this.mode = "hysteria";
+        markChanged();
     }
     /***
      * Main loop for using a PID Thread.
@@ -203,13 +232,12 @@ public final class PID implements Runnable {
     public void run() {
         BrewServer.LOG.info("Running " + this.fName + " PID.");
         // setup the first time
-        this.previousTime = new BigDecimal(System.currentTimeMillis());
+        this.engine.reset(System.currentTimeMillis());
         // create the Output if needed
         if (this.heatGPIO != null && !this.heatGPIO.equals("")) {
             this.outputControl =
                 new OutputControl(fName, heatGPIO, heatSetting.cycle_time);
-            this.outputThread = new Thread(this.outputControl);
-            this.outputThread.start();
+            applyWatts();
         } else {
             return;
         }
@@ -229,79 +257,105 @@ public final class PID implements Runnable {
             }
         }
 
-        // Main loop
+        // Main loop, run once for each new reading
+        this.controlThread = Thread.currentThread();
+        long lastSample = this.fTemp.getSampleCount();
         while (running) {
             try {
+                long sample = this.fTemp.awaitSample(lastSample,
+                        MAX_SAMPLE_WAIT);
+                boolean fresh = sample != lastSample;
+                lastSample = sample;
                 synchronized (this.fTemp) {
                     // do the bulk of the work here
                     this.fTempC = this.fTemp.getTempC();
                     this.fTempF = this.fTemp.getTempF();
-                    this.currentTime = new BigDecimal(this.fTemp.getTime());
+                    this.currentTime = this.fTemp.getTime();
 
                     // if the GPIO is blank we do not need to do any of this;
                     if (this.outputControl.getHeater() != null
                             || this.outputControl.getCooler() != null) {
-                        if (this.tempList.size() >= 5) {
-                            tempList.remove(0);
+                        if (fresh) {
+                            this.engine.addReading(
+                                    this.fTemp.getTemp().doubleValue());
                         }
-                        tempList.add(fTemp.getTemp());
-                        BigDecimal tempAvg = calcAverage();
                         // we have the current temperature
                         switch (mode) {
                             case "auto":
-                                this.calculatedDuty =
-                                        calculate(tempAvg);
-                                BrewServer.LOG.info(
-                                        "Calculated: " + calculatedDuty);
-                                if (this.outputControl.setDuty(calculatedDuty)) {
-                                    this.outputControl.getHeater().setCycleTime(
-                                            heatSetting.cycle_time);
-                                    this.outputThread.interrupt();
+                                // Only a new reading can change the duty
+                                double newDuty = this.calculatedDutyValue;
+                                if (fresh) {
+                                    newDuty = calculate(
+                                            this.engine.getAverage());
                                 }
+                                if (newDuty != this.calculatedDutyValue) {
+                                    this.calculatedDutyValue = newDuty;
+                                    this.calculatedDuty =
+                                            BigDecimal.valueOf(newDuty);
+                                    markChanged();
+                                    BrewServer.LOG.info(
+                                            "Calculated: " + calculatedDuty);
+                                }
+                                // The cycle time is read at the next cycle
+                                this.outputControl.getHeater().setCycleTime(
+                                        heatSetting.cycle_time);
+                                this.outputControl.setDuty(calculatedDuty);
                                 break;
                             case "manual":
-                                if (this.outputControl.setDuty(this.manual_duty)) {
-                                    this.outputControl.getHeater().setCycleTime(
-                                            this.manual_time);
-                                    this.outputThread.interrupt();
-                                }
+                                this.outputControl.getHeater().setCycleTime(
+                                        this.manual_time);
+                                this.outputControl.setDuty(this.manual_duty);
                                 break;
                             case "off":
                                 this.outputControl.setDuty(BigDecimal.ZERO);
                                 this.outputControl.getHeater().setCycleTime(
                                         heatSetting.cycle_time);
-                                this.outputThread.interrupt();
                                 break;
                             case "hysteria":
                                 setHysteria();
-                                this.outputThread.interrupt();
                                 break;
                         }
+                        if (fresh) {
+                            recordLatency(System.nanoTime()
+                                    - this.fTemp.getSampleNanos());
+                        }
                         BrewServer.LOG.info(mode + ": " + fName + " status: "
                             + fTempF + " duty cycle: "
                             + this.outputControl.getDuty());
                     }
                     //notify all waiters of the change of state
                 }
-
-                //pause execution for a second
-                Thread.sleep(1000);
             } catch (InterruptedException ex) {
+                if (!running) {
+                    break;
+                }
                 BrewServer.LOG.warning("PID " + getName() + " Interrupted.");
-                ex.printStackTrace();
-                Thread.currentThread().interrupt();
             }
         }
     }
 
+    /**
+     * Track the time from a reading to the duty being applied.
+     * @param nanos The latency in nanoseconds.
+     */
+    private void recordLatency(final long nanos) {
+        double millis = nanos / 1000000.0;
+        this.latencyLast = millis;
+        this.latencyAverage = this.latencyAverage == 0 ? millis
+                : this.latencyAverage + 0.1 * (millis - this.latencyAverage);
+        if (millis > this.latencyMax) {
+            this.latencyMax = millis;
+        }
+    }
+
     private boolean minTimePassed() {
-        if (this.timeDiff.compareTo(this.minTime) <= 0) {
-            BigDecimal remaining = this.minTime.subtract(this.timeDiff);
-            if (remaining.compareTo(new BigDecimal(10.0/60.0)) >= 0) {
+        if (this.timeDiff <= this.minTimeValue) {
+            double remaining = this.minTimeValue - this.timeDiff;
+            if (remaining >= 10.0 / 60.0) {
                 LaunchControl.setMessage(
                     "Waiting for minimum time before changing outputs,"
                     + " less than "
-                    + remaining.setScale(0, BigDecimal.ROUND_UP)
+                    + (long) Math.ceil(remaining)
                     + " mins remaining");
             }
             return false;
@@ -318,13 +372,14 @@ public final class PID implements Runnable {
      * @param duty Duty Cycle percentage
      */
     public void setDuty(BigDecimal duty) {
-        if (duty.doubleValue() > 100) {
-            duty = new BigDecimal(100);
-        } else if (duty.doubleValue() < -100) {
-            duty = new BigDecimal(-100);
+        if (duty.compareTo(HUNDRED) > 0) {
+            duty = HUNDRED;
+        } else if (duty.compareTo(MINUS_HUNDRED) < 0) {
+            duty = MINUS_HUNDRED;
         }
 
         this.duty_cycle = duty;
+        markChanged();
     }
 
     /****
@@ -336,6 +391,8 @@ public final class PID implements Runnable {
             temp = BigDecimal.ZERO;
         }
         this.set_point = temp;
+        syncSettings();
+        markChanged();
     }
 
     /*******
@@ -349,6 +406,7 @@ public final class PID implements Runnable {
             BrewServer.LOG.log(Level.INFO,
                 "Could not detect GPIO as valid: " + gpio);
         }
+        markChanged();
     }
 
     /**
@@ -370,6 +428,7 @@ public final class PID implements Runnable {
         } else {
             BrewServer.LOG.info("Aux Pin is not set for " + this.fName);
         }
+        markChanged();
     }
 
     /**
@@ -385,6 +444,7 @@ public final class PID implements Runnable {
      */
     public void setCoolP(final BigDecimal p) {
         coolSetting.proportional = p;
+        markChanged();
     }
 
     /******
@@ -393,6 +453,7 @@ public final class PID implements Runnable {
      */
     public void setCoolI(final BigDecimal i) {
         coolSetting.integral = i;
+        markChanged();
     }
 
     /******
@@ -401,6 +462,7 @@ public final class PID implements Runnable {
      */
     public void setCoolD(final BigDecimal d) {
         coolSetting.derivative = d;
+        markChanged();
     }
 
     /******
@@ -409,6 +471,8 @@ public final class PID implements Runnable {
      */
     public void setHeatP(final BigDecimal p) {
         heatSetting.proportional = p;
+        syncSettings();
+        markChanged();
     }
 
     /******
@@ -417,6 +481,8 @@ public final class PID implements Runnable {
      */
     public void setHeatI(final BigDecimal i) {
         heatSetting.integral = i;
+        syncSettings();
+        markChanged();
     }
 
     /******
@@ -425,6 +491,8 @@ public final class PID implements Runnable {
      */
     public void setHeatD(final BigDecimal d) {
         heatSetting.derivative = d;
+        syncSettings();
+        markChanged();
     }
 
     /*******
@@ -522,6 +590,7 @@ public final class PID implements Runnable {
             this.outputControl.getHeater().setInverted(inverted);
             this.outputControl.getHeater().turnOff();
         }
+        markChanged();
     }
 
     public void setCoolInverted(boolean inverted) {
@@ -530,6 +599,7 @@ public final class PID implements Runnable {
             this.outputControl.getCooler().setInverted(inverted);
             this.outputControl.getCooler().turnOff();
         }
+        markChanged();
     }
 
     /**
@@ -586,30 +656,6 @@ public final class PID implements Runnable {
     }
 
   //PRIVATE ///
-    /**
-     * Store the previous timestamp for the update.
-     */
-    private BigDecimal previousTime = new BigDecimal(0);
-
-    /**
-     * @return Calculate the average of the current temp list
-     */
-    private BigDecimal calcAverage() {
-        int size = tempList.size();
-
-        if (size == 0)
-        {
-            return new BigDecimal(-999.0);
-        }
-
-        BigDecimal total = new BigDecimal(0.0);
-        for (BigDecimal t : tempList) {
-            total = total.add(t);
-        }
-
-        return MathUtil.divide(total, size);
-    }
-
     /**
      * The current temperature Object.
      */
@@ -622,10 +668,6 @@ public final class PID implements Runnable {
      * The GPIO String values.
      */
     private String heatGPIO, auxGPIO, coolGPIO = null;
-    /**
-     * The previous five temperature readings.
-     */
-    private List<BigDecimal> tempList = new ArrayList<>();
 
     /**
      * Various strings.
@@ -634,9 +676,11 @@ public final class PID implements Runnable {
     /**
      * The current timestamp.
      */
-    private BigDecimal currentTime, hysteriaStartTime
-        = new BigDecimal(System.currentTimeMillis());
-    private BigDecimal timeDiff = BigDecimal.ZERO;
+    private long currentTime, hysteriaStartTime = System.currentTimeMillis();
+    /**
+     * The minutes since the hysteria output last changed.
+     */
+    private double timeDiff = 0;
     /**
      * Settings for the heating and cooling.
      */
@@ -647,20 +691,6 @@ public final class PID implements Runnable {
      */
     private OutPin auxPin = null;
 
-    private BigDecimal totalError = new BigDecimal(0.0);
-    private BigDecimal errorFactor = new BigDecimal(0.0);
-    /**
-     *  Temp values for PID calculation.
-     */
-    private BigDecimal previousError = new BigDecimal(0.0);
-    /**
-     *  Temp values for PID calculation.
-     */
-    private BigDecimal integralFactor = new BigDecimal(0.0);
-    /**
-     *  Temp values for PID calculation.
-     */
-    private BigDecimal derivativeFactor = new BigDecimal(0.0);
 
     /**
      * @return Get the current temp probe (for saving)
@@ -672,76 +702,21 @@ public final class PID implements Runnable {
     /*****
      * Calculate the current PID Duty.
      * @param avgTemp The current average temperature
-     * @return  A Double of the duty cycle %
-     */
-    private BigDecimal calculate(BigDecimal avgTemp) {
-        this.currentTime = new BigDecimal(System.currentTimeMillis());
-        if (previousTime.compareTo(BigDecimal.ZERO) == 0) {
-            previousTime = currentTime;
-        }
-        BigDecimal dt = MathUtil.divide(
-                currentTime.subtract(previousTime),THOUSAND);
-        if (dt.compareTo(BigDecimal.ZERO) == 0) {
-            return outputControl.getDuty();
-        }
-
-        // Calculate the error
-        /*
-       Temp values for PID calculation.
+     * @return  The duty cycle %
      */
-        BigDecimal error = this.set_point.subtract(avgTemp);
-
-        if ((this.totalError.add(error).multiply(
-                this.integralFactor).compareTo(new BigDecimal(100)) < 0)
-                && (this.totalError.add(error).multiply(
-                        this.integralFactor).compareTo(new BigDecimal(0)) > 0))
-        {
-            this.totalError = this.totalError.add(error);
-        }
-
-        this.heatSetting.proportional.multiply(error).add(
-                heatSetting.integral.multiply(this.totalError)).add(
-                        heatSetting.derivative.multiply(
-                                error.subtract(this.previousError)));
-
-        BrewServer.LOG.info("DT: " + dt + " Error: " + errorFactor
-            + " integral: " + integralFactor
-            + " derivative: " + derivativeFactor);
-
-        /*
-       Temp values for PID calculation.
-     */
-        BigDecimal output = heatSetting.proportional.multiply(error)
-                .add(heatSetting.integral.multiply(integralFactor))
-                .add(heatSetting.derivative.multiply(derivativeFactor));
-
-        previousError = error;
-
-        if (output.compareTo(BigDecimal.ZERO) < 0
-                && (this.coolGPIO == null || this.coolGPIO.equals(""))) {
-            output = BigDecimal.ZERO;
-        } else if (output.compareTo(BigDecimal.ZERO) > 0
-                && (this.heatGPIO == null || this.heatGPIO.equals(""))) {
-            output = BigDecimal.ZERO;
-        }
-
-        if (output.compareTo(new BigDecimal(100)) > 0) {
-            output = new BigDecimal(100);
-        } else if (output.compareTo(new BigDecimal(-100)) < 0) {
-            output = new BigDecimal(-100);
-        }
-
-        this.previousTime = currentTime;
-        return output;
+    private double calculate(final double avgTemp) {
+        return this.engine.calculate(System.currentTimeMillis(),
+                this.setPointValue, avgTemp, this.heatP, this.heatI,
+                this.heatD, this.calculatedDutyValue,
+                this.heatGPIO != null && !this.heatGPIO.equals(""),
+                this.coolGPIO != null && !this.coolGPIO.equals(""));
     }
 
     /**
      * Used as a shutdown hook to close off everything.
      */
     public void shutdown() {
-        if (outputControl != null && outputThread != null) {
-            this.outputControl.shuttingDown = true;
-            this.outputThread.interrupt();
+        if (outputControl != null) {
             this.outputControl.shutdown();
         }
 
@@ -785,6 +760,7 @@ public final class PID implements Runnable {
             }
         }
         this.outputControl.setCool(gpio, duty, delay);
+        markChanged();
     }
 
     /**
@@ -806,6 +782,7 @@ public final class PID implements Runnable {
         heatMap.put("d", getHeatD());
         heatMap.put("gpio", getHeatGPIO());
         heatMap.put("inverted", getHeatInverted());
+        heatMap.put("watts", getHeatWatts());
         statusMap.put("heat", heatMap);
 
         // The cool settings
@@ -817,6 +794,7 @@ public final class PID implements Runnable {
         coolMap.put("gpio", getCoolGPIO());
         coolMap.put("delay", getCoolDelay());
         coolMap.put("inverted", getCoolInverted());
+        coolMap.put("watts", getCoolWatts());
         statusMap.put("cool", coolMap);
 
         statusMap.put("duty", getDuty());
@@ -826,6 +804,13 @@ public final class PID implements Runnable {
         statusMap.put("min", this.min);
         statusMap.put("max", this.max);
         statusMap.put("time", this.minTime);
+        Map<String, Object> latency = new HashMap<>();
+        latency.put("last", Math.round(this.latencyLast * 10) / 10.0);
+        latency.put("average", Math.round(this.latencyAverage * 10) / 10.0);
+        latency.put("max", Math.round(this.latencyMax * 10) / 10.0);
+        statusMap.put("latency", latency);
+        statusMap.put("filter", getFilterMode());
+        statusMap.put("filterWindow", getFilterWindow());
 
         statusMap.put("status", getStatus());
 
@@ -859,6 +844,8 @@ public final class PID implements Runnable {
         } else {
             this.outputControl.setHeater(null);
         }
+        applyWatts();
+        markChanged();
     }
 
     public void setCoolGPIO(final String gpio) {
@@ -876,6 +863,8 @@ public final class PID implements Runnable {
         } else {
             this.outputControl.setCooler(null);
         }
+        applyWatts();
+        markChanged();
     }
     
     public BigDecimal getMin() {
@@ -898,30 +887,152 @@ public final class PID implements Runnable {
         return this.coolSetting;
     }
     
+    /**
+     * Change how the temperature readings are smoothed.
+     * @param filterMode mean, ewma or median.
+     * @param window The number of readings to smooth over.
+     */
+    public void setFilter(final String filterMode, final int window) {
+        this.engine.setFilter(new TempFilter(
+                TempFilter.Mode.fromString(filterMode), window));
+        markChanged();
+    }
+
+    /**
+     * @return How the temperature readings are smoothed.
+     */
+    public String getFilterMode() {
+        return this.engine.getFilter().getMode().toString();
+    }
+
+    /**
+     * @return The number of readings smoothed over.
+     */
+    public int getFilterWindow() {
+        return this.engine.getFilter().getWindow();
+    }
+
+    /**
+     * @return The status version this PID or its outputs last changed at.
+     */
+    public long getStatusVersion() {
+        if (this.outputControl != null) {
+            return Math.max(this.statusVersion.get(),
+                    this.outputControl.getStatusVersion());
+        }
+        return this.statusVersion.get();
+    }
+
+    /**
+     * Record that something in the status of this PID has changed.
+     */
+    private void markChanged() {
+        this.statusVersion.changed();
+    }
+
+    /**
+     * Update the settings the control loop uses, call this when the set
+     * point, the heat settings or the hysteria settings change.
+     */
+    private void syncSettings() {
+        this.setPointValue = toDouble(this.set_point);
+        this.heatP = toDouble(this.heatSetting.proportional);
+        this.heatI = toDouble(this.heatSetting.integral);
+        this.heatD = toDouble(this.heatSetting.derivative);
+        this.minValue = toDouble(this.min);
+        this.maxValue = toDouble(this.max);
+        this.minTimeValue = toDouble(this.minTime);
+    }
+
+    /**
+     * @param value A setting, may be null if it hasn't been set.
+     * @return The setting as a double, 0 if it's not set.
+     */
+    private static double toDouble(final BigDecimal value) {
+        return value == null ? 0 : value.doubleValue();
+    }
+
     public void stop() {
         BrewServer.LOG.warning("Shutting down " + this.getName());
         running = false;
-        Thread.currentThread().interrupt();
+        // Wake the control loop up, not whoever asked it to stop
+        Thread thread = this.controlThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
     }
 
     public void setCoolDelay(BigDecimal coolDelay) {
         this.coolSetting.delay = coolDelay;
+        markChanged();
     }
     
     public void setCoolCycle(BigDecimal coolCycle) {
         this.coolSetting.cycle_time= coolCycle;
+        markChanged();
     }
     
+    /**
+     * @param watts The watts drawn by the heating output.
+     */
+    public void setHeatWatts(final int watts) {
+        this.heatSetting.watts = Math.max(0, watts);
+        applyWatts();
+        markChanged();
+    }
+
+    /**
+     * @return The watts drawn by the heating output, 0 if it's not known.
+     */
+    public int getHeatWatts() {
+        return this.heatSetting.watts;
+    }
+
+    /**
+     * @param watts The watts drawn by the cooling output.
+     */
+    public void setCoolWatts(final int watts) {
+        this.coolSetting.watts = Math.max(0, watts);
+        applyWatts();
+        markChanged();
+    }
+
+    /**
+     * @return The watts drawn by the cooling output, 0 if it's not known.
+     */
+    public int getCoolWatts() {
+        return this.coolSetting.watts;
+    }
+
+    /**
+     * Pass the wattages to the output devices, for load balancing.
+     */
+    private void applyWatts() {
+        OutputControl control = this.outputControl;
+        if (control == null) {
+            return;
+        }
+        if (control.getHeater() != null) {
+            control.getHeater().setWatts(this.heatSetting.watts);
+        }
+        if (control.getCooler() != null) {
+            control.getCooler().setWatts(this.coolSetting.watts);
+        }
+    }
+
     public void setHeatCycle(BigDecimal heatCycle) {
         this.heatSetting.cycle_time = heatCycle;
+        markChanged();
     }
     
     public void setManualDuty(BigDecimal duty) {
         this.manual_duty = duty;
+        markChanged();
     }
     
     public void setManualTime(BigDecimal time) {
         this.manual_time = time;
+        markChanged();
     }
     
     private void setHysteria() {
@@ -940,53 +1051,46 @@ public final class PID implements Runnable {
          */
         // Set the duty cycle to be 100, we can wake it up when we want to
         BrewServer.LOG.info("Checking current temp against " + this.min + " and " + this.max);
-        try {
-            this.timeDiff = this.currentTime.subtract(this.hysteriaStartTime);
-            this.timeDiff = MathUtil.divide(MathUtil.divide(timeDiff, THOUSAND), 60);
-        } catch (ArithmeticException e) {
-            BrewServer.LOG.warning(e.getMessage());
-        }
-        
-        BigDecimal minTempF = this.min;
-        BigDecimal maxTempF = this.max;
+        this.timeDiff = (this.currentTime - this.hysteriaStartTime) / 60000.0;
+
+        double minTempF = this.minValue;
+        double maxTempF = this.maxValue;
         if (this.getTemp().getScale().equalsIgnoreCase("C")) {
-            minTempF = Temp.cToF(this.min);
-            maxTempF = Temp.cToF(this.max);
+            minTempF = minTempF * 9 / 5 + 32;
+            maxTempF = maxTempF * 9 / 5 + 32;
         }
-        
-        if (this.getTempF().compareTo(minTempF) < 0) {
+        double tempF = this.getTempF().doubleValue();
+
+        if (tempF < minTempF) {
             if (this.hasValidHeater()) {
-                if (this.duty_cycle.compareTo(new BigDecimal(100)) != 0
+                if (this.duty_cycle.compareTo(HUNDRED) != 0
                         && this.minTimePassed()) {
                     BrewServer.LOG.info("Current temp is less than the minimum temp, turning on 100");
-                    this.hysteriaStartTime = new BigDecimal(System.currentTimeMillis());
-                    this.duty_cycle = new BigDecimal(100);
+                    this.hysteriaStartTime = System.currentTimeMillis();
+                    this.duty_cycle = HUNDRED;
                     this.outputControl.setDuty(this.duty_cycle);
                     this.outputControl.getHeater().setCycleTime(
                             this.minTime.multiply(new BigDecimal(60)));
                 }
             } else if (this.hasValidCooler()) {
-                if (this.duty_cycle.compareTo(new BigDecimal(0)) != 0
+                if (this.duty_cycle.compareTo(BigDecimal.ZERO) != 0
                         &&  this.minTimePassed()) {
                     BrewServer.LOG.info("Slept for long enough, turning off");
                     // Make sure the thread wakes up for the new settings
-                    this.duty_cycle = new BigDecimal(0);
+                    this.duty_cycle = BigDecimal.ZERO;
                     this.outputControl.setDuty(this.duty_cycle);
-                    this.outputThread.interrupt();
                 }
              }
 
-            // Make sure the thread wakes up for the new settings
-            this.outputThread.interrupt();
-        } else if (this.getTempF().compareTo(maxTempF) >= 0) {
+        } else if (tempF >= maxTempF) {
             // TimeDiff is now in minutes
             // Is the cooling output on?
             if (this.hasValidCooler()) {
-                if (this.duty_cycle.compareTo(new BigDecimal(-100)) != 0
+                if (this.duty_cycle.compareTo(MINUS_HUNDRED) != 0
                         && this.minTimePassed()) {
                     BrewServer.LOG.info("Current temp is greater than the max temp, turning on -100");
-                    this.hysteriaStartTime = new BigDecimal(System.currentTimeMillis());
-                    this.duty_cycle = new BigDecimal(-100);
+                    this.hysteriaStartTime = System.currentTimeMillis();
+                    this.duty_cycle = MINUS_HUNDRED;
                     this.outputControl.setDuty(this.duty_cycle);
                     this.outputControl.getCooler().setCycleTime(
                             this.minTime.multiply(new BigDecimal(60)));
@@ -994,13 +1098,12 @@ public final class PID implements Runnable {
             } else if(this.hasValidHeater()) {
                BrewServer.LOG.info("Current temp is more than the max temp");
                // We're over the maximum temp, but should we wake up the thread?
-               if (this.duty_cycle.compareTo(new BigDecimal(0)) != 0
+               if (this.duty_cycle.compareTo(BigDecimal.ZERO) != 0
                        && this.minTimePassed()) {
                    BrewServer.LOG.info("Slep for long enough, turning off");
                    // Make sure the thread wakes up for the new settings        
                    this.duty_cycle = BigDecimal.ZERO;
                    this.outputControl.setDuty(this.duty_cycle);
-                   this.outputThread.interrupt();
                 }
             }
         }
@@ -1034,6 +1137,7 @@ public final class PID implements Runnable {
      */
     public void setInverted(final boolean invert) {
         this.invertOutput = invert;
+        markChanged();
     }
 
     /**
@@ -0,0 +1,134 @@
+package com.sb.elsinore;
+
+/**
+ * The arithmetic for a {@link PID}, done with primitives so a control step
+ * doesn't create any objects.
+ *
+ * The PID keeps its settings as BigDecimals for the configuration and the
+ * status, and passes them in here as doubles. This keeps the
+ * {@link TempFilter} that smooths the temperature readings, and the error
+ * and time from the last step.
+ *
+ * Note that the integral and derivative factors are never updated, so the
+ * output is only the proportional term, the same as it has always been.
+ * They are kept here so the formula is in one place when that changes.
+ *
+ * @author Doug Edey
+ */
+public final class PIDEngine {
+
+    /** The largest duty cycle, negative for cooling. */
+    public static final double MAX_DUTY = 100.0;
+    /** The duty is rounded to a thousandth of a percent. */
+    private static final double PRECISION = 1000.0;
+
+    private volatile TempFilter filter = new TempFilter();
+
+    private long previousTime = 0;
+    private double totalError = 0.0;
+    private double previousError = 0.0;
+    private double integralFactor = 0.0;
+    private double derivativeFactor = 0.0;
+
+    /**
+     * Start timing from now.
+     * @param now The current time in milliseconds.
+     */
+    public void reset(final long now) {
+        this.previousTime = now;
+    }
+
+    /**
+     * Add a temperature reading to the filter.
+     * @param temp The temperature.
+     */
+    public void addReading(final double temp) {
+        this.filter.add(temp);
+    }
+
+    /**
+     * @return The filtered temperature, or {@link TempFilter#NO_READING}.
+     */
+    public double getAverage() {
+        return this.filter.get();
+    }
+
+    /**
+     * Change how the readings are smoothed, this starts from no readings.
+     * @param newFilter The new filter.
+     */
+    public void setFilter(final TempFilter newFilter) {
+        this.filter = newFilter;
+    }
+
+    /**
+     * @return The filter smoothing the readings.
+     */
+    public TempFilter getFilter() {
+        return this.filter;
+    }
+
+    /**
+     * Calculate the duty cycle.
+     * @param now The current time in milliseconds.
+     * @param setPoint The target temperature.
+     * @param temp The average temperature.
+     * @param p The proportional setting.
+     * @param i The integral setting.
+     * @param d The derivative setting.
+     * @param currentDuty The duty to keep if no time has passed.
+     * @param canHeat True if there is a heating output.
+     * @param canCool True if there is a cooling output.
+     * @return The duty cycle, between -100 and 100, to three decimal places.
+     */
+    public double calculate(final long now, final double setPoint,
+            final double temp, final double p, final double i, final double d,
+            final double currentDuty, final boolean canHeat,
+            final boolean canCool) {
+        if (this.previousTime == 0) {
+            this.previousTime = now;
+        }
+        if (now == this.previousTime) {
+            return currentDuty;
+        }
+
+        double error = setPoint - temp;
+        double integral = (this.totalError + error) * this.integralFactor;
+        if (integral < MAX_DUTY && integral > 0) {
+            this.totalError += error;
+        }
+
+        double output = p * error + i * this.integralFactor
+                + d * this.derivativeFactor;
+        this.previousError = error;
+
+        if ((output < 0 && !canCool) || (output > 0 && !canHeat)) {
+            output = 0.0;
+        }
+        // Round off the floating point noise, so 44.00000000000006 is 44
+        output = Math.round(clamp(output) * PRECISION) / PRECISION;
+
+        this.previousTime = now;
+        return output;
+    }
+
+    /**
+     * @return The error from the last step.
+     */
+    public double getPreviousError() {
+        return this.previousError;
+    }
+
+    /**
+     * @param duty A duty cycle.
+     * @return The duty cycle limited to between -100 and 100.
+     */
+    public static double clamp(final double duty) {
+        if (duty > MAX_DUTY) {
+            return MAX_DUTY;
+        } else if (duty < -MAX_DUTY) {
+            return -MAX_DUTY;
+        }
+        return duty;
+    }
+}
@@ -0,0 +1,112 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.inputs.PhSensor;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * A pH sensor from the config file. The element is named after the
+ * sensor, with underscores for the spaces. The settings are kept as the
+ * text the sensor is set up from, "" if they're not set.
+ *
+ * @author Doug Edey
+ */
+public final class PhSensorConfig {
+
+    private final String name;
+    private final String dsAddress;
+    private final String dsOffset;
+    private final String ainPin;
+    private final String offset;
+    private final String model;
+
+    /**
+     * @param sensor The sensor to save.
+     */
+    public PhSensorConfig(final PhSensor sensor) {
+        this(sensor.getName().replace("_", " "), sensor.getDsAddress(),
+                sensor.getDsOffset(), sensor.getAIN(),
+                "" + sensor.getOffset(), sensor.getModel());
+    }
+
+    private PhSensorConfig(final String newName, final String newDsAddress,
+            final String newDsOffset, final String newAinPin,
+            final String newOffset, final String newModel) {
+        this.name = newName;
+        this.dsAddress = newDsAddress;
+        this.dsOffset = newDsOffset;
+        this.ainPin = newAinPin;
+        this.offset = newOffset;
+        this.model = newModel;
+    }
+
+    /**
+     * Parse a pH sensor element.
+     * @param sensor The element from the config file.
+     * @return The sensor.
+     */
+    public static PhSensorConfig fromElement(final Element sensor) {
+        return new PhSensorConfig(sensor.getNodeName().replace("_", " "),
+                sensor.getAttribute("dsAddress"),
+                sensor.getAttribute("dsOffset"),
+                sensor.getAttribute("ainPin"),
+                sensor.getAttribute("offset"),
+                sensor.getAttribute("model"));
+    }
+
+    /**
+     * @param doc The document to create the element in.
+     * @return The sensor element.
+     */
+    public Element toElement(final Document doc) {
+        Element sensor = doc.createElement(this.name.replace(" ", "_"));
+        ConfigSnapshot.attribute(sensor, "model", this.model);
+        ConfigSnapshot.attribute(sensor, "ainPin", this.ainPin);
+        ConfigSnapshot.attribute(sensor, "dsAddress", this.dsAddress);
+        ConfigSnapshot.attribute(sensor, "dsOffset", this.dsOffset);
+        ConfigSnapshot.attribute(sensor, "offset", this.offset);
+        return sensor;
+    }
+
+    /**
+     * @return The sensor name, with spaces.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return The DS2450 address.
+     */
+    public String getDsAddress() {
+        return this.dsAddress;
+    }
+
+    /**
+     * @return The DS2450 input.
+     */
+    public String getDsOffset() {
+        return this.dsOffset;
+    }
+
+    /**
+     * @return The analogue input pin.
+     */
+    public String getAinPin() {
+        return this.ainPin;
+    }
+
+    /**
+     * @return The calibration offset.
+     */
+    public String getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * @return The sensor model.
+     */
+    public String getModel() {
+        return this.model;
+    }
+}
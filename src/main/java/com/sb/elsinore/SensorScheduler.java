@@ -0,0 +1,309 @@
+package com.sb.elsinore;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples every registered {@link Temp} from a single timer and a small pool
+ * of worker threads, instead of a thread per probe.
+ *
+ * Probes are grouped into lanes by the bus they are on (see
+ * {@link Temp#getBus()}). Each lane only reads one probe at a time, so the
+ * probes on one 1-Wire master queue up instead of fighting over the bus,
+ * while probes on different masters, OWFS and the system temperature are
+ * read in parallel. Each probe is sampled every
+ * {@link Temp#getSampleInterval()} milliseconds, measured from the start of
+ * one read to the start of the next.
+ *
+ * @author Doug Edey
+ */
+public final class SensorScheduler {
+
+    private static ScheduledExecutorService timer = null;
+    private static ExecutorService workers = null;
+    private static int workerCount = 0;
+    private static final ConcurrentHashMap<Temp, Probe> probes =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Lane> lanes =
+            new ConcurrentHashMap<>();
+    private static final AtomicLong samples = new AtomicLong(0);
+    private static final AtomicLong late = new AtomicLong(0);
+
+    private SensorScheduler() {
+    }
+
+    /**
+     * Start sampling a temperature probe. Does nothing if it's already
+     * registered.
+     * @param temp The probe to sample.
+     */
+    public static void register(final Temp temp) {
+        if (temp == null) {
+            return;
+        }
+        start();
+        String bus = temp.getBus();
+        Lane lane = lanes.get(bus);
+        if (lane == null) {
+            lanes.putIfAbsent(bus, new Lane());
+            lane = lanes.get(bus);
+        }
+        Probe probe = new Probe(temp, lane);
+        if (probes.putIfAbsent(temp, probe) == null) {
+            BrewServer.LOG.info("Sampling " + temp.getName() + " on " + bus);
+            probe.schedule(0);
+        }
+    }
+
+    /**
+     * Stop sampling a temperature probe. A read that is already running
+     * finishes, but it won't be read again.
+     * @param temp The probe to stop sampling.
+     */
+    public static void unregister(final Temp temp) {
+        Probe probe = probes.remove(temp);
+        if (probe != null) {
+            probe.cancel();
+        }
+    }
+
+    /**
+     * Stop every probe and the threads.
+     */
+    public static synchronized void shutdown() {
+        for (Probe probe : probes.values()) {
+            probe.cancel();
+        }
+        probes.clear();
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    /**
+     * @return The number of probes being sampled.
+     */
+    public static int getProbeCount() {
+        return probes.size();
+    }
+
+    /**
+     * @return The number of buses the probes are spread over.
+     */
+    public static int getLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * @return The number of threads reading probes.
+     */
+    public static int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * @return The number of reads completed.
+     */
+    public static long getSampleCount() {
+        return samples.get();
+    }
+
+    /**
+     * @return The number of reads that started later than their interval,
+     * because the bus was busy or the read before took too long.
+     */
+    public static long getLateCount() {
+        return late.get();
+    }
+
+    /**
+     * Create the timer and the workers, if they haven't been already.
+     */
+    private static synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        workerCount = Math.max(1, LaunchControl.sensorThreads);
+        timer = Executors.newSingleThreadScheduledExecutor(
+                new SensorThreadFactory("Sensor-Timer"));
+        workers = Executors.newFixedThreadPool(workerCount,
+                new SensorThreadFactory("Sensor-Worker"));
+    }
+
+    /**
+     * Run something on the workers.
+     * @return False if the workers have been shut down.
+     */
+    private static boolean execute(final Runnable task) {
+        ExecutorService current = workers;
+        if (current == null) {
+            return false;
+        }
+        try {
+            current.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A registered probe and when it's next due.
+     */
+    private static final class Probe implements Runnable {
+        private final Temp temp;
+        private final Lane lane;
+        private volatile boolean cancelled = false;
+        private volatile ScheduledFuture<?> future = null;
+        private long due = 0;
+
+        private Probe(final Temp temp, final Lane lane) {
+            this.temp = temp;
+            this.lane = lane;
+        }
+
+        /**
+         * Queue this probe on its lane after a delay.
+         * @param delay The delay in milliseconds.
+         */
+        private void schedule(final long delay) {
+            ScheduledExecutorService current = timer;
+            if (this.cancelled || current == null) {
+                return;
+            }
+            this.due = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(delay);
+            try {
+                this.future = current.schedule(this, delay,
+                        TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                this.cancelled = true;
+            }
+        }
+
+        private void cancel() {
+            this.cancelled = true;
+            ScheduledFuture<?> current = this.future;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+
+        /**
+         * Due, hand it to the lane.
+         */
+        @Override
+        public void run() {
+            if (!this.cancelled) {
+                this.lane.submit(this);
+            }
+        }
+
+        /**
+         * Read the probe, called on the lane's worker.
+         */
+        private void sample() {
+            if (this.cancelled) {
+                return;
+            }
+            long start = System.nanoTime();
+            long interval = this.temp.getSampleInterval();
+            if (start - this.due > TimeUnit.MILLISECONDS.toNanos(interval)) {
+                late.incrementAndGet();
+            }
+            boolean keepGoing;
+            try {
+                keepGoing = this.temp.sample();
+            } catch (RuntimeException e) {
+                BrewServer.LOG.warning("Failed to read " + this.temp.getName()
+                        + ": " + e.getMessage());
+                keepGoing = true;
+            }
+            samples.incrementAndGet();
+
+            if (!keepGoing) {
+                BrewServer.LOG.warning("Stopped sampling "
+                        + this.temp.getName());
+                probes.remove(this.temp, this);
+                this.cancelled = true;
+                return;
+            }
+            long took = TimeUnit.NANOSECONDS.toMillis(
+                    System.nanoTime() - start);
+            schedule(Math.max(0, interval - took));
+        }
+    }
+
+    /**
+     * The probes on one bus, read one at a time in the order they came due.
+     */
+    private static final class Lane implements Runnable {
+        private final ConcurrentLinkedQueue<Probe> queue =
+                new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean(false);
+
+        private void submit(final Probe probe) {
+            this.queue.add(probe);
+            drain();
+        }
+
+        /**
+         * Start a worker on this lane if there isn't one already.
+         */
+        private void drain() {
+            if (this.running.compareAndSet(false, true)) {
+                if (!execute(this)) {
+                    this.running.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Probe probe;
+            while ((probe = this.queue.poll()) != null) {
+                probe.sample();
+            }
+            this.running.set(false);
+            // Something may have been queued after the last poll
+            if (!this.queue.isEmpty()) {
+                drain();
+            }
+        }
+    }
+
+    /**
+     * Daemon threads with a useful name.
+     */
+    private static final class SensorThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        private SensorThreadFactory(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r, this.prefix + "-"
+                    + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.NanoHTTPD.Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An in memory cache of the static web files (templates, logos and language
+ * files).
+ *
+ * Each file is read once and kept along with a content hash for the ETag,
+ * its modified time and a gzipped copy for text files. The file is checked
+ * for changes at most once every {@link #CHECK_INTERVAL}, so most requests
+ * don't touch the SD card at all, and clients that already have the file
+ * get a 304.
+ *
+ * @author Doug Edey
+ */
+public final class StaticAssetCache {
+
+    /** How often to check a cached file for changes, in milliseconds. */
+    public static final long CHECK_INTERVAL = 2000;
+    /** Files bigger than this are streamed from disk. */
+    public static final long MAX_FILE_SIZE = 1024 * 1024;
+    /** The most bytes to hold in the cache, including the gzipped copies. */
+    public static final long MAX_CACHE_SIZE = 16 * 1024 * 1024;
+    /** The paths under the root directory that can be cached. */
+    private static final String[] CACHED_PATHS = {"templates/", "logos/",
+            "src/main/java/com/sb/elsinore/nls/"};
+
+    private static final ConcurrentHashMap<String, Asset> assets =
+            new ConcurrentHashMap<>();
+    private static final AtomicLong cacheSize = new AtomicLong(0);
+
+    private StaticAssetCache() {
+    }
+
+    /**
+     * A cached copy of a file.
+     */
+    private static final class Asset {
+        private final long lastModified;
+        private final long length;
+        private final byte[] bytes;
+        private final byte[] gzipped;
+        private final String etag;
+        private final String lastModifiedHeader;
+        private volatile long checked;
+
+        private Asset(final File file, final byte[] bytes,
+                final byte[] gzipped, final String etag) {
+            this.lastModified = file.lastModified();
+            this.length = bytes.length;
+            this.bytes = bytes;
+            this.gzipped = gzipped;
+            this.etag = etag;
+            this.lastModifiedHeader = httpDateFormat().format(
+                    new Date(this.lastModified));
+            this.checked = System.currentTimeMillis();
+        }
+
+        private long size() {
+            return this.bytes.length
+                    + (this.gzipped == null ? 0 : this.gzipped.length);
+        }
+    }
+
+    /**
+     * Serve a file from the cache, loading it if it's not cached or has
+     * changed on disk.
+     *
+     * @param uri The path of the file under the root directory.
+     * @param file The file to serve.
+     * @param mime The MIME type of the file.
+     * @param header The request headers.
+     * @return The response, or null if the file can't be cached and should
+     * be served from disk.
+     */
+    public static Response serve(final String uri, final File file,
+            final String mime, final Map<String, String> header) {
+        if (!isCachedPath(uri)) {
+            return null;
+        }
+        String key = file.getPath();
+        Asset asset = getAsset(key, file, mime);
+        if (asset == null) {
+            return null;
+        }
+
+        Response res;
+        if (notModified(asset, header)) {
+            res = new Response(Response.Status.NOT_MODIFIED, mime, "");
+        } else {
+            String encoding = header.get("accept-encoding");
+            if (asset.gzipped != null && encoding != null
+                    && encoding.contains("gzip")) {
+                res = new Response(Response.Status.OK, mime,
+                        new ByteArrayInputStream(asset.gzipped));
+                res.addHeader("Content-Encoding", "gzip");
+            } else {
+                res = new Response(Response.Status.OK, mime,
+                        new ByteArrayInputStream(asset.bytes));
+            }
+        }
+        res.addHeader("ETag", asset.etag);
+        res.addHeader("Last-Modified", asset.lastModifiedHeader);
+        res.addHeader("Cache-Control", "no-cache");
+        if (asset.gzipped != null) {
+            res.addHeader("Vary", "Accept-Encoding");
+        }
+        return res;
+    }
+
+    /**
+     * Drop every cached file.
+     */
+    public static void clear() {
+        assets.clear();
+        cacheSize.set(0);
+    }
+
+    /**
+     * Check every cached file for changes on its next request, without
+     * waiting for the check interval.
+     */
+    static void expire() {
+        for (Asset asset : assets.values()) {
+            asset.checked = 0;
+        }
+    }
+
+    /**
+     * @param uri The requested path.
+     * @return True if the path is one that should be cached.
+     */
+    private static boolean isCachedPath(final String uri) {
+        String path = uri;
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        for (String prefix : CACHED_PATHS) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the cached copy of a file, reloading it if it's changed.
+     * @return The asset, or null if it can't be cached.
+     */
+    private static Asset getAsset(final String key, final File file,
+            final String mime) {
+        Asset asset = assets.get(key);
+        long now = System.currentTimeMillis();
+        if (asset != null && now - asset.checked < CHECK_INTERVAL) {
+            return asset;
+        }
+
+        if (asset != null && file.lastModified() == asset.lastModified
+                && file.length() == asset.length) {
+            asset.checked = now;
+            return asset;
+        }
+
+        // New or changed, load it again
+        if (asset != null && assets.remove(key, asset)) {
+            cacheSize.addAndGet(-asset.size());
+        }
+        if (!file.isFile() || file.length() > MAX_FILE_SIZE) {
+            return null;
+        }
+        try {
+            asset = load(file, mime);
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Couldn't cache " + file.getPath() + ": "
+                    + e.getMessage());
+            return null;
+        }
+        if (cacheSize.get() + asset.size() <= MAX_CACHE_SIZE
+                && assets.putIfAbsent(key, asset) == null) {
+            cacheSize.addAndGet(asset.size());
+        }
+        return asset;
+    }
+
+    /**
+     * Read a file into a new asset.
+     */
+    private static Asset load(final File file, final String mime)
+            throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] gzipped = null;
+        if (isCompressible(mime)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(bytes);
+            }
+            // Not worth it if it doesn't get any smaller
+            if (out.size() < bytes.length) {
+                gzipped = out.toByteArray();
+            }
+        }
+        return new Asset(file, bytes, gzipped, "\"" + hash(bytes) + "\"");
+    }
+
+    /**
+     * @return True if the client's copy is still current.
+     */
+    private static boolean notModified(final Asset asset,
+            final Map<String, String> header) {
+        String etag = header.get("if-none-match");
+        if (etag != null) {
+            return etag.equals(asset.etag);
+        }
+        String since = header.get("if-modified-since");
+        if (since != null) {
+            try {
+                Date sinceDate = httpDateFormat().parse(since);
+                // HTTP dates only have a resolution of seconds
+                return asset.lastModified / 1000 <= sinceDate.getTime() / 1000;
+            } catch (ParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the MIME type is text, which is worth compressing.
+     */
+    private static boolean isCompressible(final String mime) {
+        return mime.startsWith("text/") || mime.contains("javascript")
+                || mime.contains("json") || mime.contains("xml");
+    }
+
+    /**
+     * @return A hex digest of the content.
+     */
+    private static String hash(final byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder hex = new StringBuilder();
+            // The first 8 bytes are plenty to tell versions apart
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(Arrays.hashCode(bytes))
+                    + "-" + Integer.toHexString(bytes.length);
+        }
+    }
+
+    /**
+     * @return A formatter for HTTP dates, these aren't thread safe.
+     */
+    private static SimpleDateFormat httpDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat(
+                "EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+}
@@ -1,13 +1,20 @@
 package com.sb.elsinore;
 
 import com.sb.common.SBStringUtils;
+import com.sb.elsinore.recorder.Downsampler;
+import com.sb.elsinore.recorder.Rollup;
+import com.sb.elsinore.recorder.SampleVisitor;
+import com.sb.elsinore.recorder.SeriesFile;
+import com.sb.elsinore.recorder.SeriesStore;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 
 import java.io.*;
+import java.text.DateFormat;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,11 +36,22 @@ public class StatusRecorder implements Runnable {
     public static String DIRECTORY_PROPERTY = "recorder_directory";
     public static String RECORDER_ENABLED = "recorder_enabled";
     private String currentDirectory = null;
+    private SeriesStore store = null;
 
     public StatusRecorder(String recorderDirectory) {
         this.recorderDirectory = recorderDirectory;
     }
 
+    /**
+     * Serve the graph data from a store that is already open.
+     * @param recorderDirectory The directory the sessions are saved in.
+     * @param seriesStore The store to read from.
+     */
+    StatusRecorder(String recorderDirectory, SeriesStore seriesStore) {
+        this.recorderDirectory = recorderDirectory;
+        this.store = seriesStore;
+    }
+
     /**
      * Start the thread.
      */
@@ -91,6 +109,7 @@ public class StatusRecorder implements Runnable {
             }
             LaunchControl.setFileOwner(directoryFile.getParentFile());
             LaunchControl.setFileOwner(directoryFile);
+            store = new SeriesStore(directoryFile);
 
             //Generate a new log file under the current directory
             logFile = currentDirectory + "raw.log";
@@ -113,10 +132,11 @@ public class StatusRecorder implements Runnable {
                         }
 
                         Date now = new Date();
-                        printJsonToCsv(now, newStatus, currentDirectory);
+                        recordStatus(now, newStatus);
                         lastStatus = newStatus;
                         fileExists = true;
                     }
+                    store.sync(false);
                 } catch (Exception ioe) {
                     if (ioe instanceof InterruptedException) {
                         continueRunning = false;
@@ -127,6 +147,10 @@ public class StatusRecorder implements Runnable {
             }
         } catch (InterruptedException ex) {
             BrewServer.LOG.warning("Status Recorder shutting down");
+        } finally {
+            if (store != null) {
+                store.close();
+            }
         }
 
     }
@@ -137,14 +161,13 @@ public class StatusRecorder implements Runnable {
     }
 
     /**
-     * Save the status to the directory.
+     * Record the temperature and duty of every vessel in the status.
      *
      * @param nowDate The current date to save the datapoint for.
-     * @param newStatus The JSON Status object to dump
-     * @param directory The graph data directory.
+     * @param newStatus The JSON Status object to record
      */
-    protected final void printJsonToCsv(final Date nowDate,
-            final JSONObject newStatus, final String directory) {
+    protected final void recordStatus(final Date nowDate,
+            final JSONObject newStatus) {
         //Now look for differences in the temperature and duty
         long now = nowDate.getTime();
         JSONArray vessels = (JSONArray) newStatus.get("vessels");
@@ -164,11 +187,11 @@ public class StatusRecorder implements Runnable {
                     }
 
                     if (lastStatus.isDifferentEnough(temp)) {
-                        File tempFile = new File(directory + name + "-temp.csv");
+                        String series = name + "-temp";
                         if (now - lastStatus.timestamp > SLEEP * 1.5) {
-                            appendToLog(tempFile, now - SLEEP + "," + lastStatus.value + "\r\n");
+                            appendSample(series, now - SLEEP, lastStatus.value);
                         }
-                        appendToLog(tempFile, now + "," + temp + "\r\n");
+                        appendSample(series, now, temp);
 
                         temperatureMap.put(name, new Status(temp, now));
                     }
@@ -189,11 +212,11 @@ public class StatusRecorder implements Runnable {
                     }
 
                     if (!duty.equals(lastStatus.value)) {
-                        File dutyFile = new File(directory + name + "-duty.csv");
+                        String series = name + "-duty";
                         if (now - lastStatus.timestamp > SLEEP * 1.5) {
-                            appendToLog(dutyFile, now - SLEEP + "," + lastStatus.value + "\r\n");
+                            appendSample(series, now - SLEEP, lastStatus.value);
                         }
-                        appendToLog(dutyFile, now + "," + duty + "\r\n");
+                        appendSample(series, now, duty);
                         dutyMap.put(name, new Status(duty, now));
                     }
                 }
@@ -202,6 +225,22 @@ public class StatusRecorder implements Runnable {
         }
     }
 
+    /**
+     * Add a sample to the series store.
+     *
+     * @param series The name of the series to add to
+     * @param timestamp The time of the sample
+     * @param value The value as it appears in the status JSON
+     */
+    private void appendSample(final String series, final long timestamp,
+            final String value) {
+        try {
+            store.append(series, timestamp, Float.parseFloat(value));
+        } catch (NumberFormatException nfe) {
+            BrewServer.LOG.warning("Not recording " + value + " for " + series);
+        }
+    }
+
     /**
      * Save the string to the log file.
      *
@@ -402,72 +441,75 @@ public class StatusRecorder implements Runnable {
             }
         }
 
+        // Reduce each series to this many points, 0 to return raw samples
+        int points = 0;
+        try {
+            if (params.containsKey("points")) {
+                points = Integer.parseInt(params.get("points"));
+            } else if (params.containsKey("width")) {
+                points = Integer.parseInt(params.get("width"));
+            }
+        } catch (NumberFormatException nfe) {
+            points = 0;
+        }
+
+        // The time range to return, defaults to the whole session
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        try {
+            if (params.containsKey("from")) {
+                from = Long.parseLong(params.get("from"));
+            }
+            if (params.containsKey("to")) {
+                to = Long.parseLong(params.get("to"));
+            }
+        } catch (NumberFormatException nfe) {
+            BrewServer.LOG.warning("Bad graph range: " + params.get("from")
+                    + " to " + params.get("to"));
+        }
+
+
+        String mode = Downsampler.LTTB;
+        if (params.containsKey("mode")) {
+            mode = params.get("mode");
+        }
+
         String vessel = "";
         if (params.containsKey("vessel")) {
             vessel = params.get("vessel");
         }
 
-        File[] contents = new File(getCurrentDir()).listFiles();
+        // SimpleDateFormat isn't thread safe, so use a copy per request
+        DateFormat dateFormat = (DateFormat) BrewDay.mFormat.clone();
         JSONObject xsData = new JSONObject();
         JSONObject axes = new JSONObject();
         JSONArray dataBuffer = new JSONArray();
         long currentTime = System.currentTimeMillis();
 
+        if (store == null) {
+            return new NanoHTTPD.Response(NanoHTTPD.Response.Status.BAD_REQUEST, BrewServer.MIME_TYPES.get("json"),
+                    "{Bad: Request}");
+        }
+
         // Are we downloading the files?
         if (params.containsKey("download")
                 && params.get("download").equalsIgnoreCase("true")) {
-
-            String zipFileName = rootPath + "/graph-data/zipdownload-" + currentTime + ".zip";
-            ZipFile zipFile = null;
-            try {
-                zipFile = new ZipFile(zipFileName);
-            } catch (FileNotFoundException ioe) {
-                BrewServer.LOG.warning(
-                        "Couldn't create zip file at: " + zipFileName);
-                BrewServer.LOG.warning(ioe.getLocalizedMessage());
-            }
-
-            if (contents == null || zipFile == null) {
-                return new NanoHTTPD.Response(NanoHTTPD.Response.Status.BAD_REQUEST, BrewServer.MIME_TYPES.get("json"),
-                        "No files.");
-            }
-
-            for (File content : contents) {
-                try {
-                    if (content.getName().endsWith(".csv")
-                            && content.getName().toLowerCase()
-                            .startsWith(vessel.toLowerCase())) {
-                        zipFile.addToZipFile(content.getAbsolutePath());
-                    }
-                } catch (IOException ioe) {
-                    BrewServer.LOG.warning(
-                            "Couldn't add " + content.getAbsolutePath()
-                                    + " to zipfile");
-                }
-            }
-            try {
-                zipFile.closeZip();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return BrewServer.serveFile("graph-data/zipdownload-" + currentTime + ".zip",
-                    params, new File(rootPath));
+            return downloadData(rootPath, vessel, currentTime, params);
         }
 
-        if (contents == null) {
-            return new NanoHTTPD.Response(NanoHTTPD.Response.Status.BAD_REQUEST, BrewServer.MIME_TYPES.get("json"),
-                    "{Bad: Request}");
+        // Only return the samples recorded after the cursor of each series
+        Map<String, Long> since = null;
+        if (params.containsKey("since")) {
+            since = parseCursor(params.get("since"), store.getSeriesNames());
         }
+
         boolean dutyVisible = false;
-        for (File content : contents) {
-            if (content.getName().endsWith(".csv")
-                    && content.getName().toLowerCase()
+        JSONObject cursor = new JSONObject();
+        for (String seriesName : store.getSeriesNames()) {
+            if (seriesName.toLowerCase()
                     .startsWith(vessel.toLowerCase())) {
-                String name = content.getName();
-
-                // Strip off .csv
-                name = name.substring(0, name.length() - 4);
-                name = name.replace('-', ' ');
+                SeriesFile seriesFile = store.getSeries(seriesName, false);
+                String name = seriesName.replace('-', ' ');
 
                 if (params.containsKey("bindto")
                         && (params.get("bindto"))
@@ -484,57 +526,83 @@ public class StatusRecorder implements Runnable {
                     axes.put(name, "y");
                 }
 
-                JSONArray xArray = new JSONArray();
-                JSONArray dataArray = new JSONArray();
+                final JSONArray xArray = new JSONArray();
+                final JSONArray dataArray = new JSONArray();
 
                 xArray.add("x" + name);
                 dataArray.add(name);
 
-                BufferedReader reader = null;
-                try {
-                    reader = new BufferedReader(new FileReader(content));
-                    String line;
-                    String[] lArray = null;
-
-                    int count = 0;
-                    while ((line = reader.readLine()) != null && count < size) {
-                        // Each line contains the timestamp and the value
-                        lArray = line.split(",");
-                        xArray.add(BrewDay.mFormat
-                                        .format(new Date(Long.parseLong(lArray[0])))
-                        );
-                        dataArray.add(lArray[1].trim());
-                        count++;
-                    }
-
-                    if (lArray != null && Long.parseLong(lArray[0]) != currentTime) {
-                        xArray.add(BrewDay.mFormat
-                                .format(new Date(currentTime)));
-                        dataArray.add(lArray[1].trim());
+                // An update sends everything since the cursor, the cursor
+                // is moved past all of it
+                int limit = size;
+                if (points > 0 || since != null) {
+                    limit = 0;
+                }
+                ColumnVisitor column = new ColumnVisitor(xArray, dataArray,
+                        dateFormat, limit);
+                // Samples appended while this walk runs are left for the
+                // next update, the cursor only covers what was read
+                long lastTimestamp = seriesFile.getLastTimestamp();
+                if (since != null) {
+                    Long seriesSince = since.get(seriesName);
+                    if (seriesSince != null) {
+                        cursor.put(seriesName, seriesSince);
+                        if (seriesSince < lastTimestamp) {
+                            seriesFile.read(seriesSince + 1,
+                                    Math.min(to, lastTimestamp), column);
+                        }
+                    } else {
+                        // A new series, send all of it
+                        seriesFile.read(Long.MIN_VALUE,
+                                Math.min(to, lastTimestamp), column);
                     }
-
-                    dataBuffer.add(xArray);
-                    dataBuffer.add(dataArray);
-                } catch (Exception e) {
-                    // Do nothing
-                } finally {
-                    if (reader != null) {
-                        try {
-                            reader.close();
-                        } catch (Exception e) {
-                            BrewServer.LOG.warning("Couldn't close file: "
-                                    + content.getAbsolutePath());
+                } else if (points > 0) {
+                    long range = Math.min(to, currentTime)
+                            - Math.max(from, seriesFile.getFirstTimestamp());
+                    int tier = selectTier(range, points);
+                    Downsampler downsampler;
+                    if (tier < 0) {
+                        downsampler = new Downsampler(column, points,
+                                seriesFile.count(from, to), mode);
+                        seriesFile.read(from, to, downsampler);
+                    } else {
+                        Rollup rollup = store.getRollup(seriesName, tier);
+                        // Min/max keeps the peaks of each bucket
+                        int[] fields = {Rollup.AVG};
+                        if (Downsampler.MIN_MAX.equalsIgnoreCase(mode)) {
+                            fields = new int[]{Rollup.MIN, Rollup.MAX};
                         }
+                        downsampler = new Downsampler(column, points,
+                                rollup.count(from, to) * fields.length, mode);
+                        rollup.read(from, to, fields, downsampler);
                     }
+                    downsampler.finish();
+                } else {
+                    seriesFile.read(from, to, column);
                 }
 
+                // Carry the last value through to now, clients replace this
+                // point when they load the next update
+                if (lastTimestamp != Long.MIN_VALUE
+                        && (dataArray.size() > 1 || since != null)) {
+                    column.add(currentTime, seriesFile.getLastValue());
+                }
+                if (lastTimestamp != Long.MIN_VALUE) {
+                    cursor.put(seriesName, lastTimestamp);
+                }
+
+                dataBuffer.add(xArray);
+                dataBuffer.add(dataArray);
             }
         }
 
         JSONObject dataContent = new JSONObject();
         dataContent.put("columns", dataBuffer);
-        if (params.containsKey("updates")
-                && Boolean.parseBoolean(params.get("updates"))) {
+        if (!cursor.isEmpty()) {
+            dataContent.put("cursor", cursor);
+        }
+        if (since != null || (params.containsKey("updates")
+                && Boolean.parseBoolean(params.get("updates")))) {
             return new NanoHTTPD.Response(NanoHTTPD.Response.Status.OK, BrewServer.MIME_TYPES.get("json"),
                     dataContent.toJSONString());
         }
@@ -616,6 +684,167 @@ public class StatusRecorder implements Runnable {
                 finalJSON.toJSONString());
     }
 
+    /**
+     * Export the recorded series as CSV files and serve them as a zip file.
+     *
+     * @param rootPath The application path.
+     * @param vessel The vessel to export, or an empty string for all.
+     * @param currentTime The current time, used to name the zip file.
+     * @param params The request parameters.
+     * @return The response serving the zip file.
+     */
+    private NanoHTTPD.Response downloadData(final String rootPath,
+            final String vessel, final long currentTime,
+            final Map<String, String> params) {
+        String zipFileName = rootPath + "/graph-data/zipdownload-" + currentTime + ".zip";
+        ZipFile zipFile;
+        try {
+            zipFile = new ZipFile(zipFileName);
+        } catch (FileNotFoundException ioe) {
+            BrewServer.LOG.warning(
+                    "Couldn't create zip file at: " + zipFileName);
+            BrewServer.LOG.warning(ioe.getLocalizedMessage());
+            return new NanoHTTPD.Response(NanoHTTPD.Response.Status.BAD_REQUEST, BrewServer.MIME_TYPES.get("json"),
+                    "No files.");
+        }
+
+        File exportDir = new File(rootPath + "/graph-data/export-" + currentTime);
+        if (!exportDir.mkdirs()) {
+            BrewServer.LOG.warning("Could not create directory: "
+                    + exportDir.getAbsolutePath());
+        }
+        for (String seriesName : store.getSeriesNames()) {
+            if (!seriesName.toLowerCase().startsWith(vessel.toLowerCase())) {
+                continue;
+            }
+            File csvFile = new File(exportDir, seriesName + ".csv");
+            try {
+                store.getSeries(seriesName, false).exportCsv(csvFile);
+                zipFile.addToZipFile(csvFile.getAbsolutePath());
+            } catch (IOException ioe) {
+                BrewServer.LOG.warning(
+                        "Couldn't add " + csvFile.getAbsolutePath()
+                                + " to zipfile");
+            }
+        }
+        try {
+            zipFile.closeZip();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        deleteDir(exportDir);
+        return BrewServer.serveFile("graph-data/zipdownload-" + currentTime + ".zip",
+                params, new File(rootPath));
+    }
+
+    /**
+     * Read the since cursor sent back by a client.
+     *
+     * The cursor holds the last timestamp sent for each series, the series
+     * aren't recorded in timestamp order with each other, so one timestamp
+     * for all of them would skip samples. A single number, from an older
+     * page, is used for every series.
+     *
+     * @param value The since parameter.
+     * @param names The series in the store.
+     * @return The last timestamp sent by series name, empty to send
+     * everything.
+     */
+    static Map<String, Long> parseCursor(final String value,
+            final List<String> names) {
+        Map<String, Long> cursor = new HashMap<>();
+        if (value == null || value.trim().equals("")) {
+            return cursor;
+        }
+        try {
+            long since = Long.parseLong(value.trim());
+            for (String name : names) {
+                cursor.put(name, since);
+            }
+            return cursor;
+        } catch (NumberFormatException nfe) {
+            // Not a single number, try the per series cursor
+        }
+        Object parsed = JSONValue.parse(value);
+        if (!(parsed instanceof JSONObject)) {
+            BrewServer.LOG.warning("Bad graph cursor: " + value);
+            return cursor;
+        }
+        for (Object entry : ((JSONObject) parsed).entrySet()) {
+            Map.Entry<?, ?> series = (Map.Entry<?, ?>) entry;
+            if (series.getValue() instanceof Number) {
+                cursor.put(series.getKey().toString(),
+                        ((Number) series.getValue()).longValue());
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Pick the coarsest rollup tier that still has enough buckets to fill
+     * the requested number of points.
+     *
+     * @param range The length of the requested time range in milliseconds
+     * @param points The number of points requested
+     * @return The index of the rollup tier, or -1 to use the raw samples
+     */
+    private int selectTier(final long range, final int points) {
+        for (int i = Rollup.INTERVALS.length - 1; i >= 0; i--) {
+            if (range / Rollup.INTERVALS[i] >= points) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds samples to a pair of c3 data columns.
+     */
+    private static class ColumnVisitor implements SampleVisitor {
+
+        private final JSONArray xArray;
+        private final JSONArray dataArray;
+        private final DateFormat dateFormat;
+        private final Date date = new Date();
+        private final int limit;
+        private int count = 0;
+
+        /**
+         * @param xArray The column to add the formatted timestamps to
+         * @param dataArray The column to add the values to
+         * @param dateFormat The format to use for the timestamps
+         * @param limit The maximum number of samples to add, 0 for no limit
+         */
+        ColumnVisitor(final JSONArray xArray, final JSONArray dataArray,
+                final DateFormat dateFormat, final int limit) {
+            this.xArray = xArray;
+            this.dataArray = dataArray;
+            this.dateFormat = dateFormat;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean sample(final long timestamp, final float value) {
+            if (this.limit > 0 && this.count >= this.limit) {
+                return false;
+            }
+            add(timestamp, value);
+            this.count++;
+            return true;
+        }
+
+        /**
+         * Add a point to the columns, ignoring the limit.
+         * @param timestamp The time of the point
+         * @param value The value of the point
+         */
+        void add(final long timestamp, final float value) {
+            this.date.setTime(timestamp);
+            this.xArray.add(this.dateFormat.format(this.date));
+            this.dataArray.add(value);
+        }
+    }
+
     public NanoHTTPD.Response deleteAllData() {
         File graphDir = new File(this.recorderDirectory);
         for (File directory: graphDir.listFiles()) {
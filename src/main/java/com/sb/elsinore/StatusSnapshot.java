@@ -0,0 +1,91 @@
+package com.sb.elsinore;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * A serialized copy of the system status, shared between every reader until
+ * the status changes.
+ *
+ * @author Doug Edey
+ */
+public final class StatusSnapshot {
+
+    private final long version;
+    private final long created;
+    private final String json;
+    private final byte[] bytes;
+    private final String etag;
+    private JSONObject status = null;
+
+    /**
+     * Create a new snapshot.
+     * @param version The status version this snapshot was built from.
+     * @param created The time the snapshot was built.
+     * @param json The serialized status.
+     */
+    public StatusSnapshot(final long version, final long created,
+            final String json) {
+        this.version = version;
+        this.created = created;
+        this.json = json;
+        byte[] encoded;
+        try {
+            encoded = json.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            encoded = json.getBytes();
+        }
+        this.bytes = encoded;
+        this.etag = "\"" + Integer.toHexString(Arrays.hashCode(encoded))
+                + "-" + Integer.toHexString(encoded.length) + "\"";
+    }
+
+    /**
+     * @return The status version this snapshot was built from.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @return The time this snapshot was built, in milliseconds.
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * @return The status as a JSON string.
+     */
+    public String getJson() {
+        return this.json;
+    }
+
+    /**
+     * @return The status parsed back into a JSONObject. This is parsed once
+     * and shared, don't modify it.
+     */
+    public synchronized JSONObject getStatus() {
+        if (this.status == null) {
+            this.status = (JSONObject) JSONValue.parse(this.json);
+        }
+        return this.status;
+    }
+
+    /**
+     * @return The UTF-8 encoded status. This array is shared, don't modify it.
+     */
+    public byte[] getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * @return The entity tag for the status content.
+     */
+    public String getETag() {
+        return this.etag;
+    }
+}
@@ -0,0 +1,151 @@
+package com.sb.elsinore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Server-Sent Events stream of the system status.
+ *
+ * The first event holds the full status, after that an event is only sent
+ * when the status changes and holds just the devices that changed since the
+ * last event, see {@link LaunchControl#getStatusDelta(long)}. So a single
+ * temperature change only sends that vessel, and the streams that are up to
+ * date share one copy of it. The stream blocks in read() until there is
+ * something to send, so it is served with chunked transfer.
+ *
+ * @author Doug Edey
+ */
+public class StatusStream extends InputStream {
+
+    /** Send a comment at least this often to keep the connection open. */
+    public static long HEARTBEAT = 15 * 1000;
+    /** The number of streams that are currently open. */
+    private static final AtomicInteger openStreams = new AtomicInteger(0);
+
+    private byte[] pending = new byte[0];
+    private int offset = 0;
+    private long lastVersion = -1;
+    private long lastEventTime = 0;
+    private volatile boolean closed = false;
+
+    private StatusStream() {
+    }
+
+    /**
+     * Open a new status stream, if there are fewer than the maximum open.
+     * @param max The most streams that can be open at once.
+     * @return The new stream, or null if there are too many open.
+     */
+    public static StatusStream open(final int max) {
+        while (true) {
+            int open = openStreams.get();
+            if (open >= max) {
+                return null;
+            }
+            if (openStreams.compareAndSet(open, open + 1)) {
+                return new StatusStream();
+            }
+        }
+    }
+
+    /**
+     * @return The number of streams that are currently open.
+     */
+    public static int getOpenStreams() {
+        return openStreams.get();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        if (read(single, 0, 1) <= 0) {
+            return -1;
+        }
+        return single[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int off, final int len)
+            throws IOException {
+        while (this.offset >= this.pending.length) {
+            if (this.closed) {
+                return -1;
+            }
+            try {
+                nextEvent();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+        int count = Math.min(len, this.pending.length - this.offset);
+        System.arraycopy(this.pending, this.offset, buffer, off, count);
+        this.offset += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return this.pending.length - this.offset;
+    }
+
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            openStreams.decrementAndGet();
+        }
+    }
+
+    /**
+     * Wait for the status to change and queue up the next event.
+     * The brew day timers count on the page, the status only changes when
+     * one is started, stopped or a count down reaches zero.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    private void nextEvent() throws InterruptedException {
+        if (this.lastVersion < 0) {
+            queue(LaunchControl.getStatusSnapshot());
+            return;
+        }
+
+        long wait = HEARTBEAT
+                - (System.currentTimeMillis() - this.lastEventTime);
+        long version = this.lastVersion;
+        if (wait > 0) {
+            version = LaunchControl.awaitStatusChange(this.lastVersion, wait);
+        }
+        if (version != this.lastVersion) {
+            queue(LaunchControl.getStatusDelta(this.lastVersion));
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - this.lastEventTime >= HEARTBEAT) {
+            setPending(":keepalive\n\n");
+            this.lastEventTime = now;
+        }
+    }
+
+    /**
+     * Queue an event holding the status.
+     * @param status The status, or the changes, to send.
+     */
+    private void queue(final StatusSnapshot status) {
+        this.lastVersion = status.getVersion();
+        this.lastEventTime = System.currentTimeMillis();
+        setPending("id: " + status.getVersion() + "\ndata: "
+                + status.getJson() + "\n\n");
+    }
+
+    private void setPending(final String event) {
+        try {
+            this.pending = event.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            this.pending = event.getBytes();
+        }
+        this.offset = 0;
+    }
+}
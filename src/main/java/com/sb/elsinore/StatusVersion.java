@@ -0,0 +1,49 @@
+package com.sb.elsinore;
+
+/**
+ * The status version a device last changed at, used to build the status
+ * deltas, see {@link LaunchControl#getJSONStatus(long)}.
+ *
+ * A delta is built at the global version read before the devices are
+ * walked, and only holds the devices that changed after the version the
+ * client last saw. If the device version was written after the global
+ * version moved on, a delta built in between would skip the device and
+ * send the new global version, and the change would never be sent. So the
+ * device is marked as changing before the global version moves, and gets
+ * its real version once it has.
+ *
+ * @author Doug Edey
+ */
+public final class StatusVersion {
+
+    /** The device is changing, send it to everyone until it has a version. */
+    private static final long CHANGING = Long.MAX_VALUE;
+
+    private volatile long version = 0;
+
+    /**
+     * Record that the device has changed, call this after the change is
+     * made.
+     * @return The new global status version.
+     */
+    public synchronized long changed() {
+        this.version = CHANGING;
+        this.version = LaunchControl.statusChanged();
+        return this.version;
+    }
+
+    /**
+     * @return The status version the device last changed at.
+     */
+    public long get() {
+        return this.version;
+    }
+
+    /**
+     * @param since The status version to compare against.
+     * @return True if the device changed after the version, or is changing.
+     */
+    public boolean changedSince(final long since) {
+        return this.version > since;
+    }
+}
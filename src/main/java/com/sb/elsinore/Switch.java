@@ -22,6 +22,10 @@ public class Switch implements Comparable<Switch> {
     private OutPin output = null;
     private boolean invertOutput = false;
     private int position = -1;
+    /**
+     * The status version this switch last changed at.
+     */
+    private final StatusVersion statusVersion = new StatusVersion();
 
     /**
      * The Constructor.
@@ -85,6 +89,7 @@ public class Switch implements Comparable<Switch> {
         } else {
             output.setValue(true);
         }
+        markChanged();
     }
 
     /**
@@ -96,6 +101,7 @@ public class Switch implements Comparable<Switch> {
         } else {
             output.setValue(false);
         }
+        markChanged();
     }
 
     /**
@@ -131,6 +137,20 @@ public class Switch implements Comparable<Switch> {
         return this.position;
     }
 
+    /**
+     * @return The status version this switch last changed at.
+     */
+    public final long getStatusVersion() {
+        return this.statusVersion.get();
+    }
+
+    /**
+     * Record that the state of this switch has changed.
+     */
+    private void markChanged() {
+        this.statusVersion.changed();
+    }
+
     @Override
     public int compareTo(Switch o) {
         return Integer.compare(this.position, o.getPosition());
@@ -0,0 +1,101 @@
+package com.sb.elsinore;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * A switch from the config file. The element is named after the switch,
+ * with underscores for the spaces.
+ *
+ * @author Doug Edey
+ */
+public final class SwitchConfig {
+
+    private final String name;
+    private final String gpio;
+    private final int position;
+    private final Boolean inverted;
+
+    /**
+     * @param tSwitch The switch to save.
+     */
+    public SwitchConfig(final Switch tSwitch) {
+        this(tSwitch.getName(), tSwitch.getGPIO(), tSwitch.getPosition(),
+                tSwitch.getInverted());
+    }
+
+    private SwitchConfig(final String newName, final String newGpio,
+            final int newPosition, final Boolean newInverted) {
+        this.name = newName;
+        this.gpio = newGpio;
+        this.position = newPosition;
+        this.inverted = newInverted;
+    }
+
+    /**
+     * Parse a switch element.
+     * @param tSwitch The element from the config file.
+     * @return The switch.
+     */
+    public static SwitchConfig fromElement(final Element tSwitch) {
+        String switchName = tSwitch.getNodeName().replace("_", " ");
+        String gpio;
+        if (tSwitch.hasAttribute("gpio")) {
+            gpio = tSwitch.getAttribute("gpio");
+        } else {
+            gpio = tSwitch.getTextContent();
+        }
+        int position = -1;
+        String tempString = tSwitch.getAttribute("position");
+        if (!tempString.equals("")) {
+            try {
+                position = Integer.parseInt(tempString);
+            } catch (NumberFormatException nfe) {
+                BrewServer.LOG.warning("Couldn't parse switch: " + switchName
+                        + " position: " + tempString);
+            }
+        }
+        return new SwitchConfig(switchName, gpio, position,
+                ConfigSnapshot.bool(tSwitch, "invert"));
+    }
+
+    /**
+     * @param doc The document to create the element in.
+     * @return The switch element.
+     */
+    public Element toElement(final Document doc) {
+        Element tSwitch = doc.createElement(this.name.replace(" ", "_"));
+        ConfigSnapshot.attribute(tSwitch, "gpio", this.gpio);
+        tSwitch.setAttribute("position", Integer.toString(this.position));
+        ConfigSnapshot.add(tSwitch, "invert", this.inverted);
+        return tSwitch;
+    }
+
+    /**
+     * @return The switch name, with spaces.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return The GPIO.
+     */
+    public String getGpio() {
+        return this.gpio;
+    }
+
+    /**
+     * @return The position on the page, -1 if it's not set.
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * @return True or false, or null if it's not set.
+     */
+    public Boolean getInverted() {
+        return this.inverted;
+    }
+}
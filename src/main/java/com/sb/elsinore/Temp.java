@@ -5,23 +5,28 @@ import jGPIO.GPIO.Direction;
 import jGPIO.InPin;
 import jGPIO.InvalidGPIOException;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -33,7 +38,19 @@ import org.owfs.jowfsclient.OwfsException;
  * @author Doug Edey
  *
  */
-public final class Temp implements Runnable, Comparable<Temp> {
+public final class Temp implements Comparable<Temp> {
+
+    /**
+     * Told about every good reading as it's taken.
+     */
+    public interface SampleListener {
+        /**
+         * A new reading has been taken. This is called on the sensor
+         * thread, so it should be quick.
+         * @param temp The probe that was read.
+         */
+        void sampleTaken(Temp temp);
+    }
 
     /**
      * Magic numbers.
@@ -45,8 +62,23 @@ public final class Temp implements Runnable, Comparable<Temp> {
     public static BigDecimal FREEZING = new BigDecimal(32);
     public static BigDecimal ERROR_TEMP = new BigDecimal(-999);
     private boolean badTemp = false;
-    private boolean keepalive = true;
+    private volatile boolean keepalive = true;
     private boolean hidden = false;
+    /**
+     * How often to read this probe in milliseconds, 0 for the default.
+     */
+    private long sampleInterval = 0;
+    /**
+     * The number of good readings taken, guarded by sampleLock.
+     */
+    private long sampleCount = 0;
+    private final Object sampleLock = new Object();
+    /**
+     * The System.nanoTime() of the last good reading.
+     */
+    private volatile long sampleNanos = 0;
+    private final List<SampleListener> sampleListeners =
+            new CopyOnWriteArrayList<>();
     /**
      * Base path for BBB System Temp.
      */
@@ -125,6 +157,14 @@ public final class Temp implements Runnable, Comparable<Temp> {
                 }
             }
             this.fProbe = "/sys/bus/w1/devices/" + aName + "/w1_slave";
+
+            // Not on the kernel bus, read it through owserver instead
+            if (LaunchControl.useOWFS && inProbe.contains(".")
+                    && !new File(this.fProbe).exists()) {
+                BrewServer.LOG.info("Reading " + inProbe + " from OWFS");
+                this.fProbe = null;
+                aName = inProbe;
+            }
         }
 
         this.probeName = aName;
@@ -133,32 +173,77 @@ public final class Temp implements Runnable, Comparable<Temp> {
     }
 
     /**
-     * The Runnable loop.
+     * Take one reading, called by the {@link SensorScheduler}.
+     * @return False if this probe should stop being sampled.
      */
-    public void run() {
-
-        while (keepalive) {
-            if (updateTemp().equals(ERROR_TEMP)) {
-                if (fProbe != null && fProbe.equals(
-                        "/sys/class/thermal/thermal_zone0/temp")) {
-                    return;
-                }
-                // Uh(oh no file found, disable output to prevent logging floods
-                loggingOn = false;
-            } else {
-                loggingOn = true;
+    public boolean sample() {
+        if (!keepalive) {
+            return false;
+        }
+        if (updateTemp().equals(ERROR_TEMP)) {
+            if (fProbe != null && fProbe.equals(rpiSystemTemp)) {
+                return false;
             }
+            // Uh(oh no file found, disable output to prevent logging floods
+            loggingOn = false;
+        } else {
+            loggingOn = true;
+        }
 
-            if (volumeMeasurement) {
-                updateVolume();
-            }
+        if (volumeMeasurement) {
+            updateVolume();
+        }
+        return keepalive;
+    }
 
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+    /**
+     * Get the bus this probe is read over. Probes on the same bus are read
+     * one at a time.
+     * @return The path of the 1-Wire master, "owfs" or "system".
+     */
+    public String getBus() {
+        if (fProbe == null) {
+            return "owfs";
+        }
+        if (fProbe.equals(rpiSystemTemp) || fProbe.equals(bbbSystemTemp)) {
+            return "system";
+        }
+        // The device directory is a link into the master's directory
+        try {
+            File master = new File(fProbe).getParentFile()
+                    .getCanonicalFile().getParentFile();
+            if (master != null) {
+                return master.getPath();
             }
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Couldn't find the bus for " + fProbe);
         }
+        return "w1";
+    }
+
+    /**
+     * @return How often to read this probe, in milliseconds.
+     */
+    public long getSampleInterval() {
+        if (sampleInterval > 0) {
+            return sampleInterval;
+        }
+        return LaunchControl.sensorInterval;
+    }
+
+    /**
+     * @param interval How often to read this probe in milliseconds,
+     * 0 to use the default.
+     */
+    public void setSampleInterval(final long interval) {
+        this.sampleInterval = Math.max(0, interval);
+    }
+
+    /**
+     * @return True if this probe has its own sample interval.
+     */
+    public boolean hasSampleInterval() {
+        return sampleInterval > 0;
     }
 
     /**
@@ -166,6 +251,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
      */
     public void setName(final String n) {
         this.name = n;
+        LaunchControl.devicesRenamed();
     }
 
     /**
@@ -216,7 +302,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
             } else if (unit.equals("C")) {
                 this.cutoffTemp = cToF(temperature);
             }
-
+            markChanged();
         } else {
             BrewServer.LOG.severe(cutoffTemp + " doesn't match "
                     + tempRegexp.pattern());
@@ -232,6 +318,18 @@ public final class Temp implements Runnable, Comparable<Temp> {
      * Turn on and off logging.
      */
     private boolean loggingOn = true;
+    /**
+     * The open probe file, read from the start for each sample.
+     */
+    private FileChannel probeChannel = null;
+    /**
+     * Reused for every read, a w1_slave file is under 80 bytes.
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(128);
+    private static final byte[] YES = {'Y', 'E', 'S'};
+    private static final byte[] NO = {'N', 'O'};
+    private static final byte[] T_EQUALS = {'t', '='};
+
     /**
      * Hold the current error string.
      */
@@ -278,6 +376,10 @@ public final class Temp implements Runnable, Comparable<Temp> {
     private BigDecimal calibration = BigDecimal.ZERO;
     private TriggerControl triggerControl = null;
     private int position = -1;
+    /**
+     * The status version this probe last changed at.
+     */
+    private final StatusVersion statusVersion = new StatusVersion();
 
     /**
      * @return Get the current temperature
@@ -325,6 +427,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
             this.scale = s;
         }
         BrewServer.LOG.warning("Cut off is now: " + this.cutoffTemp);
+        markChanged();
     }
 
     /**
@@ -397,6 +500,9 @@ public final class Temp implements Runnable, Comparable<Temp> {
         }
 
         if (result.equals(ERROR_TEMP)) {
+            if (!badTemp) {
+                markChanged();
+            }
             badTemp = true;
             return result;
         }
@@ -412,9 +518,13 @@ public final class Temp implements Runnable, Comparable<Temp> {
             result = cToF(result);
         }
 
+        boolean changed = currentTemp.compareTo(result) != 0;
         currentTemp = result;
         currentTime = System.currentTimeMillis();
         currentError = null;
+        if (changed) {
+            markChanged();
+        }
 
         if (!cutoffTemp.equals(ERROR_TEMP)
                 && currentTemp.compareTo(cutoffTemp) >= 0) {
@@ -423,9 +533,83 @@ public final class Temp implements Runnable, Comparable<Temp> {
                 + cutoffTemp + ") EXCEEDED *****");
             System.exit(-1);
         }
+        publishSample();
         return result;
     }
 
+    /**
+     * Wake up anything waiting for a reading and tell the listeners.
+     */
+    private void publishSample() {
+        this.sampleNanos = System.nanoTime();
+        synchronized (this.sampleLock) {
+            this.sampleCount++;
+            this.sampleLock.notifyAll();
+        }
+        for (SampleListener listener : this.sampleListeners) {
+            try {
+                listener.sampleTaken(this);
+            } catch (RuntimeException e) {
+                BrewServer.LOG.warning("Sample listener for " + getName()
+                        + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param listener To be told about every good reading.
+     */
+    public void addSampleListener(final SampleListener listener) {
+        this.sampleListeners.add(listener);
+    }
+
+    /**
+     * @param listener To stop telling about readings.
+     */
+    public void removeSampleListener(final SampleListener listener) {
+        this.sampleListeners.remove(listener);
+    }
+
+    /**
+     * @return The number of good readings taken so far.
+     */
+    public long getSampleCount() {
+        synchronized (this.sampleLock) {
+            return this.sampleCount;
+        }
+    }
+
+    /**
+     * @return The System.nanoTime() the last good reading was taken at.
+     */
+    public long getSampleNanos() {
+        return this.sampleNanos;
+    }
+
+    /**
+     * Wait for a reading newer than the one given.
+     * @param lastCount The sample count already seen.
+     * @param timeout The longest to wait, in milliseconds.
+     * @return The current sample count, the same as lastCount if the wait
+     * timed out.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    public long awaitSample(final long lastCount, final long timeout)
+            throws InterruptedException {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(timeout);
+        synchronized (this.sampleLock) {
+            while (this.sampleCount == lastCount) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.sampleLock, remaining);
+            }
+            return this.sampleCount;
+        }
+    }
+
     /**
      * @return Get the current temperature from the OWFS server
      */
@@ -434,11 +618,11 @@ public final class Temp implements Runnable, Comparable<Temp> {
         BigDecimal temp = ERROR_TEMP;
         String rawTemp = "";
         try {
-            rawTemp =  LaunchControl.readOWFSPath(probeName + "/temperature");
+            rawTemp = OwfsReader.readTemperature(probeName);
             if (rawTemp == null || rawTemp.equals("")) {
                 BrewServer.LOG.severe(
                     "Couldn't find the probe " + probeName + " for " + name);
-                LaunchControl.setupOWFS();
+                OwfsReader.reconnect();
             } else {
                 temp = new BigDecimal(rawTemp);
             }
@@ -448,7 +632,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
         } catch (OwfsException e) {
             currentError = "Couldn't read " + probeName;
             BrewServer.LOG.log(Level.SEVERE, currentError, e);
-            LaunchControl.setupOWFS();
+            OwfsReader.reconnect();
         } catch (NumberFormatException e) {
             currentError = "Couldn't parse" + rawTemp;
             BrewServer.LOG.log(Level.SEVERE, currentError, e);
@@ -460,35 +644,50 @@ public final class Temp implements Runnable, Comparable<Temp> {
     /**
      * @return The current temperature read directly from the file system.
      */
-    public BigDecimal updateTempFromFile() {
-        BufferedReader br = null;
-        String temp = null;
-        
+    public synchronized BigDecimal updateTempFromFile() {
         BigDecimal newTemperature = null;
 
         try {
-            br = new BufferedReader(new FileReader(fProbe));
-            String line = br.readLine();
-            
-            if (line == null || line.contains("NO")) {
+            if (probeChannel == null) {
+                probeChannel = FileChannel.open(Paths.get(fProbe),
+                        StandardOpenOption.READ);
+            }
+            // Reading from the start makes the kernel take a new reading
+            readBuffer.clear();
+            long position = 0;
+            int count;
+            while (readBuffer.hasRemaining()
+                    && (count = probeChannel.read(readBuffer, position)) > 0) {
+                position += count;
+            }
+            byte[] data = readBuffer.array();
+            int length = readBuffer.position();
+            int lineEnd = indexOf(data, 0, length, (byte) '\n');
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+
+            if (length == 0 || indexOf(data, 0, lineEnd, NO) >= 0) {
                 // bad CRC, do nothing
                 this.currentError = "Bad CRC from " + fProbe;
-            } else if (line.contains("YES")) {
-                // good CRC
-                line = br.readLine();
-                // last value should be t=
-                int t = line.indexOf("t=");
-                temp = line.substring(t + 2);
-                BigDecimal tTemp = new BigDecimal(temp);
-                newTemperature = MathUtil.divide(tTemp, 1000);
-                this.currentError = null;
+            } else if (indexOf(data, 0, lineEnd, YES) >= 0) {
+                // good CRC, last value on the next line should be t=
+                int t = indexOf(data, lineEnd, length, T_EQUALS);
+                if (t < 0) {
+                    this.currentError = "Couldn't find the temperature in "
+                            + fProbe;
+                } else {
+                    newTemperature = parseMilli(data, t + T_EQUALS.length,
+                            length);
+                    this.currentError = null;
+                }
             } else {
                 // System Temperature
-                BigDecimal tTemp = new BigDecimal(line);
-                newTemperature = MathUtil.divide(tTemp, 1000);
+                newTemperature = parseMilli(data, 0, lineEnd);
             }
 
         } catch (IOException ie) {
+            closeProbeChannel();
             if (loggingOn) {
                 this.currentError = "Couldn't find the device under: " + fProbe;
                 BrewServer.LOG.warning(currentError);
@@ -498,16 +697,9 @@ public final class Temp implements Runnable, Comparable<Temp> {
             }
             return ERROR_TEMP;
         } catch (NumberFormatException nfe) {
-            this.currentError = "Couldn't parse " + temp + " as a double";
-            nfe.printStackTrace();
-        } finally {
-            if (br != null) {
-                try {
-                    br.close();
-                } catch (IOException ie) {
-                    BrewServer.LOG.warning(ie.getLocalizedMessage());
-                }
-            }
+            this.currentError = "Couldn't parse the temperature from "
+                    + fProbe + ": " + nfe.getMessage();
+            BrewServer.LOG.warning(currentError);
         }
         if( newTemperature == null )
         {
@@ -516,6 +708,76 @@ public final class Temp implements Runnable, Comparable<Temp> {
         return newTemperature;
     }
 
+    /**
+     * Close the probe file, it's opened again on the next read.
+     */
+    private synchronized void closeProbeChannel() {
+        if (probeChannel != null) {
+            try {
+                probeChannel.close();
+            } catch (IOException ie) {
+                BrewServer.LOG.warning(ie.getLocalizedMessage());
+            }
+            probeChannel = null;
+        }
+    }
+
+    /**
+     * Find a byte sequence in a buffer.
+     * @return The index of the start of the sequence, or -1.
+     */
+    private static int indexOf(final byte[] data, final int from,
+            final int to, final byte... target) {
+        outer:
+        for (int i = from; i <= to - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (data[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Parse a whole number of thousandths of a degree, such as 23125 for
+     * 23.125, ignoring anything after the digits.
+     * @return The temperature in degrees.
+     */
+    private static BigDecimal parseMilli(final byte[] data, final int from,
+            final int to) {
+        int i = from;
+        while (i < to && (data[i] == ' ' || data[i] == '\t')) {
+            i++;
+        }
+        boolean negative = false;
+        if (i < to && data[i] == '-') {
+            negative = true;
+            i++;
+        }
+        int start = i;
+        long value = 0;
+        while (i < to && data[i] >= '0' && data[i] <= '9'
+                && value < Integer.MAX_VALUE) {
+            value = value * 10 + (data[i] - '0');
+            i++;
+        }
+        if (i == start || value >= Integer.MAX_VALUE) {
+            throw new NumberFormatException("No temperature value");
+        }
+        if (negative) {
+            value = -value;
+        }
+        // Drop the trailing zeros, so 23000 is 23 rather than 23.000
+        int decimals = 3;
+        while (decimals > 0 && value % 10 == 0) {
+            value /= 10;
+            decimals--;
+        }
+        return BigDecimal.valueOf(value, decimals);
+    }
+
     /**
      * Setup the volume reading.
      * @param address One Wire device address.
@@ -689,8 +951,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
                             "Could not update the volume reading from OWFS");
                         this.stopVolumeLogging = true;
                     }
-                    BrewServer.LOG.info("Reconnecting OWFS");
-                    LaunchControl.setupOWFS();
+                    OwfsReader.reconnect();
 
                     return BigDecimal.ZERO;
                 }
@@ -758,6 +1019,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
                 BrewServer.LOG.info("Finished reading Volume Elements");
             }
 
+            BigDecimal previousVolume = this.currentVolume;
             if (tVolume == null) {
                 // try to assume the value
                 this.currentVolume = pinValue.subtract(volumeConstant)
@@ -767,6 +1029,9 @@ public final class Temp implements Runnable, Comparable<Temp> {
             }
 
             this.currentVolume = this.currentVolume.multiply(this.gravity);
+            if (this.currentVolume.compareTo(previousVolume) != 0) {
+                markChanged();
+            }
 
             return pinValue;
         } catch (RuntimeException | IOException e) {
@@ -781,6 +1046,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
     @SuppressWarnings("unused")
     public void setVolumeUnit(final String unit) {
         this.volumeUnit = unit;
+        markChanged();
     }
 
     /**
@@ -937,7 +1203,11 @@ public final class Temp implements Runnable, Comparable<Temp> {
         // Graceful shutdown.
         keepalive = false;
         BrewServer.LOG.warning(this.getName() + " is shutting down");
-        Thread.currentThread().interrupt();
+        SensorScheduler.unregister(this);
+        closeProbeChannel();
+        if (fProbe == null) {
+            OwfsReader.unregister(probeName);
+        }
     }
 
     public void setCalibration(String calibration) {
@@ -970,7 +1240,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
             } else if (unit.equals("C")) {
                 this.calibration = temperature.multiply(new BigDecimal(1.8));
             }
-
+            markChanged();
         } else {
             BrewServer.LOG.severe(calibration + " doesn't match "
                     + tempRegexp.pattern());
@@ -996,10 +1266,12 @@ public final class Temp implements Runnable, Comparable<Temp> {
 
     public void hide() {
         this.hidden = true;
+        markChanged();
     }
 
     public void show() {
         this.hidden = false;
+        markChanged();
     }
 
     public boolean isHidden() {
@@ -1016,6 +1288,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
  
     public void setGravity(BigDecimal newGravity) {
         this.gravity = newGravity;
+        markChanged();
     }
 
     public BigDecimal getGravity() {
@@ -1053,6 +1326,21 @@ public final class Temp implements Runnable, Comparable<Temp> {
      */
     public void setPosition(final int newPos) {
         this.position = newPos;
+        markChanged();
+    }
+
+    /**
+     * @return The status version this probe last changed at.
+     */
+    public long getStatusVersion() {
+        return this.statusVersion.get();
+    }
+
+    /**
+     * Record that something in the status of this probe has changed.
+     */
+    private void markChanged() {
+        this.statusVersion.changed();
     }
 
     @Override
@@ -0,0 +1,188 @@
+package com.sb.elsinore;
+
+import java.util.Locale;
+
+/**
+ * Smooths temperature readings for a {@link PID}.
+ *
+ * The readings are kept in a fixed ring of doubles with a running sum, so
+ * adding a reading and getting the mean are O(1) whatever the window, and
+ * nothing is created per reading. The filter can also be an exponentially
+ * weighted average, which only needs the last value, or a median, which
+ * sorts a reused copy of the window and ignores single bad readings from a
+ * noisy probe.
+ *
+ * The sample thread adds readings while the control loop and the status
+ * read them, so the methods that touch the window are synchronized. The
+ * lock is held for a few multiplies, or one sort of the median window.
+ *
+ * @author Doug Edey
+ */
+public final class TempFilter {
+
+    /** The value when there are no readings yet. */
+    public static final double NO_READING = -999.0;
+    /** The default window, the last five readings. */
+    public static final int DEFAULT_WINDOW = 5;
+    /** The largest window allowed. */
+    public static final int MAX_WINDOW = 600;
+
+    /**
+     * The ways of smoothing the readings.
+     */
+    public enum Mode {
+        /** The average of the window. */
+        MEAN,
+        /** An exponentially weighted average, over about a window. */
+        EWMA,
+        /** The middle value of the window. */
+        MEDIAN;
+
+        /**
+         * @param name The name of a mode, case insensitive.
+         * @return The mode, or MEAN if the name isn't known.
+         */
+        public static Mode fromString(final String name) {
+            if (name != null) {
+                for (Mode mode : values()) {
+                    if (mode.name().equalsIgnoreCase(name.trim())) {
+                        return mode;
+                    }
+                }
+            }
+            return MEAN;
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private final Mode mode;
+    private final double[] readings;
+    private final double[] sorted;
+    private final double alpha;
+    private int count = 0;
+    private int next = 0;
+    private double sum = 0.0;
+    private double ewma = NO_READING;
+
+    /**
+     * Create a mean of the last {@link #DEFAULT_WINDOW} readings.
+     */
+    public TempFilter() {
+        this(Mode.MEAN, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Create a new filter.
+     * @param mode How to smooth the readings.
+     * @param window The number of readings to smooth over, limited to
+     * between 1 and {@link #MAX_WINDOW}.
+     */
+    public TempFilter(final Mode mode, final int window) {
+        int size = Math.max(1, Math.min(window, MAX_WINDOW));
+        this.mode = mode == null ? Mode.MEAN : mode;
+        this.readings = new double[size];
+        this.sorted = this.mode == Mode.MEDIAN ? new double[size] : null;
+        this.alpha = 2.0 / (size + 1);
+    }
+
+    /**
+     * @return How the readings are smoothed.
+     */
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * @return The number of readings smoothed over.
+     */
+    public int getWindow() {
+        return this.readings.length;
+    }
+
+    /**
+     * Add a reading, dropping the oldest once the window is full.
+     * @param value The reading.
+     */
+    public synchronized void add(final double value) {
+        if (this.count == this.readings.length) {
+            this.sum -= this.readings[this.next];
+        } else {
+            this.count++;
+        }
+        this.readings[this.next] = value;
+        this.sum += value;
+        this.next++;
+        if (this.next == this.readings.length) {
+            this.next = 0;
+            // Start the sum again once per lap so rounding can't build up
+            resum();
+        }
+
+        if (this.count == 1) {
+            this.ewma = value;
+        } else {
+            this.ewma += this.alpha * (value - this.ewma);
+        }
+    }
+
+    /**
+     * @return The smoothed value, or {@link #NO_READING} if there are no
+     * readings.
+     */
+    public synchronized double get() {
+        if (this.count == 0) {
+            return NO_READING;
+        }
+        switch (this.mode) {
+            case EWMA:
+                return this.ewma;
+            case MEDIAN:
+                return median();
+            default:
+                return this.sum / this.count;
+        }
+    }
+
+    /**
+     * Drop every reading.
+     */
+    public synchronized void clear() {
+        this.count = 0;
+        this.next = 0;
+        this.sum = 0.0;
+        this.ewma = NO_READING;
+    }
+
+    private void resum() {
+        double total = 0.0;
+        for (int i = 0; i < this.count; i++) {
+            total += this.readings[i];
+        }
+        this.sum = total;
+    }
+
+    /**
+     * Insertion sort a copy of the window, it's small and nearly sorted.
+     * Only called with the lock held, the copy is shared.
+     */
+    private double median() {
+        int n = this.count;
+        for (int i = 0; i < n; i++) {
+            double value = this.readings[i];
+            int j = i - 1;
+            while (j >= 0 && this.sorted[j] > value) {
+                this.sorted[j + 1] = this.sorted[j];
+                j--;
+            }
+            this.sorted[j + 1] = value;
+        }
+        if (n % 2 == 1) {
+            return this.sorted[n / 2];
+        }
+        return (this.sorted[n / 2 - 1] + this.sorted[n / 2]) / 2;
+    }
+}
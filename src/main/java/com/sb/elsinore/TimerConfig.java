@@ -0,0 +1,69 @@
+package com.sb.elsinore;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * A timer from the config file.
+ *
+ * @author Doug Edey
+ */
+public final class TimerConfig {
+
+    private final String id;
+    private final int position;
+
+    /**
+     * @param timer The timer to save.
+     */
+    public TimerConfig(final Timer timer) {
+        this(timer.getName(), timer.getPosition());
+    }
+
+    private TimerConfig(final String newId, final int newPosition) {
+        this.id = newId;
+        this.position = newPosition;
+    }
+
+    /**
+     * Parse a timer element.
+     * @param timer The element from the config file.
+     * @return The timer.
+     */
+    public static TimerConfig fromElement(final Element timer) {
+        int position = -1;
+        if (timer.hasAttribute("position")) {
+            try {
+                position = Integer.parseInt(timer.getAttribute("position"));
+            } catch (NumberFormatException nfe) {
+                // Couldn't parse. Move on.
+            }
+        }
+        return new TimerConfig(timer.getAttribute("id"), position);
+    }
+
+    /**
+     * @param doc The document to create the element in.
+     * @return The timer element.
+     */
+    public Element toElement(final Document doc) {
+        Element timer = doc.createElement("timer");
+        timer.setAttribute("id", this.id);
+        timer.setAttribute("position", Integer.toString(this.position));
+        return timer;
+    }
+
+    /**
+     * @return The timer name.
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * @return The position on the page, -1 if it's not set.
+     */
+    public int getPosition() {
+        return this.position;
+    }
+}
@@ -0,0 +1,136 @@
+package com.sb.elsinore;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one timer thread for everything that happens after a delay, such as
+ * the wait triggers, the brew day count downs and moving a trigger profile
+ * on to its next step.
+ *
+ * The delays are measured with System.nanoTime(), so they aren't thrown out
+ * when NTP corrects the clock, which a Pi without a real time clock does
+ * some time after it boots. Use {@link #nanoTime()} to measure durations
+ * and {@link #toNanos(long)} to turn a date from a client into the same
+ * clock.
+ *
+ * The timers are kept in order, so the next one due is known without
+ * checking them all, see {@link #getNextFire()}.
+ *
+ * @author Doug Edey
+ */
+public final class TimerService {
+
+    private static final ScheduledThreadPoolExecutor executor;
+
+    static {
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(r, "Timer-Service");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Don't keep cancelled waits around until they would have fired
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    private TimerService() {
+    }
+
+    /**
+     * Run something after a delay.
+     * @param task What to run, it must return quickly.
+     * @param delay The delay in milliseconds.
+     * @return The future to cancel the timer with, or null if the service
+     * has been shut down.
+     */
+    public static ScheduledFuture<?> schedule(final Runnable task,
+            final long delay) {
+        try {
+            return executor.schedule(guard(task), Math.max(0, delay),
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Run something on the timer thread as soon as possible.
+     * @param task What to run, it must return quickly.
+     */
+    public static void execute(final Runnable task) {
+        try {
+            executor.execute(guard(task));
+        } catch (RejectedExecutionException e) {
+            BrewServer.LOG.warning("Timer service is shut down, not running "
+                    + task);
+        }
+    }
+
+    /**
+     * @return The monotonic clock all the timers use, in nanoseconds.
+     */
+    public static long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Turn a wall clock time into the monotonic clock, using the offset
+     * between them now.
+     * @param wallMillis The wall clock time in milliseconds.
+     * @return The same time on the {@link #nanoTime()} clock.
+     */
+    public static long toNanos(final long wallMillis) {
+        return nanoTime() - TimeUnit.MILLISECONDS.toNanos(
+                System.currentTimeMillis() - wallMillis);
+    }
+
+    /**
+     * @return The number of timers waiting to fire.
+     */
+    public static int getTimerCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return The milliseconds until the next timer fires, or -1 if there
+     * are none.
+     */
+    public static long getNextFire() {
+        Runnable next = executor.getQueue().peek();
+        if (!(next instanceof Delayed)) {
+            return -1;
+        }
+        return Math.max(0, ((Delayed) next).getDelay(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Stop the timers, anything waiting won't fire.
+     */
+    public static void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Log a failed task, the executor would otherwise hide it in the future.
+     */
+    private static Runnable guard(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    BrewServer.LOG.warning("Timer task failed: "
+                            + e.getMessage());
+                }
+            }
+        };
+    }
+}
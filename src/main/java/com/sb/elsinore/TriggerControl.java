@@ -1,15 +1,14 @@
 package com.sb.elsinore;
 
 import com.sb.elsinore.triggers.TriggerInterface;
+import com.sb.elsinore.triggers.TriggerRegistry;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.reflections.Reflections;
 import org.rendersnake.HtmlCanvas;
 import org.rendersnake.tools.PrettyWriter;
 
 import java.io.IOException;
 import java.io.StringWriter;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.Map.Entry;
@@ -24,7 +23,7 @@ import static org.rendersnake.HtmlAttributesFactory.*;
  *
  */
 
-public class TriggerControl implements Runnable {
+public class TriggerControl {
 
     /**
      * The output PID to be controlled & read from.
@@ -34,7 +33,29 @@ public class TriggerControl implements Runnable {
     /**
      * A flag to tell the thread to shutdown.
      */
-    private boolean shutdownFlag = false;
+    private volatile boolean shutdownFlag = false;
+
+    /**
+     * The trigger waiting to be hit, if any.
+     */
+    private TriggerInterface armedTrigger = null;
+
+    /**
+     * Moves on to the next trigger on the timer thread, off the thread that
+     * hit the trigger.
+     */
+    private final TriggerInterface.Listener listener =
+        new TriggerInterface.Listener() {
+            @Override
+            public void triggerHit(final TriggerInterface trigger) {
+                TimerService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        advance(trigger);
+                    }
+                });
+            }
+        };
 
     /**
      * The list of mash steps, position -> Step.
@@ -42,6 +63,11 @@ public class TriggerControl implements Runnable {
     private final ArrayList<TriggerInterface> triggerList =
             new ArrayList<>();
 
+    /**
+     * The status version the triggers last changed at.
+     */
+    private final StatusVersion statusVersion = new StatusVersion();
+
     /**
      * Add a mashstep at a position, overriding the old one.
      * @param position The position to add the mashstep at
@@ -53,8 +79,8 @@ public class TriggerControl implements Runnable {
     public final TriggerInterface addTrigger(int position,
             final String type, final JSONObject parameters) {
         TriggerInterface triggerStep = null;
-        Class<? extends TriggerInterface> triggerClass = getTriggerOfName(type);
-        if (triggerClass == null) {
+        TriggerRegistry.Type triggerType = TriggerRegistry.getType(type);
+        if (triggerType == null) {
             return null;
         }
 
@@ -62,17 +88,11 @@ public class TriggerControl implements Runnable {
             position = triggerList.size();
         }
 
-        // Find the constructor.
         try {
-            Constructor<? extends TriggerInterface> triggerConstructor
-                = triggerClass.getConstructor(
-                        int.class, JSONObject.class);
-            triggerStep = triggerConstructor.newInstance(
-                    position, parameters);
+            triggerStep = triggerType.create(position, parameters);
             triggerList.add(triggerStep);
-        } catch (InstantiationException | IllegalAccessException
-                | IllegalArgumentException | InvocationTargetException
-                | NoSuchMethodException | SecurityException e) {
+            markChanged();
+        } catch (IllegalArgumentException | InvocationTargetException e) {
             e.printStackTrace();
         }
 
@@ -88,29 +108,18 @@ public class TriggerControl implements Runnable {
     public static HtmlCanvas getNewTriggerForm(final int position,
             final String type) {
         TriggerInterface triggerStep;
-        Class<? extends TriggerInterface> triggerClass = getTriggerOfName(type);
-        if (triggerClass == null) {
+        TriggerRegistry.Type triggerType = TriggerRegistry.getType(type);
+        if (triggerType == null) {
             LaunchControl.setMessage(
                     "Couldn't find the Trigger Class for " + type);
             return null;
         }
 
-        // Find the constructor.
         try {
-            Constructor<? extends TriggerInterface> triggerConstructor
-                = triggerClass.getConstructor(
-                        int.class);
-            if (triggerConstructor == null) {
-                LaunchControl.setMessage(
-                    "Couldn't find the basic constructor for " + type);
-                return null;
-            }
-            triggerStep = triggerConstructor.newInstance(
-                    position);
+            triggerStep = triggerType.create(position);
             return triggerStep.getForm();
-        } catch (InstantiationException | IllegalAccessException
-                | IllegalArgumentException | InvocationTargetException
-                | NoSuchMethodException | SecurityException | IOException e) {
+        } catch (IllegalArgumentException | InvocationTargetException
+                | IOException e) {
             LaunchControl.setMessage(e.getMessage());
             e.printStackTrace();
         }
@@ -146,6 +155,7 @@ public class TriggerControl implements Runnable {
             final JSONObject params) {
         TriggerInterface trigger = this.triggerList.get(position);
         trigger.updateTrigger(params);
+        markChanged();
     }
 
 
@@ -156,9 +166,11 @@ public class TriggerControl implements Runnable {
      */
     public static Class<? extends TriggerInterface> getTriggerOfName(
             final String name) {
-        String seekName = name + "Trigger";
-        // Find the trigger.
-        return getTriggerList().get(seekName);
+        TriggerRegistry.Type type = TriggerRegistry.getType(name);
+        if (type == null) {
+            return null;
+        }
+        return type.getTriggerClass();
     }
 
     /**
@@ -167,39 +179,28 @@ public class TriggerControl implements Runnable {
      */
     public static Map<String, Class<? extends TriggerInterface>>
         getTriggerList() {
-        HashMap<String, Class<? extends TriggerInterface>> interfaceMap = new HashMap<>();
+        Map<String, Class<? extends TriggerInterface>> interfaceMap =
+                new LinkedHashMap<>();
 
-        Set<Class<? extends TriggerInterface>> triggerSet =
-                new Reflections("com.sb.elsinore.triggers")
-                    .getSubTypesOf(TriggerInterface.class);
-        for (Class<? extends TriggerInterface> triggerClass: triggerSet) {
-            interfaceMap.put(triggerClass.getSimpleName(), triggerClass);
+        for (TriggerRegistry.Type type : TriggerRegistry.getTypes()) {
+            interfaceMap.put(type.getTriggerClass().getSimpleName(),
+                    type.getTriggerClass());
         }
 
         return interfaceMap;
     }
 
+    /**
+     * Get the trigger types that can be used with a probe type.
+     * @param inType The probe type, "pid" or "temp".
+     * @return A Map of type: display name.
+     */
     public static Map<String, String> getTriggerTypes(final String inType) {
-        Map<String, Class<? extends TriggerInterface>> interfaceMap =
-                getTriggerList();
-        Map<String, String> typeMap = new HashMap<>();
-
-        // Get the String, String array
-        for (Entry<String, Class<? extends TriggerInterface>> entry:
-            interfaceMap.entrySet()) {
-            Constructor<? extends TriggerInterface> tempTrigger;
-            try {
-                tempTrigger = entry.getValue().getConstructor();
-                if (tempTrigger.newInstance()
-                        .getTriggerType(inType)) {
-                    typeMap.put(entry.getKey().replace("Trigger",  ""),
-                        tempTrigger.newInstance().getName());
-                }
-            } catch (NoSuchMethodException | SecurityException |
-                    InstantiationException | IllegalAccessException |
-                    IllegalArgumentException | InvocationTargetException e) {
-                BrewServer.LOG.warning("Couldn't get the default constructor for: "
-                        + entry.getKey() + ". " + e.getLocalizedMessage());
+        Map<String, String> typeMap = new LinkedHashMap<>();
+
+        for (TriggerRegistry.Type type : TriggerRegistry.getTypes()) {
+            if (type.supports(inType)) {
+                typeMap.put(type.getType(), type.getName());
             }
         }
 
@@ -238,57 +239,80 @@ public class TriggerControl implements Runnable {
     }
 
     /**
-     * A loop to run for the thread that checks the states.
+     * Arm the active trigger, if it isn't already. Each trigger tells this
+     * control when it's hit, which moves on to the next one, so no thread
+     * is held while a trigger waits.
      */
-    @Override
-    public final void run() {
-        // Run through and update the times based on the currently active step
-        TriggerInterface triggerEntry = getCurrentTrigger();
+    public final void start() {
+        TriggerInterface current;
+        synchronized (this) {
+            this.shutdownFlag = false;
+            current = getCurrentTrigger();
+            if (current == null || current == this.armedTrigger) {
+                return;
+            }
+            disarmCurrent();
+            this.armedTrigger = current;
+            BrewServer.LOG.warning("Found an active mash step: "
+                + current.getPosition());
+        }
+        arm(current);
+    }
 
-        TriggerInterface currentTrigger = null;
-        Integer currentTriggerPosition = -1;
+    /**
+     * Stop waiting on the armed trigger.
+     */
+    public final synchronized void stop() {
+        disarmCurrent();
+    }
 
-        // active step
-        if (triggerEntry != null) {
-            currentTrigger = triggerEntry;
-            currentTriggerPosition = triggerEntry.getPosition();
+    /**
+     * Arm a trigger, outside the lock as it may start another control.
+     * @param trigger The trigger to arm.
+     */
+    private void arm(final TriggerInterface trigger) {
+        try {
+            trigger.arm(this.listener);
+        } catch (RuntimeException e) {
+            BrewServer.LOG.warning("Couldn't arm the trigger at "
+                    + trigger.getPosition() + " for " + this.outputControl
+                    + ": " + e.getMessage());
         }
+    }
 
-        while (true) {
-            // Is there a step and an output control?
-            if (currentTrigger == null) {
-                triggerEntry = getCurrentTrigger();
-
-                // active step
-                if (triggerEntry != null) {
-                    currentTrigger = triggerEntry;
-                    currentTriggerPosition = triggerEntry.getPosition();
-                    BrewServer.LOG.warning("Found an active mash step: "
-                        + currentTriggerPosition);
-                }
-            }
+    private void disarmCurrent() {
+        if (this.armedTrigger != null) {
+            this.armedTrigger.disarm();
+            this.armedTrigger = null;
+        }
+    }
 
-            if (currentTrigger != null) {
-                // Do stuff with the active step
-                currentTrigger.waitForTrigger();
-                currentTrigger.deactivate();
-                currentTriggerPosition += 1;
-                if (currentTriggerPosition >= this.triggerCount()) {
-                    return;
-                }
-                currentTrigger = getTrigger(currentTriggerPosition);
-                currentTrigger.setActive();
-            }
-            try {
-                // Sleep for 10 seconds
-                Thread.sleep(10000);
-            } catch (InterruptedException e) {
-                // We got woken up.
+    /**
+     * Deactivate the trigger that was hit and arm the next one.
+     * @param trigger The trigger that was hit.
+     */
+    private void advance(final TriggerInterface trigger) {
+        TriggerInterface next;
+        synchronized (this) {
+            if (trigger != this.armedTrigger || this.shutdownFlag) {
+                // Deactivated or replaced since it was armed
+                return;
             }
-            if (isShutdownFlag()) {
+            this.armedTrigger = null;
+            trigger.deactivate();
+            markChanged();
+            sortTriggerSteps();
+            int nextPosition = this.triggerList.indexOf(trigger) + 1;
+            if (nextPosition <= 0
+                    || nextPosition >= this.triggerList.size()) {
                 return;
             }
+            next = this.triggerList.get(nextPosition);
+            next.setActive();
+            markChanged();
+            this.armedTrigger = next;
         }
+        arm(next);
     }
 
     /**
@@ -314,6 +338,7 @@ public class TriggerControl implements Runnable {
         }
 
         triggerEntry.setActive();
+        markChanged();
         return true;
     }
 
@@ -333,14 +358,20 @@ public class TriggerControl implements Runnable {
                 BrewServer.LOG.warning("Index out of bounds");
                 return false;
             }
+            synchronized (this) {
+                if (triggerEntry == this.armedTrigger) {
+                    disarmCurrent();
+                }
+            }
             triggerEntry.deactivate();
         } else {
             // Otherwise deactivate all the steps
+            stop();
             for (TriggerInterface mEntry : triggerList) {
                 mEntry.deactivate();
             }
         }
-
+        markChanged();
         return true;
     }
 
@@ -386,6 +417,9 @@ public class TriggerControl implements Runnable {
      */
     public final void setShutdownFlag(final boolean newFlag) {
         this.shutdownFlag = newFlag;
+        if (newFlag) {
+            stop();
+        }
     }
 
     /**
@@ -422,11 +456,11 @@ public class TriggerControl implements Runnable {
             }
         }
         sortTriggerSteps();
+        markChanged();
 
         // No more steps, turn off the MashControl
         if (triggerList.size() == 0) {
             setShutdownFlag(true);
-            Thread.currentThread().interrupt();
         }
     }
 
@@ -480,9 +514,36 @@ public class TriggerControl implements Runnable {
 
     public void clear() {
         this.triggerList.clear();
+        markChanged();
     }
 
     public void addTrigger(TriggerInterface newTrigger) {
         this.triggerList.add(newTrigger);
+        markChanged();
+    }
+
+    /**
+     * The triggers update their own start and end times while they run, so
+     * a control with an active trigger is always treated as changed.
+     * @param since The status version to compare against.
+     * @return True if the triggers may have changed since the version.
+     */
+    public final boolean changedSince(final long since) {
+        return this.statusVersion.changedSince(since)
+                || getCurrentTrigger() != null;
+    }
+
+    /**
+     * @return The status version the triggers last changed at.
+     */
+    public final long getStatusVersion() {
+        return this.statusVersion.get();
+    }
+
+    /**
+     * Record that something in the triggers has changed.
+     */
+    private void markChanged() {
+        this.statusVersion.changed();
     }
 }
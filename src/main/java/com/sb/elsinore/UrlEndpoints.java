@@ -904,6 +904,21 @@ public class UrlEndpoints {
             }
         }
 
+        sub_usage.put("filter",
+                "How to smooth the temperature: mean, ewma or median");
+        String filter = parms.get("filter");
+        int filterWindow = tPID.getFilterWindow();
+        sub_usage.put("filterwindow",
+                "The number of readings to smooth the temperature over");
+        if (parms.containsKey("filterwindow")) {
+            try {
+                filterWindow = Integer.parseInt(parms.get("filterwindow"));
+            } catch (NumberFormatException nfe) {
+                BrewServer.LOG.warning("Bad filter window");
+                errorValue = true;
+            }
+        }
+
         BrewServer.LOG.info("Form: " + inputUnit);
 
         JSONObject usage = new JSONObject();
@@ -915,6 +930,11 @@ public class UrlEndpoints {
                     usage.toJSONString()); 
         }
 
+        if (filter != null || parms.containsKey("filterwindow")) {
+            tPID.setFilter(filter != null ? filter : tPID.getFilterMode(),
+                    filterWindow);
+        }
+
         if (mode.equalsIgnoreCase("hysteria")) {
             tPID.setHysteria(min, max, time);
             tPID.useHysteria();
@@ -1175,9 +1195,8 @@ public class UrlEndpoints {
                         "Couldn't parse " + entry.getValue()
                         + " as an integer");
             }
-            synchronized (LaunchControl.switchList) {
-                Collections.sort(LaunchControl.switchList);
-            }
+            LaunchControl.switchList.sort();
+            LaunchControl.structureChanged();
             status = Response.Status.OK;
         }
         return new Response(status,
@@ -1422,6 +1441,7 @@ public class UrlEndpoints {
     @UrlEndpoint(url = "/lockpage")
     public Response lockPage() {
         LaunchControl.pageLock = true;
+        LaunchControl.structureChanged();
         return new NanoHTTPD.Response(Status.OK,
                 BrewServer.MIME_TYPES.get("json"),
                 "{status: \"locked\"}");
@@ -1431,6 +1451,7 @@ public class UrlEndpoints {
     public Response unlockPage() {
         LaunchControl.listOneWireSys(false);
         LaunchControl.pageLock = false;
+        LaunchControl.structureChanged();
         return new NanoHTTPD.Response(Status.OK,
                 BrewServer.MIME_TYPES.get("json"),
                 "{status: \"unlocked\"");
@@ -2043,4 +2064,135 @@ public class UrlEndpoints {
 
         return new Response("Shutdown called");
     }
+
+    @UrlEndpoint(url = "/clearstatus")
+    public Response clearStatus() {
+        LaunchControl.setMessage("");
+        return new NanoHTTPD.Response(Status.OK, MIME_HTML,
+                "Status Cleared");
+    }
+
+    @UrlEndpoint(url = "/addsystem")
+    public Response addSystem() {
+        LaunchControl.addSystemTemp();
+        return new NanoHTTPD.Response(Status.OK, MIME_HTML,
+                "Added system temperature");
+    }
+
+    @UrlEndpoint(url = "/delsystem")
+    public Response delSystem() {
+        LaunchControl.delSystemTemp();
+        return new NanoHTTPD.Response(Status.OK, MIME_HTML,
+                "Deleted system temperature");
+    }
+
+    @UrlEndpoint(url = "/getstatus")
+    public Response getStatus() {
+        return BrewServer.serveStatus(this.header, this.parameters);
+    }
+
+    @UrlEndpoint(url = "/status-stream")
+    public Response getStatusStream() {
+        // Every stream holds a request thread, leave some for the rest
+        StatusStream stream = StatusStream.open(LaunchControl.maxStatusStreams);
+        if (stream == null) {
+            Response res = new Response(Status.SERVICE_UNAVAILABLE,
+                    NanoHTTPD.MIME_PLAINTEXT, "Too many status streams open");
+            res.addHeader("Retry-After", "10");
+            return res;
+        }
+        Response res = new Response(Status.OK, "text/event-stream", stream);
+        res.setChunkedTransfer(true);
+        res.addHeader("Cache-Control", "no-cache");
+        return res;
+    }
+
+    @UrlEndpoint(url = "/getsystemsettings")
+    public Response getSystemSettings() {
+        return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
+                LaunchControl.getSystemStatus());
+    }
+
+    @UrlEndpoint(url = "/graph")
+    public Response getGraph() {
+        return BrewServer.serveFile("/templates/static/graph/graph.html",
+                this.header, this.rootDir);
+    }
+
+    @UrlEndpoint(url = "/checkgit")
+    public Response checkGit() {
+        LaunchControl.checkForUpdates();
+        return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
+                "{Status:'OK'}");
+    }
+
+    @UrlEndpoint(url = "/restartupdate")
+    public Response restartUpdate() {
+        LaunchControl.updateFromGit();
+        return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
+                "{Status:'OK'}");
+    }
+
+    @UrlEndpoint(url = "/settheme")
+    public Response setTheme() {
+        String newTheme = this.parameters.get("name");
+
+        if (newTheme == null) {
+            return new NanoHTTPD.Response(Status.BAD_REQUEST,
+                    MIME_TYPES.get("json"),
+                    "{Status:'No name provided'}");
+        }
+
+        String fileName = "/logos/" + newTheme + ".ico";
+        if (!(new File(this.rootDir, fileName).exists())) {
+            // It doesn't exist
+            LaunchControl.setMessage("Favicon for the new theme: "
+                    + newTheme + ", doesn't exist."
+                    + " Please add: " + fileName + " and try again");
+            return new NanoHTTPD.Response(Status.BAD_REQUEST,
+                    MIME_TYPES.get("json"),
+                    "{Status:'Favicon doesn\'t exist'}");
+        }
+
+        fileName = "/logos/" + newTheme + ".gif";
+        if (!(new File(this.rootDir, fileName).exists())) {
+            // It doesn't exist
+            LaunchControl.setMessage("Brewry image for the new theme: "
+                    + newTheme + ", doesn't exist."
+                    + " Please add: " + fileName + " and try again");
+            return new NanoHTTPD.Response(Status.BAD_REQUEST,
+                    MIME_TYPES.get("json"),
+                    "{Status:'Brewery Image doesn\'t exist'}");
+        }
+
+        LaunchControl.theme = newTheme;
+        return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
+                "{Status:'OK'}");
+    }
+
+    /**
+     * Serve the favicon for the current theme.
+     * @return The themed icon, or null to serve the default one.
+     */
+    @UrlEndpoint(url = "/favicon.ico")
+    public Response getFavicon() {
+        // Has the favicon been overridden?
+        // Check to see if there's a theme set.
+        if (LaunchControl.theme != null
+                && !LaunchControl.theme.equals("")) {
+            if (new File(this.rootDir,
+                    "/logos/" + LaunchControl.theme + ".ico").exists()) {
+                return BrewServer.serveFile(
+                        "/logos/" + LaunchControl.theme + ".ico",
+                        this.header, this.rootDir);
+            }
+        }
+        return null;
+    }
+
+    @UrlEndpoint(url = "/stop")
+    public Response stop() {
+        System.exit(128);
+        return null;
+    }
 }
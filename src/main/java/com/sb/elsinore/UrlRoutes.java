@@ -0,0 +1,78 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.NanoHTTPD.Response;
+import com.sb.elsinore.annotations.UrlEndpoint;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The table of {@link UrlEndpoint} methods in {@link UrlEndpoints}.
+ *
+ * The annotations are only read once, the first time a URL is looked up.
+ * Each endpoint is stored as a method handle keyed by the lower case URL, so
+ * a request only costs a hash lookup and a direct call.
+ *
+ * @author Doug Edey
+ */
+public final class UrlRoutes {
+
+    /** The type every handle is adapted to. */
+    private static final MethodType HANDLER_TYPE =
+            MethodType.methodType(Response.class, UrlEndpoints.class);
+    /** Lower case URL to endpoint handle. */
+    private static final Map<String, MethodHandle> ROUTES = buildRoutes();
+
+    private UrlRoutes() {
+    }
+
+    /**
+     * Find the endpoint for a URL, ignoring case.
+     * @param uri The URL requested.
+     * @return The endpoint handle, taking a {@link UrlEndpoints} and
+     * returning a {@link Response}, or null if there is no endpoint.
+     */
+    public static MethodHandle find(final String uri) {
+        return ROUTES.get(uri.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @return The lower case URLs of every endpoint.
+     */
+    public static Set<String> getUrls() {
+        return ROUTES.keySet();
+    }
+
+    /**
+     * Read the endpoint annotations and build the table.
+     * @return The lower case URL to handle map.
+     */
+    private static Map<String, MethodHandle> buildRoutes() {
+        Map<String, MethodHandle> routes = new HashMap<>();
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (Method m : UrlEndpoints.class.getDeclaredMethods()) {
+            UrlEndpoint urlMethod = m.getAnnotation(UrlEndpoint.class);
+            if (urlMethod == null) {
+                continue;
+            }
+            String url = urlMethod.url().toLowerCase(Locale.ENGLISH);
+            try {
+                MethodHandle handle = lookup.unreflect(m).asType(HANDLER_TYPE);
+                if (routes.put(url, handle) != null) {
+                    BrewServer.LOG.warning("Duplicate URL endpoint: " + url);
+                }
+            } catch (IllegalAccessException | RuntimeException e) {
+                BrewServer.LOG.warning("Couldn't register URL " + url + ": "
+                        + e.getMessage());
+            }
+        }
+        return Collections.unmodifiableMap(routes);
+    }
+}
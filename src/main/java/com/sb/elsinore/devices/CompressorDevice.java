@@ -1,8 +1,9 @@
 package com.sb.elsinore.devices;
 
 import com.sb.elsinore.BrewServer;
-import jGPIO.InvalidGPIOException;
+import com.sb.elsinore.TimerService;
 import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class represents a compressor based device that needs a pause between
@@ -12,8 +13,10 @@ import java.math.BigDecimal;
  */
 public class CompressorDevice extends OutputDevice {
 
+    // Times on the TimerService clock, in nanoseconds
     protected long lastStopTime = -1L;
     protected long lastStartTime = -1L;
+    protected boolean stopped = false;
     protected boolean running = false;
     protected long delayBetweenRuns = 1000 * 60 * 3; // 3 Minutes
 
@@ -23,40 +26,46 @@ public class CompressorDevice extends OutputDevice {
 
     
     /**
-     * Run through a cycle and turn the device on/off as appropriate based on the input duty.
-     * @param duty The percentage of time / power to run.  This will only run if the duty
-     *              is between 0 and 100 and not null.
+     * A compressor is only started at full duty, and only once it has been
+     * off for the delay. Once it's running it stays on for whole cycles
+     * until it's turned off.
+     * @param duty The percentage of time / power to run.
+     * @return The whole cycle time if the compressor should run, else 0.
      */
     @Override
-    public void runCycle(BigDecimal duty) throws InterruptedException, InvalidGPIOException {
-        // Run if the duty is not null and is between 0 and 100 inclusive.
-        if (duty != null && 
-            duty.compareTo(BigDecimal.ZERO) > -1 &&
-            duty.compareTo(HUNDRED) < 1) {
-            initializeSSR();
-
-            if (duty.compareTo(HUNDRED) == 0) {
-                if (System.currentTimeMillis() - lastStopTime > delayBetweenRuns) {
-                    if (!running) {
-                        BrewServer.LOG.warning("Starting compressor device.");
-                        lastStartTime = System.currentTimeMillis();
-                    }
-                    running = true;
-                    setValue(true);
-                } else {
-                    BrewServer.LOG.warning("Need to wait before starting compressor again.: "+(delayBetweenRuns - (System.currentTimeMillis() - lastStopTime)));
-                }
+    public long getOnTime(final double duty) {
+        if (duty < 0 || duty > 100) {
+            return 0;
+        }
+        if (duty == 100 && !running) {
+            long waited = TimeUnit.NANOSECONDS.toMillis(
+                    TimerService.nanoTime() - lastStopTime);
+            if (stopped && waited <= delayBetweenRuns) {
+                BrewServer.LOG.warning("Need to wait before starting compressor again.: "+(delayBetweenRuns - waited));
+                return 0;
             }
-            Thread.sleep(cycleTime.intValue());
+            return getCycleMillis();
+        }
+        return running ? getCycleMillis() : 0;
+    }
+
+    @Override
+    public void turnOn() {
+        if (!running) {
+            BrewServer.LOG.warning("Starting compressor device.");
+            lastStartTime = TimerService.nanoTime();
         }
+        running = true;
+        super.turnOn();
     }
 
     @Override
     public void turnOff() {
         if (running) {
-            lastStopTime = System.currentTimeMillis();
+            lastStopTime = TimerService.nanoTime();
+            stopped = true;
             BrewServer.LOG.warning("Stopping compressor device.");
-            BrewServer.LOG.warning("Ran for " + (lastStopTime - lastStartTime) / 60000f + " minutes");
+            BrewServer.LOG.warning("Ran for " + (lastStopTime - lastStartTime) / 60000000000f + " minutes");
         }
         running = false;
         setValue(false);
@@ -1,7 +1,6 @@
 package com.sb.elsinore.devices;
 
 import com.sb.elsinore.BrewServer;
-import com.sb.util.MathUtil;
 import jGPIO.InvalidGPIOException;
 import jGPIO.OutPin;
 import java.math.BigDecimal;
@@ -22,6 +21,7 @@ public class OutputDevice {
     protected OutPin ssr = null;    //The output pin.
     protected String name;    //The name of this device
     private String gpio;    //The gpio pin
+    private volatile int watts = 0;    //The power drawn when on
 
     public OutputDevice(String name, String gpio, BigDecimal cycleTimeSeconds) {
         // Check for inverted outputs using a property.
@@ -59,6 +59,19 @@ public class OutputDevice {
         setValue(false);
     }
 
+    /**
+     * Turn the output on, setting up the pin if it hasn't been already.
+     */
+    public void turnOn() {
+        try {
+            initializeSSR();
+        } catch (InvalidGPIOException e) {
+            BrewServer.LOG.warning(e.getMessage());
+            return;
+        }
+        setValue(true);
+    }
+
     protected void initializeSSR() throws InvalidGPIOException {
         if (ssr == null) {
             if (gpio != null && gpio.length() > 0) {
@@ -74,33 +87,24 @@ public class OutputDevice {
 
     
     /**
-     * Run through a cycle and turn the device on/off as appropriate based on the input duty.
-     * @param duty The percentage of time / power to run.  This will only run if the duty
-     *              is between 0 and 100 and not null.
+     * Get how long to be on for in a cycle, called by the OutputScheduler at
+     * the start of each cycle.
+     * @param duty The percentage of time / power to run.  This will only run
+     *              if the duty is between 0 and 100.
+     * @return The time to be on for this cycle in milliseconds.
      */
-    public void runCycle(BigDecimal duty) throws InterruptedException, InvalidGPIOException {
-        // Run if the duty is not null and is between 0 and 100 inclusive.
-        if (duty != null
-                && duty.compareTo(BigDecimal.ZERO) > 0
-                && duty.compareTo(HUNDRED) < 1) {
-            initializeSSR();
-
-            duty = MathUtil.divide(duty, HUNDRED);
-            BigDecimal onTime = duty.multiply(cycleTime);
-            BigDecimal offTime = cycleTime.subtract(onTime);
-            BrewServer.LOG.info("On: " + onTime
-                    + " Off; " + offTime);
-
-            if (onTime.intValue() > 0) {
-                setValue(true);
-                Thread.sleep(onTime.intValue());
-            }
-
-            if (duty.compareTo(HUNDRED) < 0 && offTime.intValue() > 0) {
-                setValue(false);
-                Thread.sleep(offTime.intValue());
-            }
+    public long getOnTime(final double duty) {
+        if (duty <= 0 || duty > 100) {
+            return 0;
         }
+        return Math.round(duty / 100 * getCycleMillis());
+    }
+
+    /**
+     * @return The cycle time in milliseconds.
+     */
+    public long getCycleMillis() {
+        return this.cycleTime.longValue();
     }
 
     protected void setValue(boolean value) {
@@ -145,6 +149,20 @@ public class OutputDevice {
         }
     }
 
+    /**
+     * @return The watts drawn when on, 0 if it's not known.
+     */
+    public int getWatts() {
+        return this.watts;
+    }
+
+    /**
+     * @param watts The watts drawn when on, used to share the maximum load.
+     */
+    public void setWatts(final int watts) {
+        this.watts = Math.max(0, watts);
+    }
+
     /**
      * @return the GPIO.
      */
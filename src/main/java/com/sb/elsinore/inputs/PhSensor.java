@@ -15,6 +15,7 @@ import org.json.simple.JSONObject;
 import com.sb.elsinore.BrewServer;
 import com.sb.elsinore.LaunchControl;
 import com.sb.elsinore.NanoHTTPD.Response;
+import com.sb.elsinore.OwfsReader;
 import com.sb.elsinore.annotations.PhSensorType;
 import com.sb.elsinore.annotations.UrlEndpoint;
 import com.sb.util.MathUtil;
@@ -167,8 +168,7 @@ public class PhSensor {
                         "Could not update the pH reading from Analogue", e);
                     this.stopLogging = true;
                 }
-                BrewServer.LOG.info("Reconnecting OWFS");
-                LaunchControl.setupOWFS();
+                OwfsReader.reconnect();
             }
         } else if (dsAddress != null && dsAddress.length() > 0
                 && dsOffset != null && dsOffset.length() > 0) {
@@ -187,8 +187,7 @@ public class PhSensor {
                         "Could not update the pH reading from OWFS", e);
                     this.stopLogging = true;
                 }
-                BrewServer.LOG.info("Reconnecting OWFS");
-                LaunchControl.setupOWFS();
+                OwfsReader.reconnect();
             }
         }
 
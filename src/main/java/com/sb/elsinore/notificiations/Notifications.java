@@ -1,6 +1,7 @@
 package com.sb.elsinore.notificiations;
 
 import com.sb.elsinore.BrewServer;
+import com.sb.elsinore.StatusVersion;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
@@ -13,6 +14,7 @@ import java.util.ArrayList;
 public class Notifications {
     private static Notifications notificationsInstance = null;
     private ArrayList<Notification> notificationsList = new ArrayList<>();
+    private final StatusVersion statusVersion = new StatusVersion();
 
     /**
      * The private constructor. This is a singleton.
@@ -43,6 +45,7 @@ public class Notifications {
             return -1;
         }
         notificationsList.add(newNotification);
+        this.statusVersion.changed();
         if (newNotification.getMessage() != null) {
             BrewServer.LOG.info("Notification added with message: " + newNotification.getMessage());
         } else {
@@ -66,6 +69,7 @@ public class Notifications {
 
         toDelete.clearNotification();
         notificationsList.remove(index);
+        this.statusVersion.changed();
         BrewServer.LOG.info("Cleared notification: " + index);
         return true;
     }
@@ -89,6 +93,13 @@ public class Notifications {
         return nStatus;
     }
 
+    /**
+     * @return The status version the notifications last changed at.
+     */
+    public long getStatusVersion() {
+        return this.statusVersion.get();
+    }
+
     public void clearNotification(Notification notification) {
         if (notification == null || notificationsList.indexOf(notification) == -1) {
             return;
@@ -0,0 +1,260 @@
+package com.sb.elsinore.recorder;
+
+/**
+ * Reduces a stream of samples to a fixed number of points in a single pass.
+ *
+ * Two modes are supported: Largest-Triangle-Three-Buckets, which keeps the
+ * visually significant points of the line, and min/max, which keeps the
+ * lowest and highest sample of each bucket. Samples are pushed into the
+ * downsampler in timestamp order and the selected points are handed on to
+ * the target visitor as soon as their bucket is complete, so only one or
+ * two buckets are held in memory at a time.
+ *
+ * @author Doug Edey
+ */
+public class Downsampler implements SampleVisitor {
+
+    /** Largest-Triangle-Three-Buckets mode. */
+    public static final String LTTB = "lttb";
+    /** Minimum and maximum per bucket mode. */
+    public static final String MIN_MAX = "minmax";
+
+    private final SampleVisitor target;
+    private final boolean minMax;
+    private final long total;
+    private final double bucketSize;
+    private boolean stopped = false;
+    private long index = 0;
+    private int bucket = 0;
+
+    // The last point handed to the target
+    private long selectedTime;
+    private float selectedValue;
+    // The most recent sample, always emitted at the end
+    private long lastTime;
+    private float lastValue;
+
+    // LTTB keeps the current bucket while the next one fills
+    private Bucket current;
+    private Bucket next;
+
+    // Min/max only needs the extremes of the current bucket
+    private long minTime;
+    private float minValue;
+    private long maxTime;
+    private float maxValue;
+    private boolean bucketEmpty = true;
+
+    /**
+     * Create a new downsampler.
+     * @param target The visitor that receives the reduced points.
+     * @param points The number of points to reduce the series to.
+     * @param total The number of samples that will be pushed in.
+     * @param mode {@link #LTTB} or {@link #MIN_MAX}.
+     */
+    public Downsampler(final SampleVisitor target, final int points,
+            final long total, final String mode) {
+        this.target = target;
+        this.total = total;
+        this.minMax = MIN_MAX.equalsIgnoreCase(mode);
+
+        int buckets = Math.max(1, points - 2);
+        if (this.minMax) {
+            buckets = Math.max(1, buckets / 2);
+        }
+        if (total <= points || points < 3) {
+            // Nothing to reduce, everything passes straight through
+            this.bucketSize = 0;
+        } else {
+            this.bucketSize = (double) (total - 2) / buckets;
+        }
+
+        if (!this.minMax && this.bucketSize > 0) {
+            int capacity = (int) Math.ceil(this.bucketSize) + 1;
+            this.current = new Bucket(capacity);
+            this.next = new Bucket(capacity);
+        }
+    }
+
+    /**
+     * Push the next sample through the downsampler.
+     */
+    @Override
+    public final boolean sample(final long timestamp, final float value) {
+        if (this.stopped) {
+            return false;
+        }
+        long position = this.index++;
+        this.lastTime = timestamp;
+        this.lastValue = value;
+
+        if (this.bucketSize == 0 || position == 0) {
+            emit(timestamp, value);
+            return !this.stopped;
+        }
+        if (position >= this.total - 1) {
+            // The last point is emitted by finish()
+            return true;
+        }
+
+        int sampleBucket = (int) ((position - 1) / this.bucketSize);
+        if (this.minMax) {
+            if (sampleBucket != this.bucket) {
+                flushMinMax();
+                this.bucket = sampleBucket;
+            }
+            addMinMax(timestamp, value);
+        } else {
+            if (sampleBucket != this.bucket) {
+                if (sampleBucket > this.bucket + 1) {
+                    // The bucket after "next" has started, so next is full
+                    selectLargestTriangle(this.next.averageTime(),
+                            this.next.averageValue());
+                    Bucket swap = this.current;
+                    this.current = this.next;
+                    this.next = swap;
+                    this.next.clear();
+                    this.bucket++;
+                }
+            }
+            if (sampleBucket == this.bucket) {
+                this.current.add(timestamp, value);
+            } else {
+                this.next.add(timestamp, value);
+            }
+        }
+        return !this.stopped;
+    }
+
+    /**
+     * Flush the remaining buckets and the final sample to the target.
+     * Must be called once all of the samples have been pushed in.
+     */
+    public final void finish() {
+        if (this.index == 0 || this.bucketSize == 0) {
+            return;
+        }
+
+        if (this.minMax) {
+            flushMinMax();
+        } else {
+            if (this.next.size > 0) {
+                selectLargestTriangle(this.next.averageTime(),
+                        this.next.averageValue());
+                Bucket swap = this.current;
+                this.current = this.next;
+                this.next = swap;
+            }
+            selectLargestTriangle(this.lastTime, this.lastValue);
+        }
+        if (this.index > 1) {
+            emit(this.lastTime, this.lastValue);
+        }
+    }
+
+    /**
+     * Pick the point from the current bucket that forms the largest triangle
+     * with the previously selected point and the average of the next bucket.
+     */
+    private void selectLargestTriangle(final double nextTime,
+            final double nextValue) {
+        if (this.current.size == 0) {
+            return;
+        }
+        double maxArea = -1;
+        int selected = 0;
+        for (int i = 0; i < this.current.size; i++) {
+            double area = Math.abs(
+                    (this.selectedTime - nextTime)
+                            * (this.current.values[i] - this.selectedValue)
+                    - (this.selectedTime - this.current.times[i])
+                            * (nextValue - this.selectedValue));
+            if (area > maxArea) {
+                maxArea = area;
+                selected = i;
+            }
+        }
+        emit(this.current.times[selected], this.current.values[selected]);
+        this.current.clear();
+    }
+
+    private void addMinMax(final long timestamp, final float value) {
+        if (this.bucketEmpty || value < this.minValue) {
+            this.minTime = timestamp;
+            this.minValue = value;
+        }
+        if (this.bucketEmpty || value > this.maxValue) {
+            this.maxTime = timestamp;
+            this.maxValue = value;
+        }
+        this.bucketEmpty = false;
+    }
+
+    private void flushMinMax() {
+        if (this.bucketEmpty) {
+            return;
+        }
+        // Rollup buckets pass their minimum and maximum at the same time
+        if (this.minTime == this.maxTime
+                && this.minValue == this.maxValue) {
+            emit(this.minTime, this.minValue);
+        } else if (this.minTime <= this.maxTime) {
+            emit(this.minTime, this.minValue);
+            emit(this.maxTime, this.maxValue);
+        } else {
+            emit(this.maxTime, this.maxValue);
+            emit(this.minTime, this.minValue);
+        }
+        this.bucketEmpty = true;
+    }
+
+    private void emit(final long timestamp, final float value) {
+        this.selectedTime = timestamp;
+        this.selectedValue = value;
+        if (!this.stopped && !this.target.sample(timestamp, value)) {
+            this.stopped = true;
+        }
+    }
+
+    /**
+     * A fixed size buffer of samples.
+     */
+    private static class Bucket {
+        final long[] times;
+        final float[] values;
+        int size = 0;
+
+        Bucket(int capacity) {
+            this.times = new long[capacity];
+            this.values = new float[capacity];
+        }
+
+        void add(long timestamp, float value) {
+            if (this.size < this.times.length) {
+                this.times[this.size] = timestamp;
+                this.values[this.size] = value;
+                this.size++;
+            }
+        }
+
+        void clear() {
+            this.size = 0;
+        }
+
+        double averageTime() {
+            double sum = 0;
+            for (int i = 0; i < this.size; i++) {
+                sum += this.times[i];
+            }
+            return sum / this.size;
+        }
+
+        double averageValue() {
+            double sum = 0;
+            for (int i = 0; i < this.size; i++) {
+                sum += this.values[i];
+            }
+            return sum / this.size;
+        }
+    }
+}
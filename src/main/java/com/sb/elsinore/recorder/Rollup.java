@@ -0,0 +1,235 @@
+package com.sb.elsinore.recorder;
+
+import com.sb.elsinore.BrewServer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A fixed interval aggregate of a recorded series.
+ *
+ * Every bucket stores the minimum, maximum, average and last value of the
+ * samples that fell into it. Buckets are built up in memory as samples
+ * arrive and written to their own {@link SeriesFile} once the next bucket
+ * starts, so long sessions can be graphed without reading every raw sample.
+ *
+ * @author Doug Edey
+ */
+public class Rollup {
+
+    /** The interval of each rollup tier in milliseconds. */
+    public static final long[] INTERVALS = {60 * 1000, 15 * 60 * 1000};
+    /** The name suffix of each rollup tier. */
+    public static final String[] SUFFIXES = {"1m", "15m"};
+    /** Separates the series name from the tier suffix. */
+    public static final char SEPARATOR = '@';
+
+    /** Field index of the minimum value. */
+    public static final int MIN = 0;
+    /** Field index of the maximum value. */
+    public static final int MAX = 1;
+    /** Field index of the average value. */
+    public static final int AVG = 2;
+    /** Field index of the last value. */
+    public static final int LAST = 3;
+
+    private final long interval;
+    private final SeriesFile seriesFile;
+    private final float[] record = new float[4];
+
+    private long bucketStart = Long.MIN_VALUE;
+    private float min;
+    private float max;
+    private double sum;
+    private int count = 0;
+    private float last;
+
+    /**
+     * Open (or create) a rollup tier for a series.
+     * @param directory The directory the series is stored in.
+     * @param name The name of the raw series.
+     * @param tier The index of the tier in {@link #INTERVALS}.
+     * @throws IOException If the existing tier could not be read.
+     */
+    public Rollup(final File directory, final String name, final int tier)
+            throws IOException {
+        this.interval = INTERVALS[tier];
+        this.seriesFile = new SeriesFile(directory,
+                name + SEPARATOR + SUFFIXES[tier], 4);
+    }
+
+    /**
+     * @return The interval of each bucket in milliseconds.
+     */
+    public final long getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * @return The file holding the completed buckets.
+     */
+    public final SeriesFile getSeriesFile() {
+        return this.seriesFile;
+    }
+
+    /**
+     * Add a sample to the rollup, writing out the current bucket if the
+     * sample belongs to a later one.
+     * @param timestamp The time of the sample in milliseconds.
+     * @param value The sample value.
+     */
+    public final synchronized void add(final long timestamp,
+            final float value) {
+        long start = timestamp - (timestamp % this.interval);
+        if (start != this.bucketStart) {
+            flush();
+            this.bucketStart = start;
+        }
+
+        if (this.count == 0 || value < this.min) {
+            this.min = value;
+        }
+        if (this.count == 0 || value > this.max) {
+            this.max = value;
+        }
+        this.sum += value;
+        this.count++;
+        this.last = value;
+    }
+
+    /**
+     * Pick up the bucket that was being filled when the tier was closed.
+     * The last bucket on disk is dropped and built again from the raw
+     * samples, along with any later buckets that never got written out, so
+     * the next flush doesn't write a second record for the same bucket.
+     * @param raw The raw series this tier is built from.
+     */
+    public final synchronized void restore(final SeriesFile raw) {
+        long start = this.seriesFile.getLastTimestamp();
+        if (start != Long.MIN_VALUE) {
+            try {
+                this.seriesFile.removeLast();
+            } catch (IOException e) {
+                BrewServer.LOG.warning("Could not reopen rollup for "
+                        + this.seriesFile.getName() + ": " + e.getMessage());
+                return;
+            }
+        }
+        raw.read(start, Long.MAX_VALUE, new SampleVisitor() {
+            @Override
+            public boolean sample(long timestamp, float value) {
+                add(timestamp, value);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Walk the buckets between the two timestamps, including the bucket that
+     * is still being filled.
+     * @param from The earliest bucket start to include.
+     * @param to The latest bucket start to include.
+     * @param field The value of each bucket to pass to the visitor.
+     * @param visitor The visitor to call for each bucket.
+     */
+    public final void read(final long from, final long to, final int field,
+            final SampleVisitor visitor) {
+        read(from, to, new int[]{field}, visitor);
+    }
+
+    /**
+     * Walk the buckets between the two timestamps, passing several values of
+     * each bucket to the visitor in turn.
+     * @param from The earliest bucket start to include.
+     * @param to The latest bucket start to include.
+     * @param fieldList The values of each bucket to pass to the visitor,
+     *                  e.g. {@link #MIN} then {@link #MAX}.
+     * @param visitor The visitor to call for each value.
+     */
+    public final void read(final long from, final long to,
+            final int[] fieldList, final SampleVisitor visitor) {
+        final boolean[] stopped = {false};
+        this.seriesFile.read(from, to, fieldList, new SampleVisitor() {
+            @Override
+            public boolean sample(long timestamp, float value) {
+                stopped[0] = !visitor.sample(timestamp, value);
+                return !stopped[0];
+            }
+        });
+
+        long start;
+        float[] values = new float[fieldList.length];
+        synchronized (this) {
+            if (this.count == 0) {
+                return;
+            }
+            start = this.bucketStart;
+            float[] current = currentRecord();
+            for (int i = 0; i < fieldList.length; i++) {
+                values[i] = current[fieldList[i]];
+            }
+        }
+        if (!stopped[0] && start >= from && start <= to
+                && start > this.seriesFile.getLastTimestamp()) {
+            for (float value : values) {
+                if (!visitor.sample(start, value)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the buckets between the two timestamps, including the bucket
+     * that is still being filled.
+     * @param from The earliest bucket start to include.
+     * @param to The latest bucket start to include.
+     * @return The number of buckets.
+     */
+    public final long count(final long from, final long to) {
+        long total = this.seriesFile.count(from, to);
+        synchronized (this) {
+            if (this.count > 0 && this.bucketStart >= from
+                    && this.bucketStart <= to) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Write out the current bucket and close the tier.
+     */
+    public final synchronized void close() {
+        flush();
+        this.seriesFile.close();
+    }
+
+    /**
+     * Write the current bucket to disk and reset it.
+     */
+    private void flush() {
+        if (this.count == 0) {
+            return;
+        }
+        try {
+            this.seriesFile.append(this.bucketStart, currentRecord());
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Could not save rollup for "
+                    + this.seriesFile.getName() + ": " + e.getMessage());
+        }
+        this.count = 0;
+        this.sum = 0;
+    }
+
+    /**
+     * @return The aggregate of the current bucket.
+     */
+    private float[] currentRecord() {
+        this.record[MIN] = this.min;
+        this.record[MAX] = this.max;
+        this.record[AVG] = (float) (this.sum / this.count);
+        this.record[LAST] = this.last;
+        return this.record;
+    }
+}
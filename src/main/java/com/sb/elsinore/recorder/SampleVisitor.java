@@ -0,0 +1,17 @@
+package com.sb.elsinore.recorder;
+
+/**
+ * Callback used when walking the samples stored in a {@link SeriesFile}.
+ *
+ * @author Doug Edey
+ */
+public interface SampleVisitor {
+
+    /**
+     * Called once for every sample, in timestamp order.
+     * @param timestamp The time of the sample in milliseconds since the epoch.
+     * @param value The recorded value.
+     * @return True to keep reading, false to stop the walk.
+     */
+    boolean sample(long timestamp, float value);
+}
@@ -0,0 +1,747 @@
+package com.sb.elsinore.recorder;
+
+import com.sb.elsinore.BrewServer;
+import com.sb.elsinore.LaunchControl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An append only binary store for a single recorded series.
+ *
+ * The series is split into segment files named
+ * {@code <series>.<index>.seg}. Each segment starts with a fixed header
+ * holding the base timestamp, followed by fixed width records of a four
+ * byte millisecond offset from that base and one or more four byte float
+ * values.
+ * The active segment is kept open and is forced to disk periodically
+ * instead of on every append. Every segment also keeps a sparse in-memory
+ * index of its record timestamps, so finding the records after a given
+ * time only touches the few records around it.
+ *
+ * @author Doug Edey
+ */
+public class SeriesFile {
+
+    /** Magic number at the start of every segment, "ESR1". */
+    static final int MAGIC = 0x45535231;
+    /** Size of the segment header in bytes. */
+    static final int HEADER_SIZE = 16;
+    /** Maximum number of records in a single segment. */
+    static final int SEGMENT_RECORDS = 65536;
+    /** Suffix used for the segment files. */
+    public static final String SEGMENT_SUFFIX = ".seg";
+    /** How long unsynced data may stay in the page cache. */
+    public static final long SYNC_INTERVAL = 1000 * 60;
+    /** Number of records between each entry in the timestamp index. */
+    static final int INDEX_STRIDE = 64;
+    /** Number of records read from disk at a time. */
+    private static final int READ_BATCH = 512;
+
+    private final File directory;
+    private final String name;
+    private final int fields;
+    private final int recordSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private final ByteBuffer writeBuffer;
+    private FileChannel channel = null;
+    private long lastSync = System.currentTimeMillis();
+    private boolean dirty = false;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private float lastValue = Float.NaN;
+    private boolean clamped = false;
+
+    /**
+     * Open (or create) a single value series in the specified directory.
+     * @param directory The directory to store the segments in.
+     * @param name The name of the series.
+     * @throws IOException If the existing segments could not be read.
+     */
+    public SeriesFile(final File directory, final String name)
+            throws IOException {
+        this(directory, name, 1);
+    }
+
+    /**
+     * Open (or create) the series in the specified directory.
+     * @param directory The directory to store the segments in.
+     * @param name The name of the series.
+     * @param fields The number of values in each record.
+     * @throws IOException If the existing segments could not be read.
+     */
+    public SeriesFile(final File directory, final String name,
+            final int fields) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.fields = fields;
+        this.recordSize = 4 + 4 * fields;
+        this.writeBuffer = ByteBuffer.allocate(this.recordSize);
+        loadSegments();
+    }
+
+    /**
+     * @return The name of this series.
+     */
+    public final String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return The timestamp of the last sample, or Long.MIN_VALUE if empty.
+     */
+    public final synchronized long getLastTimestamp() {
+        return this.lastTimestamp;
+    }
+
+    /**
+     * @return The timestamp of the first sample, or Long.MIN_VALUE if empty.
+     */
+    public final synchronized long getFirstTimestamp() {
+        if (this.segments.isEmpty() || this.segments.get(0).count == 0) {
+            return Long.MIN_VALUE;
+        }
+        // The first record of a segment is always at the segment base
+        return this.segments.get(0).base;
+    }
+
+    /**
+     * @return The first value of the last sample, or NaN if empty.
+     */
+    public final synchronized float getLastValue() {
+        return this.lastValue;
+    }
+
+    /**
+     * @return The total number of samples in this series.
+     */
+    public final synchronized long size() {
+        long total = 0;
+        for (Segment segment : this.segments) {
+            total += segment.count;
+        }
+        return total;
+    }
+
+    /**
+     * Append a new sample to the series.
+     * Samples must be appended in timestamp order.
+     * @param timestamp The time of the sample in milliseconds.
+     * @param value The value to record.
+     * @throws IOException If the sample could not be written.
+     */
+    public final void append(final long timestamp, final float value)
+            throws IOException {
+        append(timestamp, new float[]{value});
+    }
+
+    /**
+     * Append a new record to the series.
+     * Records must be appended in timestamp order, a record from before the
+     * last one (the clock was stepped back) is recorded at the time of the
+     * last one.
+     * @param newTimestamp The time of the record in milliseconds.
+     * @param values The values to record, one per field.
+     * @throws IOException If the record could not be written.
+     */
+    public final synchronized void append(final long newTimestamp,
+            final float[] values) throws IOException {
+        Segment active = activeSegment();
+        long earliest = this.lastTimestamp;
+        if (active != null) {
+            earliest = Math.max(earliest, active.base);
+        }
+        long timestamp = newTimestamp;
+        if (timestamp < earliest) {
+            if (!this.clamped) {
+                BrewServer.LOG.warning("The clock went back "
+                        + (earliest - timestamp) + "ms, recording " + this.name
+                        + " at the last sample time until it catches up");
+                this.clamped = true;
+            }
+            timestamp = earliest;
+        } else {
+            this.clamped = false;
+        }
+
+        if (active == null || active.count >= SEGMENT_RECORDS
+                || timestamp - active.base > Integer.MAX_VALUE) {
+            active = newSegment(timestamp);
+        }
+
+        this.writeBuffer.clear();
+        this.writeBuffer.putInt((int) (timestamp - active.base));
+        for (int i = 0; i < this.fields; i++) {
+            this.writeBuffer.putFloat(values[i]);
+        }
+        this.writeBuffer.flip();
+        long position = HEADER_SIZE + (long) active.count * this.recordSize;
+        while (this.writeBuffer.hasRemaining()) {
+            position += this.channel.write(this.writeBuffer, position);
+        }
+        if (active.count % INDEX_STRIDE == 0) {
+            active.addIndex(timestamp);
+        }
+        active.count++;
+        this.lastTimestamp = timestamp;
+        this.lastValue = values[0];
+        this.dirty = true;
+        sync(false);
+    }
+
+    /**
+     * Force the active segment to disk.
+     * @param force True to sync now, false to only sync if the data has been
+     *              waiting for longer than {@link #SYNC_INTERVAL}.
+     */
+    public final synchronized void sync(final boolean force) {
+        long now = System.currentTimeMillis();
+        if (!this.dirty || this.channel == null
+                || (!force && now - this.lastSync < SYNC_INTERVAL)) {
+            return;
+        }
+        try {
+            this.channel.force(false);
+            this.dirty = false;
+            this.lastSync = now;
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Could not sync " + this.name + ": "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Sync and close the active segment.
+     */
+    public final synchronized void close() {
+        sync(true);
+        closeChannel();
+    }
+
+    /**
+     * Drop the last record of the series.
+     * @throws IOException If the active segment couldn't be truncated.
+     */
+    public final synchronized void removeLast() throws IOException {
+        Segment active = activeSegment();
+        if (active == null || active.count == 0 || this.channel == null) {
+            return;
+        }
+        active.count--;
+        if (active.count % INDEX_STRIDE == 0) {
+            active.timestampCount--;
+        }
+        this.channel.truncate(HEADER_SIZE
+                + (long) active.count * this.recordSize);
+        this.dirty = true;
+        readLast();
+    }
+
+    /**
+     * Walk every sample in the series between the two timestamps.
+     * @param from The earliest timestamp to include.
+     * @param to The latest timestamp to include.
+     * @param visitor The visitor to call for each sample.
+     */
+    public final void read(final long from, final long to,
+            final SampleVisitor visitor) {
+        read(from, to, 0, visitor);
+    }
+
+    /**
+     * Count the samples in the series between the two timestamps.
+     * @param from The earliest timestamp to include.
+     * @param to The latest timestamp to include.
+     * @return The number of samples in the range.
+     */
+    public final long count(final long from, final long to) {
+        Segment[] snapshot;
+        int[] counts;
+        synchronized (this) {
+            snapshot = this.segments.toArray(new Segment[this.segments.size()]);
+            counts = new int[snapshot.length];
+            for (int i = 0; i < snapshot.length; i++) {
+                counts[i] = snapshot[i].count;
+            }
+        }
+
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (i + 1 < snapshot.length && snapshot[i + 1].base <= from) {
+                continue;
+            }
+            if (snapshot[i].base > to) {
+                break;
+            }
+            total += search(snapshot[i], counts[i], to, true)
+                    - search(snapshot[i], counts[i], from, false);
+        }
+        return total;
+    }
+
+    /**
+     * Walk the records in the series between the two timestamps.
+     * @param from The earliest timestamp to include.
+     * @param to The latest timestamp to include.
+     * @param field The index of the value to pass to the visitor.
+     * @param visitor The visitor to call for each record.
+     */
+    public final void read(final long from, final long to, final int field,
+            final SampleVisitor visitor) {
+        read(from, to, new int[]{field}, visitor);
+    }
+
+    /**
+     * Walk the records in the series between the two timestamps, passing
+     * several values of each record to the visitor in turn.
+     * @param from The earliest timestamp to include.
+     * @param to The latest timestamp to include.
+     * @param fieldList The indexes of the values to pass to the visitor,
+     *                  each one is passed with the record's timestamp.
+     * @param visitor The visitor to call for each value.
+     */
+    public final void read(final long from, final long to,
+            final int[] fieldList, final SampleVisitor visitor) {
+        Segment[] snapshot;
+        int[] counts;
+        synchronized (this) {
+            snapshot = this.segments.toArray(new Segment[this.segments.size()]);
+            counts = new int[snapshot.length];
+            for (int i = 0; i < snapshot.length; i++) {
+                counts[i] = snapshot[i].count;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BATCH * this.recordSize);
+        for (int i = 0; i < snapshot.length; i++) {
+            // Skip segments that end before the range starts
+            if (i + 1 < snapshot.length && snapshot[i + 1].base <= from) {
+                continue;
+            }
+            if (snapshot[i].base > to) {
+                break;
+            }
+            int start = search(snapshot[i], counts[i], from, false);
+            if (!readSegment(snapshot[i], start, counts[i], from, to,
+                    fieldList, visitor, buffer)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Write the whole series out as "timestamp,value" lines.
+     * @param csvFile The file to write to.
+     * @throws IOException If the file could not be written.
+     */
+    public final void exportCsv(final File csvFile) throws IOException {
+        final FileWriter writer = new FileWriter(csvFile);
+        final IOException[] failure = new IOException[1];
+        try {
+            read(Long.MIN_VALUE, Long.MAX_VALUE, new SampleVisitor() {
+                @Override
+                public boolean sample(long timestamp, float value) {
+                    try {
+                        writer.write(timestamp + "," + value + "\r\n");
+                        return true;
+                    } catch (IOException e) {
+                        failure[0] = e;
+                        return false;
+                    }
+                }
+            });
+        } finally {
+            writer.close();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Read the records of a single segment.
+     * @return False if the visitor asked to stop.
+     */
+    private boolean readSegment(final Segment segment, final int start,
+            final int count, final long from, final long to,
+            final int[] fieldList, final SampleVisitor visitor,
+            final ByteBuffer buffer) {
+        RandomAccessFile file = null;
+        try {
+            int record = start;
+            while (record < count) {
+                int batch = Math.min(READ_BATCH, count - record);
+                buffer.clear();
+                buffer.limit(batch * this.recordSize);
+                long position = HEADER_SIZE + (long) record * this.recordSize;
+                if (file != null || !readActive(segment, buffer, position)) {
+                    if (file == null) {
+                        file = new RandomAccessFile(segment.file, "r");
+                    }
+                    fill(file.getChannel(), buffer, position);
+                }
+                buffer.flip();
+                while (buffer.remaining() >= this.recordSize) {
+                    int recordStart = buffer.position();
+                    long timestamp = segment.base + buffer.getInt();
+                    buffer.position(recordStart + this.recordSize);
+                    if (timestamp > to) {
+                        return false;
+                    }
+                    if (timestamp < from) {
+                        continue;
+                    }
+                    for (int field : fieldList) {
+                        float value = buffer.getFloat(
+                                recordStart + 4 + 4 * field);
+                        if (!visitor.sample(timestamp, value)) {
+                            return false;
+                        }
+                    }
+                }
+                record += batch;
+            }
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Could not read " + segment.file.getName()
+                    + ": " + e.getMessage());
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    BrewServer.LOG.warning("Could not close "
+                            + segment.file.getName());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Binary search a segment for a timestamp.
+     * @param segment The segment to search.
+     * @param count The number of records in the segment.
+     * @param timestamp The timestamp to look for.
+     * @param after True to find the first record after the timestamp, false
+     *              to find the first record at or after it.
+     * @return The index of the record, or count if there isn't one.
+     */
+    private int search(final Segment segment, final int count,
+            final long timestamp, final boolean after) {
+        if (timestamp < segment.base
+                || (timestamp == segment.base && !after)) {
+            return 0;
+        }
+        if (timestamp - segment.base >= Integer.MAX_VALUE) {
+            return count;
+        }
+
+        // Narrow the search down to a single stride using the index
+        long[] index;
+        int indexSize;
+        synchronized (this) {
+            index = segment.timestamps;
+            indexSize = segment.timestampCount;
+        }
+        int entries = 0;
+        int upper = indexSize;
+        while (entries < upper) {
+            int mid = (entries + upper) >>> 1;
+            if (index[mid] < timestamp || (after && index[mid] == timestamp)) {
+                entries = mid + 1;
+            } else {
+                upper = mid;
+            }
+        }
+        int low = 0;
+        if (entries > 0) {
+            low = (entries - 1) * INDEX_STRIDE + 1;
+        }
+        int high = Math.min(count, entries * INDEX_STRIDE);
+        if (entries == indexSize) {
+            high = count;
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long recordTime = readTimestamp(segment, mid);
+            if (recordTime < timestamp || (after && recordTime == timestamp)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Read the timestamp of a single record.
+     */
+    private long readTimestamp(final Segment segment, final int record) {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        long position = HEADER_SIZE + (long) record * this.recordSize;
+        RandomAccessFile file = null;
+        try {
+            if (!readActive(segment, buffer, position)) {
+                file = new RandomAccessFile(segment.file, "r");
+                fill(file.getChannel(), buffer, position);
+            }
+            buffer.flip();
+            return segment.base + buffer.getInt();
+        } catch (Exception e) {
+            BrewServer.LOG.warning("Could not read " + segment.file.getName()
+                    + ": " + e.getMessage());
+            return Long.MAX_VALUE;
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    BrewServer.LOG.warning("Could not close "
+                            + segment.file.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Read from the active segment's channel, under the lock so it can't be
+     * closed by a new segment part way through.
+     * @return False if the segment isn't the active one any more, it has to
+     * be read from its own file.
+     */
+    private synchronized boolean readActive(final Segment segment,
+            final ByteBuffer buffer, final long position) throws IOException {
+        if (segment != activeSegment() || this.channel == null) {
+            return false;
+        }
+        fill(this.channel, buffer, position);
+        return true;
+    }
+
+    /**
+     * Read from the channel until the buffer is full or the file ends.
+     */
+    private static void fill(final FileChannel readChannel,
+            final ByteBuffer buffer, final long position) throws IOException {
+        while (buffer.hasRemaining()
+                && readChannel.read(buffer, position + buffer.position()) > 0) {
+            // Keep reading until the buffer is full
+        }
+    }
+
+    /**
+     * @return The segment currently being appended to.
+     */
+    private Segment activeSegment() {
+        if (this.segments.isEmpty()) {
+            return null;
+        }
+        return this.segments.get(this.segments.size() - 1);
+    }
+
+    /**
+     * Start a new segment with the specified base time.
+     */
+    private Segment newSegment(final long base) throws IOException {
+        sync(true);
+        closeChannel();
+
+        int index = 0;
+        Segment active = activeSegment();
+        if (active != null) {
+            index = active.index + 1;
+        }
+        File file = new File(this.directory, this.name + "." + index
+                + SEGMENT_SUFFIX);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(this.recordSize);
+        header.putLong(base);
+        header.flip();
+
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        this.channel.truncate(0);
+        while (header.hasRemaining()) {
+            this.channel.write(header, header.position());
+        }
+        LaunchControl.setFileOwner(file);
+
+        Segment segment = new Segment(file, index, base, 0);
+        this.segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * Read the headers of any segments already on disk and reopen the last
+     * one for appending.
+     */
+    private void loadSegments() throws IOException {
+        File[] files = this.directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        String prefix = this.name + ".";
+        List<Segment> found = new ArrayList<>();
+        for (File file : files) {
+            String fileName = file.getName();
+            if (!fileName.startsWith(prefix)
+                    || !fileName.endsWith(SEGMENT_SUFFIX)) {
+                continue;
+            }
+            String index = fileName.substring(prefix.length(),
+                    fileName.length() - SEGMENT_SUFFIX.length());
+            try {
+                Segment segment = readHeader(file, Integer.parseInt(index));
+                if (segment != null) {
+                    found.add(segment);
+                }
+            } catch (NumberFormatException nfe) {
+                // Belongs to another series with a longer name
+            }
+        }
+        Segment[] sorted = found.toArray(new Segment[found.size()]);
+        Arrays.sort(sorted, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment s1, Segment s2) {
+                return Integer.compare(s1.index, s2.index);
+            }
+        });
+        this.segments.addAll(Arrays.asList(sorted));
+
+        Segment active = activeSegment();
+        if (active != null) {
+            this.channel = new RandomAccessFile(active.file, "rw").getChannel();
+            // Drop any partial record left behind by a crash
+            this.channel.truncate(HEADER_SIZE
+                    + (long) active.count * this.recordSize);
+            readLast();
+        }
+    }
+
+    /**
+     * Read the last record back into lastTimestamp and lastValue.
+     */
+    private void readLast() throws IOException {
+        this.lastTimestamp = Long.MIN_VALUE;
+        this.lastValue = Float.NaN;
+        for (int i = this.segments.size() - 1; i >= 0; i--) {
+            Segment segment = this.segments.get(i);
+            if (segment.count == 0) {
+                continue;
+            }
+            ByteBuffer last = ByteBuffer.allocate(this.recordSize);
+            long position = HEADER_SIZE
+                    + (long) (segment.count - 1) * this.recordSize;
+            if (segment == activeSegment()) {
+                fill(this.channel, last, position);
+            } else {
+                RandomAccessFile file = new RandomAccessFile(segment.file, "r");
+                try {
+                    fill(file.getChannel(), last, position);
+                } finally {
+                    file.close();
+                }
+            }
+            last.flip();
+            this.lastTimestamp = segment.base + last.getInt();
+            this.lastValue = last.getFloat();
+            return;
+        }
+    }
+
+    /**
+     * Read the header of a segment file.
+     * @return The segment, or null if the file isn't a valid segment.
+     */
+    private Segment readHeader(final File file, final int index)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC
+                    || raf.readInt() != this.recordSize) {
+                BrewServer.LOG.warning("Ignoring invalid segment: "
+                        + file.getAbsolutePath());
+                return null;
+            }
+            long base = raf.readLong();
+            int count = (int) ((raf.length() - HEADER_SIZE) / this.recordSize);
+            Segment segment = new Segment(file, index, base, count);
+
+            // Build the timestamp index
+            FileChannel readChannel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(
+                    INDEX_STRIDE * READ_BATCH / 8 * this.recordSize);
+            long position = HEADER_SIZE;
+            int record = 0;
+            while (record < count) {
+                buffer.clear();
+                int batch = Math.min(buffer.capacity() / this.recordSize,
+                        count - record);
+                buffer.limit(batch * this.recordSize);
+                while (buffer.hasRemaining()
+                        && readChannel.read(buffer, position + buffer.position()) > 0) {
+                    // Keep reading until the batch is complete
+                }
+                buffer.flip();
+                for (int i = 0; i < batch; i++, record++) {
+                    if (record % INDEX_STRIDE == 0) {
+                        segment.addIndex(base + buffer.getInt(i * this.recordSize));
+                    }
+                }
+                position += (long) batch * this.recordSize;
+            }
+            return segment;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void closeChannel() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                BrewServer.LOG.warning("Could not close " + this.name);
+            }
+            this.channel = null;
+        }
+    }
+
+    /**
+     * A single segment file of the series.
+     */
+    private static class Segment {
+        final File file;
+        final int index;
+        final long base;
+        int count;
+        long[] timestamps = new long[16];
+        int timestampCount = 0;
+
+        Segment(File file, int index, long base, int count) {
+            this.file = file;
+            this.index = index;
+            this.base = base;
+            this.count = count;
+        }
+
+        /**
+         * Add the timestamp of the next indexed record.
+         */
+        void addIndex(long timestamp) {
+            if (this.timestampCount == this.timestamps.length) {
+                this.timestamps = Arrays.copyOf(this.timestamps,
+                        this.timestampCount * 2);
+            }
+            this.timestamps[this.timestampCount++] = timestamp;
+        }
+    }
+}
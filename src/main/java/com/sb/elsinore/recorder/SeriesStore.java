@@ -0,0 +1,169 @@
+package com.sb.elsinore.recorder;
+
+import com.sb.elsinore.BrewServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds all of the recorded series for a single recorder session, along with
+ * the {@link Rollup} tiers of each series.
+ *
+ * @author Doug Edey
+ */
+public class SeriesStore {
+
+    private final File directory;
+    private final ConcurrentHashMap<String, SeriesFile> series =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Rollup[]> rollups =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Open the store in the specified directory, picking up any series
+     * that were already recorded there.
+     * @param directory The session directory.
+     */
+    public SeriesStore(final File directory) {
+        this.directory = directory;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String fileName = file.getName();
+            if (!fileName.endsWith(SeriesFile.SEGMENT_SUFFIX)) {
+                continue;
+            }
+            // Strip off the .<index>.seg
+            String name = fileName.substring(0,
+                    fileName.length() - SeriesFile.SEGMENT_SUFFIX.length());
+            int dot = name.lastIndexOf('.');
+            // Rollup tiers are opened along with their raw series
+            if (dot > 0 && name.indexOf(Rollup.SEPARATOR) < 0) {
+                getSeries(name.substring(0, dot), true);
+            }
+        }
+    }
+
+    /**
+     * @return The directory this store is saved in.
+     */
+    public final File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Get a series by name.
+     * @param name The name of the series.
+     * @param create True to create the series if it doesn't exist.
+     * @return The series, or null if it doesn't exist or couldn't be opened.
+     */
+    public final SeriesFile getSeries(final String name, final boolean create) {
+        SeriesFile seriesFile = this.series.get(name);
+        if (seriesFile != null || !create) {
+            return seriesFile;
+        }
+
+        synchronized (this.series) {
+            seriesFile = this.series.get(name);
+            if (seriesFile == null) {
+                try {
+                    Rollup[] tiers = new Rollup[Rollup.INTERVALS.length];
+                    for (int i = 0; i < tiers.length; i++) {
+                        tiers[i] = new Rollup(this.directory, name, i);
+                    }
+                    seriesFile = new SeriesFile(this.directory, name);
+                    for (Rollup rollup : tiers) {
+                        rollup.restore(seriesFile);
+                    }
+                    this.rollups.put(name, tiers);
+                    this.series.put(name, seriesFile);
+                } catch (IOException e) {
+                    BrewServer.LOG.warning("Could not open series " + name
+                            + ": " + e.getMessage());
+                }
+            }
+        }
+        return seriesFile;
+    }
+
+    /**
+     * Get a rollup tier of a series.
+     * @param name The name of the raw series.
+     * @param tier The index of the tier in {@link Rollup#INTERVALS}.
+     * @return The rollup, or null if the series doesn't exist.
+     */
+    public final Rollup getRollup(final String name, final int tier) {
+        Rollup[] tiers = this.rollups.get(name);
+        if (tiers == null) {
+            return null;
+        }
+        return tiers[tier];
+    }
+
+    /**
+     * @return The names of every series in the store, sorted.
+     */
+    public final List<String> getSeriesNames() {
+        List<String> names = new ArrayList<>(this.series.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Append a sample to a series, creating the series if needed.
+     * @param name The series to add to.
+     * @param timestamp The time of the sample in milliseconds.
+     * @param value The value to record.
+     */
+    public final void append(final String name, final long timestamp,
+            final float value) {
+        SeriesFile seriesFile = getSeries(name, true);
+        if (seriesFile == null) {
+            return;
+        }
+        try {
+            seriesFile.append(timestamp, value);
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Could not save to series " + name + ": "
+                    + e.getMessage());
+        }
+        for (Rollup rollup : this.rollups.get(name)) {
+            rollup.add(timestamp, value);
+        }
+    }
+
+    /**
+     * Sync any series that have been dirty for longer than the sync interval.
+     * @param force True to sync everything now.
+     */
+    public final void sync(final boolean force) {
+        for (SeriesFile seriesFile : this.series.values()) {
+            seriesFile.sync(force);
+        }
+        for (Rollup[] tiers : this.rollups.values()) {
+            for (Rollup rollup : tiers) {
+                rollup.getSeriesFile().sync(force);
+            }
+        }
+    }
+
+    /**
+     * Sync and close every series.
+     */
+    public final void close() {
+        for (SeriesFile seriesFile : this.series.values()) {
+            seriesFile.close();
+        }
+        for (Rollup[] tiers : this.rollups.values()) {
+            for (Rollup rollup : tiers) {
+                rollup.close();
+            }
+        }
+    }
+}
@@ -48,8 +48,24 @@ public class ProfileTrigger implements TriggerInterface {
         return "Profile";
     }
 
+    /**
+     * Start or stop the other profile, this happens straight away.
+     * @param listener Told once the profile is changed.
+     */
     @Override
-    public void waitForTrigger() {
+    public void arm(final Listener listener) {
+        toggleProfile();
+        listener.triggerHit(this);
+    }
+
+    /**
+     * Nothing to stop, the profile is changed when it's armed.
+     */
+    @Override
+    public void disarm() {
+    }
+
+    private void toggleProfile() {
         startDate = new Date();
         if (this.targetName == null) {
             return;
@@ -73,15 +73,23 @@ public class SwitchTrigger implements TriggerInterface {
     }
 
     /**
-     * Activate or deactivate the switch.
+     * Activate or deactivate the switch, this happens straight away.
+     * @param listener Told once the switch is set.
      */
     @Override
-    public final void waitForTrigger() {
+    public final void arm(final Listener listener) {
         this.startDate = new Date();
-        if (this.switchName == null && this.activate != null) {
-            return;
+        if (this.switchName != null || this.activate == null) {
+            triggerSwitch();
         }
-        triggerSwitch();
+        listener.triggerHit(this);
+    }
+
+    /**
+     * Nothing to stop, the switch is set when it's armed.
+     */
+    @Override
+    public final void disarm() {
     }
 
     /**
@@ -29,7 +29,8 @@ import com.sb.elsinore.Temp;
  *
  */
 @SuppressWarnings("unused")
-public class TemperatureTrigger implements TriggerInterface {
+public class TemperatureTrigger implements TriggerInterface,
+        Temp.SampleListener {
 
     private BigDecimal targetTemp = null;
     private Temp temperatureProbe = null;
@@ -43,6 +44,8 @@ public class TemperatureTrigger implements TriggerInterface {
     private Date startDate = null;
     private BigDecimal exitTemp;
     private WebNotification webNotification = null;
+    private Listener listener = null;
+    private Temp armedProbe = null;
 
     public TemperatureTrigger() {
         BrewServer.LOG.info("Created an empty Temperature Trigger");
@@ -165,74 +168,110 @@ public class TemperatureTrigger implements TriggerInterface {
     }
 
     /**
-     * A blocking call that waits for a trigger to be hit.
+     * Set the target and check each new reading from the probe, instead of
+     * polling it.
+     * @param newListener Told when the probe reaches the target.
      */
     @Override
-    public final void waitForTrigger() {
-
+    public final void arm(final Listener newListener) {
         if (targetTemp == null) {
             BrewServer.LOG.warning("No Target Temperature Set");
+            newListener.triggerHit(this);
             return;
         }
         if (temperatureProbe == null) {
             BrewServer.LOG.warning("No Temperature Probe Set");
+            newListener.triggerHit(this);
             return;
         }
 
         if (mode == null) {
             BrewServer.LOG.warning("No Mode Set");
+            newListener.triggerHit(this);
             return;
         }
 
         setTargetTemperature();
         setStart(new Date());
-        if (this.mode == null) {
-            // Just get to within 2F of the target Temp.
+        if (!this.mode.equals(TemperatureTrigger.INCREASE)
+                && !this.mode.equals(TemperatureTrigger.DECREASE)) {
             BrewServer.LOG.warning("Waiting to be within 2F of " + targetTemp);
-            while(temperatureProbe.convertF(temperatureProbe.getTemp().subtract(targetTemp).abs())
-                    .compareTo(new BigDecimal(2.0)) <= 0) {
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException ie) {
-                    BrewServer.LOG.warning("Temperature Trigger interrupted.");
-                }
-            }
-        } else if (this.mode.equals(TemperatureTrigger.INCREASE)) {
-            while (this.temperatureProbe.getTemp().compareTo(
-                    this.targetTemp) <= 0) {
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException ie) {
-                    BrewServer.LOG.warning("Temperature Trigger interrupted");
-                    return;
-                }
-            }
-        } else if (this.mode.equals(TemperatureTrigger.DECREASE)) {
-            while (this.temperatureProbe.getTemp().compareTo(
-                    this.targetTemp) >= 0) {
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException ie) {
-                    BrewServer.LOG.warning("Temperature Trigger interrupted");
-                    return;
-                }
-            }
-        } else {
-            // Just get to within 2F of the target Temp.
-            BrewServer.LOG.warning("Waiting to be within 2F of " + targetTemp);
-            while(temperatureProbe.convertF(temperatureProbe.getTemp().subtract(targetTemp).abs())
-                    .compareTo(new BigDecimal(2.0)) <= 0) {
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException ie) {
-                    BrewServer.LOG.warning("Temperature Trigger interrupted.");
-                }
+        }
+
+        Temp probe;
+        synchronized (this) {
+            disarm();
+            this.listener = newListener;
+            this.armedProbe = this.temperatureProbe;
+            probe = this.armedProbe;
+        }
+        probe.addSampleListener(this);
+        // It may be there already
+        sampleTaken(probe);
+    }
+
+    /**
+     * Stop checking the readings.
+     */
+    @Override
+    public final void disarm() {
+        Temp probe;
+        synchronized (this) {
+            probe = this.armedProbe;
+            this.armedProbe = null;
+            this.listener = null;
+        }
+        if (probe != null) {
+            probe.removeSampleListener(this);
+        }
+    }
+
+    /**
+     * Check a new reading against the target.
+     * @param temp The probe that was read.
+     */
+    @Override
+    public final void sampleTaken(final Temp temp) {
+        Listener hit;
+        Temp probe;
+        synchronized (this) {
+            if (this.listener == null || temp != this.armedProbe
+                    || !isReached(temp)) {
+                return;
             }
+            // Disarm under the same lock, so only one sample fires it
+            hit = this.listener;
+            probe = this.armedProbe;
+            this.listener = null;
+            this.armedProbe = null;
         }
+        probe.removeSampleListener(this);
 
-        if (exitTemp.compareTo(targetTemp) != 0) {
+        if (exitTemp != null && exitTemp.compareTo(targetTemp) != 0) {
             setExitTemperature();
         }
+        hit.triggerHit(this);
+    }
+
+    /**
+     * @param temp The probe to check.
+     * @return True if the probe has reached the target for the mode.
+     */
+    private boolean isReached(final Temp temp) {
+        BigDecimal current = temp.getTemp();
+        if (current == null) {
+            return false;
+        }
+        if (this.mode.equals(TemperatureTrigger.INCREASE)) {
+            return current.compareTo(this.targetTemp) > 0;
+        }
+        if (this.mode.equals(TemperatureTrigger.DECREASE)) {
+            return current.compareTo(this.targetTemp) < 0;
+        }
+        // Just get to within 2F of the target Temp.
+        double within = "F".equals(temp.getScale()) ? 2.0 : 2.0 / 1.8;
+        return current.subtract(this.targetTemp).abs().doubleValue()
+                <= within;
     }
 
     /**
@@ -277,6 +316,7 @@ public class TemperatureTrigger implements TriggerInterface {
     @Override
     public final void deactivate() {
         this.active = false;
+        disarm();
         clearNotifications();
     }
 
@@ -12,15 +12,33 @@ import org.rendersnake.HtmlCanvas;
  */
 public interface TriggerInterface extends Comparable<TriggerInterface> {
 
+    /**
+     * Told when a trigger's condition is met.
+     */
+    interface Listener {
+        /**
+         * Called once when the trigger is hit. This may be on a sensor or
+         * timer thread, so it must return quickly.
+         * @param trigger The trigger that was hit.
+         */
+        void triggerHit(TriggerInterface trigger);
+    }
+
     /**
      * Get the name of this Trigger.
      * @return The name of the trigger.
      */
     String getName();
     /**
-     * Causes a wait until the trigger condition is met.
+     * Start waiting for the trigger condition, without blocking.
+     * @param listener Told once, when the condition is met.
+     */
+    void arm(Listener listener);
+
+    /**
+     * Stop waiting for the trigger condition, the listener won't be told.
      */
-    void waitForTrigger();
+    void disarm();
 
     /**
      * Return true is this is the current trigger that is waiting.
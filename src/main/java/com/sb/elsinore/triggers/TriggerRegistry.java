@@ -0,0 +1,167 @@
+package com.sb.elsinore.triggers;
+
+import com.sb.elsinore.BrewServer;
+import org.json.simple.JSONObject;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The trigger types, listed in
+ * META-INF/services/com.sb.elsinore.triggers.TriggerInterface.
+ *
+ * Adding a trigger type means adding its class name to that file. The file
+ * is read once, the first time a trigger type is needed, rather than
+ * scanning the classpath. Each type keeps the constructors the server
+ * needs and one instance to ask for the name and the probe types, so
+ * listing the types doesn't create any triggers.
+ *
+ * @author Doug Edey
+ */
+public final class TriggerRegistry {
+
+    /**
+     * One type of trigger.
+     */
+    public static final class Type {
+        private final Class<? extends TriggerInterface> triggerClass;
+        private final TriggerInterface prototype;
+        private final Constructor<? extends TriggerInterface> formConstructor;
+        private final Constructor<? extends TriggerInterface>
+            jsonConstructor;
+
+        private Type(final TriggerInterface newPrototype)
+                throws NoSuchMethodException {
+            this.prototype = newPrototype;
+            this.triggerClass = newPrototype.getClass();
+            this.formConstructor = this.triggerClass.getConstructor(int.class);
+            this.jsonConstructor = this.triggerClass.getConstructor(
+                    int.class, JSONObject.class);
+        }
+
+        /**
+         * @return The type name used by the web UI, such as "Wait".
+         */
+        public String getType() {
+            return this.triggerClass.getSimpleName().replace("Trigger", "");
+        }
+
+        /**
+         * @return The name shown to the user.
+         */
+        public String getName() {
+            return this.prototype.getName();
+        }
+
+        /**
+         * @return The trigger class.
+         */
+        public Class<? extends TriggerInterface> getTriggerClass() {
+            return this.triggerClass;
+        }
+
+        /**
+         * @param inType The probe type, "pid" or "temp".
+         * @return True if this trigger can be used with the probe type.
+         */
+        public boolean supports(final String inType) {
+            return this.prototype.getTriggerType(inType);
+        }
+
+        /**
+         * Create an empty trigger, used for the new trigger form.
+         * @param position The position of the trigger.
+         * @return The new trigger.
+         * @throws InvocationTargetException If the constructor failed.
+         */
+        public TriggerInterface create(final int position)
+                throws InvocationTargetException {
+            return newInstance(this.formConstructor, position);
+        }
+
+        /**
+         * Create a trigger from the submitted parameters.
+         * @param position The position of the trigger.
+         * @param parameters The parameters to set the trigger up with.
+         * @return The new trigger.
+         * @throws InvocationTargetException If the constructor failed.
+         */
+        public TriggerInterface create(final int position,
+                final JSONObject parameters)
+                throws InvocationTargetException {
+            return newInstance(this.jsonConstructor, position, parameters);
+        }
+
+        private TriggerInterface newInstance(
+                final Constructor<? extends TriggerInterface> constructor,
+                final Object... args) throws InvocationTargetException {
+            try {
+                return constructor.newInstance(args);
+            } catch (InstantiationException | IllegalAccessException e) {
+                // The constructors are public and the classes concrete
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static volatile Map<String, Type> types = null;
+
+    private TriggerRegistry() {
+    }
+
+    /**
+     * @return The trigger types by their type name, in the order they are
+     * listed.
+     */
+    public static Collection<Type> getTypes() {
+        return load().values();
+    }
+
+    /**
+     * @param type The type name, such as "Wait".
+     * @return The trigger type, or null if there isn't one by this name.
+     */
+    public static Type getType(final String type) {
+        if (type == null) {
+            return null;
+        }
+        return load().get(type);
+    }
+
+    private static Map<String, Type> load() {
+        Map<String, Type> loaded = types;
+        if (loaded != null) {
+            return loaded;
+        }
+        synchronized (TriggerRegistry.class) {
+            if (types != null) {
+                return types;
+            }
+            loaded = new LinkedHashMap<>();
+            Iterator<TriggerInterface> triggers = ServiceLoader.load(
+                    TriggerInterface.class,
+                    TriggerRegistry.class.getClassLoader()).iterator();
+            while (true) {
+                try {
+                    if (!triggers.hasNext()) {
+                        break;
+                    }
+                    Type type = new Type(triggers.next());
+                    loaded.put(type.getType(), type);
+                } catch (ServiceConfigurationError | NoSuchMethodException e) {
+                    BrewServer.LOG.warning("Couldn't load a trigger type: "
+                            + e.getMessage());
+                }
+            }
+            types = Collections.unmodifiableMap(loaded);
+            return types;
+        }
+    }
+}
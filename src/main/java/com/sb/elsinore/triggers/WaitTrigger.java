@@ -7,6 +7,7 @@ import static org.rendersnake.HtmlAttributesFactory.name;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
 
 import com.sb.common.SBStringUtils;
 import com.sb.elsinore.notificiations.Notification;
@@ -18,6 +19,7 @@ import org.rendersnake.HtmlCanvas;
 import com.sb.elsinore.BrewDay;
 import com.sb.elsinore.BrewServer;
 import com.sb.elsinore.Messages;
+import com.sb.elsinore.TimerService;
 import com.sb.util.MathUtil;
 
 import javax.annotation.Nonnull;
@@ -39,6 +41,8 @@ public class WaitTrigger implements TriggerInterface {
     private double seconds = 0.0;
     private String note;
     private WebNotification webNotification = null;
+    private Listener listener = null;
+    private ScheduledFuture<?> future = null;
 
     public WaitTrigger() {
         BrewServer.LOG.info("Created an empty wait trigger");
@@ -93,28 +97,48 @@ public class WaitTrigger implements TriggerInterface {
     }
 
     /**
-     * Suspend the thread for a certain period of time.
-     * @param ms The time in milliseconds to suspend for.
+     * Tell the listener once a certain period of time has passed, using the
+     * {@link TimerService} rather than holding a thread.
+     * @param ms The time in milliseconds to wait for.
+     * @param newListener Told when the time is up.
      */
-    private void cooldown(final long ms) {
+    private void cooldown(final long ms, final Listener newListener) {
         synchronized (lck) {
+            disarm();
             long startTime = System.currentTimeMillis();
             this.startDate = new Date();
             this.endDate = new Date(startTime + ms);
 
-            // Do thread need to wait
+            // Does it need to wait
             if (waitStatus) {
-                while (System.currentTimeMillis() - startTime < ms) {
-                    try {
-                        lck.wait(1000);
-                    } catch (InterruptedException e) {
-                        // DO NOTHING!
+                this.listener = newListener;
+                this.future = TimerService.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        finished();
                     }
-                }
-                //  Wait over no other thread will wait
-                waitStatus = false;
+                }, ms);
+                return;
+            }
+        }
+        newListener.triggerHit(this);
+    }
+
+    /**
+     * The time is up, no other wait will happen.
+     */
+    private void finished() {
+        Listener hit;
+        synchronized (lck) {
+            hit = this.listener;
+            this.listener = null;
+            this.future = null;
+            if (hit == null) {
+                return;
             }
+            waitStatus = false;
         }
+        hit.triggerHit(this);
     }
 
     /**
@@ -142,9 +166,21 @@ public class WaitTrigger implements TriggerInterface {
     }
 
     @Override
-    public void waitForTrigger() {
+    public void arm(final Listener newListener) {
         // Time is in seconds, multiply by 1000 and wait.
-        cooldown(MathUtil.multiply(this.waitTime , 1000).longValue());
+        cooldown(MathUtil.multiply(this.waitTime , 1000).longValue(),
+                newListener);
+    }
+
+    @Override
+    public void disarm() {
+        synchronized (lck) {
+            this.listener = null;
+            if (this.future != null) {
+                this.future.cancel(false);
+                this.future = null;
+            }
+        }
     }
 
     @Override
@@ -194,6 +230,7 @@ public class WaitTrigger implements TriggerInterface {
     @Override
     public void deactivate() {
         this.active = false;
+        disarm();
     }
 
     @Override
@@ -0,0 +1,196 @@
+package com.sb.elsinore;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The typed configuration, parsed from XML and written back.
+ */
+public class ConfigSnapshotTest {
+
+    private static final String CONFIG = "<elsinore>"
+        + "<general><brewery_name>Home</brewery_name><pagelock>true</pagelock>"
+        + "<scale>C</scale><http_threads>8</http_threads>"
+        + "<sensor_interval>250</sensor_interval>"
+        + "<pachube>key</pachube><pachube_feed>42</pachube_feed>"
+        + "<owfs_server>localhost</owfs_server><owfs_port>4304</owfs_port>"
+        + "<System/></general>"
+        + "<device id=\"Mash Tun\"><probe>28-1</probe><position>2</position>"
+        + "<set_point>152.5</set_point>"
+        + "<heat><gpio>GPIO1_12</gpio><cycle_time>5</cycle_time>"
+        + "<proportional>2.2</proportional><invert>true</invert>"
+        + "<watts>1500</watts></heat>"
+        + "<cool><gpio>GPIO1_13</gpio><delay>3</delay>"
+        + "<inverted>true</inverted></cool>"
+        + "<filter>median</filter><filter_window>7</filter_window>"
+        + "<volume-units>Gallons</volume-units><volume-ain>3</volume-ain>"
+        + "<volume vol=\"1\">100</volume><volume vol=\"2\">200</volume>"
+        + "</device>"
+        + "<device id=\"HLT\"><probe>28-2</probe><gpio>GPIO0_7</gpio>"
+        + "<proportional>x</proportional><hidden>true</hidden></device>"
+        + "<timers><timer id=\"Boil\" position=\"1\"/><timer id=\"Mash\"/>"
+        + "</timers>"
+        + "<switches><Pump_1 gpio=\"GPIO0_8\" position=\"3\">"
+        + "<invert>true</invert></Pump_1></switches>"
+        + "<phSensors><Mash_pH model=\"SEN0161\" ainPin=\"1\"/></phSensors>"
+        + "</elsinore>";
+
+    private static ConfigSnapshot parse(final String xml) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance()
+                .newDocumentBuilder()
+                .parse(new InputSource(new StringReader(xml)));
+        return ConfigSnapshot.fromDocument(doc);
+    }
+
+    private static ConfigSnapshot roundTrip(final ConfigSnapshot snapshot)
+            throws Exception {
+        return ConfigSnapshot.fromDocument(snapshot.toDocument());
+    }
+
+    private static void assertConfig(final ConfigSnapshot snapshot) {
+        GeneralConfig general = snapshot.getGeneral();
+        assertEquals("Home", general.getBreweryName());
+        assertTrue(general.getPageLock());
+        assertEquals("C", general.getScale());
+        assertEquals(Integer.valueOf(8), general.getHttpThreads());
+        assertEquals(Long.valueOf(250), general.getSensorInterval());
+        assertNull(general.getRecorder());
+        assertNull(general.getMaxLoadWatts());
+        assertEquals("key", general.getCosmKey());
+        assertEquals(Integer.valueOf(42), general.getCosmFeed());
+        assertEquals("localhost", general.getOwfsServer());
+        assertEquals(Integer.valueOf(4304), general.getOwfsPort());
+        assertTrue(general.hasSystemTemp());
+
+        assertEquals(2, snapshot.getDevices().size());
+        DeviceConfig mash = snapshot.getDevices().get(0);
+        assertSame(mash, snapshot.getDevice("Mash Tun"));
+        assertEquals("28-1", mash.getProbe());
+        assertEquals(2, mash.getPosition());
+        assertEquals(new BigDecimal("152.5"), mash.getSetPoint());
+        assertEquals(BigDecimal.ZERO, mash.getDuty());
+        assertEquals("GPIO1_12", mash.getHeat().getGpio());
+        assertEquals(new BigDecimal("5"), mash.getHeat().getCycleTime());
+        assertEquals(new BigDecimal("2.2"), mash.getHeat().getProportional());
+        assertTrue(mash.getHeat().isInverted());
+        assertEquals(1500, mash.getHeat().getWatts());
+        assertEquals("GPIO1_13", mash.getCool().getGpio());
+        assertEquals(new BigDecimal("3"), mash.getCool().getDelay());
+        assertTrue(mash.getCool().isInverted());
+        assertEquals("median", mash.getFilter());
+        assertEquals(7, mash.getFilterWindow());
+        assertEquals("Gallons", mash.getVolumeUnit());
+        assertEquals("3", mash.getVolumePin());
+        assertEquals(2, mash.getVolumes().size());
+        assertEquals(new BigDecimal("200"),
+                mash.getVolumes().get(new BigDecimal("2")));
+
+        // The older layout, with the heat settings under the device
+        DeviceConfig hlt = snapshot.getDevice("HLT");
+        assertEquals("GPIO0_7", hlt.getHeat().getGpio());
+        assertEquals(BigDecimal.ZERO, hlt.getHeat().getProportional());
+        assertNull(hlt.getCool().getGpio());
+        assertTrue(hlt.isHidden());
+        assertEquals(-1, hlt.getPosition());
+        assertEquals(DeviceConfig.DEFAULT_VOLUME_UNIT, hlt.getVolumeUnit());
+        assertEquals(TempFilter.DEFAULT_WINDOW, hlt.getFilterWindow());
+
+        assertEquals(2, snapshot.getTimers().size());
+        assertEquals("Boil", snapshot.getTimers().get(0).getId());
+        assertEquals(1, snapshot.getTimers().get(0).getPosition());
+        assertEquals(-1, snapshot.getTimers().get(1).getPosition());
+
+        SwitchConfig pump = snapshot.getSwitches().get(0);
+        assertEquals("Pump 1", pump.getName());
+        assertEquals("GPIO0_8", pump.getGpio());
+        assertEquals(3, pump.getPosition());
+        assertTrue(pump.getInverted());
+
+        PhSensorConfig sensor = snapshot.getPhSensors().get(0);
+        assertEquals("Mash pH", sensor.getName());
+        assertEquals("SEN0161", sensor.getModel());
+        assertEquals("1", sensor.getAinPin());
+        assertEquals("", sensor.getDsAddress());
+    }
+
+    @Test
+    public void parsesTheSections() throws Exception {
+        assertConfig(parse(CONFIG));
+    }
+
+    @Test
+    public void writesBackWhatItRead() throws Exception {
+        ConfigSnapshot snapshot = roundTrip(parse(CONFIG));
+        assertConfig(snapshot);
+        assertConfig(roundTrip(snapshot));
+    }
+
+    @Test
+    public void changesMakeCopies() throws Exception {
+        ConfigSnapshot snapshot = parse(CONFIG);
+        DeviceConfig mash = snapshot.getDevice("Mash Tun");
+
+        ConfigSnapshot changed = snapshot.withDevice(
+                mash.withVolumeAddress("20-1", "A"));
+        assertNull(snapshot.getDevice("Mash Tun").getVolumeAddress());
+        assertEquals("20-1", changed.getDevice("Mash Tun").getVolumeAddress());
+        // Replaced in place, the order is kept
+        assertEquals("Mash Tun", changed.getDevices().get(0).getId());
+
+        changed = changed.withDevice(DeviceConfig.named("Boil"))
+                .withoutDevice("Mash Tun");
+        assertEquals(2, snapshot.getDevices().size());
+        assertEquals(2, changed.getDevices().size());
+        assertEquals("HLT", changed.getDevices().get(0).getId());
+        assertEquals("Boil", changed.getDevices().get(1).getId());
+        assertSame(changed, changed.withoutDevice("Mash Tun"));
+
+        GeneralConfig general = snapshot.getGeneral()
+                .withDisplay(false, "F", "")
+                .withRecorder(true, 0.5, 1000L);
+        assertEquals("Home", general.getBreweryName());
+        assertFalse(general.getPageLock());
+        assertEquals(Double.valueOf(0.5), general.getRecorderDiff());
+        assertTrue(snapshot.getGeneral().getPageLock());
+
+        changed = snapshot.withSwitches(
+                Collections.<SwitchConfig>emptyList());
+        assertEquals(1, snapshot.getSwitches().size());
+        assertTrue(roundTrip(changed).getSwitches().isEmpty());
+    }
+
+    @Test
+    public void volumesAreMerged() throws Exception {
+        DeviceConfig mash = parse(CONFIG).getDevice("Mash Tun");
+        DeviceConfig changed = mash.withVolume("Litres",
+                Collections.singletonMap(new BigDecimal("2"),
+                        new BigDecimal("250")));
+        assertEquals("Litres", changed.getVolumeUnit());
+        assertEquals(2, changed.getVolumes().size());
+        assertEquals(new BigDecimal("250"),
+                changed.getVolumes().get(new BigDecimal("2")));
+        assertEquals(new BigDecimal("200"),
+                mash.getVolumes().get(new BigDecimal("2")));
+    }
+
+    @Test
+    public void noDocument() throws Exception {
+        assertSame(ConfigSnapshot.EMPTY, ConfigSnapshot.fromDocument(null));
+        ConfigSnapshot empty = roundTrip(ConfigSnapshot.EMPTY);
+        assertTrue(empty.getDevices().isEmpty());
+        assertNull(empty.getGeneral().getBreweryName());
+        assertFalse(empty.getGeneral().hasSystemTemp());
+    }
+}
@@ -0,0 +1,158 @@
+package com.sb.elsinore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The config file written behind the changes.
+ */
+public class ConfigWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ConfigSnapshot savedConfig;
+    private String savedFileName;
+    private File config;
+
+    @Before
+    public void setUp() {
+        ConfigWriter.flush(ConfigWriter.SHUTDOWN_TIMEOUT);
+        this.savedConfig = LaunchControl.getConfig();
+        this.savedFileName = LaunchControl.configFileName;
+        this.config = new File(this.folder.getRoot(), "elsinore.cfg");
+        LaunchControl.setConfig(ConfigSnapshot.EMPTY);
+        LaunchControl.configFileName = this.config.getPath();
+    }
+
+    @After
+    public void tearDown() {
+        ConfigWriter.flush(ConfigWriter.SHUTDOWN_TIMEOUT);
+        LaunchControl.setConfig(this.savedConfig);
+        LaunchControl.configFileName = this.savedFileName;
+    }
+
+    private static void rename(final String name) {
+        ConfigSnapshot current = LaunchControl.getConfig();
+        LaunchControl.setConfig(current.withGeneral(
+                current.getGeneral().withDisplay(false, "F", name)));
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(this.config.toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wait for the writes to reach a count.
+     */
+    private static void awaitWrites(final long count)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis()
+                + ConfigWriter.MAX_DELAY * 2;
+        while (ConfigWriter.getWriteCount() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void burstIsOneWrite() throws Exception {
+        long writes = ConfigWriter.getWriteCount();
+        long requests = ConfigWriter.getRequestCount();
+        for (int i = 0; i < 20; i++) {
+            rename("brewery" + i);
+            ConfigWriter.markDirty();
+        }
+        assertTrue(ConfigWriter.isDirty());
+        assertFalse(this.config.exists());
+
+        awaitWrites(writes + 1);
+        // Give a second write the chance to happen, it shouldn't
+        Thread.sleep(ConfigWriter.QUIET_TIME * 2);
+        assertEquals(writes + 1, ConfigWriter.getWriteCount());
+        assertEquals(requests + 20, ConfigWriter.getRequestCount());
+        assertFalse(ConfigWriter.isDirty());
+        assertTrue(read().contains("<brewery_name>brewery19</brewery_name>"));
+    }
+
+    @Test
+    public void flushWritesStraightAway() throws Exception {
+        long writes = ConfigWriter.getWriteCount();
+        rename("flushed");
+        ConfigWriter.markDirty();
+        assertTrue(ConfigWriter.flush(ConfigWriter.SHUTDOWN_TIMEOUT));
+        assertEquals(writes + 1, ConfigWriter.getWriteCount());
+        assertTrue(read().contains("<brewery_name>flushed</brewery_name>"));
+
+        // The write that was waiting was cancelled, and there's nothing left
+        Thread.sleep(ConfigWriter.QUIET_TIME * 2);
+        assertEquals(writes + 1, ConfigWriter.getWriteCount());
+        assertTrue(ConfigWriter.flush(ConfigWriter.SHUTDOWN_TIMEOUT));
+        assertEquals(writes + 1, ConfigWriter.getWriteCount());
+    }
+
+    @Test
+    public void keepsTheChangesIfTheyCantBeSerialized() throws Exception {
+        ConfigSnapshot saved = LaunchControl.getConfig();
+        LaunchControl.setConfig(null);
+        ConfigWriter.markDirty();
+        assertFalse(ConfigWriter.flush(ConfigWriter.SHUTDOWN_TIMEOUT));
+        assertTrue(ConfigWriter.isDirty());
+        assertFalse(this.config.exists());
+
+        LaunchControl.setConfig(saved);
+        assertTrue(ConfigWriter.flush(ConfigWriter.SHUTDOWN_TIMEOUT));
+        assertTrue(this.config.exists());
+    }
+
+    @Test
+    public void backsOffWhileItCantBeSerialized() throws Exception {
+        ConfigSnapshot saved = LaunchControl.getConfig();
+        LaunchControl.setConfig(null);
+        ConfigWriter.markDirty();
+        // Tried at 0.5s, then 1s and 2s after that, not every half second
+        Thread.sleep(ConfigWriter.QUIET_TIME * 6);
+        int failures = ConfigWriter.getFailureCount();
+        assertTrue("Failed " + failures + " times",
+                failures >= 1 && failures <= 3);
+        assertTrue(ConfigWriter.isDirty());
+
+        // A new change is written as soon as it can be
+        LaunchControl.setConfig(saved);
+        long writes = ConfigWriter.getWriteCount();
+        ConfigWriter.markDirty();
+        assertEquals(0, ConfigWriter.getFailureCount());
+        awaitWrites(writes + 1);
+        assertEquals(writes + 1, ConfigWriter.getWriteCount());
+        assertFalse(ConfigWriter.isDirty());
+    }
+
+    @Test
+    public void replacesTheWholeFile() throws IOException {
+        Files.write(this.config.toPath(),
+                "a much longer old configuration".getBytes(
+                        StandardCharsets.UTF_8));
+        byte[] content = "new".getBytes(StandardCharsets.UTF_8);
+        ConfigWriter.write(this.config, content);
+
+        assertArrayEquals(content, Files.readAllBytes(this.config.toPath()));
+        // The temporary file was renamed over the config, not left behind
+        String[] files = this.folder.getRoot().list();
+        assertEquals(1, files.length);
+        assertEquals("elsinore.cfg", files[0]);
+    }
+}
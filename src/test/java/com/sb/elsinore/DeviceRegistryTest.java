@@ -0,0 +1,185 @@
+package com.sb.elsinore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The device lists, looked up by name or second key.
+ */
+public class DeviceRegistryTest {
+
+    /**
+     * A device with a name and an address.
+     */
+    private static final class Device {
+        private String name;
+        private final String address;
+
+        private Device(final String newName, final String newAddress) {
+            this.name = newName;
+            this.address = newAddress;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    private static DeviceRegistry<Device> registry() {
+        return new DeviceRegistry<>(
+            new DeviceRegistry.Key<Device>() {
+                @Override
+                public String keyOf(final Device item) {
+                    return item.name;
+                }
+            },
+            new DeviceRegistry.Key<Device>() {
+                @Override
+                public String keyOf(final Device item) {
+                    return item.address;
+                }
+            });
+    }
+
+    @Test
+    public void lookupIgnoresCase() {
+        DeviceRegistry<Device> devices = registry();
+        Device mash = new Device("Mash Tun", "28-0000055a1b2c");
+        Device boil = new Device("Boil", null);
+        devices.add(mash);
+        devices.add(boil);
+
+        assertSame(mash, devices.get("mash tun"));
+        assertSame(mash, devices.get("MASH TUN"));
+        assertSame(mash, devices.get("28-0000055A1B2C"));
+        assertSame(boil, devices.get("boil"));
+        assertTrue(devices.contains("BOIL"));
+        assertNull(devices.get("HLT"));
+        assertNull(devices.get(null));
+        assertFalse(devices.contains("28-"));
+    }
+
+    @Test
+    public void firstDeviceInTheListWins() {
+        DeviceRegistry<Device> devices = registry();
+        // The first device's address is the second device's name, the
+        // scans checked both keys on each device in turn
+        Device first = new Device("HLT", "Mash");
+        Device second = new Device("Mash", "28-2");
+        Device third = new Device("hlt", "28-3");
+        devices.add(first);
+        devices.add(second);
+        devices.add(third);
+
+        assertSame(first, devices.get("mash"));
+        assertSame(first, devices.get("hlt"));
+        assertSame(second, devices.get("28-2"));
+        assertSame(third, devices.get("28-3"));
+
+        devices.remove(first);
+        assertSame(second, devices.get("mash"));
+        assertSame(third, devices.get("HLT"));
+    }
+
+    @Test
+    public void renameAndReindex() {
+        DeviceRegistry<Device> devices = registry();
+        Device kettle = new Device("Kettle", "28-1");
+        devices.add(kettle);
+
+        kettle.name = "Boil";
+        // The old name is found in the index, seen to be stale and dropped
+        assertNull(devices.get("kettle"));
+        assertSame(kettle, devices.get("boil"));
+
+        kettle.name = "Copper";
+        devices.reindex();
+        assertSame(kettle, devices.get("COPPER"));
+        assertNull(devices.get("Boil"));
+        assertSame(kettle, devices.get("28-1"));
+    }
+
+    @Test
+    public void iterateWhileAdding() {
+        DeviceRegistry<Device> devices = registry();
+        for (int i = 0; i < 5; i++) {
+            devices.add(new Device("Probe " + i, null));
+        }
+        List<String> seen = new ArrayList<>();
+        for (Device device : devices) {
+            seen.add(device.name);
+            // The loop goes over the list as it was when it started
+            devices.add(new Device(device.name + " copy", null));
+        }
+        assertEquals(5, seen.size());
+        assertEquals(10, devices.size());
+        assertSame(devices.get("Probe 4 copy"), devices.snapshot().get(9));
+    }
+
+    @Test
+    public void iterateWhileAnotherThreadAdds() throws InterruptedException {
+        final DeviceRegistry<Device> devices = registry();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread adder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 2000; i++) {
+                    devices.add(new Device("Probe " + i, "28-" + i));
+                }
+            }
+        });
+        adder.start();
+        try {
+            while (adder.isAlive()) {
+                int count = 0;
+                for (Device device : devices) {
+                    assertSame(device, devices.get(device.name));
+                    count++;
+                }
+                assertTrue(count <= devices.size());
+            }
+        } catch (RuntimeException | AssertionError e) {
+            failure.set(e);
+        }
+        adder.join();
+        assertNull(failure.get());
+        assertEquals(2000, devices.size());
+        assertSame(devices.snapshot().get(1999), devices.get("28-1999"));
+    }
+
+    @Test
+    public void orderAndRemove() {
+        DeviceRegistry<Device> devices = registry();
+        Comparator<Device> byName = new Comparator<Device>() {
+            @Override
+            public int compare(final Device a, final Device b) {
+                return a.name.compareTo(b.name);
+            }
+        };
+        devices.addInOrder(new Device("c", null), byName);
+        devices.addInOrder(new Device("a", null), byName);
+        devices.addInOrder(new Device("b", null), byName);
+        assertEquals("[a, b, c]", devices.toString());
+
+        Device removed = devices.remove("B");
+        assertEquals("b", removed.name);
+        assertNull(devices.remove("b"));
+        assertFalse(devices.remove(removed));
+        assertEquals("[a, c]", devices.toString());
+
+        devices.clear();
+        assertTrue(devices.isEmpty());
+        assertNull(devices.get("a"));
+    }
+}
@@ -0,0 +1,264 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.devices.OutputDevice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The output cycles, driven by a fake clock.
+ */
+public class OutputSchedulerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** The fake System.nanoTime(), it can be negative. */
+    private long now = -7 * SECOND;
+
+    /**
+     * An output that records when it's on, instead of switching a pin.
+     */
+    private final class FakeDevice extends OutputDevice {
+        /** The on and off times, in pairs. */
+        private final List<Long> switches = new ArrayList<>();
+
+        private FakeDevice(final String name, final int cycleSeconds,
+                final int watts) {
+            super(name, null, new BigDecimal(cycleSeconds));
+            setWatts(watts);
+        }
+
+        @Override
+        public void turnOn() {
+            if (!isOn()) {
+                this.switches.add(OutputSchedulerTest.this.now);
+            }
+        }
+
+        @Override
+        public void turnOff() {
+            if (isOn()) {
+                this.switches.add(OutputSchedulerTest.this.now);
+            }
+        }
+
+        private boolean isOn() {
+            return this.switches.size() % 2 == 1;
+        }
+
+        /**
+         * @return The nanoseconds the output was on between the times.
+         */
+        private long onTime(final long from, final long to) {
+            long total = 0;
+            for (int i = 0; i < this.switches.size(); i += 2) {
+                long on = this.switches.get(i);
+                long off = i + 1 < this.switches.size()
+                        ? this.switches.get(i + 1) : OutputSchedulerTest.this.now;
+                total += Math.max(0, Math.min(off, to) - Math.max(on, from));
+            }
+            return total;
+        }
+
+        private long firstOn() {
+            return this.switches.get(0);
+        }
+
+        /**
+         * @return The longest the output was off for, after it first came
+         * on.
+         */
+        private long longestOff() {
+            long longest = 0;
+            for (int i = 1; i + 1 < this.switches.size(); i += 2) {
+                longest = Math.max(longest,
+                        this.switches.get(i + 1) - this.switches.get(i));
+            }
+            return longest;
+        }
+    }
+
+    private int savedMaxLoad;
+
+    @Before
+    public void setUp() {
+        // Keep the real scheduler thread away from these outputs
+        OutputScheduler.shutdown();
+        OutputScheduler.reset();
+        this.savedMaxLoad = LaunchControl.maxLoadWatts;
+        LaunchControl.maxLoadWatts = 0;
+    }
+
+    @After
+    public void tearDown() {
+        OutputScheduler.reset();
+        LaunchControl.maxLoadWatts = this.savedMaxLoad;
+    }
+
+    private OutputControl output(final FakeDevice heater) {
+        OutputControl control = new OutputControl(heater, null);
+        assertTrue(OutputScheduler.add(control));
+        return control;
+    }
+
+    /**
+     * Run the scheduler on the fake clock, calling it at every deadline it
+     * asks for.
+     */
+    private void runUntil(final long end) {
+        long next = OutputScheduler.service(this.now);
+        int steps = 0;
+        while (next <= end) {
+            assertTrue("The scheduler asked for a time in the past",
+                    next > this.now);
+            assertTrue("The scheduler never settled", steps++ < 100000);
+            this.now = next;
+            next = OutputScheduler.service(this.now);
+        }
+        this.now = end;
+    }
+
+    @Test
+    public void onTimePerCycle() {
+        int[] duties = {0, 1, 10, 25, 50, 75, 99, 100};
+        for (int duty : duties) {
+            OutputScheduler.reset();
+            FakeDevice heater = new FakeDevice("heater", 2, 0);
+            OutputControl control = output(heater);
+            control.setDuty(new BigDecimal(duty));
+            long start = this.now;
+            runUntil(start + 20 * SECOND);
+
+            long expected = duty * 2 * SECOND / 100;
+            for (int cycle = 0; cycle < 10; cycle++) {
+                long from = start + cycle * 2 * SECOND;
+                assertEquals("Duty " + duty + " cycle " + cycle, expected,
+                        heater.onTime(from, from + 2 * SECOND));
+            }
+            if (duty == 0) {
+                assertTrue(heater.switches.isEmpty());
+                assertEquals("off", control.getStatus());
+            } else {
+                assertEquals(start, heater.firstOn());
+                assertEquals("heating", control.getStatus());
+            }
+            // A full duty is never switched off between cycles
+            if (duty == 100) {
+                assertEquals(1, heater.switches.size());
+            }
+        }
+    }
+
+    @Test
+    public void outputsStartAtTheirPhase() {
+        FakeDevice[] heaters = new FakeDevice[3];
+        for (int i = 0; i < heaters.length; i++) {
+            heaters[i] = new FakeDevice("heater" + i, 5, 0);
+            output(heaters[i]).setDuty(new BigDecimal(40));
+        }
+        long start = this.now;
+        runUntil(start + 60 * SECOND);
+
+        for (int i = 0; i < heaters.length; i++) {
+            long phase = i * OutputScheduler.PHASE_STEP * MILLI;
+            // Every cycle starts at the same offset, they don't drift
+            for (int cycle = 0; cycle < 11; cycle++) {
+                long on = start + phase + cycle * 5 * SECOND;
+                assertEquals("Output " + i + " cycle " + cycle, on,
+                        (long) heaters[i].switches.get(cycle * 2));
+                assertEquals("Output " + i + " cycle " + cycle, on + 2 * SECOND,
+                        (long) heaters[i].switches.get(cycle * 2 + 1));
+            }
+        }
+        assertEquals(0, OutputScheduler.getMaxError(), 0);
+        assertEquals(0, OutputScheduler.getDeferredCount());
+    }
+
+    @Test
+    public void phaseWrapsAtTheLargest() {
+        int outputs = (int) (OutputScheduler.MAX_PHASE
+                / OutputScheduler.PHASE_STEP) + 2;
+        FakeDevice[] heaters = new FakeDevice[outputs];
+        for (int i = 0; i < outputs; i++) {
+            heaters[i] = new FakeDevice("heater" + i, 5, 0);
+            output(heaters[i]).setDuty(new BigDecimal(10));
+        }
+        long start = this.now;
+        runUntil(start + 5 * SECOND);
+        for (int i = 0; i < outputs; i++) {
+            long phase = (i * OutputScheduler.PHASE_STEP)
+                    % (OutputScheduler.MAX_PHASE + 1);
+            assertEquals(start + phase * MILLI, heaters[i].firstOn());
+        }
+    }
+
+    @Test
+    public void newDutyAtTheNextCycle() {
+        FakeDevice heater = new FakeDevice("heater", 4, 0);
+        OutputControl control = output(heater);
+        control.setDuty(new BigDecimal(25));
+        long start = this.now;
+        runUntil(start + 2 * SECOND);
+        // Part way through the cycle, the on time isn't cut short
+        control.setDuty(new BigDecimal(75));
+        runUntil(start + 8 * SECOND);
+        assertEquals(SECOND, heater.onTime(start, start + 4 * SECOND));
+        assertEquals(3 * SECOND,
+                heater.onTime(start + 4 * SECOND, start + 8 * SECOND));
+
+        // Turning off is straight away
+        runUntil(start + 9 * SECOND);
+        control.setDuty(BigDecimal.ZERO);
+        runUntil(start + 12 * SECOND);
+        assertFalse(heater.isOn());
+        assertEquals(SECOND,
+                heater.onTime(start + 8 * SECOND, start + 12 * SECOND));
+        assertEquals("off", control.getStatus());
+    }
+
+    @Test
+    public void fullOutputsTakeTurnsUnderTheLoad() {
+        LaunchControl.maxLoadWatts = 3000;
+        FakeDevice first = new FakeDevice("first", 2, 2500);
+        FakeDevice second = new FakeDevice("second", 2, 2500);
+        output(first).setDuty(new BigDecimal(100));
+        output(second).setDuty(new BigDecimal(100));
+        long start = this.now;
+        runUntil(start + 100 * SECOND);
+
+        long firstOn = first.onTime(start, this.now);
+        long secondOn = second.onTime(start, this.now);
+        assertTrue("First had " + firstOn, firstOn >= 45 * SECOND);
+        assertTrue("Second had " + secondOn, secondOn >= 45 * SECOND);
+        // Only one at a time, and the load isn't left idle
+        assertEquals(2500, OutputScheduler.getPeakLoad());
+        assertTrue(firstOn + secondOn >= 99 * SECOND);
+        assertTrue(first.longestOff() <= 2 * SECOND);
+        assertTrue(second.longestOff() <= 2 * SECOND);
+    }
+
+    @Test
+    public void halfOutputsInterleaveUnderTheLoad() {
+        LaunchControl.maxLoadWatts = 3000;
+        FakeDevice first = new FakeDevice("first", 2, 2500);
+        FakeDevice second = new FakeDevice("second", 2, 2500);
+        output(first).setDuty(new BigDecimal(50));
+        output(second).setDuty(new BigDecimal(50));
+        long start = this.now;
+        runUntil(start + 100 * SECOND);
+
+        assertEquals(2500, OutputScheduler.getPeakLoad());
+        assertTrue(first.onTime(start, this.now) >= 49 * SECOND);
+        assertTrue(second.onTime(start, this.now) >= 48 * SECOND);
+    }
+}
@@ -0,0 +1,102 @@
+package com.sb.elsinore;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The PID arithmetic in doubles, against the BigDecimal sums it replaced.
+ */
+public class PIDEngineTest {
+
+    private static final double EXACT = 0.0;
+
+    /**
+     * Run one step, a second after the engine was started.
+     */
+    private static double step(final double setPoint, final double temp,
+            final double p, final boolean canHeat, final boolean canCool) {
+        PIDEngine engine = new PIDEngine();
+        engine.reset(1000L);
+        return engine.calculate(2000L, setPoint, temp, p, 0.5, 0.25, 12.0,
+                canHeat, canCool);
+    }
+
+    /**
+     * The output the BigDecimal version gave, to three decimal places.
+     */
+    private static double baseline(final String setPoint, final String temp,
+            final String p) {
+        BigDecimal output = new BigDecimal(p).multiply(
+                new BigDecimal(setPoint).subtract(new BigDecimal(temp)));
+        if (output.compareTo(new BigDecimal(100)) > 0) {
+            output = new BigDecimal(100);
+        } else if (output.compareTo(new BigDecimal(-100)) < 0) {
+            output = new BigDecimal(-100);
+        }
+        return output.setScale(3, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    @Test
+    public void outputIsProportionalToTheError() {
+        String[][] cases = {
+            {"152", "150", "2"},
+            {"152", "150.5", "4.4"},
+            {"65.3", "64.1", "10"},
+            {"68", "67.9", "1.1"},
+            {"20", "22.25", "3"},
+            {"100", "100", "5"},
+            {"152.12345", "150", "1.23456"},
+        };
+        for (String[] c : cases) {
+            assertEquals(c[0] + " " + c[1] + " " + c[2],
+                    baseline(c[0], c[1], c[2]),
+                    step(Double.parseDouble(c[0]), Double.parseDouble(c[1]),
+                            Double.parseDouble(c[2]), true, true),
+                    EXACT);
+        }
+    }
+
+    @Test
+    public void roundsOffTheFloatingPointNoise() {
+        // 4.4 * 10 is 44.00000000000001 in doubles
+        assertEquals(44.0, step(160, 150, 4.4, true, true), EXACT);
+        // 0.1 * 3 is 0.30000000000000004
+        assertEquals(0.3, step(3, 0, 0.1, true, true), EXACT);
+        assertEquals(1.235, step(1.2346, 0, 1, true, true), EXACT);
+    }
+
+    @Test
+    public void clampsToTheLargestDuty() {
+        assertEquals(100.0, step(212, 50, 10, true, true), EXACT);
+        assertEquals(-100.0, step(50, 212, 10, true, true), EXACT);
+        assertEquals(100.0, step(110, 10, 1, true, true), EXACT);
+        assertEquals(99.999, step(99.999, 0, 1, true, true), EXACT);
+    }
+
+    @Test
+    public void noOutputWithoutAHeaterOrCooler() {
+        assertEquals(0.0, step(160, 150, 2, false, true), EXACT);
+        assertEquals(20.0, step(160, 150, 2, true, false), EXACT);
+        assertEquals(0.0, step(150, 160, 2, true, false), EXACT);
+        assertEquals(-20.0, step(150, 160, 2, false, true), EXACT);
+    }
+
+    @Test
+    public void keepsTheDutyIfNoTimeHasPassed() {
+        PIDEngine engine = new PIDEngine();
+        // The first step starts the timing
+        assertEquals(12.0, engine.calculate(5000L, 160, 150, 2, 0, 0, 12.0,
+                true, true), EXACT);
+        assertEquals(20.0, engine.calculate(6000L, 160, 150, 2, 0, 0, 12.0,
+                true, true), EXACT);
+        assertEquals(33.0, engine.calculate(6000L, 160, 140, 2, 0, 0, 33.0,
+                true, true), EXACT);
+        assertEquals(40.0, engine.calculate(6500L, 160, 140, 2, 0, 0, 33.0,
+                true, true), EXACT);
+        assertEquals(20.0, engine.getPreviousError(), EXACT);
+    }
+}
@@ -0,0 +1,148 @@
+package com.sb.elsinore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Kept alive connections against the bounded request pool, and the cap on
+ * the status streams.
+ */
+public class PooledAsyncRunnerTest {
+
+    private NanoHTTPD server;
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        ServerSocket free = new ServerSocket(0);
+        this.port = free.getLocalPort();
+        free.close();
+        this.server = new NanoHTTPD("127.0.0.1", this.port) {
+            @Override
+            public Response serve(final IHTTPSession session) {
+                return new Response("ok");
+            }
+        };
+        this.server.setAsyncRunner(
+                new NanoHTTPD.PooledAsyncRunner(1, 4, false));
+        this.server.start();
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop();
+    }
+
+    /**
+     * Send a keep alive request and read the status line of the response.
+     */
+    private static String request(final Socket socket) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET / HTTP/1.1\r\nHost: localhost\r\n"
+                + "Connection: keep-alive\r\n\r\n").getBytes("UTF-8"));
+        out.flush();
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        String status = in.readLine();
+        // Skip the rest of the response
+        String line = in.readLine();
+        while (line != null && !line.isEmpty()) {
+            line = in.readLine();
+        }
+        return status;
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress("127.0.0.1", this.port), 2000);
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    @Test
+    public void idleConnectionGivesUpItsWorker() throws Exception {
+        // The only worker is held by an idle kept alive connection
+        Socket idle = connect();
+        assertTrue(request(idle).contains("200"));
+
+        long start = System.currentTimeMillis();
+        Socket other = connect();
+        try {
+            assertTrue(request(other).contains("200"));
+        } finally {
+            other.close();
+            idle.close();
+        }
+        long waited = System.currentTimeMillis() - start;
+        assertTrue("waited " + waited + "ms",
+                waited < NanoHTTPD.SOCKET_READ_TIMEOUT);
+    }
+
+    @Test
+    public void keptAliveWhileIdle() throws Exception {
+        Socket socket = connect();
+        try {
+            assertTrue(request(socket).contains("200"));
+            assertTrue(request(socket).contains("200"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void streamCapHolds() throws Exception {
+        final int max = 3;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<StatusStream>> opened = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            opened.add(pool.submit(new Callable<StatusStream>() {
+                @Override
+                public StatusStream call() {
+                    return StatusStream.open(max);
+                }
+            }));
+        }
+        List<StatusStream> streams = new ArrayList<>();
+        for (Future<StatusStream> future : opened) {
+            if (future.get() != null) {
+                streams.add(future.get());
+            }
+        }
+        pool.shutdown();
+        assertEquals(max, streams.size());
+        assertEquals(max, StatusStream.getOpenStreams());
+        assertNull(StatusStream.open(max));
+
+        streams.get(0).close();
+        // Closing twice only frees one
+        streams.get(0).close();
+        StatusStream again = StatusStream.open(max);
+        assertNotNull(again);
+        assertNull(StatusStream.open(max));
+        again.close();
+        for (StatusStream stream : streams) {
+            stream.close();
+        }
+        assertEquals(0, StatusStream.getOpenStreams());
+    }
+}
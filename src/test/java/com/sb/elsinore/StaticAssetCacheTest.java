@@ -0,0 +1,158 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.NanoHTTPD.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The cached static files, their ETags, 304s and gzipped copies.
+ */
+public class StaticAssetCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        StaticAssetCache.clear();
+        File templates = folder.newFolder("templates");
+        this.file = new File(templates, "page.html");
+        StringBuilder page = new StringBuilder("<html><body>");
+        for (int i = 0; i < 200; i++) {
+            page.append("<p>Mash temperature ").append(i).append("</p>");
+        }
+        page.append("</body></html>");
+        this.content = page.toString().getBytes("UTF-8");
+        Files.write(this.file.toPath(), this.content);
+    }
+
+    @After
+    public void tearDown() {
+        StaticAssetCache.clear();
+    }
+
+    private Response serve(final Map<String, String> header) {
+        return StaticAssetCache.serve("/templates/page.html", this.file,
+                "text/html", header);
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void servesWithETag() throws IOException {
+        Response res = serve(new HashMap<String, String>());
+        assertNotNull(res);
+        assertEquals(Response.Status.OK, res.getStatus());
+        assertArrayEquals(this.content, read(res.getData()));
+        assertNotNull(res.getHeader("ETag"));
+        assertNotNull(res.getHeader("Last-Modified"));
+        assertNull(res.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", res.getHeader("Vary"));
+
+        // The same file gets the same tag
+        assertEquals(res.getHeader("ETag"),
+                serve(new HashMap<String, String>()).getHeader("ETag"));
+    }
+
+    @Test
+    public void notModified() {
+        Response first = serve(new HashMap<String, String>());
+
+        Map<String, String> header = new HashMap<>();
+        header.put("if-none-match", first.getHeader("ETag"));
+        assertEquals(Response.Status.NOT_MODIFIED, serve(header).getStatus());
+
+        header.put("if-none-match", "\"something-else\"");
+        assertEquals(Response.Status.OK, serve(header).getStatus());
+
+        header.clear();
+        header.put("if-modified-since", first.getHeader("Last-Modified"));
+        assertEquals(Response.Status.NOT_MODIFIED, serve(header).getStatus());
+
+        header.put("if-modified-since", "Thu, 01 Jan 1970 00:00:00 GMT");
+        assertEquals(Response.Status.OK, serve(header).getStatus());
+    }
+
+    @Test
+    public void gzipVariant() throws IOException {
+        Map<String, String> header = new HashMap<>();
+        header.put("accept-encoding", "gzip, deflate");
+        Response res = serve(header);
+        assertEquals("gzip", res.getHeader("Content-Encoding"));
+        byte[] gzipped = read(res.getData());
+        assertTrue(gzipped.length < this.content.length);
+        assertArrayEquals(this.content,
+                read(new GZIPInputStream(
+                        new ByteArrayInputStream(gzipped))));
+    }
+
+    @Test
+    public void binaryIsNotGzipped() throws IOException {
+        File logos = folder.newFolder("logos");
+        File logo = new File(logos, "logo.png");
+        Files.write(logo.toPath(), this.content);
+        Map<String, String> header = new HashMap<>();
+        header.put("accept-encoding", "gzip");
+        Response res = StaticAssetCache.serve("/logos/logo.png", logo,
+                "image/png", header);
+        assertNull(res.getHeader("Content-Encoding"));
+        assertNull(res.getHeader("Vary"));
+        assertArrayEquals(this.content, read(res.getData()));
+    }
+
+    @Test
+    public void reloadsOnChange() throws IOException {
+        Response first = serve(new HashMap<String, String>());
+        String etag = first.getHeader("ETag");
+
+        byte[] changed = "<html>changed</html>".getBytes("UTF-8");
+        Files.write(this.file.toPath(), changed);
+        assertTrue(this.file.setLastModified(
+                this.file.lastModified() + 5000));
+        StaticAssetCache.expire();
+
+        Map<String, String> header = new HashMap<>();
+        header.put("if-none-match", etag);
+        Response res = serve(header);
+        assertEquals(Response.Status.OK, res.getStatus());
+        assertTrue(!etag.equals(res.getHeader("ETag")));
+        assertArrayEquals(changed, read(res.getData()));
+    }
+
+    @Test
+    public void otherPathsAreNotCached() {
+        assertNull(StaticAssetCache.serve("/graph-data/x.zip", this.file,
+                "application/zip", new HashMap<String, String>()));
+    }
+}
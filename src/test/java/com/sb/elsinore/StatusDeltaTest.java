@@ -0,0 +1,46 @@
+package com.sb.elsinore;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The status deltas shared between the streams.
+ */
+public class StatusDeltaTest {
+
+    @Test
+    public void deltaIsSharedUntilTheStatusChanges() {
+        LaunchControl.structureChanged();
+        long since = LaunchControl.statusChanged();
+        LaunchControl.statusChanged();
+
+        StatusSnapshot delta = LaunchControl.getStatusDelta(since);
+        assertSame(delta, LaunchControl.getStatusDelta(since));
+        assertEquals(LaunchControl.getStatusVersion(), delta.getVersion());
+        JSONObject json = (JSONObject) JSONValue.parse(delta.getJson());
+        assertEquals(true, json.get("delta"));
+        assertEquals(delta.getVersion(), json.get("version"));
+
+        long changed = LaunchControl.statusChanged();
+        StatusSnapshot next = LaunchControl.getStatusDelta(since);
+        assertNotSame(delta, next);
+        assertEquals(changed, next.getVersion());
+        assertSame(next, LaunchControl.getStatusDelta(since));
+    }
+
+    @Test
+    public void oldVersionsGetTheFullStatus() {
+        long before = LaunchControl.statusChanged();
+        LaunchControl.structureChanged();
+        StatusSnapshot full = LaunchControl.getStatusDelta(before);
+        JSONObject json = (JSONObject) JSONValue.parse(full.getJson());
+        assertTrue(!json.containsKey("delta"));
+        assertSame(full, LaunchControl.getStatusSnapshot());
+    }
+}
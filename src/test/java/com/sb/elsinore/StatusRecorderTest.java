@@ -0,0 +1,162 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.recorder.SeriesStore;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The since cursor of the graph data.
+ */
+public class StatusRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SeriesStore store;
+    private StatusRecorder recorder;
+
+    @Before
+    public void setUp() {
+        this.store = new SeriesStore(folder.getRoot());
+        this.recorder = new StatusRecorder(folder.getRoot().getPath(),
+                this.store);
+    }
+
+    @After
+    public void tearDown() {
+        this.store.close();
+    }
+
+    private JSONObject getData(final String since) throws IOException {
+        return getData(since, new HashMap<String, String>());
+    }
+
+    private JSONObject getData(final String since,
+            final Map<String, String> params) throws IOException {
+        params.put("updates", "true");
+        if (since != null) {
+            params.put("since", since);
+        }
+        NanoHTTPD.Response response = this.recorder.getData(params);
+        Reader reader = new InputStreamReader(response.getData(), "UTF-8");
+        try {
+            return (JSONObject) JSONValue.parse(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return The values sent for a series, without the point that carries
+     * the last value through to now.
+     */
+    private static List<?> values(final JSONObject data, final String name) {
+        for (Object column : (JSONArray) data.get("columns")) {
+            JSONArray values = (JSONArray) column;
+            if (values.get(0).equals(name)) {
+                return values.subList(1, values.size() - 1);
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void cursorIsPerSeries() throws IOException {
+        this.store.append("Boil-temp", 10000L, 1f);
+        this.store.append("Mash-temp", 20000L, 2f);
+        JSONObject first = getData(null);
+        JSONObject cursor = (JSONObject) first.get("cursor");
+        assertEquals(10000L, cursor.get("Boil-temp"));
+        assertEquals(20000L, cursor.get("Mash-temp"));
+
+        // The boil gap fill is older than the newest mash sample
+        this.store.append("Boil-temp", 15000L, 3f);
+        this.store.append("Boil-temp", 25000L, 4f);
+        this.store.append("Mash-temp", 25000L, 5f);
+
+        JSONObject update = getData(cursor.toJSONString());
+        assertEquals(Arrays.asList(3.0, 4.0), values(update, "Boil temp"));
+        assertEquals(Arrays.asList(5.0), values(update, "Mash temp"));
+        cursor = (JSONObject) update.get("cursor");
+        assertEquals(25000L, cursor.get("Boil-temp"));
+        assertEquals(25000L, cursor.get("Mash-temp"));
+
+        // Nothing new, the cursor stays where it is
+        JSONObject empty = getData(cursor.toJSONString());
+        assertTrue(values(empty, "Boil temp").isEmpty());
+        assertEquals(cursor, empty.get("cursor"));
+    }
+
+    @Test
+    public void newSeriesIsSentWhole() throws IOException {
+        this.store.append("Mash-temp", 20000L, 2f);
+        JSONObject cursor = (JSONObject) getData(null).get("cursor");
+
+        this.store.append("Boil-temp", 5000L, 1f);
+        this.store.append("Boil-temp", 6000L, 2f);
+        JSONObject update = getData(cursor.toJSONString());
+        assertEquals(Arrays.asList(1.0, 2.0), values(update, "Boil temp"));
+        assertTrue(values(update, "Mash temp").isEmpty());
+    }
+
+    @Test
+    public void sizeDoesntLimitAnUpdate() throws IOException {
+        this.store.append("Boil-temp", 10000L, 1f);
+        JSONObject cursor = (JSONObject) getData(null).get("cursor");
+        for (int i = 1; i <= 5; i++) {
+            this.store.append("Boil-temp", 10000L + i * 1000L, i + 1);
+        }
+
+        Map<String, String> params = new HashMap<>();
+        params.put("size", "2");
+        JSONObject update = getData(cursor.toJSONString(), params);
+        assertEquals(Arrays.asList(2.0, 3.0, 4.0, 5.0, 6.0),
+                values(update, "Boil temp"));
+        cursor = (JSONObject) update.get("cursor");
+        assertEquals(15000L, cursor.get("Boil-temp"));
+    }
+
+    @Test
+    public void singleNumberCursor() throws IOException {
+        this.store.append("Boil-temp", 10000L, 1f);
+        this.store.append("Boil-temp", 30000L, 2f);
+        this.store.append("Mash-temp", 20000L, 3f);
+        JSONObject update = getData("20000");
+        assertEquals(Arrays.asList(2.0), values(update, "Boil temp"));
+        assertTrue(values(update, "Mash temp").isEmpty());
+    }
+
+    @Test
+    public void parseCursor() {
+        List<String> names = Arrays.asList("a", "b");
+        Map<String, Long> cursor = StatusRecorder.parseCursor("12", names);
+        assertEquals(Long.valueOf(12), cursor.get("a"));
+        assertEquals(Long.valueOf(12), cursor.get("b"));
+
+        cursor = StatusRecorder.parseCursor("{\"a\":5,\"c\":\"x\"}", names);
+        assertEquals(Long.valueOf(5), cursor.get("a"));
+        assertNull(cursor.get("b"));
+        assertNull(cursor.get("c"));
+
+        assertTrue(StatusRecorder.parseCursor("[1]", names).isEmpty());
+        assertTrue(StatusRecorder.parseCursor("", names).isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package com.sb.elsinore;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The events sent on the status stream.
+ */
+public class StatusStreamTest {
+
+    private final long heartbeat = StatusStream.HEARTBEAT;
+
+    @After
+    public void tearDown() {
+        StatusStream.HEARTBEAT = this.heartbeat;
+    }
+
+    private static String nextEvent(final StatusStream stream)
+            throws IOException {
+        StringBuilder event = new StringBuilder();
+        while (event.length() < 2
+                || !event.substring(event.length() - 2).equals("\n\n")) {
+            int c = stream.read();
+            if (c < 0) {
+                break;
+            }
+            event.append((char) c);
+        }
+        return event.toString();
+    }
+
+    @Test
+    public void eventsOnlyWhenTheStatusChanges() throws IOException {
+        StatusStream.HEARTBEAT = 200;
+        StatusStream stream = StatusStream.open(Integer.MAX_VALUE);
+        try {
+            String first = nextEvent(stream);
+            assertTrue(first, first.startsWith("id: "));
+            assertTrue(first, !first.contains("\"delta\""));
+
+            long version = LaunchControl.statusChanged();
+            String second = nextEvent(stream);
+            assertTrue(second, second.startsWith("id: " + version + "\n"));
+            assertTrue(second, second.contains("\"delta\":true"));
+
+            // Nothing changed, only the keep alive is sent
+            long start = System.currentTimeMillis();
+            assertEquals(":keepalive\n\n", nextEvent(stream));
+            assertTrue(System.currentTimeMillis() - start >= 150);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void streamsShareTheDelta() throws IOException {
+        StatusStream one = StatusStream.open(Integer.MAX_VALUE);
+        StatusStream two = StatusStream.open(Integer.MAX_VALUE);
+        try {
+            nextEvent(one);
+            nextEvent(two);
+            long since = LaunchControl.getStatusVersion();
+            LaunchControl.statusChanged();
+            StatusSnapshot delta = LaunchControl.getStatusDelta(since);
+            String expected = "id: " + delta.getVersion() + "\ndata: "
+                    + delta.getJson() + "\n\n";
+            assertEquals(expected, nextEvent(one));
+            assertEquals(expected, nextEvent(two));
+        } finally {
+            one.close();
+            two.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.sb.elsinore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The device status versions against the global version.
+ */
+public class StatusVersionTest {
+
+    @Test
+    public void changedTakesTheGlobalVersion() {
+        StatusVersion version = new StatusVersion();
+        assertEquals(0, version.get());
+
+        long before = LaunchControl.getStatusVersion();
+        long changed = version.changed();
+        assertTrue(changed > before);
+        assertEquals(changed, version.get());
+        assertTrue(LaunchControl.getStatusVersion() >= changed);
+
+        assertTrue(version.changedSince(before));
+        assertTrue(version.changedSince(changed - 1));
+        assertFalse(version.changedSince(changed));
+    }
+
+    @Test
+    public void concurrentChangesKeepTheNewest() throws InterruptedException {
+        final StatusVersion version = new StatusVersion();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        version.changed();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long last = version.changed();
+        assertEquals(last, version.get());
+        assertFalse(version.changedSince(last));
+    }
+}
@@ -0,0 +1,134 @@
+package com.sb.elsinore;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The mean, EWMA and median smoothing of the readings.
+ */
+public class TempFilterTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static TempFilter filter(final TempFilter.Mode mode,
+            final int window, final double... values) {
+        TempFilter filter = new TempFilter(mode, window);
+        for (double value : values) {
+            filter.add(value);
+        }
+        return filter;
+    }
+
+    @Test
+    public void noReadings() {
+        for (TempFilter.Mode mode : TempFilter.Mode.values()) {
+            assertEquals(TempFilter.NO_READING,
+                    new TempFilter(mode, 5).get(), 0.0);
+        }
+    }
+
+    @Test
+    public void meanOfTheWindow() {
+        assertEquals(2.0, filter(TempFilter.Mode.MEAN, 5, 1, 2, 3).get(),
+                DELTA);
+        // The oldest readings drop out once the window is full
+        assertEquals(5.0, filter(TempFilter.Mode.MEAN, 3,
+                1, 2, 3, 4, 5, 6).get(), DELTA);
+        assertEquals(150.5, filter(TempFilter.Mode.MEAN, 2,
+                -40, 100, 150, 151).get(), DELTA);
+    }
+
+    @Test
+    public void meanStaysExactOverManyLaps() {
+        TempFilter filter = new TempFilter(TempFilter.Mode.MEAN, 7);
+        for (int i = 0; i < 100000; i++) {
+            filter.add(150.1 + (i % 3) * 0.1);
+        }
+        // The last seven are .1 .2 .3 .1 .2 .3 .1 on top of 150
+        double expected = (150.1 + 150.2 + 150.3 + 150.1 + 150.2 + 150.3
+                + 150.1) / 7;
+        assertEquals(expected, filter.get(), 1e-9);
+    }
+
+    @Test
+    public void ewmaWeightsTheNewestReadings() {
+        // A window of 3 gives alpha = 2 / (3 + 1) = 0.5
+        TempFilter filter = filter(TempFilter.Mode.EWMA, 3, 10);
+        assertEquals(10.0, filter.get(), DELTA);
+        filter.add(20);
+        assertEquals(15.0, filter.get(), DELTA);
+        filter.add(20);
+        assertEquals(17.5, filter.get(), DELTA);
+        filter.add(0);
+        assertEquals(8.75, filter.get(), DELTA);
+    }
+
+    @Test
+    public void medianIgnoresASpike() {
+        assertEquals(150.0, filter(TempFilter.Mode.MEDIAN, 5,
+                150, 151, 185, 149, 150).get(), DELTA);
+        assertEquals(150.5, filter(TempFilter.Mode.MEDIAN, 4,
+                150, 151, -999, 185).get(), DELTA);
+        assertEquals(3.0, filter(TempFilter.Mode.MEDIAN, 3,
+                9, 8, 7, 1, 5, 3).get(), DELTA);
+        assertEquals(7.0, filter(TempFilter.Mode.MEDIAN, 5, 7).get(), DELTA);
+    }
+
+    @Test
+    public void clearStartsAgain() {
+        for (TempFilter.Mode mode : TempFilter.Mode.values()) {
+            TempFilter filter = filter(mode, 3, 100, 200, 300);
+            filter.clear();
+            assertEquals(TempFilter.NO_READING, filter.get(), 0.0);
+            filter.add(42);
+            assertEquals(mode.toString(), 42.0, filter.get(), DELTA);
+        }
+    }
+
+    @Test
+    public void windowAndMode() {
+        assertEquals(1, new TempFilter(TempFilter.Mode.MEAN, 0).getWindow());
+        assertEquals(TempFilter.MAX_WINDOW,
+                new TempFilter(TempFilter.Mode.MEAN, 100000).getWindow());
+        assertEquals(TempFilter.DEFAULT_WINDOW, new TempFilter().getWindow());
+        assertEquals(TempFilter.Mode.MEDIAN,
+                TempFilter.Mode.fromString(" Median "));
+        assertEquals(TempFilter.Mode.MEAN, TempFilter.Mode.fromString("x"));
+        assertEquals(TempFilter.Mode.MEAN, TempFilter.Mode.fromString(null));
+        assertEquals("ewma", TempFilter.Mode.EWMA.toString());
+    }
+
+    @Test
+    public void medianWhileAdding() throws InterruptedException {
+        // Every window holds 10, 20 and 30 in some order
+        final TempFilter filter = filter(TempFilter.Mode.MEDIAN, 3,
+                10, 20, 30);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    double median = filter.get();
+                    if (median != 20.0) {
+                        failure.set("Median was " + median);
+                        return;
+                    }
+                }
+            }
+        });
+        reader.start();
+        double[] values = {10, 20, 30};
+        for (int i = 0; i < 300000; i++) {
+            filter.add(values[i % 3]);
+        }
+        done.set(true);
+        reader.join();
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,181 @@
+package com.sb.elsinore.recorder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The LTTB and min/max downsampling against known inputs.
+ */
+public class DownsamplerTest {
+
+    /**
+     * Collects the points the downsampler hands on.
+     */
+    private static class Collector implements SampleVisitor {
+        final List<Long> timestamps = new ArrayList<>();
+        final List<Float> values = new ArrayList<>();
+
+        @Override
+        public boolean sample(long timestamp, float value) {
+            this.timestamps.add(timestamp);
+            this.values.add(value);
+            return true;
+        }
+    }
+
+    private static Collector run(final float[] input, final int points,
+            final String mode) {
+        Collector collector = new Collector();
+        Downsampler downsampler = new Downsampler(collector, points,
+                input.length, mode);
+        for (int i = 0; i < input.length; i++) {
+            downsampler.sample(i * 10L, input[i]);
+        }
+        downsampler.finish();
+        return collector;
+    }
+
+    private static float[] wave(final int n) {
+        float[] input = new float[n];
+        for (int i = 0; i < n; i++) {
+            input[i] = (float) (Math.sin(i / 7.0) * 10 + Math.cos(i / 3.0));
+        }
+        return input;
+    }
+
+    private static void assertAscending(final List<Long> timestamps) {
+        for (int i = 1; i < timestamps.size(); i++) {
+            assertTrue("out of order at " + i,
+                    timestamps.get(i) > timestamps.get(i - 1));
+        }
+    }
+
+    @Test
+    public void lttbKeepsEndsAndSize() {
+        float[] input = wave(1000);
+        for (int points : new int[]{3, 10, 50, 99, 500}) {
+            Collector out = run(input, points, Downsampler.LTTB);
+            assertEquals("points " + points, points, out.timestamps.size());
+            assertEquals(0L, (long) out.timestamps.get(0));
+            assertEquals(input[0], out.values.get(0), 0f);
+            assertEquals(9990L, (long) out.timestamps.get(points - 1));
+            assertEquals(input[999], out.values.get(points - 1), 0f);
+            assertAscending(out.timestamps);
+        }
+    }
+
+    @Test
+    public void lttbKeepsTheSpike() {
+        float[] input = new float[100];
+        input[37] = 50f;
+        Collector out = run(input, 10, Downsampler.LTTB);
+        assertEquals(10, out.timestamps.size());
+        assertTrue(out.timestamps.contains(370L));
+        assertTrue(out.values.contains(50f));
+    }
+
+    @Test
+    public void lttbPicksTheLargestTriangle() {
+        // One sample in each bucket is off the line, it must be picked
+        float[] input = new float[14];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = i;
+        }
+        input[2] = 20f;
+        input[6] = -20f;
+        input[10] = 30f;
+        // 12 middle samples in 3 buckets of 4
+        Collector out = run(input, 5, Downsampler.LTTB);
+        List<Long> expected = new ArrayList<>();
+        expected.add(0L);
+        expected.add(20L);
+        expected.add(60L);
+        expected.add(100L);
+        expected.add(130L);
+        assertEquals(expected, out.timestamps);
+    }
+
+    @Test
+    public void minMaxKeepsExtremes() {
+        // 2 + 4 buckets of 5 samples
+        float[] input = {
+            0f,
+            1f, 9f, 3f, -4f, 2f,
+            5f, 5f, 6f, 5f, 5f,
+            -1f, -2f, -3f, -8f, 7f,
+            4f, 3f, 2f, 1f, 0f,
+            100f,
+        };
+        Collector out = run(input, 10, Downsampler.MIN_MAX);
+        assertEquals(10, out.timestamps.size());
+        float[] expected = {0f, 9f, -4f, 5f, 6f, -8f, 7f, 4f, 0f, 100f};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("point " + i, expected[i], out.values.get(i), 0f);
+        }
+        assertAscending(out.timestamps);
+    }
+
+    @Test
+    public void minMaxKeepsEndsAndSize() {
+        float[] input = wave(1000);
+        for (int points : new int[]{4, 10, 50, 500}) {
+            Collector out = run(input, points, Downsampler.MIN_MAX);
+            assertEquals("points " + points, points, out.timestamps.size());
+            assertEquals(0L, (long) out.timestamps.get(0));
+            assertEquals(9990L,
+                    (long) out.timestamps.get(out.timestamps.size() - 1));
+            assertAscending(out.timestamps);
+        }
+    }
+
+    @Test
+    public void passThroughWhenNothingToReduce() {
+        float[] input = wave(20);
+        for (String mode : new String[]{Downsampler.LTTB,
+                Downsampler.MIN_MAX}) {
+            for (int points : new int[]{20, 21, 1000}) {
+                Collector out = run(input, points, mode);
+                assertEquals(20, out.timestamps.size());
+                for (int i = 0; i < input.length; i++) {
+                    assertEquals(i * 10L, (long) out.timestamps.get(i));
+                    assertEquals(input[i], out.values.get(i), 0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void emptyAndSingleInput() {
+        assertEquals(0, run(new float[0], 10, Downsampler.LTTB)
+                .timestamps.size());
+        Collector one = run(new float[]{3f}, 10, Downsampler.MIN_MAX);
+        assertEquals(1, one.timestamps.size());
+        assertEquals(3f, one.values.get(0), 0f);
+    }
+
+    @Test
+    public void stopsWhenTheTargetStops() {
+        final List<Long> seen = new ArrayList<>();
+        Downsampler downsampler = new Downsampler(new SampleVisitor() {
+            @Override
+            public boolean sample(long timestamp, float value) {
+                seen.add(timestamp);
+                return seen.size() < 2;
+            }
+        }, 10, 100, Downsampler.LTTB);
+        boolean more = true;
+        int pushed = 0;
+        while (more && pushed < 100) {
+            more = downsampler.sample(pushed, pushed % 7);
+            pushed++;
+        }
+        downsampler.finish();
+        assertEquals(2, seen.size());
+        assertTrue(pushed < 100);
+    }
+}
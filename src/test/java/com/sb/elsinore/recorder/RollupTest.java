@@ -0,0 +1,174 @@
+package com.sb.elsinore.recorder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The rollup buckets, written and read back.
+ */
+public class RollupTest {
+
+    private static final long MINUTE = Rollup.INTERVALS[0];
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<float[]> readBuckets(final Rollup rollup,
+            final List<Long> starts) {
+        final List<float[]> buckets = new ArrayList<>();
+        for (int field = Rollup.MIN; field <= Rollup.LAST; field++) {
+            final int f = field;
+            final int[] i = {0};
+            rollup.read(Long.MIN_VALUE, Long.MAX_VALUE, field,
+                    new SampleVisitor() {
+                    @Override
+                    public boolean sample(long timestamp, float value) {
+                        if (f == Rollup.MIN) {
+                            starts.add(timestamp);
+                            buckets.add(new float[4]);
+                        }
+                        buckets.get(i[0]++)[f] = value;
+                        return true;
+                    }
+                });
+        }
+        return buckets;
+    }
+
+    @Test
+    public void bucketsAggregate() throws IOException {
+        Rollup rollup = new Rollup(folder.getRoot(), "temp", 0);
+        assertEquals(MINUTE, rollup.getInterval());
+        long base = 100 * MINUTE;
+        rollup.add(base + 1000, 4f);
+        rollup.add(base + 2000, 1f);
+        rollup.add(base + 3000, 7f);
+        rollup.add(base + MINUTE + 10, 10f);
+        rollup.add(base + MINUTE + 20, 20f);
+
+        // The first bucket is on disk, the second is still being filled
+        assertEquals(1, rollup.getSeriesFile().size());
+        assertEquals(2, rollup.count(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        List<Long> starts = new ArrayList<>();
+        List<float[]> buckets = readBuckets(rollup, starts);
+        assertEquals(2, buckets.size());
+        assertEquals(base, (long) starts.get(0));
+        assertEquals(base + MINUTE, (long) starts.get(1));
+
+        assertEquals(1f, buckets.get(0)[Rollup.MIN], 0f);
+        assertEquals(7f, buckets.get(0)[Rollup.MAX], 0f);
+        assertEquals(4f, buckets.get(0)[Rollup.AVG], 0.0001f);
+        assertEquals(7f, buckets.get(0)[Rollup.LAST], 0f);
+
+        assertEquals(10f, buckets.get(1)[Rollup.MIN], 0f);
+        assertEquals(20f, buckets.get(1)[Rollup.MAX], 0f);
+        assertEquals(15f, buckets.get(1)[Rollup.AVG], 0.0001f);
+        assertEquals(20f, buckets.get(1)[Rollup.LAST], 0f);
+        rollup.close();
+    }
+
+    @Test
+    public void rangeSkipsBuckets() throws IOException {
+        Rollup rollup = new Rollup(folder.getRoot(), "temp", 0);
+        for (int i = 0; i < 10; i++) {
+            rollup.add(i * MINUTE + 5, i);
+        }
+        assertEquals(3, rollup.count(3 * MINUTE, 5 * MINUTE));
+        // The bucket being filled is only counted if it's in the range
+        assertEquals(1, rollup.count(9 * MINUTE, 20 * MINUTE));
+        assertEquals(0, rollup.count(20 * MINUTE, 30 * MINUTE));
+
+        final List<Float> values = new ArrayList<>();
+        rollup.read(3 * MINUTE, 5 * MINUTE, Rollup.LAST, new SampleVisitor() {
+            @Override
+            public boolean sample(long timestamp, float value) {
+                values.add(value);
+                return true;
+            }
+        });
+        assertEquals(3, values.size());
+        assertEquals(3f, values.get(0), 0f);
+        assertEquals(5f, values.get(2), 0f);
+        rollup.close();
+    }
+
+    @Test
+    public void closeWritesTheOpenBucket() throws IOException {
+        Rollup rollup = new Rollup(folder.getRoot(), "temp", 1);
+        rollup.add(5, 2f);
+        rollup.add(6, 4f);
+        rollup.close();
+
+        Rollup reopened = new Rollup(folder.getRoot(), "temp", 1);
+        assertEquals(1, reopened.getSeriesFile().size());
+        assertEquals(1, reopened.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        List<Long> starts = new ArrayList<>();
+        List<float[]> buckets = readBuckets(reopened, starts);
+        assertEquals(0L, (long) starts.get(0));
+        assertEquals(3f, buckets.get(0)[Rollup.AVG], 0f);
+        reopened.close();
+    }
+
+    @Test
+    public void restartWithinABucket() throws IOException {
+        SeriesFile raw = new SeriesFile(folder.getRoot(), "temp");
+        Rollup rollup = new Rollup(folder.getRoot(), "temp", 0);
+        long[] times = {5, 10, MINUTE + 5, MINUTE + 10};
+        float[] values = {1f, 3f, 2f, 8f};
+        for (int i = 0; i < 3; i++) {
+            raw.append(times[i], values[i]);
+            rollup.add(times[i], values[i]);
+        }
+        raw.close();
+        rollup.close();
+
+        raw = new SeriesFile(folder.getRoot(), "temp");
+        rollup = new Rollup(folder.getRoot(), "temp", 0);
+        rollup.restore(raw);
+        raw.append(times[3], values[3]);
+        rollup.add(times[3], values[3]);
+        rollup.close();
+
+        // Still one record per bucket, the second one has all its samples
+        assertEquals(2, rollup.getSeriesFile().size());
+        List<Long> starts = new ArrayList<>();
+        List<float[]> buckets = readBuckets(rollup, starts);
+        assertEquals(MINUTE, (long) starts.get(1));
+        assertEquals(2f, buckets.get(1)[Rollup.MIN], 0f);
+        assertEquals(8f, buckets.get(1)[Rollup.MAX], 0f);
+        assertEquals(5f, buckets.get(1)[Rollup.AVG], 0.0001f);
+        assertEquals(2f, buckets.get(0)[Rollup.AVG], 0.0001f);
+        raw.close();
+    }
+
+    @Test
+    public void readMinAndMax() throws IOException {
+        Rollup rollup = new Rollup(folder.getRoot(), "temp", 0);
+        rollup.add(5, 1f);
+        rollup.add(10, 9f);
+        rollup.add(MINUTE + 5, 4f);
+        final List<Float> values = new ArrayList<>();
+        rollup.read(Long.MIN_VALUE, Long.MAX_VALUE,
+                new int[]{Rollup.MIN, Rollup.MAX}, new SampleVisitor() {
+                @Override
+                public boolean sample(long timestamp, float value) {
+                    values.add(value);
+                    return true;
+                }
+            });
+        assertEquals(4, values.size());
+        assertEquals(1f, values.get(0), 0f);
+        assertEquals(9f, values.get(1), 0f);
+        assertEquals(4f, values.get(2), 0f);
+        assertEquals(4f, values.get(3), 0f);
+        rollup.close();
+    }
+}
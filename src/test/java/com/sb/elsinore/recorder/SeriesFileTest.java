@@ -0,0 +1,267 @@
+package com.sb.elsinore.recorder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips for the binary series segments.
+ */
+public class SeriesFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Collects the samples from a read.
+     */
+    private static class Collector implements SampleVisitor {
+        final List<Long> timestamps = new ArrayList<>();
+        final List<Float> values = new ArrayList<>();
+
+        @Override
+        public boolean sample(long timestamp, float value) {
+            this.timestamps.add(timestamp);
+            this.values.add(value);
+            return true;
+        }
+    }
+
+    private static Collector readAll(SeriesFile series) {
+        Collector collector = new Collector();
+        series.read(Long.MIN_VALUE, Long.MAX_VALUE, collector);
+        return collector;
+    }
+
+    @Test
+    public void emptySeries() throws IOException {
+        SeriesFile series = new SeriesFile(folder.getRoot(), "temp");
+        assertEquals(0, series.size());
+        assertEquals(Long.MIN_VALUE, series.getLastTimestamp());
+        assertEquals(Long.MIN_VALUE, series.getFirstTimestamp());
+        assertTrue(Float.isNaN(series.getLastValue()));
+        assertTrue(readAll(series).timestamps.isEmpty());
+        series.close();
+    }
+
+    @Test
+    public void segmentHeader() throws IOException {
+        SeriesFile series = new SeriesFile(folder.getRoot(), "temp", 2);
+        series.append(1000000L, new float[]{1.5f, 2.5f});
+        series.append(1000250L, new float[]{3.5f, 4.5f});
+        series.close();
+
+        File segment = new File(folder.getRoot(),
+                "temp.0" + SeriesFile.SEGMENT_SUFFIX);
+        assertTrue(segment.isFile());
+        assertEquals(SeriesFile.HEADER_SIZE + 2 * 12, segment.length());
+
+        RandomAccessFile raf = new RandomAccessFile(segment, "r");
+        try {
+            assertEquals(SeriesFile.MAGIC, raf.readInt());
+            assertEquals(12, raf.readInt());
+            assertEquals(1000000L, raf.readLong());
+            // Each record is the offset from the base, then the values
+            assertEquals(0, raf.readInt());
+            assertEquals(1.5f, raf.readFloat(), 0f);
+            assertEquals(2.5f, raf.readFloat(), 0f);
+            assertEquals(250, raf.readInt());
+            assertEquals(3.5f, raf.readFloat(), 0f);
+            assertEquals(4.5f, raf.readFloat(), 0f);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        SeriesFile series = new SeriesFile(folder.getRoot(), "temp");
+        for (int i = 0; i < 1000; i++) {
+            series.append(5000L + i * 10, i / 4f);
+        }
+        assertEquals(1000, series.size());
+        assertEquals(5000L, series.getFirstTimestamp());
+        assertEquals(5000L + 999 * 10, series.getLastTimestamp());
+        assertEquals(999 / 4f, series.getLastValue(), 0f);
+
+        Collector all = readAll(series);
+        assertEquals(1000, all.timestamps.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(5000L + i * 10, (long) all.timestamps.get(i));
+            assertEquals(i / 4f, all.values.get(i), 0f);
+        }
+        series.close();
+    }
+
+    @Test
+    public void sparseIndexRanges() throws IOException {
+        SeriesFile series = new SeriesFile(folder.getRoot(), "temp");
+        int records = SeriesFile.INDEX_STRIDE * 10 + 7;
+        for (int i = 0; i < records; i++) {
+            series.append(i * 2L, i);
+        }
+
+        // Ranges that start on, just before and just after indexed records
+        int[][] ranges = {
+            {0, 0}, {1, 1}, {0, 10},
+            {SeriesFile.INDEX_STRIDE * 2 - 1, SeriesFile.INDEX_STRIDE * 2 + 1},
+            {SeriesFile.INDEX_STRIDE * 4, SeriesFile.INDEX_STRIDE * 6},
+            {SeriesFile.INDEX_STRIDE * 4 + 1, SeriesFile.INDEX_STRIDE * 9 - 1},
+            {records * 2 - 3, records * 2 + 100},
+            {records * 2, records * 2 + 100},
+        };
+        for (int[] range : ranges) {
+            Collector collector = new Collector();
+            series.read(range[0], range[1], collector);
+            List<Long> expected = new ArrayList<>();
+            for (long t = range[0]; t <= range[1]; t++) {
+                if (t % 2 == 0 && t < records * 2L) {
+                    expected.add(t);
+                }
+            }
+            assertEquals(range[0] + ".." + range[1], expected,
+                    collector.timestamps);
+            assertEquals(range[0] + ".." + range[1], expected.size(),
+                    series.count(range[0], range[1]));
+        }
+        series.close();
+    }
+
+    @Test
+    public void visitorCanStop() throws IOException {
+        SeriesFile series = new SeriesFile(folder.getRoot(), "temp");
+        for (int i = 0; i < 100; i++) {
+            series.append(i, i);
+        }
+        final List<Long> seen = new ArrayList<>();
+        series.read(10, 100, new SampleVisitor() {
+            @Override
+            public boolean sample(long timestamp, float value) {
+                seen.add(timestamp);
+                return seen.size() < 3;
+            }
+        });
+        assertEquals(3, seen.size());
+        assertEquals(12L, (long) seen.get(2));
+        series.close();
+    }
+
+    @Test
+    public void clampedWhenTimeGoesBack() throws IOException {
+        SeriesFile series = new SeriesFile(folder.getRoot(), "temp");
+        series.append(10000L, 1f);
+        series.append(20000L, 2f);
+        // The clock moved back, the records have to stay in order
+        series.append(5000L, 3f);
+        series.append(15000L, 4f);
+        series.append(25000L, 5f);
+        series.close();
+
+        assertFalse(new File(folder.getRoot(),
+                "temp.1" + SeriesFile.SEGMENT_SUFFIX).isFile());
+        SeriesFile reopened = new SeriesFile(folder.getRoot(), "temp");
+        assertEquals(5, reopened.size());
+        assertEquals(25000L, reopened.getLastTimestamp());
+        assertEquals(3, reopened.count(20000L, 20000L));
+        Collector all = readAll(reopened);
+        assertEquals(Arrays.asList(10000L, 20000L, 20000L, 20000L, 25000L),
+                all.timestamps);
+        assertEquals(4f, all.values.get(3), 0f);
+        reopened.close();
+    }
+
+    @Test
+    public void reopenAndAppend() throws IOException {
+        SeriesFile series = new SeriesFile(folder.getRoot(), "temp");
+        for (int i = 0; i < 200; i++) {
+            series.append(i * 100L, i);
+        }
+        series.close();
+
+        SeriesFile reopened = new SeriesFile(folder.getRoot(), "temp");
+        assertEquals(200, reopened.size());
+        assertEquals(199 * 100L, reopened.getLastTimestamp());
+        assertEquals(199f, reopened.getLastValue(), 0f);
+        for (int i = 200; i < 300; i++) {
+            reopened.append(i * 100L, i);
+        }
+        reopened.close();
+
+        SeriesFile again = new SeriesFile(folder.getRoot(), "temp");
+        Collector all = readAll(again);
+        assertEquals(300, all.timestamps.size());
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i * 100L, (long) all.timestamps.get(i));
+            assertEquals(i, all.values.get(i), 0f);
+        }
+        assertEquals(100, again.count(20000L, 29900L));
+        again.close();
+    }
+
+    @Test
+    public void reopenAfterCrash() throws IOException {
+        SeriesFile series = new SeriesFile(folder.getRoot(), "temp");
+        for (int i = 0; i < 50; i++) {
+            series.append(i * 1000L, i);
+        }
+        // No close, the process died part way through writing a record
+        series.sync(true);
+        File segment = new File(folder.getRoot(),
+                "temp.0" + SeriesFile.SEGMENT_SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.seek(raf.length());
+            raf.write(new byte[]{1, 2, 3});
+        } finally {
+            raf.close();
+        }
+
+        SeriesFile reopened = new SeriesFile(folder.getRoot(), "temp");
+        assertEquals(50, reopened.size());
+        assertEquals(49000L, reopened.getLastTimestamp());
+        assertEquals(SeriesFile.HEADER_SIZE + 50 * 8, segment.length());
+
+        reopened.append(50000L, 50f);
+        Collector all = readAll(reopened);
+        assertEquals(51, all.timestamps.size());
+        assertEquals(50000L, (long) all.timestamps.get(50));
+        assertEquals(50f, all.values.get(50), 0f);
+        assertEquals(49f, all.values.get(49), 0f);
+        reopened.close();
+        series.close();
+    }
+
+    @Test
+    public void ignoresOtherSeriesAndBadSegments() throws IOException {
+        SeriesFile longer = new SeriesFile(folder.getRoot(), "temp.mash");
+        longer.append(1L, 1f);
+        longer.close();
+        File bad = new File(folder.getRoot(),
+                "temp.5" + SeriesFile.SEGMENT_SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(bad, "rw");
+        try {
+            raf.writeInt(12345);
+        } finally {
+            raf.close();
+        }
+
+        SeriesFile series = new SeriesFile(folder.getRoot(), "temp");
+        assertEquals(0, series.size());
+        series.append(2L, 2f);
+        assertEquals(1, series.size());
+        series.close();
+        assertFalse(new File(folder.getRoot(),
+                "temp.6" + SeriesFile.SEGMENT_SUFFIX).exists());
+    }
+}
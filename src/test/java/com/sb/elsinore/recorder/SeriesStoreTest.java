@@ -0,0 +1,68 @@
+package com.sb.elsinore.recorder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The series store, written and reopened.
+ */
+public class SeriesStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendCreatesSeriesAndRollups() {
+        SeriesStore store = new SeriesStore(folder.getRoot());
+        assertNull(store.getSeries("mash", false));
+        assertNull(store.getRollup("mash", 0));
+
+        store.append("mash", 1000L, 65f);
+        SeriesFile mash = store.getSeries("mash", false);
+        assertNotNull(mash);
+        assertSame(mash, store.getSeries("mash", true));
+        assertEquals(1, mash.size());
+        for (int tier = 0; tier < Rollup.INTERVALS.length; tier++) {
+            Rollup rollup = store.getRollup("mash", tier);
+            assertNotNull(rollup);
+            assertEquals(1, rollup.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        store.close();
+    }
+
+    @Test
+    public void reopenFindsEverySeries() {
+        SeriesStore store = new SeriesStore(folder.getRoot());
+        for (int i = 0; i < 120; i++) {
+            store.append("mash", i * 1000L, 60f + i);
+            store.append("hlt.duty", i * 1000L, i % 100);
+        }
+        store.close();
+
+        SeriesStore reopened = new SeriesStore(folder.getRoot());
+        // The rollup tiers come back with their series, not on their own
+        assertEquals(Arrays.asList("hlt.duty", "mash"),
+                reopened.getSeriesNames());
+        assertEquals(120, reopened.getSeries("mash", false).size());
+        assertEquals(179f,
+                reopened.getSeries("mash", false).getLastValue(), 0f);
+        assertEquals(119 * 1000L,
+                reopened.getSeries("hlt.duty", false).getLastTimestamp());
+
+        Rollup minutes = reopened.getRollup("mash", 0);
+        assertEquals(2, minutes.count(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        reopened.append("mash", 120 * 1000L, 1f);
+        assertEquals(121, reopened.getSeries("mash", false).size());
+        assertEquals(3, minutes.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        reopened.close();
+    }
+}
@@ -0,0 +1,21 @@
+// Append the new points of a graph update to the columns we already have,
+// the last point of each column only carries the value through to the time
+// it was sent
+function mergeColumns(columns, update) {
+	for (var i = 0; i < update.length; i++) {
+		var found = false;
+		for (var j = 0; j < columns.length; j++) {
+			if (columns[j][0] == update[i][0]) {
+				if (columns[j].length > 1) {
+					columns[j].pop();
+				}
+				columns[j] = columns[j].concat(update[i].slice(1));
+				found = true;
+				break;
+			}
+		}
+		if (!found) {
+			columns.push(update[i]);
+		}
+	}
+}
@@ -152,233 +152,272 @@ function waitForMsg() {
 	if (window.disableUpdates) {
 		return false;
 	}
+
+	// Use the pushed status stream where we can, otherwise poll
+	if (window.EventSource && !window.statusStreamFailed) {
+		if (window.statusStream == null) {
+			openStatusStream();
+		}
+		return true;
+	}
+
 	jQuery
 			.ajax({
 				type : 'GET',
 				url : '/getstatus',
+				// Only ask for the changes once we have the full status
+				data : (window.statusVersion == null ? {}
+						: {since : window.statusVersion}),
 				dataType : 'json',
 				async : true,
-				cache : false,
 				timeout : 5000,
-				success : function(data) {
-					if (data == null)
-						return;
-
-					if ("breweryName" in data) {
-						val = data.breweryName;
-						if (val != null && val.length > 0 && val != "") {
-							window.breweryName = val;
-							jQuery("#breweryName").text(val);
-						} else {
-							window.breweryName = "Elsinore";
-							jQuery("#breweryName").text("Elsinore");
-						}
-					}
+				success : updateStatus
+			});
+	setTimeout(waitForMsg, 1000);
 
-					// Check for an error message
-					if ("message" in data) {
-						val = data.message;
-
-						if (val.length > 0) {
-							val += "<br/><button id='clearMessage' class='btn modeclass' "
-									+ "onclick='clearStatus(); return false;'>"
-									+ $.i18n.prop("CLEAR") + "</button>";
-							jQuery("#messages-body").html(val);
-
-							if (!$("#messages").is(":visible")) {
-								jQuery("#messages").css('display', 'block');
-								jQuery("#messages").toggleClass("hidden", false);
-							}
-						} else {
-							if ($("#messages").is(":visible")) {
-								jQuery("#messages").toggleClass("hidden", true);;
-							}
-						}
-					}
+}
 
-					if ("brewday" in data) {
-						val = data.brewday;
-						$.each(val, function(timerName, timerStatus) {
-							checkTimer(timerStatus, timerName);
-						});
+function openStatusStream() {
+	window.statusStream = new EventSource('/status-stream');
+	window.statusStream.onmessage = function(event) {
+		if (window.disableUpdates) {
+			// Changes would be missed while editing, so start again with
+			// the full status when updates are enabled
+			window.statusStream.close();
+			window.statusStream = null;
+			return;
+		}
+		updateStatus(JSON.parse(event.data));
+	};
+	window.statusStream.onerror = function() {
+		window.statusStream.close();
+		window.statusStream = null;
+		window.statusStreamFailed = true;
+		setTimeout(waitForMsg, 1000);
+	};
+}
 
-					}
+function updateStatus(data) {
+	if (data == null)
+		return;
 
-					if ("triggers" in data) {
-						val = sortObjectByKey(data.triggers);
-
-						$.each(val, function(triggerPID, triggerDetails) {
-							// Iterate the list of mash Lists
-							addTriggerTable(triggerPID);
-							$.each(triggerDetails, function(triggerStep,
-									triggerData) {
-								if (triggerStep != 'pid') {
-									addTriggerStep(triggerStep, triggerData,
-											triggerPID);
-								}
-							});
-
-							if ($("#triggerTable" + triggerPID).find(
-									'.success').length > 0) {
-								$("#triggerButton-" + triggerPID).text(
-										$.i18n.prop("DISABLE"));
-							} else {
-								$("#triggerButton-" + triggerPID).text(
-										$.i18n.prop("ACTIVATE"));
-							}
-
-						});
-					}
+	if ("version" in data) {
+		window.statusVersion = data.version;
+	}
 
-					if ("switches" in data) {
-						val = data.switches;
-						$.each(
-							val,
-							function(switchName, switchStatus) {
-								// enable or disable the switch as
-								// required
-								if (switchStatus) {
-									$('span[id^="' + switchName + '"]')[0].style.background = "red";
-									$('span[id^="'+ switchName + '"]')[0].innerHTML =
-									    switchName.replace("_", " ")+ " " + $.i18n.prop("SWITCH_ON");
-								} else {
-									$('span[id^="' + switchName + '"]')[0].style.background = "#666666";
-									$('span[id^="' + switchName + '"]')[0].innerHTML =
-									    switchName.replace("_", " ") + " " + $.i18n.prop("SWITCH_OFF");
-								}
-							});
-					}
+	if ("breweryName" in data) {
+		val = data.breweryName;
+		if (val != null && val.length > 0 && val != "") {
+			window.breweryName = val;
+			jQuery("#breweryName").text(val);
+		} else {
+			window.breweryName = "Elsinore";
+			jQuery("#breweryName").text("Elsinore");
+		}
+	}
 
-					if (window.disableUpdates) {
-						return false;
-					}
+	// Check for an error message
+	if ("message" in data) {
+		val = data.message;
+
+		if (val.length > 0) {
+			val += "<br/><button id='clearMessage' class='btn modeclass' "
+					+ "onclick='clearStatus(); return false;'>"
+					+ $.i18n.prop("CLEAR") + "</button>";
+			jQuery("#messages-body").html(val);
+
+			if (!$("#messages").is(":visible")) {
+				jQuery("#messages").css('display', 'block');
+				jQuery("#messages").toggleClass("hidden", false);
+			}
+		} else {
+			if ($("#messages").is(":visible")) {
+				jQuery("#messages").toggleClass("hidden", true);;
+			}
+		}
+	}
 
-                    if ("notifications" in data) {
-                        showNotifications(data.notifications);
-                    }
+	if ("brewday" in data) {
+		val = data.brewday;
+		$.each(val, function(timerName, timerStatus) {
+			checkTimer(timerStatus, timerName);
+		});
 
-                    if ("recipeCount" in data && data.recipeCount > 1) {
-                        if ($("span[id='selectRecipe']").length == 0) {
-                            window.location.assign(window.location.href);
-                        }
-                    }
+	}
 
-                    if ("recipe" in data && data.recipe != "") {
-                        if ($("span[id='showCurrentRecipe']").length == 0) {
-                            window.location.assign(window.location.href);
-                        }
-                    }
+	if ("triggers" in data) {
+		val = sortObjectByKey(data.triggers);
 
-					if ("vessels" in data) {
-						val = data.vessels;
-
-						if (!("system" in data.vessels)
-								&& !("System" in data.vessels)) {
-							// No System temperature, add a header to add it in.
-							var sysTemp = $("[id=System]");
-							if (sysTemp.length == 0 && !data.locked) {
-								var sysHtml = '<div id="System" class="holo-content controller panel panel-primary Temp">'
-										+ '<div id="System-title" class="title panel-heading "'
-										+ 'onclick="enableSystem(this);" style="cursor: pointer;">'
-										+ $.i18n.prop("SYSTEM")
-										+ '</div>'
-										+ '</div>';
-
-								$("[id=Probes]").last().append(sysHtml)
-							}
-							if ($("[id=System] > div").length == 1
-									&& data.locked) {
-								sysTemp.remove();
-							}
-						}
-						$.each(val, function(vesselProbe, vesselStatus) {
-
-							// This should always be there
-							if ("name" in vesselStatus) {
-								vesselName = vesselStatus.name;
-								if (vesselName == $.i18n.prop("SYSTEM")
-										&& $('[id=System-tempGauge]').length == 0) {
-									return;
-								}
-							}
-
-							if ("deviceaddr" in vesselStatus) {
-							    vesselProbe = vesselStatus.deviceaddr;
-							}
-							addTriggerTable(vesselProbe);
-							if ("tempprobe" in vesselStatus) {
-								updateTempProbe(vesselProbe,
-										vesselStatus.tempprobe);
-							}
-
-							if ("pidstatus" in vesselStatus) {
-								updatePIDStatus(vesselProbe,
-										vesselStatus.pidstatus);
-
-								// Hide the gauge if needs be
-								if (vesselStatus.pidstatus.mode == "off") {
-									$('div[id^="' + vesselProbe + '-gage"]')
-											.toggleClass("hidden", true);
-								} else {
-									$('div[id^="' + vesselProbe + '-gage"]')
-											.toggleClass("hidden", false);
-									var duty = vesselStatus.pidstatus.duty;
-									if ("actualduty" in vesselStatus.pidstatus) {
-										duty = vesselStatus.pidstatus.actualduty;
-									}
-
-									if (duty < 0) {
-										if (Gauges[vesselProbe].config.textMax != "0") {
-											Gauges[vesselProbe].config.levelColors = [
-													"#0033CC",
-													"#CC00CC",
-													"#a9d70b" ];
-										}
-										Gauges[vesselProbe]
-												.refreshBoth(
-														duty,
-														-100,
-														"0");
-									} else {
-										if (Gauges[vesselProbe].config.textMax != "0") {
-											Gauges[vesselProbe].config.levelColors = [
-													"#a9d70b",
-													"#f9c802",
-													"#ff0000" ];
-										}
-										Gauges[vesselProbe].refreshBoth(duty, "0", 100);
-									}
-
-								}
-							} else {
-								hidePIDForm(vesselProbe);
-							}
-
-							if ("volume" in vesselStatus) {
-								updateVolumeStatus(vesselProbe,
-										vesselStatus.volume);
-							} else {
-								jQuery("#" + vesselProbe+ "-volumeAmount")
-									.text($.i18n.prop("NO_VOLUME"));
-							}
-						});
+		$.each(val, function(triggerPID, triggerDetails) {
+			// Iterate the list of mash Lists
+			addTriggerTable(triggerPID);
+			$.each(triggerDetails, function(triggerStep,
+					triggerData) {
+				if (triggerStep != 'pid') {
+					addTriggerStep(triggerStep, triggerData,
+							triggerPID);
+				}
+			});
+
+			if ($("#triggerTable" + triggerPID).find(
+					'.success').length > 0) {
+				$("#triggerButton-" + triggerPID).text(
+						$.i18n.prop("DISABLE"));
+			} else {
+				$("#triggerButton-" + triggerPID).text(
+						$.i18n.prop("ACTIVATE"));
+			}
+
+		});
+	}
+
+	if ("switches" in data) {
+		val = data.switches;
+		$.each(
+			val,
+			function(switchName, switchStatus) {
+				// enable or disable the switch as
+				// required
+				if (switchStatus) {
+					$('span[id^="' + switchName + '"]')[0].style.background = "red";
+					$('span[id^="'+ switchName + '"]')[0].innerHTML =
+					    switchName.replace("_", " ")+ " " + $.i18n.prop("SWITCH_ON");
+				} else {
+					$('span[id^="' + switchName + '"]')[0].style.background = "#666666";
+					$('span[id^="' + switchName + '"]')[0].innerHTML =
+					    switchName.replace("_", " ") + " " + $.i18n.prop("SWITCH_OFF");
+				}
+			});
+	}
+
+	if (window.disableUpdates) {
+		// The rest of this status is skipped, so get it all next time
+		window.statusVersion = null;
+		return false;
+	}
+
+    if ("notifications" in data) {
+        showNotifications(data.notifications);
+    }
+
+    if ("recipeCount" in data && data.recipeCount > 1) {
+        if ($("span[id='selectRecipe']").length == 0) {
+            window.location.assign(window.location.href);
+        }
+    }
+
+    if ("recipe" in data && data.recipe != "") {
+        if ($("span[id='showCurrentRecipe']").length == 0) {
+            window.location.assign(window.location.href);
+        }
+    }
+
+	if ("vessels" in data) {
+		val = data.vessels;
+
+		if (!("system" in data.vessels)
+				&& !("System" in data.vessels)) {
+			// No System temperature, add a header to add it in.
+			var sysTemp = $("[id=System]");
+			if (sysTemp.length == 0 && !data.locked) {
+				var sysHtml = '<div id="System" class="holo-content controller panel panel-primary Temp">'
+						+ '<div id="System-title" class="title panel-heading "'
+						+ 'onclick="enableSystem(this);" style="cursor: pointer;">'
+						+ $.i18n.prop("SYSTEM")
+						+ '</div>'
+						+ '</div>';
+
+				$("[id=Probes]").last().append(sysHtml)
+			}
+			if ($("[id=System] > div").length == 1
+					&& data.locked) {
+				sysTemp.remove();
+			}
+		}
+		$.each(val, function(vesselProbe, vesselStatus) {
+
+			// This should always be there
+			if ("name" in vesselStatus) {
+				vesselName = vesselStatus.name;
+				if (vesselName == $.i18n.prop("SYSTEM")
+						&& $('[id=System-tempGauge]').length == 0) {
+					return;
+				}
+			}
+
+			if ("deviceaddr" in vesselStatus) {
+			    vesselProbe = vesselStatus.deviceaddr;
+			}
+			addTriggerTable(vesselProbe);
+			if ("tempprobe" in vesselStatus) {
+				updateTempProbe(vesselProbe,
+						vesselStatus.tempprobe);
+			}
+
+			if ("pidstatus" in vesselStatus) {
+				updatePIDStatus(vesselProbe,
+						vesselStatus.pidstatus);
+
+				// Hide the gauge if needs be
+				if (vesselStatus.pidstatus.mode == "off") {
+					$('div[id^="' + vesselProbe + '-gage"]')
+							.toggleClass("hidden", true);
+				} else {
+					$('div[id^="' + vesselProbe + '-gage"]')
+							.toggleClass("hidden", false);
+					var duty = vesselStatus.pidstatus.duty;
+					if ("actualduty" in vesselStatus.pidstatus) {
+						duty = vesselStatus.pidstatus.actualduty;
 					}
 
-					if ("locked" in data) {
-						if (window.locked == undefined) {
-							window.locked = !data.locked;
-							toggleEdit(false);
-							window.locked = data.locked;
+					if (duty < 0) {
+						if (Gauges[vesselProbe].config.textMax != "0") {
+							Gauges[vesselProbe].config.levelColors = [
+									"#0033CC",
+									"#CC00CC",
+									"#a9d70b" ];
+						}
+						Gauges[vesselProbe]
+								.refreshBoth(
+										duty,
+										-100,
+										"0");
+					} else {
+						if (Gauges[vesselProbe].config.textMax != "0") {
+							Gauges[vesselProbe].config.levelColors = [
+									"#a9d70b",
+									"#f9c802",
+									"#ff0000" ];
 						}
+						Gauges[vesselProbe].refreshBoth(duty, "0", 100);
 					}
 
-					vessel = null;
-					data = null;
-					fixWebkitHeightBug();
 				}
-			});
-	setTimeout(waitForMsg, 1000);
+			} else {
+				hidePIDForm(vesselProbe);
+			}
 
+			if ("volume" in vesselStatus) {
+				updateVolumeStatus(vesselProbe,
+						vesselStatus.volume);
+			} else {
+				jQuery("#" + vesselProbe+ "-volumeAmount")
+					.text($.i18n.prop("NO_VOLUME"));
+			}
+		});
+	}
+
+	if ("locked" in data) {
+		if (window.locked == undefined) {
+			window.locked = !data.locked;
+			toggleEdit(false);
+			window.locked = data.locked;
+		}
+	}
+
+	vessel = null;
+	data = null;
+	fixWebkitHeightBug();
 }
 
 function addTriggerTable(vesselProbe) {
@@ -2387,6 +2426,8 @@ function embedGraph(vessel) {
 	var alreadyFetched = {};
 	window.updateOnly = false;
 	var chart = null;
+	var columns = null;
+	var cursor = null;
 	$("#" + vessel + "-graph_body").width(300);
 	$("#" + vessel + "-graph_body").height(200);
 	function fetchData() {
@@ -2399,9 +2440,17 @@ function embedGraph(vessel) {
 				series["zoom"]["enabled"] = true;
 				series["axis"]["y"]["tick"] = {};
 				series["axis"]["y"]["tick"]["format"] = function(d) { return parseFloat(d).toFixed(2);}
+				columns = series["data"]["columns"];
+				if ("cursor" in series["data"]) {
+					cursor = series["data"]["cursor"];
+				}
 				chart = c3.generate(series);
 			} else {
-				chart.load(series);
+				mergeColumns(columns, series["columns"]);
+				if ("cursor" in series) {
+					cursor = series["cursor"];
+				}
+				chart.load({columns: columns});
 			}
 			window.updateOnly = true;
 		}
@@ -2413,6 +2462,10 @@ function embedGraph(vessel) {
 		updateParams["vessel"] = vessel;
 		updateParams["bindto"] = vessel + "-graph_body";
 		updateParams["updates"] = window.updateOnly;
+		updateParams["width"] = $("#" + vessel + "-graph_body").width();
+		if (cursor != null) {
+			updateParams["since"] = JSON.stringify(cursor);
+		}
 		
 		$.ajax({
 			url : "/graph-data/",